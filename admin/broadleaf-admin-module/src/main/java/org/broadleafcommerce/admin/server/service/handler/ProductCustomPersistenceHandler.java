@@ -41,6 +41,7 @@ import org.broadleafcommerce.core.catalog.domain.ProductBundle;
 import org.broadleafcommerce.core.catalog.domain.ProductImpl;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.catalog.service.ProductListingViewService;
 import org.broadleafcommerce.core.catalog.service.type.ProductBundlePricingModelType;
 import org.broadleafcommerce.openadmin.dto.BasicFieldMetadata;
 import org.broadleafcommerce.openadmin.dto.CriteriaTransferObject;
@@ -92,6 +93,9 @@ public class ProductCustomPersistenceHandler extends CustomPersistenceHandlerAda
     @Resource(name = "blCatalogService")
     protected CatalogService catalogService;
 
+    @Resource(name = "blProductListingViewService")
+    protected ProductListingViewService productListingViewService;
+
     @Resource(name = "blProductCustomPersistenceHandlerExtensionManager")
     protected ProductCustomPersistenceHandlerExtensionManager extensionManager;
 
@@ -350,6 +354,7 @@ public class ProductCustomPersistenceHandler extends CustomPersistenceHandlerAda
                 setupXref(adminInstance);
                 removeOldDefault(adminInstance, oldDefault, entity);
             }
+            productListingViewService.invalidate(adminInstance.getId());
 
             return helper.getRecord(adminProperties, adminInstance, null, null);
         } catch (Exception e) {
@@ -50,6 +50,7 @@ import org.broadleafcommerce.core.catalog.domain.SkuImpl;
 import org.broadleafcommerce.core.catalog.domain.SkuProductOptionValueXref;
 import org.broadleafcommerce.core.catalog.domain.SkuProductOptionValueXrefImpl;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.catalog.service.ProductListingViewService;
 import org.broadleafcommerce.openadmin.dto.BasicFieldMetadata;
 import org.broadleafcommerce.openadmin.dto.ClassMetadata;
 import org.broadleafcommerce.openadmin.dto.CriteriaTransferObject;
@@ -132,6 +133,9 @@ public class SkuCustomPersistenceHandler extends CustomPersistenceHandlerAdapter
     @Resource(name="blCatalogService")
     protected CatalogService catalogService;
 
+    @Resource(name = "blProductListingViewService")
+    protected ProductListingViewService productListingViewService;
+
     @PersistenceContext(unitName = "blPU")
     protected EntityManager em;
 
@@ -762,6 +766,9 @@ public class SkuCustomPersistenceHandler extends CustomPersistenceHandlerAdapter
             adminInstance = dynamicEntityDao.merge(adminInstance);
 
             extensionManager.getProxy().skuUpdated(adminInstance);
+            if (adminInstance.getProduct() != null) {
+                productListingViewService.invalidate(adminInstance.getProduct().getId());
+            }
 
             //Fill out the DTO and add in the product option value properties to it
             Entity result = helper.getRecord(adminProperties, adminInstance, null, null);
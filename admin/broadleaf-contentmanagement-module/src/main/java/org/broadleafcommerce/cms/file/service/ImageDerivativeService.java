@@ -0,0 +1,51 @@
+/*-
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs image derivative rendering (resizes, crops and other effect chains on static assets) on a bounded pool of
+ * worker threads rather than on the request threads that ask for them. Concurrent requests for the same variant are
+ * coalesced so that the variant is only rendered once.
+ */
+public interface ImageDerivativeService {
+
+    /**
+     * Render a derivative on the worker pool and wait for the result. If a render for the same variant key is already
+     * in progress, wait for that render instead of starting another.
+     *
+     * @param variantKey identifies the derivative, e.g. the name of the cache file it produces
+     * @param renderer produces the derivative
+     * @return the result of the renderer
+     * @throws Exception the exception thrown by the renderer, a {@link java.util.concurrent.TimeoutException} if the
+     * render did not complete in time, or a {@link java.util.concurrent.RejectedExecutionException} if the pool is
+     * saturated
+     */
+    <T> T render(String variantKey, Callable<T> renderer) throws Exception;
+
+    /**
+     * Queue background work, such as pre-generating the derivatives of a newly uploaded asset. The work runs on a
+     * separate low priority thread and may itself call {@link #render(String, Callable)}.
+     *
+     * @param task the work to perform
+     * @return false if the work was dropped because the background queue is full
+     */
+    boolean schedule(Runnable task);
+
+}
@@ -0,0 +1,198 @@
+/*-
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default {@link ImageDerivativeService}. Renders run on a fixed size pool with a bounded queue; background work runs
+ * on a single thread with its own bounded queue so that pre-generation never competes with more than one render slot.
+ */
+@Service("blImageDerivativeService")
+public class ImageDerivativeServiceImpl implements ImageDerivativeService, DisposableBean {
+
+    private static final Log LOG = LogFactory.getLog(ImageDerivativeServiceImpl.class);
+
+    /**
+     * Number of render threads. Zero or less means one per available processor.
+     */
+    @Value("${asset.derivative.render.threads:0}")
+    protected int renderThreads = 0;
+
+    @Value("${asset.derivative.render.queue.size:500}")
+    protected int renderQueueSize = 500;
+
+    @Value("${asset.derivative.render.timeout.seconds:60}")
+    protected long renderTimeoutSeconds = 60;
+
+    @Value("${asset.derivative.background.queue.size:1000}")
+    protected int backgroundQueueSize = 1000;
+
+    protected final ConcurrentMap<String, FutureTask<?>> inFlight = new ConcurrentHashMap<String, FutureTask<?>>();
+    protected volatile ThreadPoolExecutor renderExecutor;
+    protected volatile ThreadPoolExecutor backgroundExecutor;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T render(final String variantKey, Callable<T> renderer) throws Exception {
+        FutureTask<T> task = new FutureTask<T>(renderer);
+        FutureTask<T> existing = (FutureTask<T>) inFlight.putIfAbsent(variantKey, task);
+        if (existing == null) {
+            final FutureTask<T> newTask = task;
+            try {
+                getRenderExecutor().execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            newTask.run();
+                        } finally {
+                            inFlight.remove(variantKey, newTask);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(variantKey, task);
+                throw new RejectedExecutionException("Unable to render " + variantKey + ". The image derivative queue is full.", e);
+            }
+        } else {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Waiting on the render already in progress for " + variantKey);
+            }
+            task = existing;
+        }
+        try {
+            return task.get(renderTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // free the render thread rather than letting an abandoned render run to completion
+            task.cancel(true);
+            inFlight.remove(variantKey, task);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean schedule(Runnable task) {
+        try {
+            getBackgroundExecutor().execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    protected ThreadPoolExecutor getRenderExecutor() {
+        if (renderExecutor == null) {
+            synchronized (this) {
+                if (renderExecutor == null) {
+                    int threads = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+                    renderExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<Runnable>(Math.max(1, renderQueueSize)),
+                            buildThreadFactory("image-derivative-render-", Thread.NORM_PRIORITY));
+                }
+            }
+        }
+        return renderExecutor;
+    }
+
+    protected ThreadPoolExecutor getBackgroundExecutor() {
+        if (backgroundExecutor == null) {
+            synchronized (this) {
+                if (backgroundExecutor == null) {
+                    backgroundExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<Runnable>(Math.max(1, backgroundQueueSize)),
+                            buildThreadFactory("image-derivative-background-", Thread.MIN_PRIORITY));
+                }
+            }
+        }
+        return backgroundExecutor;
+    }
+
+    protected ThreadFactory buildThreadFactory(final String prefix, final int priority) {
+        return new ThreadFactory() {
+
+            protected final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(priority);
+                return thread;
+            }
+        };
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+        }
+        if (renderExecutor != null) {
+            renderExecutor.shutdownNow();
+        }
+    }
+
+    public int getRenderThreads() {
+        return renderThreads;
+    }
+
+    public void setRenderThreads(int renderThreads) {
+        this.renderThreads = renderThreads;
+    }
+
+    public int getRenderQueueSize() {
+        return renderQueueSize;
+    }
+
+    public void setRenderQueueSize(int renderQueueSize) {
+        this.renderQueueSize = renderQueueSize;
+    }
+
+    public long getRenderTimeoutSeconds() {
+        return renderTimeoutSeconds;
+    }
+
+    public void setRenderTimeoutSeconds(long renderTimeoutSeconds) {
+        this.renderTimeoutSeconds = renderTimeoutSeconds;
+    }
+
+}
@@ -31,6 +31,7 @@ import org.broadleafcommerce.cms.file.domain.StaticAsset;
 import org.broadleafcommerce.cms.file.domain.StaticAssetStorage;
 import org.broadleafcommerce.cms.file.service.operation.NamedOperationManager;
 import org.broadleafcommerce.common.audit.Auditable;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.file.domain.FileWorkArea;
@@ -39,6 +40,7 @@ import org.broadleafcommerce.common.file.service.GloballySharedInputStream;
 import org.broadleafcommerce.common.io.ConcurrentFileOutputStream;
 import org.broadleafcommerce.common.util.StreamCapableTransactionalOperationAdapter;
 import org.broadleafcommerce.common.util.StreamingTransactionCapableUtil;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.openadmin.server.service.artifact.ArtifactService;
 import org.broadleafcommerce.openadmin.server.service.artifact.image.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,6 +49,8 @@ import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.BufferedInputStream;
@@ -66,6 +70,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 
@@ -119,6 +124,16 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
     @Resource(name = "blConcurrentFileOutputStream")
     protected ConcurrentFileOutputStream concurrentFileOutputStream;
 
+    @Resource(name = "blImageDerivativeService")
+    protected ImageDerivativeService imageDerivativeService;
+
+    /**
+     * Comma separated named operations (see blStaticMapNamedOperations) whose variants are rendered in the background
+     * as soon as a new image asset is stored, so the first storefront request does not pay for the render
+     */
+    @Value("${asset.derivative.pregenerate.named.operations:}")
+    protected String pregenerateNamedOperations = "";
+
 
     protected StaticAsset findStaticAsset(String fullUrl) {
         StaticAsset staticAsset = staticAssetService.findStaticAssetByFullUrl(fullUrl);
@@ -203,6 +218,10 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
         if (staticAsset == null) {
             throw new AssetNotFoundException("Unable to find an asset for the url (" + fullUrl + ")");
         }
+        return getCacheFileModel(staticAsset, parameterMap);
+    }
+
+    protected Map<String, String> getCacheFileModel(final StaticAsset staticAsset, Map<String, String> parameterMap) throws Exception {
         String mimeType = staticAsset.getMimeType();
 
         //extract the values for any named parameters
@@ -242,19 +261,118 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
             return buildModel(baseLocalFile.getAbsolutePath(), mimeType);
         } 
         else {
-            try (FileInputStream assetStream = new FileInputStream(baseLocalFile)) {
-                try (BufferedInputStream original = new BufferedInputStream(assetStream)) {
-                    original.mark(0);
-                    Operation[] operations = artifactService.buildOperations(convertedParameters, original, staticAsset.getMimeType());
-                   try (InputStream converted = artifactService.convert(original, operations, staticAsset.getMimeType())) {
-                       createLocalFileFromInputStream(converted, cacheFile);
-                   }
+            final File sourceFile = baseLocalFile;
+            final File derivativeFile = cacheFile;
+            final Map<String, String> operationParameters = convertedParameters;
+            imageDerivativeService.render(derivativeFile.getAbsolutePath(), new Callable<File>() {
+
+                @Override
+                public File call() throws Exception {
+                    // another render for this variant may have finished between our existence check and this one
+                    if (!derivativeFile.exists()) {
+                        createDerivativeFile(staticAsset, sourceFile, derivativeFile, operationParameters);
+                    }
+                    return derivativeFile;
+                }
+            });
+            if ("image/gif".equals(mimeType)) {
+                mimeType = "image/png";
+            }
+            return buildModel(cacheFile.getAbsolutePath(), mimeType);
+        }
+    }
+
+    protected void createDerivativeFile(StaticAsset staticAsset, File baseLocalFile, File cacheFile,
+            Map<String, String> convertedParameters) throws Exception {
+        try (FileInputStream assetStream = new FileInputStream(baseLocalFile)) {
+            try (BufferedInputStream original = new BufferedInputStream(assetStream)) {
+                original.mark(0);
+                Operation[] operations = artifactService.buildOperations(convertedParameters, original, staticAsset.getMimeType());
+                try (InputStream converted = artifactService.convert(original, operations, staticAsset.getMimeType())) {
+                    createLocalFileFromInputStream(converted, cacheFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue the variants listed in {@link #pregenerateNamedOperations} for background rendering once the current
+     * transaction (if any) commits.
+     *
+     * @param staticAsset the newly stored asset
+     */
+    protected void schedulePregeneration(final StaticAsset staticAsset) {
+        if (StringUtils.isBlank(pregenerateNamedOperations) || staticAsset.getMimeType() == null
+                || !staticAsset.getMimeType().startsWith("image/")) {
+            return;
+        }
+        BroadleafRequestContext currentContext = BroadleafRequestContext.getBroadleafRequestContext();
+        final BroadleafRequestContext context = currentContext == null ? null : currentContext.createLightWeightClone();
+        final Runnable pregeneration = new Runnable() {
+
+            @Override
+            public void run() {
+                if (context != null) {
+                    BroadleafRequestContext.setBroadleafRequestContext(context);
+                }
+                try {
+                    // this thread has no request, so bind an EntityManager for reading database stored assets
+                    transUtil.runOptionalEntityManagerInViewOperation(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            for (String operation : pregenerateNamedOperations.split(",")) {
+                                String name = operation.trim();
+                                if (!name.isEmpty()) {
+                                    pregenerate(staticAsset, name);
+                                }
+                            }
+                        }
+                    });
+                } finally {
+                    ThreadLocalManager.remove();
                 }
-                if ("image/gif".equals(mimeType)) {
-                    mimeType = "image/png";
+            }
+        };
+        final Runnable schedule = new Runnable() {
+
+            @Override
+            public void run() {
+                if (!imageDerivativeService.schedule(pregeneration)) {
+                    LOG.warn("The image derivative background queue is full. Skipping pre-generation for "
+                            + staticAsset.getFullUrl());
                 }
-                return buildModel(cacheFile.getAbsolutePath(), mimeType);
             }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    schedule.run();
+                }
+            });
+        } else {
+            schedule.run();
+        }
+    }
+
+    /**
+     * Render a single named variant of the asset. The source is read within a transaction, since the binary stream of
+     * a database stored asset can only be read while one is open.
+     */
+    protected void pregenerate(final StaticAsset staticAsset, String namedOperation) {
+        final Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(namedOperation, "");
+        try {
+            transUtil.runTransactionalOperation(new StreamCapableTransactionalOperationAdapter() {
+                @Override
+                public void execute() throws Exception {
+                    getCacheFileModel(staticAsset, parameters);
+                }
+            }, Exception.class);
+        } catch (Exception e) {
+            LOG.warn("Unable to pre-generate the " + namedOperation + " variant of " + staticAsset.getFullUrl(), e);
         }
     }
 
@@ -473,6 +591,7 @@ public class StaticAssetStorageServiceImpl implements StaticAssetStorageService
                 broadleafFileService.closeWorkArea(tempWorkArea);
             }
         }
+        schedulePregeneration(staticAsset);
     }
 
     protected long getMaxUploadSizeForFile(String fileName) {
@@ -21,12 +21,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.page.dto.PageDTO;
 import org.broadleafcommerce.common.rule.AbstractRuleProcessor;
+import org.broadleafcommerce.common.rule.RuleOutcomeMemoizer;
 import org.broadleafcommerce.common.util.StringUtil;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.annotation.Resource;
+
 /**
  * By default, this rule processor combines all of the rules from
  * {@link org.broadleafcommerce.cms.page.domain.Page#getPageMatchRules()}
@@ -39,6 +42,9 @@ import java.util.Map;
 public class PageDefaultRuleProcessor extends AbstractRuleProcessor<PageDTO> {
     private static final Log LOG = LogFactory.getLog(PageDefaultRuleProcessor.class);
 
+    @Resource(name = "blRuleOutcomeMemoizer")
+    protected RuleOutcomeMemoizer ruleOutcomeMemoizer;
+
     /**
      * Returns true if all of the rules associated with the passed in <code>Page</code>
      * item match based on the passed in vars.
@@ -71,6 +77,11 @@ public class PageDefaultRuleProcessor extends AbstractRuleProcessor<PageDTO> {
         }
     }
     
+    @Override
+    protected RuleOutcomeMemoizer getRuleOutcomeMemoizer() {
+        return ruleOutcomeMemoizer;
+    }
+
     @Override
     @SuppressWarnings("serial")
     public Map<String, String> getContextClassNames() {
@@ -20,12 +20,15 @@ package org.broadleafcommerce.cms.structure.service;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.rule.AbstractRuleProcessor;
+import org.broadleafcommerce.common.rule.RuleOutcomeMemoizer;
 import org.broadleafcommerce.common.structure.dto.StructuredContentDTO;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.annotation.Resource;
+
 /**
  * By default, this rule processor combines all of the rules from
  * {@link org.broadleafcommerce.cms.structure.domain.StructuredContent#getStructuredContentMatchRules()}
@@ -38,6 +41,9 @@ import java.util.Map;
 public class StructuredContentDefaultRuleProcessor extends AbstractRuleProcessor<StructuredContentDTO> {
     private static final Log LOG = LogFactory.getLog(StructuredContentDefaultRuleProcessor.class);
 
+    @Resource(name = "blRuleOutcomeMemoizer")
+    protected RuleOutcomeMemoizer ruleOutcomeMemoizer;
+
     /**
      * Returns true if all of the rules associated with the passed in <code>StructuredContent</code>
      * item match based on the passed in vars.
@@ -70,6 +76,11 @@ public class StructuredContentDefaultRuleProcessor extends AbstractRuleProcessor
         }
     }
     
+    @Override
+    protected RuleOutcomeMemoizer getRuleOutcomeMemoizer() {
+        return ruleOutcomeMemoizer;
+    }
+
     @Override
     @SuppressWarnings("serial")
     public Map<String, String> getContextClassNames() {
@@ -0,0 +1,255 @@
+/*-
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.url.service;
+
+import org.broadleafcommerce.cms.url.domain.URLHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable lookup structure over the full set of {@link URLHandler}s used by {@link URLHandlerServiceImpl} to
+ * avoid evaluating every handler's regular expression against an incoming URI.
+ * <p>
+ * Each anchored handler pattern is classified when the index is built:
+ * <ul>
+ *     <li>patterns that are entirely literal (e.g. {@code ^/old-page$}) are stored in a hash map keyed by the literal</li>
+ *     <li>patterns that begin with a literal (e.g. {@code ^/blogs/(.*)$}) are stored in a character trie keyed by that
+ *     literal prefix, so only handlers whose prefix matches the URI are evaluated</li>
+ *     <li>everything else (e.g. {@code ^(.*)/shirts-tops(.*)$}) is kept in a residual list that is always evaluated</li>
+ * </ul>
+ * {@link #findCandidates(String)} returns the handlers that could match a URI in their original list order, which
+ * preserves the first-match semantics of a linear scan.
+ */
+public class URLHandlerIndex {
+
+    protected static final String REGEX_META_CHARS = "[](){}.*+?^$|\\";
+    protected static final String REGEX_QUANTIFIER_CHARS = "?*+{";
+
+    protected static final Comparator<Entry> ORDINAL_COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return o1.getOrdinal() < o2.getOrdinal() ? -1 : (o1.getOrdinal() == o2.getOrdinal() ? 0 : 1);
+        }
+    };
+
+    protected final Map<String, Entry> exactEntries = new HashMap<String, Entry>();
+    protected final TrieNode prefixRoot = new TrieNode();
+    protected final List<Entry> residualEntries = new ArrayList<Entry>();
+    protected final long createdTime = System.currentTimeMillis();
+    protected int size = 0;
+    protected int prefixSize = 0;
+
+    /**
+     * Adds the handler to the index. Handlers must be added in the order in which they should be evaluated.
+     *
+     * @param handler the handler
+     * @param pattern the handler's incoming URL, already anchored with ^ and $
+     */
+    public void add(URLHandler handler, Pattern pattern) {
+        Entry entry = new Entry(handler, pattern, size++);
+        StringBuilder literal = new StringBuilder();
+        boolean exact = extractLiteralPrefix(pattern.pattern(), literal);
+        if (exact) {
+            String key = literal.toString();
+            if (!exactEntries.containsKey(key)) {
+                exactEntries.put(key, entry);
+            }
+        } else if (literal.length() > 0) {
+            TrieNode node = prefixRoot;
+            for (int i = 0; i < literal.length(); i++) {
+                node = node.getOrCreateChild(literal.charAt(i));
+            }
+            node.addEntry(entry);
+            prefixSize++;
+        } else {
+            residualEntries.add(entry);
+        }
+    }
+
+    /**
+     * Returns, in evaluation order, the entries whose pattern may match the given URI. If an exact handler exists for
+     * the URI it is the last candidate returned, since it is guaranteed to match and nothing after it needs to be
+     * evaluated.
+     *
+     * @param uri the request URI
+     * @return the ordered candidates, never null
+     */
+    public List<Entry> findCandidates(String uri) {
+        Entry exact = exactEntries.get(uri);
+        int limit = exact == null ? Integer.MAX_VALUE : exact.getOrdinal();
+
+        List<Entry> candidates = new ArrayList<Entry>();
+        TrieNode node = prefixRoot;
+        for (int i = 0; i < uri.length() && node != null; i++) {
+            node = node.getChild(uri.charAt(i));
+            if (node != null && node.entries != null) {
+                for (Entry entry : node.entries) {
+                    if (entry.getOrdinal() < limit) {
+                        candidates.add(entry);
+                    }
+                }
+            }
+        }
+        for (Entry entry : residualEntries) {
+            if (entry.getOrdinal() >= limit) {
+                break;
+            }
+            candidates.add(entry);
+        }
+        if (candidates.size() > 1) {
+            Collections.sort(candidates, ORDINAL_COMPARATOR);
+        }
+        if (exact != null) {
+            candidates.add(exact);
+        }
+        return candidates;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getExactSize() {
+        return exactEntries.size();
+    }
+
+    public int getPrefixSize() {
+        return prefixSize;
+    }
+
+    public int getResidualSize() {
+        return residualEntries.size();
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    /**
+     * Reads the literal characters at the start of an anchored pattern into the supplied builder.
+     *
+     * @return true if the whole pattern is a literal, meaning it only matches the exact string in the builder
+     */
+    protected static boolean extractLiteralPrefix(String pattern, StringBuilder literal) {
+        if (!pattern.startsWith("^") || containsAlternation(pattern)) {
+            return false;
+        }
+        int length = pattern.length();
+        int i = 1;
+        while (i < length) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < length && !Character.isLetterOrDigit(pattern.charAt(i + 1))) {
+                    c = pattern.charAt(i + 1);
+                    i += 2;
+                } else {
+                    break;
+                }
+            } else if (REGEX_META_CHARS.indexOf(c) >= 0) {
+                break;
+            } else {
+                i++;
+            }
+            if (i < length && REGEX_QUANTIFIER_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                // The quantifier applies to the character we just read, so it is not part of the literal
+                return false;
+            }
+            literal.append(c);
+        }
+        return i == length - 1 && pattern.charAt(i) == '$';
+    }
+
+    /**
+     * Alternation can apply to the anchor itself (e.g. {@code ^/a|/b$}), so patterns that use it anywhere are not
+     * considered to have a literal prefix.
+     */
+    protected static boolean containsAlternation(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '|') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A handler along with its compiled pattern and its position in the original handler list.
+     */
+    public static class Entry {
+
+        protected final URLHandler handler;
+        protected final Pattern pattern;
+        protected final int ordinal;
+
+        public Entry(URLHandler handler, Pattern pattern, int ordinal) {
+            this.handler = handler;
+            this.pattern = pattern;
+            this.ordinal = ordinal;
+        }
+
+        public URLHandler getHandler() {
+            return handler;
+        }
+
+        public Pattern getPattern() {
+            return pattern;
+        }
+
+        public int getOrdinal() {
+            return ordinal;
+        }
+    }
+
+    protected static class TrieNode {
+
+        protected Map<Character, TrieNode> children;
+        protected List<Entry> entries;
+
+        protected TrieNode getChild(char c) {
+            return children == null ? null : children.get(c);
+        }
+
+        protected TrieNode getOrCreateChild(char c) {
+            if (children == null) {
+                children = new HashMap<Character, TrieNode>(4);
+            }
+            TrieNode child = children.get(c);
+            if (child == null) {
+                child = new TrieNode();
+                children.put(c, child);
+            }
+            return child;
+        }
+
+        protected void addEntry(Entry entry) {
+            if (entries == null) {
+                entries = new ArrayList<Entry>(1);
+            }
+            entries.add(entry);
+        }
+    }
+}
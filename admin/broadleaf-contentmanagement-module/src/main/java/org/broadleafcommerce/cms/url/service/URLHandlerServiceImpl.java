@@ -28,11 +28,15 @@ import org.broadleafcommerce.common.cache.StatisticsService;
 import org.broadleafcommerce.common.site.domain.Site;
 import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -62,8 +66,41 @@ public class URLHandlerServiceImpl implements URLHandlerService {
     @Resource(name = "blCacheManager")
     protected CacheManager cacheManager;
 
+    /**
+     * Compiled patterns for indexes that are built per request outside of the production sandbox.
+     */
     protected Map<String, Pattern> urlPatternMap = new EfficientLRUMap<String, Pattern>(2000);
 
+    /**
+     * The number of seconds a {@link URLHandlerIndex} is used before it is rebuilt to pick up handlers
+     * that were changed outside of this service (for example, through the admin).
+     */
+    @Value("${url.handler.index.refresh.seconds:300}")
+    protected int indexRefreshSeconds = 300;
+
+    /**
+     * The maximum number of URIs without a handler that are remembered. These are kept apart from the
+     * cmsUrlHandlerCache so that a crawler requesting many unknown URLs cannot evict real handlers.
+     */
+    @Value("${url.handler.negative.cache.size:10000}")
+    protected int negativeCacheSize = 10000;
+
+    /**
+     * The number of seconds a URI without a handler is remembered. Entries are also dropped whenever the
+     * {@link URLHandlerIndex} is rebuilt, but cached misses never consult the index, so without a TTL a handler added
+     * in the admin for a URI that keeps being requested would not be picked up.
+     */
+    @Value("${url.handler.negative.cache.ttl.seconds:300}")
+    protected int negativeCacheTtlSeconds = 300;
+
+    protected final ConcurrentMap<String, URLHandlerIndex> urlHandlerIndexes = new ConcurrentHashMap<String, URLHandlerIndex>();
+
+    /**
+     * URIs without a handler, mapped to the time their entry expires
+     */
+    protected volatile Map<String, Long> negativeUrlHandlerCache;
+    protected final ReentrantLock indexLock = new ReentrantLock();
+
     /**
      * Checks the passed in URL to determine if there is a matching URLHandler.
      * Returns null if no handler was found.
@@ -90,6 +127,9 @@ public class URLHandlerServiceImpl implements URLHandlerService {
 
         //See if this is in cache first, but only if we are in production
         if (BroadleafRequestContext.getBroadleafRequestContext().isProductionSandBox()) {
+            if (isNegativelyCached(key)) {
+                return null;
+            }
             handler = getUrlHandlerFromCache(key);
         }
 
@@ -112,7 +152,11 @@ public class URLHandlerServiceImpl implements URLHandlerService {
             }
 
             if (BroadleafRequestContext.getBroadleafRequestContext().isProductionSandBox()) {
-                getUrlHandlerCache().put(key, handler);
+                if (handler instanceof NullURLHandler) {
+                    addToNegativeCache(key);
+                } else {
+                    getUrlHandlerCache().put(key, handler);
+                }
             }
         }
 
@@ -141,23 +185,28 @@ public class URLHandlerServiceImpl implements URLHandlerService {
     @Override
     @Transactional("blTransactionManager")
     public URLHandler saveURLHandler(URLHandler handler) {
-        return urlHandlerDao.saveURLHandler(handler);
+        URLHandler saved = urlHandlerDao.saveURLHandler(handler);
+        invalidateURLHandlerIndex();
+        return saved;
+    }
+
+    /**
+     * Discards the current {@link URLHandlerIndex} and the negative cache so that the next lookup sees the
+     * current set of handlers.
+     */
+    public void invalidateURLHandlerIndex() {
+        urlHandlerIndexes.clear();
+        negativeUrlHandlerCache = null;
     }
 
     protected URLHandler checkForMatches(String requestURI) {
         URLHandler currentHandler = null;
         try {
-            List<URLHandler> urlHandlers = findAllURLHandlers();
-            for (URLHandler urlHandler : urlHandlers) {
+            for (URLHandlerIndex.Entry entry : getURLHandlerIndex().findCandidates(requestURI)) {
+                URLHandler urlHandler = entry.getHandler();
                 currentHandler = urlHandler;
-                String incomingUrl = wrapStringsWithAnchors(currentHandler.getIncomingURL());
 
-                Pattern p = urlPatternMap.get(incomingUrl);
-                if (p == null) {
-                    p = Pattern.compile(incomingUrl);
-                    urlPatternMap.put(incomingUrl, p);
-                }
-                Matcher m = p.matcher(requestURI);
+                Matcher m = entry.getPattern().matcher(requestURI);
                 if (m.find()) {
                     String newUrl = m.replaceFirst(urlHandler.getNewURL());
                     if (newUrl.equals(urlHandler.getNewURL())) {
@@ -181,10 +230,127 @@ public class URLHandlerServiceImpl implements URLHandlerService {
         return null;
     }
 
+    /**
+     * Returns the {@link URLHandlerIndex} for the current site, building it if there is none. Once an index exists,
+     * a single thread rebuilds it after {@link #indexRefreshSeconds} while other threads continue to use the old one.
+     * Outside of the production sandbox the handlers are read and indexed on every call, as they were before the
+     * index existed, so that sandbox changes are visible immediately.
+     */
+    protected URLHandlerIndex getURLHandlerIndex() {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext(false);
+        if (context != null && !context.isProductionSandBox()) {
+            return buildURLHandlerIndex(findAllURLHandlers(), true);
+        }
+        String indexKey = buildURLHandlerIndexKey(context == null ? null : context.getNonPersistentSite());
+        URLHandlerIndex index = urlHandlerIndexes.get(indexKey);
+        if (index == null) {
+            indexLock.lock();
+            try {
+                index = urlHandlerIndexes.get(indexKey);
+                if (index == null) {
+                    index = rebuildURLHandlerIndex(indexKey);
+                }
+            } finally {
+                indexLock.unlock();
+            }
+        } else if (isIndexExpired(index) && indexLock.tryLock()) {
+            try {
+                if (urlHandlerIndexes.get(indexKey) == index) {
+                    index = rebuildURLHandlerIndex(indexKey);
+                }
+            } finally {
+                indexLock.unlock();
+            }
+        }
+        return index;
+    }
+
+    protected String buildURLHandlerIndexKey(Site site) {
+        return site == null ? "default" : "site:" + site.getId();
+    }
+
+    protected boolean isIndexExpired(URLHandlerIndex index) {
+        return indexRefreshSeconds >= 0
+                && System.currentTimeMillis() - index.getCreatedTime() > indexRefreshSeconds * 1000L;
+    }
+
+    protected URLHandlerIndex rebuildURLHandlerIndex(String indexKey) {
+        long start = System.currentTimeMillis();
+        URLHandlerIndex index = buildURLHandlerIndex(findAllURLHandlers(), false);
+        urlHandlerIndexes.put(indexKey, index);
+        negativeUrlHandlerCache = null;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Built URL handler index (" + indexKey + ") in " + (System.currentTimeMillis() - start) + "ms ("
+                    + index.getExactSize() + " exact, " + index.getPrefixSize() + " prefix, "
+                    + index.getResidualSize() + " regex)");
+        }
+        return index;
+    }
+
+    protected URLHandlerIndex buildURLHandlerIndex(List<URLHandler> urlHandlers, boolean usePatternCache) {
+        URLHandlerIndex index = new URLHandlerIndex();
+        for (URLHandler urlHandler : urlHandlers) {
+            try {
+                // Compiling up front means an invalid regex is reported once and left out of the index
+                index.add(urlHandler, compilePattern(wrapStringsWithAnchors(urlHandler.getIncomingURL()), usePatternCache));
+            } catch (RuntimeException re) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn("Error parsing URL Handler (incoming =" + urlHandler.getIncomingURL() + "), outgoing = ( "
+                            + urlHandler.getNewURL() + ")");
+                }
+            }
+        }
+        return index;
+    }
+
+    protected Pattern compilePattern(String incomingUrl, boolean usePatternCache) {
+        if (!usePatternCache) {
+            return Pattern.compile(incomingUrl);
+        }
+        Pattern p = urlPatternMap.get(incomingUrl);
+        if (p == null) {
+            p = Pattern.compile(incomingUrl);
+            urlPatternMap.put(incomingUrl, p);
+        }
+        return p;
+    }
+
+    protected Map<String, Long> getNegativeUrlHandlerCache() {
+        Map<String, Long> cache = negativeUrlHandlerCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = negativeUrlHandlerCache;
+                if (cache == null) {
+                    cache = new EfficientLRUMap<String, Long>(negativeCacheSize);
+                    negativeUrlHandlerCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    protected boolean isNegativelyCached(String key) {
+        Map<String, Long> cache = getNegativeUrlHandlerCache();
+        Long expires = cache.get(key);
+        if (expires == null) {
+            return false;
+        }
+        if (expires < System.currentTimeMillis()) {
+            cache.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    protected void addToNegativeCache(String key) {
+        getNegativeUrlHandlerCache().put(key, System.currentTimeMillis() + negativeCacheTtlSeconds * 1000L);
+    }
+
     @Override
     public Boolean removeURLHandlerFromCache(String mapKey) {
         Boolean success = Boolean.FALSE;
         if (mapKey != null) {
+            getNegativeUrlHandlerCache().remove(mapKey);
             Object e = getUrlHandlerCache().get(mapKey);
 
             if (e != null) {
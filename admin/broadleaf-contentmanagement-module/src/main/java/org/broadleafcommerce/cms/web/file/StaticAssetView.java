@@ -25,23 +25,63 @@ import org.springframework.web.servlet.View;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedInputStream;
-import java.io.FileInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
+ * Streams a cached static asset file to the response.
+ * </p>
+ * Every response carries a Content-Length and a strong ETag derived from the cache file name, size and modification time.
+ * Conditional requests with a matching If-None-Match are answered with a 304, and single byte-range requests (optionally
+ * guarded by If-Range) are answered with a 206. The file content is copied through the file channel with a large buffer
+ * rather than a byte at a time.
+ * </p>
+ * Two optional optimizations can be configured on the bean:
+ * <ul>
+ *     <li>{@link #setContainerSendfileEnabled(boolean)} - when the servlet container advertises sendfile support
+ *     (e.g. Tomcat's NIO connectors), files of at least {@link #setSendfileMinimumBytes(long)} are handed to the container
+ *     to be written with zero-copy sendfile. Disabled by default, since the container opens the file after the view
+ *     returns and cache files may be purged in the meantime.</li>
+ *     <li>{@link #setHotAssetCacheSize(int)} - keep up to this many small files (at most {@link #setHotAssetMaxBytes(int)}
+ *     bytes each, e.g. thumbnails) in an in-memory LRU so they are served without touching the file content. Disabled
+ *     by default.</li>
+ * </ul>
+ *
  * Created by jfischer
  */
 public class StaticAssetView implements View {
 
     private static final Log LOG = LogFactory.getLog(StaticAssetView.class);
 
+    public static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    public static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    public static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    public static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    protected static final int BUFFER_SIZE = 64 * 1024;
+    protected static final Pattern BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    protected static final long[] UNSATISFIABLE_RANGE = new long[0];
+
     protected boolean browserAssetCachingEnabled = true;
     protected long cacheSeconds = 60 * 60 * 24;
+    protected boolean containerSendfileEnabled = false;
+    protected long sendfileMinimumBytes = 48 * 1024;
+    protected int hotAssetCacheSize = 0;
+    protected int hotAssetMaxBytes = 16 * 1024;
+    protected volatile Map<String, HotAsset> hotAssets = null;
 
     @Override
     public String getContentType() {
@@ -51,10 +91,19 @@ public class StaticAssetView implements View {
     @Override
     public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response) throws Exception {
         String cacheFilePath = (String) model.get("cacheFilePath");
-        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(cacheFilePath));
+        File file = new File(cacheFilePath);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(cacheFilePath);
+        }
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String eTag = buildETag(file, length, lastModified);
         try {
             String mimeType = (String) model.get("mimeType");
             response.setContentType(mimeType);
+            response.setHeader("ETag", eTag);
+            response.setHeader("Accept-Ranges", "bytes");
+            boolean hasIfNoneMatch = !StringUtils.isEmpty(request.getHeader("If-None-Match"));
             if (!browserAssetCachingEnabled) {
                 response.setHeader("Cache-Control","no-cache");
                 response.setHeader("Pragma","no-cache");
@@ -62,10 +111,10 @@ public class StaticAssetView implements View {
             } else {
                 response.setHeader("Cache-Control","public");
                 response.setHeader("Pragma","cache");
-                if (!StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
-                    long lastModified = request.getDateHeader("If-Modified-Since");
+                if (!hasIfNoneMatch && !StringUtils.isEmpty(request.getHeader("If-Modified-Since"))) {
+                    long ifModifiedSince = request.getDateHeader("If-Modified-Since");
                     Calendar last = Calendar.getInstance();
-                    last.setTime(new Date(lastModified));
+                    last.setTime(new Date(ifModifiedSince));
                     Calendar check = Calendar.getInstance();
                     check.add(Calendar.SECOND, -2 * new Long(cacheSeconds).intValue());
                     if (check.compareTo(last) < 0) {
@@ -82,17 +131,29 @@ public class StaticAssetView implements View {
                 cal.add(Calendar.SECOND, new Long(year).intValue());
                 response.setDateHeader ("Expires", cal.getTimeInMillis());
             }
-            OutputStream os = response.getOutputStream();
-            boolean eof = false;
-            while (!eof) {
-                int temp = bis.read();
-                if (temp < 0) {
-                    eof = true;
-                } else {
-                    os.write(temp);
-                }
+            if (hasIfNoneMatch && matchesETag(request.getHeader("If-None-Match"), eTag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
             }
-            os.flush();
+
+            long start = 0L;
+            long count = length;
+            long[] range = resolveRange(request, eTag, length);
+            if (range == UNSATISFIABLE_RANGE) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            } else if (range != null) {
+                start = range[0];
+                count = range[1] - range[0] + 1;
+                response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + length);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            }
+            response.setContentLengthLong(count);
+            if ("HEAD".equalsIgnoreCase(request.getMethod()) || count == 0) {
+                return;
+            }
+            writeContent(file, start, count, length, lastModified, request, response);
         } catch (Exception e) {
             if (e.getCause() instanceof SocketException) {
                 if (LOG.isDebugEnabled()) {
@@ -102,15 +163,170 @@ public class StaticAssetView implements View {
                 LOG.error("Unable to stream asset", e);
                 throw e;
             }
+        }
+    }
+
+    /**
+     * Write count bytes of the file, starting at start, to the response. The content is handed to the container's
+     * sendfile support, served from the hot asset cache, or copied through the file channel, in that order of preference.
+     */
+    protected void writeContent(File file, long start, long count, long length, long lastModified,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (containerSendfileEnabled && count >= sendfileMinimumBytes
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getAbsolutePath());
+            request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+            request.setAttribute(SENDFILE_END_ATTRIBUTE, start + count);
+            return;
+        }
+        OutputStream os = response.getOutputStream();
+        byte[] content = getHotAsset(file, length, lastModified);
+        if (content != null) {
+            os.write(content, (int) start, (int) count);
+            os.flush();
+            return;
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if (hotAssetCacheSize > 0 && length <= hotAssetMaxBytes) {
+                content = readFully(channel, (int) length);
+                if (content.length == length) {
+                    hotAssets.put(file.getAbsolutePath(), new HotAsset(content, lastModified));
+                    os.write(content, (int) start, (int) count);
+                    os.flush();
+                    return;
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, count));
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < buffer.capacity()) {
+                    buffer.limit((int) remaining);
+                }
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                os.write(buffer.array(), 0, read);
+                position += read;
+                remaining -= read;
+            }
+            os.flush();
         } finally {
             try {
-                bis.close();
+                channel.close();
             } catch (Throwable e) {
                 //do nothing
             }
         }
     }
 
+    /**
+     * @return the byte range requested via the Range header as an inclusive {start, end} pair, null if the full content
+     * should be sent, or {@link #UNSATISFIABLE_RANGE}. Only single ranges are supported; other Range values are ignored.
+     */
+    protected long[] resolveRange(HttpServletRequest request, String eTag, long length) {
+        String header = request.getHeader("Range");
+        if (StringUtils.isEmpty(header)) {
+            return null;
+        }
+        String ifRange = request.getHeader("If-Range");
+        if (!StringUtils.isEmpty(ifRange) && !ifRange.trim().equals(eTag)) {
+            return null;
+        }
+        Matcher matcher = BYTE_RANGE.matcher(header.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        String first = matcher.group(1);
+        String last = matcher.group(2);
+        try {
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix == 0 || length == 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                return new long[] { Math.max(0L, length - suffix), length - 1 };
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+            if (end < start) {
+                return null;
+            }
+            if (start >= length) {
+                return UNSATISFIABLE_RANGE;
+            }
+            return new long[] { start, Math.min(end, length - 1) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    protected boolean matchesETag(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || eTag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cache file names already identify the asset and the operations applied to it. The size and modification time are
+     * included so that a regenerated cache file gets a new ETag.
+     */
+    protected String buildETag(File file, long length, long lastModified) {
+        return "\"" + Integer.toHexString(file.getName().hashCode()) + "-" + Long.toHexString(length) + "-"
+                + Long.toHexString(lastModified) + "\"";
+    }
+
+    protected byte[] getHotAsset(File file, long length, long lastModified) {
+        if (hotAssetCacheSize <= 0 || length > hotAssetMaxBytes) {
+            return null;
+        }
+        if (hotAssets == null) {
+            synchronized (this) {
+                if (hotAssets == null) {
+                    hotAssets = Collections.synchronizedMap(new LinkedHashMap<String, HotAsset>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<String, HotAsset> eldest) {
+                            return size() > hotAssetCacheSize;
+                        }
+                    });
+                }
+            }
+        }
+        HotAsset hotAsset = hotAssets.get(file.getAbsolutePath());
+        if (hotAsset != null && hotAsset.lastModified == lastModified && hotAsset.content.length == length) {
+            return hotAsset.content;
+        }
+        return null;
+    }
+
+    protected byte[] readFully(FileChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        if (buffer.hasRemaining()) {
+            byte[] content = new byte[buffer.position()];
+            System.arraycopy(buffer.array(), 0, content, 0, content.length);
+            return content;
+        }
+        return buffer.array();
+    }
+
     public boolean isBrowserAssetCachingEnabled() {
         return browserAssetCachingEnabled;
     }
@@ -126,4 +342,47 @@ public class StaticAssetView implements View {
     public void setCacheSeconds(long cacheSeconds) {
         this.cacheSeconds = cacheSeconds;
     }
+
+    public boolean isContainerSendfileEnabled() {
+        return containerSendfileEnabled;
+    }
+
+    public void setContainerSendfileEnabled(boolean containerSendfileEnabled) {
+        this.containerSendfileEnabled = containerSendfileEnabled;
+    }
+
+    public long getSendfileMinimumBytes() {
+        return sendfileMinimumBytes;
+    }
+
+    public void setSendfileMinimumBytes(long sendfileMinimumBytes) {
+        this.sendfileMinimumBytes = sendfileMinimumBytes;
+    }
+
+    public int getHotAssetCacheSize() {
+        return hotAssetCacheSize;
+    }
+
+    public void setHotAssetCacheSize(int hotAssetCacheSize) {
+        this.hotAssetCacheSize = hotAssetCacheSize;
+    }
+
+    public int getHotAssetMaxBytes() {
+        return hotAssetMaxBytes;
+    }
+
+    public void setHotAssetMaxBytes(int hotAssetMaxBytes) {
+        this.hotAssetMaxBytes = hotAssetMaxBytes;
+    }
+
+    protected static class HotAsset {
+
+        protected final byte[] content;
+        protected final long lastModified;
+
+        public HotAsset(byte[] content, long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+    }
 }
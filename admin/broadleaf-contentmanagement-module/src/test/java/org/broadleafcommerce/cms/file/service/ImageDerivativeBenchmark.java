@@ -0,0 +1,147 @@
+/*-
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.ImageArtifactProcessor;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.Operation;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.EffectsManager;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.conversion.ConversionManager;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Benchmark harness for the image derivative pipeline. Renders common resize and crop chains against a synthetic
+ * source image with decode subsampling on and off and logs the average time per render and the output size.
+ * <p>
+ * This is not run as part of the test suite. Run it from the IDE or with
+ * {@code mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.broadleafcommerce.cms.file.service.ImageDerivativeBenchmark}.
+ * The source dimensions and iteration count can be changed with the {@code benchmark.width},
+ * {@code benchmark.height} and {@code benchmark.iterations} system properties.
+ */
+public class ImageDerivativeBenchmark {
+
+    private static final Log LOG = LogFactory.getLog(ImageDerivativeBenchmark.class);
+
+    public static void main(String[] args) throws Exception {
+        int width = Integer.getInteger("benchmark.width", 4000);
+        int height = Integer.getInteger("benchmark.height", 3000);
+        int iterations = Integer.getInteger("benchmark.iterations", 20);
+
+        byte[] source = createSourceImage(width, height);
+        LOG.info("Source " + width + "x" + height + " jpeg, " + source.length + " bytes, " + iterations
+                + " iterations per chain");
+
+        for (Map.Entry<String, Map<String, String>> chain : buildChains().entrySet()) {
+            for (boolean subsample : new boolean[] { false, true }) {
+                ImageArtifactProcessor processor = buildProcessor(subsample);
+                // warm up
+                BufferedImage result = render(processor, source, chain.getValue());
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    render(processor, source, chain.getValue());
+                }
+                double millis = (System.nanoTime() - start) / 1000000D / iterations;
+                LOG.info(String.format("%-20s subsample=%-5s %8.2f ms/render  -> %dx%d", chain.getKey(),
+                        subsample, millis, result.getWidth(), result.getHeight()));
+            }
+        }
+    }
+
+    protected static Map<String, Map<String, String>> buildChains() {
+        Map<String, Map<String, String>> chains = new LinkedHashMap<String, Map<String, String>>();
+
+        Map<String, String> thumbnail = new LinkedHashMap<String, String>();
+        thumbnail.put("resize-width-amount", "60");
+        thumbnail.put("resize-height-amount", "60");
+        thumbnail.put("resize-high-quality", "false");
+        thumbnail.put("resize-maintain-aspect-ratio", "true");
+        thumbnail.put("resize-reduce-only", "true");
+        chains.put("thumbnail", thumbnail);
+
+        Map<String, String> browse = new LinkedHashMap<String, String>();
+        browse.put("resize-width-amount", "400");
+        browse.put("resize-height-amount", "400");
+        browse.put("resize-high-quality", "true");
+        browse.put("resize-maintain-aspect-ratio", "true");
+        browse.put("resize-reduce-only", "true");
+        chains.put("browse-high-quality", browse);
+
+        Map<String, String> zoom = new LinkedHashMap<String, String>();
+        zoom.put("resize-width-amount", "1200");
+        zoom.put("resize-height-amount", "1200");
+        zoom.put("resize-high-quality", "false");
+        zoom.put("resize-maintain-aspect-ratio", "true");
+        zoom.put("resize-reduce-only", "true");
+        chains.put("zoom", zoom);
+
+        Map<String, String> crop = new LinkedHashMap<String, String>(thumbnail);
+        crop.put("crop-x-amount", "500");
+        crop.put("crop-y-amount", "500");
+        crop.put("crop-width-amount", "1000");
+        crop.put("crop-height-amount", "1000");
+        chains.put("crop-and-thumbnail", crop);
+
+        return chains;
+    }
+
+    protected static ImageArtifactProcessor buildProcessor(boolean subsample) {
+        EffectsManager effectsManager = new EffectsManager();
+        effectsManager.setConversionManager(new ConversionManager());
+        ImageArtifactProcessor processor = new ImageArtifactProcessor();
+        processor.setEffectsManager(effectsManager);
+        processor.setSubsampleEnabled(subsample);
+        return processor;
+    }
+
+    protected static BufferedImage render(ImageArtifactProcessor processor, byte[] source, Map<String, String> parameters)
+            throws Exception {
+        InputStream original = new ByteArrayInputStream(source);
+        Operation[] operations = processor.buildOperations(new LinkedHashMap<String, String>(parameters), original, "image/jpeg");
+        original.reset();
+        InputStream converted = processor.convert(original, operations, "image/jpeg");
+        return ImageIO.read(converted);
+    }
+
+    protected static byte[] createSourceImage(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.WHITE);
+        for (int x = 0; x < width; x += 50) {
+            graphics.drawLine(x, 0, width - x, height);
+        }
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+}
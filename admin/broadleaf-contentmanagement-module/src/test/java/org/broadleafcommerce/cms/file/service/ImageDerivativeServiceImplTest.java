@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.file.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class ImageDerivativeServiceImplTest extends TestCase {
+
+    protected ImageDerivativeServiceImpl derivativeService;
+
+    @Override
+    protected void setUp() throws Exception {
+        derivativeService = new ImageDerivativeServiceImpl();
+        derivativeService.setRenderThreads(2);
+        derivativeService.setRenderQueueSize(2);
+        derivativeService.setRenderTimeoutSeconds(10);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        derivativeService.destroy();
+    }
+
+    public void testConcurrentRequestsForTheSameVariantRenderOnce() throws Exception {
+        final AtomicInteger renders = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> renderer = new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                renders.incrementAndGet();
+                release.await(5, TimeUnit.SECONDS);
+                return "rendered";
+            }
+        };
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] results = new Future<?>[4];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = callers.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws Exception {
+                        return derivativeService.render("/product/shirt---abc.jpg", renderer);
+                    }
+                });
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<?> result : results) {
+                assertEquals("rendered", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, renders.get());
+
+        assertEquals("rendered", derivativeService.render("/product/shirt---abc.jpg", renderer));
+        assertEquals("A completed render is not reused once it has finished", 2, renders.get());
+    }
+
+    public void testRendererExceptionIsRethrown() throws Exception {
+        try {
+            derivativeService.render("/product/broken---abc.jpg", new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    throw new IllegalStateException("corrupt image");
+                }
+            });
+            fail("Expected the renderer exception");
+        } catch (IllegalStateException e) {
+            assertEquals("corrupt image", e.getMessage());
+        }
+    }
+
+    public void testTimedOutRenderIsCancelled() throws Exception {
+        derivativeService.setRenderTimeoutSeconds(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        try {
+            derivativeService.render("/product/slow---abc.jpg", new Callable<String>() {
+
+                @Override
+                public String call() throws Exception {
+                    try {
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        throw e;
+                    }
+                    return "rendered";
+                }
+            });
+            fail("Expected the render to time out");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertTrue("The render thread was not interrupted", interrupted.await(5, TimeUnit.SECONDS));
+        assertFalse(derivativeService.inFlight.containsKey("/product/slow---abc.jpg"));
+    }
+
+    public void testSaturatedPoolRejectsNewVariants() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> blocked = new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return "rendered";
+            }
+        };
+        ExecutorService callers = Executors.newCachedThreadPool();
+        try {
+            // two running and two queued
+            for (int i = 0; i < 4; i++) {
+                final String key = "/product/variant-" + i + ".jpg";
+                callers.submit(new Callable<String>() {
+
+                    @Override
+                    public String call() throws Exception {
+                        return derivativeService.render(key, blocked);
+                    }
+                });
+            }
+            Thread.sleep(200);
+            try {
+                derivativeService.render("/product/variant-5.jpg", blocked);
+                fail("Expected the render to be rejected");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+}
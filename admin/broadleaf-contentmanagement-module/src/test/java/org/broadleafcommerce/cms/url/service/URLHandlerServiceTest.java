@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import junit.framework.TestCase;
 
@@ -105,4 +106,60 @@ public class URLHandlerServiceTest extends TestCase {
         assertTrue(expectedNewURL.equals(h.getNewURL()));
     }
 
+    @Test
+    public void testFirstMatchOrderingIsPreserved() {
+        List<URLHandler> handlerList = new ArrayList<URLHandler>();
+        handlerList.add(createHandler("(.*)/shirts-tops(.*)", "$1/shirts$2"));
+        handlerList.add(createHandler("/merchandise/shirts-tops", "/exact"));
+        handlerList.add(createHandler("/merchandise/(.*)", "/prefix/$1"));
+        URLHandlerServiceImpl service = new URLHandlerServiceImpl();
+        URLHandlerDao handlerDao = EasyMock.createMock(URLHandlerDao.class);
+        service.urlHandlerDao = handlerDao;
+        EasyMock.expect(handlerDao.findAllURLHandlers()).andReturn(handlerList);
+        EasyMock.replay(handlerDao);
+
+        assertEquals("/merchandise/shirts", service.checkForMatches("/merchandise/shirts-tops").getNewURL());
+        assertEquals("/prefix/pants", service.checkForMatches("/merchandise/pants").getNewURL());
+        assertNull(service.checkForMatches("/other/pants"));
+        EasyMock.verify(handlerDao);
+    }
+
+    @Test
+    public void testNegativeCacheEntriesExpire() {
+        URLHandlerServiceImpl service = new URLHandlerServiceImpl();
+        service.addToNegativeCache("/missing");
+        assertTrue(service.isNegativelyCached("/missing"));
+        assertFalse(service.isNegativelyCached("/other"));
+
+        service.negativeCacheTtlSeconds = -1;
+        service.addToNegativeCache("/expired");
+        assertFalse(service.isNegativelyCached("/expired"));
+        assertFalse(service.getNegativeUrlHandlerCache().containsKey("/expired"));
+
+        service.invalidateURLHandlerIndex();
+        assertFalse(service.isNegativelyCached("/missing"));
+    }
+
+    @Test
+    public void testIndexClassification() {
+        URLHandlerIndex index = new URLHandlerIndex();
+        index.add(createHandler("/a", "/1"), Pattern.compile("^/a$"));
+        index.add(createHandler("/a/(.*)", "/2"), Pattern.compile("^/a/(.*)$"));
+        index.add(createHandler("/ab?c", "/3"), Pattern.compile("^/ab?c$"));
+        index.add(createHandler("/x|/a", "/4"), Pattern.compile("^/x|/a$"));
+        index.add(createHandler("/a\\.html", "/5"), Pattern.compile("^/a\\.html$"));
+
+        assertEquals(2, index.getExactSize());
+        assertEquals(2, index.getPrefixSize());
+        assertEquals(1, index.getResidualSize());
+
+        List<URLHandlerIndex.Entry> candidates = index.findCandidates("/a.html");
+        assertEquals(3, candidates.size());
+        assertEquals("/3", candidates.get(0).getHandler().getNewURL());
+        assertEquals("/4", candidates.get(1).getHandler().getNewURL());
+        assertEquals("/5", candidates.get(2).getHandler().getNewURL());
+        assertEquals(1, index.findCandidates("/a").size());
+        assertEquals(1, index.findCandidates("/z").size());
+    }
+
 }
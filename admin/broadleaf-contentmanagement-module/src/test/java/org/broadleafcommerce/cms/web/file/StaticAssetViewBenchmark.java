@@ -0,0 +1,186 @@
+/*-
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.web.file;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Benchmark harness for {@link StaticAssetView}. Streams synthetic thumbnail, browse and zoom sized asset files through
+ * the legacy byte at a time copy and through the view, with and without the hot asset cache, and logs the average
+ * time per request and the throughput. The response body is discarded so that only the streaming cost is measured.
+ * <p>
+ * This is not run as part of the test suite. Run it from the IDE or with
+ * {@code mvn exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.broadleafcommerce.cms.web.file.StaticAssetViewBenchmark}.
+ * The iteration count can be changed with the {@code benchmark.iterations} system property.
+ */
+public class StaticAssetViewBenchmark {
+
+    private static final Log LOG = LogFactory.getLog(StaticAssetViewBenchmark.class);
+
+    public static void main(String[] args) throws Exception {
+        int iterations = Integer.getInteger("benchmark.iterations", 200);
+        int[] sizes = new int[] { 8 * 1024, 120 * 1024, 2 * 1024 * 1024 };
+
+        StaticAssetView view = new StaticAssetView();
+        StaticAssetView cachingView = new StaticAssetView();
+        cachingView.setHotAssetCacheSize(100);
+        cachingView.setHotAssetMaxBytes(16 * 1024);
+
+        for (int size : sizes) {
+            File file = createAsset(size);
+            try {
+                report("legacy", size, iterations, new Streamer() {
+                    @Override
+                    public void stream(File file) throws Exception {
+                        legacyCopy(file, new DiscardingResponse());
+                    }
+                }, file);
+                final StaticAssetView current = view;
+                report("view", size, iterations, new Streamer() {
+                    @Override
+                    public void stream(File file) throws Exception {
+                        render(current, file);
+                    }
+                }, file);
+                final StaticAssetView caching = cachingView;
+                report("view+hot-cache", size, iterations, new Streamer() {
+                    @Override
+                    public void stream(File file) throws Exception {
+                        render(caching, file);
+                    }
+                }, file);
+            } finally {
+                file.delete();
+            }
+        }
+    }
+
+    protected static void report(String name, int size, int iterations, Streamer streamer, File file) throws Exception {
+        // warm up
+        for (int i = 0; i < 10; i++) {
+            streamer.stream(file);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            streamer.stream(file);
+        }
+        long elapsed = System.nanoTime() - start;
+        double millis = elapsed / 1000000D / iterations;
+        double megabytesPerSecond = ((double) size * iterations / (1024 * 1024)) / (elapsed / 1000000000D);
+        LOG.info(String.format("%-16s %8d bytes %10.3f ms/request %10.1f MB/s", name, size, millis,
+                megabytesPerSecond));
+    }
+
+    protected static void render(StaticAssetView view, File file) throws Exception {
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put("cacheFilePath", file.getAbsolutePath());
+        model.put("mimeType", "image/jpeg");
+        view.render(model, new MockHttpServletRequest("GET", "/img/asset.jpg"), new DiscardingResponse());
+    }
+
+    /**
+     * The copy performed by StaticAssetView before range and ETag support was added
+     */
+    protected static void legacyCopy(File file, HttpServletResponse response) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(file));
+        try {
+            OutputStream os = response.getOutputStream();
+            boolean eof = false;
+            while (!eof) {
+                int temp = bis.read();
+                if (temp < 0) {
+                    eof = true;
+                } else {
+                    os.write(temp);
+                }
+            }
+            os.flush();
+        } finally {
+            bis.close();
+        }
+    }
+
+    protected static File createAsset(int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = File.createTempFile("asset", ".jpg");
+        file.deleteOnExit();
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+
+    protected interface Streamer {
+        void stream(File file) throws Exception;
+    }
+
+    protected static class DiscardingResponse extends HttpServletResponseWrapper {
+
+        public DiscardingResponse() {
+            super(new MockHttpServletResponse());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return new ServletOutputStream() {
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                    //do nothing
+                }
+
+                @Override
+                public void write(int b) {
+                    //discard
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    //discard
+                }
+            };
+        }
+    }
+
+}
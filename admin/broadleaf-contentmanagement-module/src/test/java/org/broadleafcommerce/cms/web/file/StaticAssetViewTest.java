@@ -0,0 +1,130 @@
+/*-
+ * #%L
+ * BroadleafCommerce CMS Module
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.cms.web.file;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import junit.framework.TestCase;
+
+public class StaticAssetViewTest extends TestCase {
+
+    protected File file;
+    protected byte[] content;
+
+    @Override
+    protected void setUp() throws Exception {
+        content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        file = File.createTempFile("asset", ".jpg");
+        file.deleteOnExit();
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(content);
+        } finally {
+            os.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testFullContent() throws Exception {
+        MockHttpServletResponse response = render(new StaticAssetView(), new MockHttpServletRequest("GET", "/img/asset.jpg"));
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(content.length, response.getContentLength());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("ETag"));
+        assertTrue(Arrays.equals(content, response.getContentAsByteArray()));
+    }
+
+    public void testIfNoneMatch() throws Exception {
+        StaticAssetView view = new StaticAssetView();
+        String eTag = render(view, new MockHttpServletRequest("GET", "/img/asset.jpg")).getHeader("ETag");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("If-None-Match", "\"other\", " + eTag);
+        MockHttpServletResponse response = render(view, request);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    public void testByteRanges() throws Exception {
+        StaticAssetView view = new StaticAssetView();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("Range", "bytes=70000-");
+        MockHttpServletResponse response = render(view, request);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 70000-99999/100000", response.getHeader("Content-Range"));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 70000, 100000), response.getContentAsByteArray()));
+
+        request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("Range", "bytes=-10");
+        response = render(view, request);
+        assertEquals("bytes 99990-99999/100000", response.getHeader("Content-Range"));
+        assertEquals(10, response.getContentAsByteArray().length);
+
+        request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("Range", "bytes=200000-");
+        response = render(view, request);
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatus());
+        assertEquals("bytes */100000", response.getHeader("Content-Range"));
+
+        request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("Range", "bytes=0-9");
+        request.addHeader("If-Range", "\"stale\"");
+        response = render(view, request);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(content.length, response.getContentAsByteArray().length);
+    }
+
+    public void testHotAssetCache() throws Exception {
+        StaticAssetView view = new StaticAssetView();
+        view.setHotAssetCacheSize(10);
+        view.setHotAssetMaxBytes(content.length);
+        render(view, new MockHttpServletRequest("GET", "/img/asset.jpg"));
+        assertEquals(1, view.hotAssets.size());
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/img/asset.jpg");
+        request.addHeader("Range", "bytes=10-19");
+        MockHttpServletResponse response = render(view, request);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray()));
+    }
+
+    protected MockHttpServletResponse render(StaticAssetView view, MockHttpServletRequest request) throws Exception {
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put("cacheFilePath", file.getAbsolutePath());
+        model.put("mimeType", "image/jpeg");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        view.render(model, request, response);
+        return response;
+    }
+}
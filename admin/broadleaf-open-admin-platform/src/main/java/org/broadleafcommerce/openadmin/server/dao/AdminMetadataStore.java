@@ -0,0 +1,377 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.dao;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.openadmin.dto.FieldMetadata;
+import org.broadleafcommerce.openadmin.server.dao.provider.metadata.FieldMetadataProvider;
+import org.broadleafcommerce.openadmin.server.security.dao.AdminNavigationDao;
+import org.broadleafcommerce.openadmin.server.security.domain.AdminSection;
+import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceManagerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+/**
+ * Holds the merged {@link FieldMetadata} built by {@link DynamicEntityDaoImpl} when enabled via the
+ * 'admin.metadata.store.enabled' property. Unlike {@code DynamicEntityDaoImpl.METADATA_CACHE}, entries are not dropped
+ * when 'cache.entity.dao.metadata.ttl' expires. Every entry is stored as an unmodifiable map and lives until the store
+ * is explicitly invalidated, either over JMX or when the session factory is recycled (see
+ * {@link SessionFactoryChangeListener}). Each invalidation increments the store version.
+ * </p>
+ * The 'admin.metadata.store.warm.on.startup' property causes the metadata for the ceiling entity of every admin section
+ * to be computed on a background thread once the application context is refreshed, so that the first admin request does
+ * not pay for running every {@link FieldMetadataProvider}. Metadata building is serialized by
+ * {@link org.broadleafcommerce.common.util.dao.DynamicDaoHelperImpl#LOCK_OBJECT}, so a single warming thread is used.
+ * </p>
+ * The 'admin.metadata.store.file' property names a file the store is written to after warming and at shutdown, and read
+ * from at startup. The file is only used if its fingerprint matches the current configuration. The fingerprint covers
+ * the 'admin.metadata.store.version' property, the registered {@link FieldMetadataProvider}s and the admin application
+ * configuration map. Deployments that change admin presentation annotations or overrides should change
+ * 'admin.metadata.store.version' (e.g. to the build number) or remove the file. Reading the file only resolves the
+ * classes allowed by {@link MetadataObjectInputStream}.
+ */
+@Component("blAdminMetadataStore")
+@ManagedResource(objectName="org.broadleafcommerce:name=AdminMetadataStore", description="Admin Metadata Store", currencyTimeLimit=15)
+public class AdminMetadataStore implements ApplicationListener<ContextRefreshedEvent>, DisposableBean {
+
+    private static final Log LOG = LogFactory.getLog(AdminMetadataStore.class);
+
+    protected static final Map<String, Map<String, FieldMetadata>> ENTRIES = new ConcurrentHashMap<>();
+    protected static final AtomicLong VERSION = new AtomicLong();
+
+    /**
+     * Drop all entries and increment the version. Used when the session factory is recycled.
+     */
+    public static void clear() {
+        ENTRIES.clear();
+        VERSION.incrementAndGet();
+    }
+
+    @Value("${admin.metadata.store.enabled:false}")
+    protected boolean enabled = false;
+
+    @Value("${admin.metadata.store.warm.on.startup:false}")
+    protected boolean warmOnStartup = false;
+
+    @Value("${admin.metadata.store.file:}")
+    protected String storeFile;
+
+    @Value("${admin.metadata.store.version:}")
+    protected String storeVersion;
+
+    @Resource(name = "blFieldMetadataProviders")
+    protected List<FieldMetadataProvider> fieldMetadataProviders = new ArrayList<>();
+
+    @Resource(name = "blAppConfigurationMap")
+    protected Map<String, String> propertyConfigurations = new HashMap<>();
+
+    @Resource(name = "blAdminNavigationDao")
+    protected AdminNavigationDao adminNavigationDao;
+
+    protected final AtomicBoolean warmStarted = new AtomicBoolean(false);
+    protected final AtomicLong hitCount = new AtomicLong();
+    protected final AtomicLong buildCount = new AtomicLong();
+    protected volatile long lastWarmMillis = -1L;
+    protected volatile boolean loadedFromFile = false;
+
+    @PostConstruct
+    public void init() {
+        if (enabled && !StringUtils.isEmpty(storeFile)) {
+            load(new File(storeFile));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, FieldMetadata> get(String key) {
+        Map<String, FieldMetadata> response = ENTRIES.get(key);
+        if (response != null) {
+            hitCount.incrementAndGet();
+        }
+        return response;
+    }
+
+    public void put(String key, Map<String, FieldMetadata> metadata) {
+        buildCount.incrementAndGet();
+        ENTRIES.put(key, Collections.unmodifiableMap(new HashMap<>(metadata)));
+    }
+
+    @ManagedOperation(description="Drop all stored metadata so that it is rebuilt on next use")
+    public void invalidate() {
+        clear();
+        LOG.info("Admin metadata store invalidated, version is now " + VERSION.get());
+    }
+
+    @ManagedAttribute(description="The version of the store, incremented on every invalidation")
+    public long getVersion() {
+        return VERSION.get();
+    }
+
+    @ManagedAttribute(description="The number of stored metadata entries")
+    public int getSize() {
+        return ENTRIES.size();
+    }
+
+    @ManagedAttribute(description="The number of metadata lookups served by the store")
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @ManagedAttribute(description="The number of metadata entries built and added to the store")
+    public long getBuildCount() {
+        return buildCount.get();
+    }
+
+    @ManagedAttribute(description="The time in milliseconds taken by the last startup warming, or -1")
+    public long getLastWarmMillis() {
+        return lastWarmMillis;
+    }
+
+    @ManagedAttribute(description="Whether the store was loaded from the store file at startup")
+    public boolean isLoadedFromFile() {
+        return loadedFromFile;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (enabled && warmOnStartup && warmStarted.compareAndSet(false, true)) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    warm();
+                }
+            }, "AdminMetadataStoreWarmer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Build the primary merged metadata for the ceiling entity of every admin section
+     */
+    @ManagedOperation(description="Build the metadata for the ceiling entity of every admin section")
+    public void warm() {
+        long start = System.currentTimeMillis();
+        boolean contextCreated = BroadleafRequestContext.getBroadleafRequestContext() == null;
+        if (contextCreated) {
+            BroadleafRequestContext.setBroadleafRequestContext(new BroadleafRequestContext());
+        }
+        int count = 0;
+        try {
+            Set<String> ceilingEntities = new LinkedHashSet<>();
+            for (AdminSection section : adminNavigationDao.readAllAdminSections()) {
+                if (!StringUtils.isEmpty(section.getCeilingEntity())) {
+                    ceilingEntities.add(section.getCeilingEntity());
+                }
+            }
+            for (String ceilingEntity : ceilingEntities) {
+                try {
+                    Class<?> ceilingClass = Class.forName(ceilingEntity);
+                    PersistenceManagerFactory.getPersistenceManager(ceilingClass).getDynamicEntityDao().getMergedProperties(ceilingClass);
+                    count++;
+                } catch (Exception e) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Unable to warm admin metadata for " + ceilingEntity, e);
+                    }
+                }
+            }
+        } finally {
+            if (contextCreated) {
+                BroadleafRequestContext.setBroadleafRequestContext(null);
+            }
+        }
+        lastWarmMillis = System.currentTimeMillis() - start;
+        LOG.info(String.format("Warmed admin metadata for %s ceiling entities (%s entries) in %sms", count,
+                ENTRIES.size(), lastWarmMillis));
+        if (!StringUtils.isEmpty(storeFile)) {
+            save(new File(storeFile));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (enabled && !StringUtils.isEmpty(storeFile) && !ENTRIES.isEmpty()) {
+            save(new File(storeFile));
+        }
+    }
+
+    @ManagedOperation(description="Write the store to the configured store file")
+    public void save() {
+        if (!StringUtils.isEmpty(storeFile)) {
+            save(new File(storeFile));
+        }
+    }
+
+    protected void save(File file) {
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        try {
+            ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                oos.writeObject(buildFingerprint());
+                oos.writeObject(new HashMap<>(ENTRIES));
+            } finally {
+                oos.close();
+            }
+            if (file.exists() && !file.delete()) {
+                LOG.warn("Unable to replace the admin metadata store file " + file.getAbsolutePath());
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                LOG.warn("Unable to write the admin metadata store file " + file.getAbsolutePath());
+            }
+        } catch (Exception e) {
+            LOG.warn("Unable to write the admin metadata store file " + file.getAbsolutePath(), e);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    protected void load(File file) {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            ObjectInputStream ois = new MetadataObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                Object fingerprint = ois.readObject();
+                if (!buildFingerprint().equals(fingerprint)) {
+                    LOG.info("Ignoring the admin metadata store file " + file.getAbsolutePath() + " since the configuration has changed");
+                    return;
+                }
+                Object stored = ois.readObject();
+                if (!(stored instanceof Map)) {
+                    throw new InvalidObjectException("Expected a map of metadata entries but found " + stored);
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Map<String, FieldMetadata>> entries = (Map<String, Map<String, FieldMetadata>>) stored;
+                for (Map.Entry<String, Map<String, FieldMetadata>> entry : entries.entrySet()) {
+                    ENTRIES.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+                }
+                loadedFromFile = true;
+                LOG.info("Loaded " + entries.size() + " admin metadata entries from " + file.getAbsolutePath());
+            } finally {
+                ois.close();
+            }
+        } catch (Exception e) {
+            LOG.warn("Unable to read the admin metadata store file " + file.getAbsolutePath() + ", metadata will be rebuilt", e);
+        }
+    }
+
+    protected String buildFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(storeVersion).append('|');
+        for (FieldMetadataProvider provider : fieldMetadataProviders) {
+            sb.append(StringUtils.substringBefore(provider.getClass().getName(), "$$")).append(',');
+        }
+        sb.append('|');
+        sb.append(new TreeMap<>(propertyConfigurations));
+        return sb.toString();
+    }
+
+    /**
+     * Only resolves the classes that make up stored metadata: the admin DTOs, the presentation enums they reference,
+     * and the java.lang, java.util and java.math types used for their values. Anything else in the store file is
+     * refused before it is instantiated.
+     */
+    protected static class MetadataObjectInputStream extends ObjectInputStream {
+
+        protected static final String[] ALLOWED_PACKAGES = {"java.lang", "java.util", "java.math"};
+        protected static final String[] ALLOWED_PACKAGE_TREES = {"org.broadleafcommerce.openadmin.dto",
+                "org.broadleafcommerce.common.presentation.client"};
+
+        public MetadataObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "Class is not permitted in the admin metadata store");
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+            throw new InvalidClassException("Proxy classes are not permitted in the admin metadata store");
+        }
+
+        protected boolean isAllowed(String className) {
+            String name = className;
+            if (name.startsWith("[")) {
+                name = name.substring(name.lastIndexOf('[') + 1);
+                if (!name.startsWith("L")) {
+                    // array of primitives
+                    return true;
+                }
+                name = name.substring(1, name.length() - 1);
+            }
+            String packageName = StringUtils.substringBeforeLast(name, ".");
+            for (String allowed : ALLOWED_PACKAGES) {
+                if (allowed.equals(packageName)) {
+                    return true;
+                }
+            }
+            for (String allowed : ALLOWED_PACKAGE_TREES) {
+                if (allowed.equals(packageName) || packageName.startsWith(allowed + ".")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
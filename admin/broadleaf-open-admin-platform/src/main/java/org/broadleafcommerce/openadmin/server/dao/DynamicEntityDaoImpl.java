@@ -140,6 +140,9 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
     @Resource(name = "blAppConfigurationMap")
     protected Map<String, String> propertyConfigurations = new HashMap<>();
 
+    @Resource(name = "blAdminMetadataStore")
+    protected AdminMetadataStore adminMetadataStore;
+
     protected DynamicDaoHelper dynamicDaoHelper = new DynamicDaoHelperImpl();
 
     @Value("${cache.entity.dao.metadata.ttl}")
@@ -711,7 +714,7 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
     protected String getCacheKey(String ceilingEntityFullyQualifiedClassname, ForeignKey foreignField, String[] additionalNonPersistentProperties, ForeignKey[] additionalForeignFields, MergedPropertyType mergedPropertyType, Boolean populateManyToOneFields, Class<?> clazz, String configurationKey, Boolean isParentExcluded) {
         StringBuilder sb = new StringBuilder(150);
         sb.append(ceilingEntityFullyQualifiedClassname);
-        sb.append(clazz.hashCode());
+        sb.append(clazz.getName());
         sb.append(foreignField == null ? "" : foreignField.toString());
         sb.append(configurationKey);
         sb.append(isParentExcluded);
@@ -766,8 +769,12 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
             String cacheKey = getCacheKey(ceilingEntityFullyQualifiedClassname, foreignField, additionalNonPersistentProperties, additionalForeignFields, mergedPropertyType, populateManyToOneFields, clazz, configurationKey, isParentExcluded);
 
             Map<String, FieldMetadata> cacheData = null;
+            boolean isCached = false;
+            boolean useStore = adminMetadataStore != null && adminMetadataStore.isEnabled();
             synchronized (DynamicDaoHelperImpl.LOCK_OBJECT) {
-                if (useCache()) {
+                if (useStore) {
+                    cacheData = adminMetadataStore.get(cacheKey);
+                } else if (useCache()) {
                     cacheData = METADATA_CACHE.get(cacheKey);
                 }
 
@@ -803,7 +810,11 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
                             }
                         }
                     }
-                    METADATA_CACHE.put(cacheKey, props);
+                    if (useStore) {
+                        adminMetadataStore.put(cacheKey, props);
+                    } else {
+                        METADATA_CACHE.put(cacheKey, props);
+                    }
 
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Added " + props.size() + " to the metadata cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
@@ -826,33 +837,42 @@ public class DynamicEntityDaoImpl implements DynamicEntityDao, ApplicationContex
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Read " + cacheData.size() + " from the metada cache with key " + cacheKey + " for the class " + ceilingEntityFullyQualifiedClassname);
                     }
-                    for (FieldMetadata value : cacheData.values()) {
-                        //in case of MT different sites can potentially have different data driven enums, as we don't take into account
-                        //site during cache key calculation(have metadata per-site is overkill) we want to refresh data driven enums
-                        if(value instanceof BasicFieldMetadata && StringUtils.isNotEmpty(((BasicFieldMetadata)value).getOptionListEntity())){
-                            basicFieldMetadataProvider.refreshDataDrivenEnumMetadata((BasicFieldMetadata) value);
-                        }
-                        //that's for the case when metadata cache is enabled(cache.entity.dao.metadata.ttl=-1) and you cache metadata for en locale
-                        //then switch to FR that has comma as decimal separator
-                        if (value instanceof BasicFieldMetadata) {
-                            BasicFieldMetadata v = (BasicFieldMetadata) value;
-                            if (SupportedFieldType.DECIMAL.equals(v.getSecondaryType()) || SupportedFieldType.INTEGER.equals(v.getSecondaryType())
-                                    || SupportedFieldType.INTEGER.equals(v.getFieldType()) || SupportedFieldType.DECIMAL.equals(v.getFieldType())) {
-                                refreshDecimalDefaultValue(v);
-                            }
-                        }
-                    }
+                    isCached = true;
                 }
             }
             //clone the metadata before passing to the system
             Map<String, FieldMetadata> clonedCache = new HashMap<>(cacheData.size());
             for (Map.Entry<String, FieldMetadata> entry : cacheData.entrySet()) {
-                clonedCache.put(entry.getKey(), entry.getValue().cloneFieldMetadata());
+                FieldMetadata value = entry.getValue().cloneFieldMetadata();
+                if (isCached) {
+                    refreshCachedMetadata(value);
+                }
+                clonedCache.put(entry.getKey(), value);
             }
             mergedProperties.putAll(clonedCache);
         }
     }
 
+    /**
+     * Refresh the request specific parts of metadata read from the cache. The cached copy itself is never modified.
+     */
+    protected void refreshCachedMetadata(FieldMetadata value) {
+        //in case of MT different sites can potentially have different data driven enums, as we don't take into account
+        //site during cache key calculation(have metadata per-site is overkill) we want to refresh data driven enums
+        if(value instanceof BasicFieldMetadata && StringUtils.isNotEmpty(((BasicFieldMetadata)value).getOptionListEntity())){
+            basicFieldMetadataProvider.refreshDataDrivenEnumMetadata((BasicFieldMetadata) value);
+        }
+        //that's for the case when metadata cache is enabled(cache.entity.dao.metadata.ttl=-1) and you cache metadata for en locale
+        //then switch to FR that has comma as decimal separator
+        if (value instanceof BasicFieldMetadata) {
+            BasicFieldMetadata v = (BasicFieldMetadata) value;
+            if (SupportedFieldType.DECIMAL.equals(v.getSecondaryType()) || SupportedFieldType.INTEGER.equals(v.getSecondaryType())
+                    || SupportedFieldType.INTEGER.equals(v.getFieldType()) || SupportedFieldType.DECIMAL.equals(v.getFieldType())) {
+                refreshDecimalDefaultValue(v);
+            }
+        }
+    }
+
     public void refreshDecimalDefaultValue(BasicFieldMetadata value) {
         DecimalFormat instance = (DecimalFormat) NumberFormat.getInstance(BroadleafRequestContext.getBroadleafRequestContext().getJavaLocale());
         if(StringUtils.isNotEmpty(value.getDefaultValue()) && value.getDefaultValue().contains(".") && instance.getDecimalFormatSymbols().getDecimalSeparator()!='.'){
@@ -23,6 +23,7 @@ import org.broadleafcommerce.common.persistence.IdOverrideTableGenerator;
 import org.broadleafcommerce.common.util.BLCFieldUtils;
 import org.broadleafcommerce.common.util.dao.DynamicDaoHelperImpl;
 import org.broadleafcommerce.openadmin.server.service.DynamicEntityRemoteService;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.FieldAccessorCache;
 import org.hibernate.SessionFactory;
 import org.hibernate.SessionFactoryObserver;
 
@@ -50,6 +51,8 @@ public class SessionFactoryChangeListener implements SessionFactoryObserver {
             DynamicEntityDaoImpl.METADATA_CACHE.clear();
             DynamicDaoHelperImpl.POLYMORPHIC_ENTITY_CACHE.clear();
             BLCFieldUtils.FIELD_CACHE.clear();
+            FieldAccessorCache.clear();
+            AdminMetadataStore.clear();
             try {
                 Field metadataCache = DynamicEntityRemoteService.class.getDeclaredField("METADATA_CACHE");
                 metadataCache.setAccessible(true);
@@ -22,6 +22,8 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.broadleafcommerce.openadmin.server.service.artifact.ArtifactProcessor;
 import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.EffectsManager;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.UnmarshalledParameter;
+import org.broadleafcommerce.openadmin.server.service.artifact.image.effects.chain.filter.FilterTypeEnum;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -43,6 +45,7 @@ import java.util.zip.Deflater;
 import javax.annotation.Resource;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
@@ -68,6 +71,21 @@ public class ImageArtifactProcessor implements ArtifactProcessor {
     @Value("${image.artifact.recompress.formats:png}")
     protected String recompressFormats = "png";
 
+    /**
+     * When the first operation is a resize, decode only every Nth pixel of the source so that far less memory
+     * and CPU is spent on large originals that are being reduced to a small variant. Off by default, since the
+     * rendered variants differ slightly from those resized from the full source.
+     */
+    @Value("${image.artifact.subsample.enabled:false}")
+    protected boolean subsampleEnabled = false;
+
+    /**
+     * The subsampled image will still be at least this many times larger than the resize target in each dimension,
+     * leaving the resize filter real pixels to interpolate from
+     */
+    @Value("${image.artifact.subsample.min.oversample:2}")
+    protected int subsampleMinOversample = 2;
+
     @Override
     public boolean isSupported(InputStream artifactStream, String filename) {
         for (String type : supportedUploadTypes) {
@@ -107,7 +125,7 @@ public class ImageArtifactProcessor implements ArtifactProcessor {
             ImageReader reader = iter.next();
             String formatName = reader.getFormatName();
             artifactStream.reset();
-            BufferedImage image = ImageIO.read(ImageIO.createImageInputStream(artifactStream));
+            BufferedImage image = readImage(reader, artifactStream, operations);
 
             //before
             if (formatName.toLowerCase().equals("jpeg") || formatName.toLowerCase().equals("jpg")) {
@@ -161,6 +179,88 @@ public class ImageArtifactProcessor implements ArtifactProcessor {
         return result;
     }
 
+    /**
+     * Decode the first image from the stream with the given reader, subsampling the source when the operations allow
+     * it. See {@link #calculateSubsampling(int, int, Operation[])}.
+     *
+     * @param reader a reader that supports the format of the stream
+     * @param artifactStream the image data, positioned at its start
+     * @param operations the operations that will be applied to the decoded image
+     * @return the decoded image
+     * @throws Exception
+     */
+    protected BufferedImage readImage(ImageReader reader, InputStream artifactStream, Operation[] operations) throws Exception {
+        ImageInputStream iis = ImageIO.createImageInputStream(artifactStream);
+        try {
+            reader.setInput(iis, true, true);
+            ImageReadParam param = reader.getDefaultReadParam();
+            int subsampling = calculateSubsampling(reader.getWidth(0), reader.getHeight(0), operations);
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+            iis.close();
+        }
+    }
+
+    /**
+     * Work out how aggressively the source may be subsampled while decoding. This is only done when the first
+     * operation is a resize with explicit target dimensions, since any other leading operation (a crop, for example)
+     * is expressed in source pixel coordinates. The factor keeps the decoded image at least
+     * {@link #subsampleMinOversample} times the resize target in both dimensions, and is reduced further if
+     * subsampling would change which dimension the resize keys on when maintaining the aspect ratio.
+     *
+     * @param width the width of the source image
+     * @param height the height of the source image
+     * @param operations the operations that will be applied to the decoded image
+     * @return the subsampling factor, 1 meaning every pixel is decoded
+     * @throws Exception
+     */
+    protected int calculateSubsampling(int width, int height, Operation[] operations) throws Exception {
+        if (!subsampleEnabled || ArrayUtils.isEmpty(operations)
+                || !FilterTypeEnum.RESIZE.toString().toLowerCase().equals(operations[0].getName())
+                || operations[0].getParameters() == null) {
+            return 1;
+        }
+        Operation resize = operations[0];
+        int targetWidth = 0;
+        int targetHeight = 0;
+        boolean maintainAspectRatio = false;
+        for (UnmarshalledParameter parameter : resize.getParameters()) {
+            if (parameter.getValue() == null) {
+                continue;
+            }
+            Object value = effectsManager.getConversionManager().convertParameter(parameter.getValue(),
+                    parameter.getType(), resize.getFactor(), parameter.isApplyFactor()).getParameterInstance();
+            if ("target-width".equals(parameter.getName())) {
+                targetWidth = (Integer) value;
+            } else if ("target-height".equals(parameter.getName())) {
+                targetHeight = (Integer) value;
+            } else if ("maintain-aspect-ratio".equals(parameter.getName())) {
+                maintainAspectRatio = (Boolean) value;
+            }
+        }
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return 1;
+        }
+        int oversample = Math.max(1, subsampleMinOversample);
+        int subsampling = Math.min(width / (targetWidth * oversample), height / (targetHeight * oversample));
+        if (maintainAspectRatio) {
+            boolean keyOnHeight = Math.abs(width - targetWidth) > Math.abs(height - targetHeight);
+            while (subsampling > 1) {
+                int subsampledWidth = (width + subsampling - 1) / subsampling;
+                int subsampledHeight = (height + subsampling - 1) / subsampling;
+                if (keyOnHeight == Math.abs(subsampledWidth - targetWidth) > Math.abs(subsampledHeight - targetHeight)) {
+                    break;
+                }
+                subsampling--;
+            }
+        }
+        return Math.max(1, subsampling);
+    }
+
     /**
      * Given an input stream on a media file, recompress the file according to best practice optimization standards.
      *
@@ -265,4 +365,28 @@ public class ImageArtifactProcessor implements ArtifactProcessor {
     public void setCompressionQuality(float compressionQuality) {
         this.compressionQuality = compressionQuality;
     }
+
+    public EffectsManager getEffectsManager() {
+        return effectsManager;
+    }
+
+    public void setEffectsManager(EffectsManager effectsManager) {
+        this.effectsManager = effectsManager;
+    }
+
+    public boolean isSubsampleEnabled() {
+        return subsampleEnabled;
+    }
+
+    public void setSubsampleEnabled(boolean subsampleEnabled) {
+        this.subsampleEnabled = subsampleEnabled;
+    }
+
+    public int getSubsampleMinOversample() {
+        return subsampleMinOversample;
+    }
+
+    public void setSubsampleMinOversample(int subsampleMinOversample) {
+        this.subsampleMinOversample = subsampleMinOversample;
+    }
 }
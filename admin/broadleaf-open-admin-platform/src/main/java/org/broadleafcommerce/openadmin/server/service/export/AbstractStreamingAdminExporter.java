@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import org.broadleafcommerce.common.exception.ServiceException;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.annotation.Resource;
+import javax.servlet.ServletOutputStream;
+
+/**
+ * Base class for {@link AdminExporter}s whose rows come straight from an admin entity. Subclasses describe the rows
+ * through {@link #buildExportDefinition(Map)} and the {@link StreamingExportService} takes care of paging, buffering
+ * and writing, so memory use stays flat regardless of the number of rows exported.
+ * <p>
+ * The output format may be chosen with the "format" request parameter ("csv" or "jsonl") and defaults to
+ * {@link #getDefaultFormat()}.
+ */
+public abstract class AbstractStreamingAdminExporter implements AdminExporter {
+
+    public static final String FORMAT_PARAM = "format";
+
+    @Resource(name = "blStreamingExportService")
+    protected StreamingExportService streamingExportService;
+
+    /**
+     * @param params the criteria values submitted with the export request
+     * @return the rows to export
+     */
+    public abstract StreamingExportDefinition buildExportDefinition(Map<String, String> params);
+
+    public String getDefaultFormat() {
+        return CsvExportRowWriter.FORMAT;
+    }
+
+    public String getFormat(Map<String, String> params) {
+        String format = params == null ? null : params.get(FORMAT_PARAM);
+        return format == null ? getDefaultFormat() : format;
+    }
+
+    @Override
+    public void writeExport(ServletOutputStream out, Map<String, String> params) throws IOException {
+        try {
+            streamingExportService.export(buildExportDefinition(params), getFormat(params), out);
+        } catch (ServiceException e) {
+            throw new IOException("Unable to export " + getName(), e);
+        }
+    }
+
+    /**
+     * Run this export in the background instead of streaming it to the response
+     *
+     * @param params the criteria values submitted with the export request
+     * @return the job, to be polled through {@link StreamingExportService#getExportJob(String)}
+     */
+    public AdminExportJob submitExport(Map<String, String> params) {
+        return streamingExportService.submitExportJob(buildExportDefinition(params), getFormat(params), getFileName());
+    }
+
+}
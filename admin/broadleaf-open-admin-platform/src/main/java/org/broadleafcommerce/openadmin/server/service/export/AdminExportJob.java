@@ -0,0 +1,167 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import java.io.Serializable;
+
+/**
+ * Status of an asynchronous export started through {@link StreamingExportService#submitExportJob}
+ */
+public class AdminExportJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETE, FAILED, CANCELLED
+    }
+
+    protected final String id;
+    protected final String fileName;
+    protected final long createdTime = System.currentTimeMillis();
+    protected volatile Status status = Status.QUEUED;
+    protected volatile long rowCount;
+    protected volatile String contentType;
+    protected volatile String resourceName;
+    protected volatile String errorMessage;
+    protected volatile long completedTime;
+    protected volatile boolean cancelRequested;
+    protected volatile Long adminUserId;
+
+    public AdminExportJob(String id, String fileName) {
+        this.id = id;
+        this.fileName = fileName;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public boolean isDone() {
+        return status == Status.COMPLETE || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    /**
+     * Move a queued job to {@link Status#RUNNING}
+     *
+     * @return false if the job was cancelled before it could start
+     */
+    public synchronized boolean start() {
+        if (status != Status.QUEUED || cancelRequested) {
+            return false;
+        }
+        status = Status.RUNNING;
+        return true;
+    }
+
+    /**
+     * Ask the job to stop. A job that has not started yet is cancelled immediately; a running job is cancelled by
+     * its export thread once it notices the request.
+     *
+     * @return false if the job had already finished
+     */
+    public synchronized boolean cancel() {
+        if (isDone()) {
+            return false;
+        }
+        cancelRequested = true;
+        if (status == Status.QUEUED) {
+            status = Status.CANCELLED;
+            completedTime = System.currentTimeMillis();
+        }
+        return true;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * The name of the finished export file as stored by the {@link org.broadleafcommerce.common.file.service.BroadleafFileService}
+     *
+     * @return
+     */
+    public String getResourceName() {
+        return resourceName;
+    }
+
+    public void setResourceName(String resourceName) {
+        this.resourceName = resourceName;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public long getCompletedTime() {
+        return completedTime;
+    }
+
+    public void setCompletedTime(long completedTime) {
+        this.completedTime = completedTime;
+    }
+
+    /**
+     * The id of the admin user that submitted the job. Only that user may poll, cancel or download it.
+     *
+     * @return
+     */
+    public Long getAdminUserId() {
+        return adminUserId;
+    }
+
+    public void setAdminUserId(Long adminUserId) {
+        this.adminUserId = adminUserId;
+    }
+
+}
@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Serializes exported rows to an underlying stream in a specific format. Instances are stateful and are created
+ * once per export by {@link StreamingExportService#createRowWriter(String, java.io.OutputStream)}.
+ * <p>
+ * Implementations should buffer rows internally and only push bytes to the underlying stream on {@link #flush()},
+ * which the export pipeline calls once per chunk of rows.
+ */
+public interface ExportRowWriter {
+
+    /**
+     * The content type of the produced output, suitable for an HTTP response header
+     *
+     * @return
+     */
+    String getContentType();
+
+    /**
+     * The file extension (without the dot) that should be used for files produced by this writer
+     *
+     * @return
+     */
+    String getFileExtension();
+
+    /**
+     * Called once, before any rows are written, with the ordered list of column names
+     *
+     * @param columns
+     * @throws IOException
+     */
+    void writeHeader(List<String> columns) throws IOException;
+
+    /**
+     * Write a single row. The values are in the same order as the columns passed to {@link #writeHeader(List)}.
+     * Null values are permitted.
+     *
+     * @param values
+     * @throws IOException
+     */
+    void writeRow(List<String> values) throws IOException;
+
+    /**
+     * Push any buffered rows to the underlying stream
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException;
+
+    /**
+     * Write any trailing content and flush. This does not close the underlying stream, which is owned by the caller.
+     *
+     * @throws IOException
+     */
+    void finish() throws IOException;
+
+}
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ExportRowWriter} that produces JSON Lines output: one JSON object per row, keyed by column name. No header
+ * line is written since every row is self-describing.
+ */
+public class JsonLinesExportRowWriter implements ExportRowWriter {
+
+    public static final String FORMAT = "jsonl";
+
+    protected final Writer writer;
+    protected List<String> encodedKeys;
+
+    public JsonLinesExportRowWriter(OutputStream out, int bufferSize) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), bufferSize);
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/x-ndjson; charset=UTF-8";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return FORMAT;
+    }
+
+    @Override
+    public void writeHeader(List<String> columns) throws IOException {
+        encodedKeys = new ArrayList<String>(columns.size());
+        for (String column : columns) {
+            encodedKeys.add('"' + StringEscapeUtils.escapeJson(column) + "\":");
+        }
+    }
+
+    @Override
+    public void writeRow(List<String> values) throws IOException {
+        if (encodedKeys == null) {
+            throw new IllegalStateException("writeHeader must be called before writing rows");
+        }
+        writer.write('{');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(encodedKeys.get(i));
+            String value = values.get(i);
+            if (value == null) {
+                writer.write("null");
+            } else {
+                writer.write('"');
+                writer.write(StringEscapeUtils.escapeJson(value));
+                writer.write('"');
+            }
+        }
+        writer.write("}\n");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+    }
+
+}
@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import org.broadleafcommerce.openadmin.dto.FilterAndSortCriteria;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Describes the rows a {@link StreamingExportService} should produce: the admin entity to read, the properties to
+ * emit as columns, and any additional filter criteria. Rows are always read in ascending order of
+ * {@link #getIdProperty()} so that the export can page by key rather than by offset.
+ */
+public class StreamingExportDefinition {
+
+    protected String ceilingEntityClassname;
+    protected String idProperty = "id";
+    protected List<String> columns = new ArrayList<String>();
+    protected List<String> columnLabels;
+    protected List<FilterAndSortCriteria> filterCriteria = new ArrayList<FilterAndSortCriteria>();
+    protected boolean useDisplayValues = true;
+
+    public StreamingExportDefinition withCeilingEntityClassname(String ceilingEntityClassname) {
+        setCeilingEntityClassname(ceilingEntityClassname);
+        return this;
+    }
+
+    public StreamingExportDefinition withIdProperty(String idProperty) {
+        setIdProperty(idProperty);
+        return this;
+    }
+
+    public StreamingExportDefinition withColumns(String... columns) {
+        setColumns(new ArrayList<String>(Arrays.asList(columns)));
+        return this;
+    }
+
+    public StreamingExportDefinition withColumnLabels(String... columnLabels) {
+        setColumnLabels(new ArrayList<String>(Arrays.asList(columnLabels)));
+        return this;
+    }
+
+    public StreamingExportDefinition addFilterCriteria(FilterAndSortCriteria criteria) {
+        filterCriteria.add(criteria);
+        return this;
+    }
+
+    public StreamingExportDefinition withUseDisplayValues(boolean useDisplayValues) {
+        setUseDisplayValues(useDisplayValues);
+        return this;
+    }
+
+    public String getCeilingEntityClassname() {
+        return ceilingEntityClassname;
+    }
+
+    public void setCeilingEntityClassname(String ceilingEntityClassname) {
+        this.ceilingEntityClassname = ceilingEntityClassname;
+    }
+
+    public String getIdProperty() {
+        return idProperty;
+    }
+
+    public void setIdProperty(String idProperty) {
+        this.idProperty = idProperty;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * The header names written for each column. Defaults to the property names when not set.
+     *
+     * @return
+     */
+    public List<String> getColumnLabels() {
+        return columnLabels == null ? columns : columnLabels;
+    }
+
+    public void setColumnLabels(List<String> columnLabels) {
+        this.columnLabels = columnLabels;
+    }
+
+    public List<FilterAndSortCriteria> getFilterCriteria() {
+        return filterCriteria;
+    }
+
+    public void setFilterCriteria(List<FilterAndSortCriteria> filterCriteria) {
+        this.filterCriteria = filterCriteria;
+    }
+
+    /**
+     * Whether to prefer the friendly display value of a property (e.g. the name of a referenced entity) over its raw
+     * value. Defaults to true.
+     *
+     * @return
+     */
+    public boolean isUseDisplayValues() {
+        return useDisplayValues;
+    }
+
+    public void setUseDisplayValues(boolean useDisplayValues) {
+        this.useDisplayValues = useDisplayValues;
+    }
+
+}
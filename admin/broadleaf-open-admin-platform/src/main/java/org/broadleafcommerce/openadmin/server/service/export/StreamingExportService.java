@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import org.broadleafcommerce.common.exception.ServiceException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Produces large admin exports without materializing the full result set. Rows are read from the admin persistence
+ * layer a page at a time, keyed on the entity id rather than an offset, and handed through a bounded buffer to an
+ * {@link ExportRowWriter} that flushes once per page. When the consumer of the output is slower than the database,
+ * the reader blocks instead of accumulating rows in memory.
+ */
+public interface StreamingExportService {
+
+    /**
+     * Stream the rows described by the definition to the given stream in the requested format. The stream is flushed
+     * but not closed.
+     *
+     * @param definition the rows to export
+     * @param format the output format, e.g. {@link CsvExportRowWriter#FORMAT} or {@link JsonLinesExportRowWriter#FORMAT}
+     * @param out the destination
+     * @return the number of rows written
+     * @throws IOException if writing to the destination fails
+     * @throws ServiceException if reading from the persistence layer fails
+     */
+    long export(StreamingExportDefinition definition, String format, OutputStream out) throws IOException, ServiceException;
+
+    /**
+     * Create the row writer for a format
+     *
+     * @param format
+     * @param out
+     * @return
+     * @throws IllegalArgumentException if the format is not supported
+     */
+    ExportRowWriter createRowWriter(String format, OutputStream out);
+
+    /**
+     * Run the export in the background, writing the result to the {@link org.broadleafcommerce.common.file.service.BroadleafFileService}.
+     * The current request context and security context are carried over to the background thread, and the current
+     * admin user is recorded as the owner of the job (see {@link AdminExportJob#getAdminUserId()}).
+     *
+     * @param definition the rows to export
+     * @param format the output format
+     * @param fileName the name of the produced file, e.g. {@link AdminExporter#getFileName()}
+     * @return the job, whose status may be polled through {@link #getExportJob(String)}
+     */
+    AdminExportJob submitExportJob(StreamingExportDefinition definition, String format, String fileName);
+
+    /**
+     * Stop a queued or running job. The job ends in {@link AdminExportJob.Status#CANCELLED} and its partial output
+     * is discarded.
+     *
+     * @param jobId
+     * @return false if the job does not exist or has already finished
+     */
+    boolean cancelExportJob(String jobId);
+
+    /**
+     * @param jobId
+     * @return the job, or null if it does not exist or has expired
+     */
+    AdminExportJob getExportJob(String jobId);
+
+    /**
+     * @param jobId
+     * @return the completed export file, or null if the job does not exist or has not completed successfully
+     */
+    File getExportJobResult(String jobId);
+
+}
@@ -0,0 +1,509 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.file.domain.FileWorkArea;
+import org.broadleafcommerce.common.file.service.BroadleafFileService;
+import org.broadleafcommerce.common.util.StreamingTransactionCapableUtil;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.openadmin.dto.DynamicResultSet;
+import org.broadleafcommerce.openadmin.dto.Entity;
+import org.broadleafcommerce.openadmin.dto.FilterAndSortCriteria;
+import org.broadleafcommerce.openadmin.dto.Property;
+import org.broadleafcommerce.openadmin.dto.SortDirection;
+import org.broadleafcommerce.openadmin.server.domain.PersistencePackageRequest;
+import org.broadleafcommerce.openadmin.server.security.domain.AdminUser;
+import org.broadleafcommerce.openadmin.server.security.remote.SecurityVerifier;
+import org.broadleafcommerce.openadmin.server.service.AdminEntityService;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.FilterMapping;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.RestrictionType;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+/**
+ * Default {@link StreamingExportService}. The calling thread reads pages from the {@link AdminEntityService} and
+ * places them on a bounded queue; a writer thread drains the queue into the {@link ExportRowWriter}, flushing after
+ * every page. Each page is requested with a {@link RestrictionType#LONG} range on the id property starting just past
+ * the last id of the previous page, so deep pages cost the same as the first one.
+ */
+@Service("blStreamingExportService")
+public class StreamingExportServiceImpl implements StreamingExportService, DisposableBean {
+
+    private static final Log LOG = LogFactory.getLog(StreamingExportServiceImpl.class);
+
+    /**
+     * Placed on the page queue after the last page. Compared by identity.
+     */
+    protected static final List<List<String>> END_OF_ROWS = new ArrayList<List<String>>(0);
+
+    @Resource(name = "blAdminEntityService")
+    protected AdminEntityService adminEntityService;
+
+    @Resource(name = "blFileService")
+    protected BroadleafFileService broadleafFileService;
+
+    @Resource(name = "blAdminSecurityRemoteService")
+    protected SecurityVerifier adminRemoteSecurityService;
+
+    @Resource(name = "blStreamingTransactionCapableUtil")
+    protected StreamingTransactionCapableUtil transUtil;
+
+    @Value("${admin.export.page.size:500}")
+    protected int pageSize = 500;
+
+    @Value("${admin.export.buffered.pages:4}")
+    protected int bufferedPages = 4;
+
+    @Value("${admin.export.writer.buffer.bytes:65536}")
+    protected int writerBufferBytes = 65536;
+
+    @Value("${admin.export.writer.stall.timeout.seconds:300}")
+    protected long writerStallTimeoutSeconds = 300;
+
+    @Value("${admin.export.job.threads:2}")
+    protected int jobThreads = 2;
+
+    @Value("${admin.export.job.retention.minutes:60}")
+    protected long jobRetentionMinutes = 60;
+
+    protected final ConcurrentMap<String, AdminExportJob> jobs = new ConcurrentHashMap<String, AdminExportJob>();
+    protected final ConcurrentMap<String, Future<?>> jobFutures = new ConcurrentHashMap<String, Future<?>>();
+    protected volatile ExecutorService writerExecutor;
+    protected volatile ExecutorService jobExecutor;
+
+    @Override
+    public long export(StreamingExportDefinition definition, String format, OutputStream out) throws IOException, ServiceException {
+        return export(definition, createRowWriter(format, out), null);
+    }
+
+    @Override
+    public ExportRowWriter createRowWriter(String format, OutputStream out) {
+        if (format == null || CsvExportRowWriter.FORMAT.equalsIgnoreCase(format)) {
+            return new CsvExportRowWriter(out, writerBufferBytes);
+        }
+        if (JsonLinesExportRowWriter.FORMAT.equalsIgnoreCase(format)) {
+            return new JsonLinesExportRowWriter(out, writerBufferBytes);
+        }
+        throw new IllegalArgumentException("Unsupported export format: " + format);
+    }
+
+    protected long export(StreamingExportDefinition definition, final ExportRowWriter rowWriter, final AdminExportJob job)
+            throws IOException, ServiceException {
+        if (job != null) {
+            job.setContentType(rowWriter.getContentType());
+        }
+        final BlockingQueue<List<List<String>>> pages = new ArrayBlockingQueue<List<List<String>>>(Math.max(1, bufferedPages));
+        final List<String> header = definition.getColumnLabels();
+        Future<Long> writerResult = getWriterExecutor().submit(new Callable<Long>() {
+
+            @Override
+            public Long call() throws Exception {
+                return drain(rowWriter, header, pages, job);
+            }
+        });
+        boolean complete = false;
+        try {
+            readPages(definition, pages, writerResult, job);
+            enqueue(pages, END_OF_ROWS, writerResult);
+            long count = awaitWriter(writerResult);
+            complete = true;
+            return count;
+        } finally {
+            if (!complete) {
+                writerResult.cancel(true);
+            }
+        }
+    }
+
+    protected void readPages(StreamingExportDefinition definition, BlockingQueue<List<List<String>>> pages,
+            Future<Long> writerResult, AdminExportJob job) throws IOException, ServiceException {
+        Long lastId = null;
+        while (true) {
+            if (writerResult.isDone()) {
+                awaitWriter(writerResult);
+                throw new IOException("The export writer stopped before all rows were read");
+            }
+            if (job != null && job.isCancelRequested()) {
+                throw new CancellationException("Export job " + job.getId() + " was cancelled");
+            }
+            Entity[] records = fetchPage(definition, lastId).getRecords();
+            if (ArrayUtils.isEmpty(records)) {
+                return;
+            }
+            List<List<String>> page = new ArrayList<List<String>>(records.length);
+            for (Entity record : records) {
+                page.add(extractRow(definition, record));
+            }
+            enqueue(pages, page, writerResult);
+            if (records.length < pageSize) {
+                return;
+            }
+            Long nextLastId = readId(definition, records[records.length - 1]);
+            if (lastId != null && nextLastId <= lastId) {
+                throw new ServiceException("Export of " + definition.getCeilingEntityClassname() + " did not advance past id "
+                        + lastId + ". Make sure the id property is not also used as a filter or sort.");
+            }
+            lastId = nextLastId;
+        }
+    }
+
+    protected DynamicResultSet fetchPage(StreamingExportDefinition definition, Long lastId) throws ServiceException {
+        FilterAndSortCriteria keyCriteria = new FilterAndSortCriteria(definition.getIdProperty());
+        keyCriteria.setSortDirection(SortDirection.ASCENDING);
+        if (lastId != null) {
+            keyCriteria.setFilterValue((lastId + 1) + FilterMapping.RANGE_SPECIFIER_REGEX + Long.MAX_VALUE);
+            keyCriteria.setRestrictionType(RestrictionType.LONG);
+        }
+        List<FilterAndSortCriteria> criteria = new ArrayList<FilterAndSortCriteria>(definition.getFilterCriteria().size() + 1);
+        for (FilterAndSortCriteria filter : definition.getFilterCriteria()) {
+            criteria.add(copyWithoutSort(filter));
+        }
+        criteria.add(keyCriteria);
+
+        PersistencePackageRequest request = PersistencePackageRequest.standard()
+                .withCeilingEntityClassname(definition.getCeilingEntityClassname())
+                .withFilterAndSortCriteria(criteria.toArray(new FilterAndSortCriteria[criteria.size()]))
+                .withStartIndex(0)
+                .withMaxResults(pageSize);
+        return adminEntityService.getRecords(request).getDynamicResultSet();
+    }
+
+    /**
+     * Pages must be ordered by the id alone. A sort on any other property would order rows sharing that property's
+     * value by id only within a page, and the id range of the next page would then skip or repeat rows.
+     */
+    protected FilterAndSortCriteria copyWithoutSort(FilterAndSortCriteria filter) {
+        if (filter.getSortDirection() == null) {
+            return filter;
+        }
+        List<String> values = new ArrayList<String>(filter.getFilterValues());
+        values.addAll(filter.getSpecialFilterValues());
+        FilterAndSortCriteria copy = new FilterAndSortCriteria(filter.getPropertyId(), values);
+        copy.setRestrictionType(filter.getRestrictionType());
+        return copy;
+    }
+
+    protected List<String> extractRow(StreamingExportDefinition definition, Entity record) {
+        Map<String, Property> properties = record.getPMap();
+        List<String> row = new ArrayList<String>(definition.getColumns().size());
+        for (String column : definition.getColumns()) {
+            Property property = properties.get(column);
+            String value = null;
+            if (property != null) {
+                value = definition.isUseDisplayValues() && property.getDisplayValue() != null ? property.getDisplayValue()
+                        : property.getValue();
+            }
+            row.add(value);
+        }
+        return row;
+    }
+
+    protected Long readId(StreamingExportDefinition definition, Entity record) throws ServiceException {
+        Property idProperty = record.getPMap().get(definition.getIdProperty());
+        if (idProperty == null || idProperty.getValue() == null) {
+            throw new ServiceException("Unable to read the id property (" + definition.getIdProperty() + ") of an exported "
+                    + definition.getCeilingEntityClassname());
+        }
+        try {
+            return Long.parseLong(idProperty.getValue());
+        } catch (NumberFormatException e) {
+            throw new ServiceException("Streaming exports require a numeric id property, but " + definition.getIdProperty()
+                    + " was " + idProperty.getValue(), e);
+        }
+    }
+
+    /**
+     * Hand a page to the writer, waiting while the queue is full. Gives up if the writer has died or has not taken
+     * anything for longer than the configured stall timeout.
+     */
+    protected void enqueue(BlockingQueue<List<List<String>>> pages, List<List<String>> page, Future<Long> writerResult)
+            throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(writerStallTimeoutSeconds);
+        try {
+            while (!pages.offer(page, 1, TimeUnit.SECONDS)) {
+                if (writerResult.isDone()) {
+                    awaitWriter(writerResult);
+                    throw new IOException("The export writer stopped before all rows were read");
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("The export writer did not accept a page for " + writerStallTimeoutSeconds
+                            + " seconds");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on the export writer");
+        }
+    }
+
+    protected long drain(ExportRowWriter rowWriter, List<String> header, BlockingQueue<List<List<String>>> pages,
+            AdminExportJob job) throws IOException, InterruptedException {
+        rowWriter.writeHeader(header);
+        long count = 0;
+        while (true) {
+            List<List<String>> page = pages.take();
+            if (page == END_OF_ROWS) {
+                break;
+            }
+            for (List<String> row : page) {
+                rowWriter.writeRow(row);
+            }
+            rowWriter.flush();
+            count += page.size();
+            if (job != null) {
+                job.setRowCount(count);
+            }
+        }
+        rowWriter.finish();
+        return count;
+    }
+
+    protected long awaitWriter(Future<Long> writerResult) throws IOException {
+        try {
+            return writerResult.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on the export writer");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("The export writer failed", cause);
+        }
+    }
+
+    @Override
+    public AdminExportJob submitExportJob(final StreamingExportDefinition definition, final String format, String fileName) {
+        purgeExpiredJobs();
+        final AdminExportJob job = new AdminExportJob(UUID.randomUUID().toString(), fileName);
+        AdminUser adminUser = adminRemoteSecurityService.getPersistentAdminUser();
+        job.setAdminUserId(adminUser == null ? null : adminUser.getId());
+        jobs.put(job.getId(), job);
+
+        BroadleafRequestContext currentContext = BroadleafRequestContext.getBroadleafRequestContext();
+        final BroadleafRequestContext context = currentContext == null ? null : currentContext.createLightWeightClone();
+        final SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+
+        Future<?> future = getJobExecutor().submit(new Runnable() {
+
+            @Override
+            public void run() {
+                if (context != null) {
+                    BroadleafRequestContext.setBroadleafRequestContext(context);
+                }
+                SecurityContextHolder.setContext(securityContext);
+                try {
+                    transUtil.runOptionalEntityManagerInViewOperation(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            runExportJob(job, definition, format);
+                        }
+                    });
+                } finally {
+                    jobFutures.remove(job.getId());
+                    SecurityContextHolder.clearContext();
+                    ThreadLocalManager.remove();
+                }
+            }
+        });
+        jobFutures.put(job.getId(), future);
+        if (future.isDone()) {
+            jobFutures.remove(job.getId());
+        }
+        return job;
+    }
+
+    protected void runExportJob(AdminExportJob job, StreamingExportDefinition definition, String format) {
+        if (!job.start()) {
+            return;
+        }
+        FileWorkArea workArea = broadleafFileService.initializeWorkArea();
+        File file = null;
+        try {
+            File directory = new File(workArea.getFilePathLocation() + "admin-export" + File.separator + job.getId());
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Unable to create the export directory " + directory.getAbsolutePath());
+            }
+            file = new File(directory, job.getFileName());
+            long count;
+            OutputStream out = new FileOutputStream(file);
+            try {
+                count = export(definition, createRowWriter(format, out), job);
+            } finally {
+                out.close();
+            }
+            job.setResourceName(broadleafFileService.addOrUpdateResourceForPath(workArea, file, true));
+            job.setRowCount(count);
+            job.setStatus(AdminExportJob.Status.COMPLETE);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Export job " + job.getId() + " wrote " + count + " rows to " + job.getResourceName());
+            }
+        } catch (Exception e) {
+            if (job.isCancelRequested()) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Export job " + job.getId() + " was cancelled after " + job.getRowCount() + " rows");
+                }
+                job.setStatus(AdminExportJob.Status.CANCELLED);
+            } else {
+                LOG.error("Export job " + job.getId() + " for " + definition.getCeilingEntityClassname() + " failed", e);
+                job.setErrorMessage(e.getMessage());
+                job.setStatus(AdminExportJob.Status.FAILED);
+            }
+            if (file != null && file.exists() && !file.delete()) {
+                LOG.warn("Unable to remove the partial export file " + file.getAbsolutePath());
+            }
+        } finally {
+            job.setCompletedTime(System.currentTimeMillis());
+            broadleafFileService.closeWorkArea(workArea);
+        }
+    }
+
+    @Override
+    public boolean cancelExportJob(String jobId) {
+        AdminExportJob job = getExportJob(jobId);
+        if (job == null || !job.cancel()) {
+            return false;
+        }
+        Future<?> future = jobFutures.remove(jobId);
+        if (future != null) {
+            future.cancel(true);
+        }
+        return true;
+    }
+
+    @Override
+    public AdminExportJob getExportJob(String jobId) {
+        return jobId == null ? null : jobs.get(jobId);
+    }
+
+    @Override
+    public File getExportJobResult(String jobId) {
+        AdminExportJob job = getExportJob(jobId);
+        if (job == null || job.getStatus() != AdminExportJob.Status.COMPLETE) {
+            return null;
+        }
+        return broadleafFileService.getResource(job.getResourceName());
+    }
+
+    /**
+     * Forget finished jobs older than the retention period and remove their files
+     */
+    protected void purgeExpiredJobs() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(jobRetentionMinutes);
+        for (Iterator<AdminExportJob> itr = jobs.values().iterator(); itr.hasNext();) {
+            AdminExportJob job = itr.next();
+            if (job.isDone() && job.getCompletedTime() < cutoff) {
+                itr.remove();
+                if (job.getResourceName() != null) {
+                    try {
+                        broadleafFileService.removeResource(job.getResourceName());
+                    } catch (Exception e) {
+                        LOG.warn("Unable to remove expired export file " + job.getResourceName(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    protected ExecutorService getWriterExecutor() {
+        if (writerExecutor == null) {
+            synchronized (this) {
+                if (writerExecutor == null) {
+                    writerExecutor = Executors.newCachedThreadPool(buildThreadFactory("admin-export-writer-"));
+                }
+            }
+        }
+        return writerExecutor;
+    }
+
+    protected ExecutorService getJobExecutor() {
+        if (jobExecutor == null) {
+            synchronized (this) {
+                if (jobExecutor == null) {
+                    jobExecutor = Executors.newFixedThreadPool(Math.max(1, jobThreads), buildThreadFactory("admin-export-job-"));
+                }
+            }
+        }
+        return jobExecutor;
+    }
+
+    protected ThreadFactory buildThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+
+            protected final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (writerExecutor != null) {
+            writerExecutor.shutdownNow();
+        }
+        if (jobExecutor != null) {
+            jobExecutor.shutdownNow();
+        }
+    }
+
+}
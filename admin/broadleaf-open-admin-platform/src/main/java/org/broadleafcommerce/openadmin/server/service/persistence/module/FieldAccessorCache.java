@@ -0,0 +1,208 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.persistence.module;
+
+import org.broadleafcommerce.common.util.BLCFieldUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled property accessors used by {@link FieldManager}. Property paths (e.g. "defaultSku.retailPrice" or
+ * "productAttributes---color") are parsed once into {@link PathSegment}s, and each (class, field name) pair is resolved
+ * once into a {@link FieldAccessor} backed by MethodHandles. Traversal still happens against the runtime class of each
+ * intermediate value, so polymorphic and embedded values resolve the same way as a reflective walk would.
+ * </p>
+ * The cache is cleared by {@link org.broadleafcommerce.openadmin.server.dao.SessionFactoryChangeListener} when the
+ * session factory is recycled, along with the other static metadata caches.
+ */
+public class FieldAccessorCache {
+
+    protected static final int MAX_PATHS = 10000;
+    protected static final FieldAccessor NULL_ACCESSOR = new FieldAccessor();
+
+    protected static final ConcurrentMap<Class<?>, ConcurrentMap<String, FieldAccessor>> ACCESSORS = new ConcurrentHashMap<>();
+    protected static final ConcurrentMap<String, PathSegment[]> PATHS = new ConcurrentHashMap<>();
+
+    /**
+     * @return the accessor for the field declared by the class or one of its superclasses, or null if there is no such field
+     */
+    public static FieldAccessor getAccessor(Class<?> clazz, String fieldName) {
+        ConcurrentMap<String, FieldAccessor> accessors = ACCESSORS.get(clazz);
+        if (accessors == null) {
+            accessors = new ConcurrentHashMap<>();
+            ConcurrentMap<String, FieldAccessor> existing = ACCESSORS.putIfAbsent(clazz, accessors);
+            if (existing != null) {
+                accessors = existing;
+            }
+        }
+        FieldAccessor accessor = accessors.get(fieldName);
+        if (accessor == null) {
+            Field field = BLCFieldUtils.getSingleField(clazz, fieldName);
+            accessor = field == null ? NULL_ACCESSOR : new FieldAccessor(field);
+            accessors.put(fieldName, accessor);
+        }
+        return accessor == NULL_ACCESSOR ? null : accessor;
+    }
+
+    /**
+     * @return the dot delimited property path split into segments, with any map key separated from the field name
+     */
+    public static PathSegment[] getPath(String propertyPath) {
+        PathSegment[] path = PATHS.get(propertyPath);
+        if (path == null) {
+            List<PathSegment> segments = new ArrayList<>();
+            StringTokenizer tokens = new StringTokenizer(propertyPath, ".");
+            while (tokens.hasMoreTokens()) {
+                segments.add(new PathSegment(tokens.nextToken()));
+            }
+            path = segments.toArray(new PathSegment[segments.size()]);
+            if (PATHS.size() >= MAX_PATHS) {
+                PATHS.clear();
+            }
+            PATHS.put(propertyPath, path);
+        }
+        return path;
+    }
+
+    public static void clear() {
+        ACCESSORS.clear();
+        PATHS.clear();
+    }
+
+    /**
+     * Reads and writes a single field. The getter and setter are MethodHandles adapted to (Object)Object and
+     * (Object,Object)void so they can be invoked exactly without boxing the handle arguments. Final fields, which
+     * cannot be unreflected as setters, are written reflectively.
+     */
+    public static class FieldAccessor {
+
+        protected final Field field;
+        protected final MethodHandle getter;
+        protected final MethodHandle setter;
+
+        protected FieldAccessor() {
+            field = null;
+            getter = null;
+            setter = null;
+        }
+
+        public FieldAccessor(Field field) {
+            this.field = field;
+            field.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle getter;
+            try {
+                getter = lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                getter = null;
+            }
+            MethodHandle setter;
+            try {
+                setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                setter = null;
+            }
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public Object get(Object bean) throws IllegalAccessException {
+            if (getter == null) {
+                return field.get(bean);
+            }
+            try {
+                return (Object) getter.invokeExact(bean);
+            } catch (ClassCastException e) {
+                throw new IllegalArgumentException(buildMismatchMessage(bean), e);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public void set(Object bean, Object value) throws IllegalAccessException {
+            if (setter == null || (value == null && field.getType().isPrimitive())) {
+                field.set(bean, value);
+                return;
+            }
+            try {
+                setter.invokeExact(bean, value);
+            } catch (ClassCastException e) {
+                throw new IllegalArgumentException(buildMismatchMessage(bean) + " or the value type ("
+                        + value.getClass().getName() + ")", e);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        protected String buildMismatchMessage(Object bean) {
+            return "The field (" + field.getName() + ") declared by (" + field.getDeclaringClass().getName()
+                    + ") does not match the target type (" + (bean == null ? null : bean.getClass().getName()) + ")";
+        }
+    }
+
+    /**
+     * A single part of a property path. The name is the field name with any map key removed. The token is the part as
+     * it appeared in the path.
+     */
+    public static class PathSegment {
+
+        protected final String token;
+        protected final String name;
+        protected final String mapKey;
+
+        public PathSegment(String token) {
+            this.token = token;
+            int separator = token.indexOf(FieldManager.MAPFIELDSEPARATOR);
+            if (separator >= 0) {
+                name = token.substring(0, separator);
+                mapKey = token.substring(separator + FieldManager.MAPFIELDSEPARATOR.length());
+            } else {
+                name = token;
+                mapKey = null;
+            }
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getMapKey() {
+            return mapKey;
+        }
+    }
+}
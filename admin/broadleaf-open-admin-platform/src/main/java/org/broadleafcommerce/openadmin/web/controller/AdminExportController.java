@@ -17,13 +17,20 @@
  */
 package org.broadleafcommerce.openadmin.web.controller;
 
+import org.apache.commons.io.FileUtils;
+import org.broadleafcommerce.common.web.JsonResponse;
+import org.broadleafcommerce.openadmin.server.service.export.AbstractStreamingAdminExporter;
+import org.broadleafcommerce.openadmin.server.service.export.AdminExportJob;
 import org.broadleafcommerce.openadmin.server.service.export.AdminExporter;
+import org.broadleafcommerce.openadmin.server.security.domain.AdminUser;
+import org.broadleafcommerce.openadmin.server.service.export.StreamingExportService;
 import org.springframework.web.servlet.ModelAndView;
 
 import javax.annotation.Resource;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
@@ -37,17 +44,11 @@ public class AdminExportController extends AdminAbstractController {
     @Resource(name = "blAdminExporters")
     protected List<AdminExporter> exporters;
 
+    @Resource(name = "blStreamingExportService")
+    protected StreamingExportService streamingExportService;
+
     public ModelAndView export(HttpServletRequest request, HttpServletResponse response, Map<String, String> params) throws IOException {
-        String exporterName = params.get("exporter");
-        AdminExporter exporter = null;
-        for (AdminExporter test : exporters) {
-            if (test.getName().equals(exporterName)) {
-                exporter = test;
-            }
-        }
-        if (exporter == null) {
-            throw new RuntimeException("Could not find exporter with name: " + exporterName);
-        }
+        AdminExporter exporter = findExporter(params.get("exporter"));
         
         response.setContentType("application/download");
         String fileName = exporter.getFileName();
@@ -60,6 +61,92 @@ public class AdminExportController extends AdminAbstractController {
         return null;
     }
 
+    /**
+     * Start the export in the background. Only exporters extending {@link AbstractStreamingAdminExporter} support this.
+     * The response contains the id of the job, which can be passed to {@link #exportJobStatus},
+     * {@link #cancelExportJob} and {@link #downloadExportJob}.
+     */
+    public String submitExportJob(HttpServletRequest request, HttpServletResponse response, Map<String, String> params) throws IOException {
+        AdminExporter exporter = findExporter(params.get("exporter"));
+        if (!(exporter instanceof AbstractStreamingAdminExporter)) {
+            throw new RuntimeException("Exporter " + exporter.getName() + " does not support background exports");
+        }
+        AdminExportJob job = ((AbstractStreamingAdminExporter) exporter).submitExport(params);
+        return buildJobResponse(response, job);
+    }
+
+    public String exportJobStatus(HttpServletRequest request, HttpServletResponse response, String jobId) throws IOException {
+        AdminExportJob job = findExportJob(jobId);
+        if (job == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        return buildJobResponse(response, job);
+    }
+
+    public String cancelExportJob(HttpServletRequest request, HttpServletResponse response, String jobId) throws IOException {
+        AdminExportJob job = findExportJob(jobId);
+        if (job == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        streamingExportService.cancelExportJob(jobId);
+        return buildJobResponse(response, job);
+    }
+
+    public ModelAndView downloadExportJob(HttpServletRequest request, HttpServletResponse response, String jobId) throws IOException {
+        AdminExportJob job = findExportJob(jobId);
+        File file = job == null ? null : streamingExportService.getExportJobResult(jobId);
+        if (file == null || !file.exists()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+
+        response.setContentType(job.getContentType() == null ? "application/download" : job.getContentType());
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + job.getFileName() + "\"");
+        response.setContentLengthLong(file.length());
+
+        ServletOutputStream stream = response.getOutputStream();
+        FileUtils.copyFile(file, stream);
+        stream.flush();
+
+        return null;
+    }
+
+    /**
+     * @param jobId
+     * @return the job, or null if it does not exist or was not submitted by the current admin user
+     */
+    protected AdminExportJob findExportJob(String jobId) {
+        AdminExportJob job = streamingExportService.getExportJob(jobId);
+        if (job == null) {
+            return null;
+        }
+        AdminUser adminUser = adminRemoteSecurityService.getPersistentAdminUser();
+        if (adminUser == null || job.getAdminUserId() == null || !job.getAdminUserId().equals(adminUser.getId())) {
+            return null;
+        }
+        return job;
+    }
+
+    protected String buildJobResponse(HttpServletResponse response, AdminExportJob job) {
+        return new JsonResponse(response)
+                .with("jobId", job.getId())
+                .with("status", job.getStatus().name())
+                .with("rowCount", job.getRowCount())
+                .with("errorMessage", job.getErrorMessage())
+                .done();
+    }
+
+    protected AdminExporter findExporter(String exporterName) {
+        for (AdminExporter test : exporters) {
+            if (test.getName().equals(exporterName)) {
+                return test;
+            }
+        }
+        throw new RuntimeException("Could not find exporter with name: " + exporterName);
+    }
+
     public List<AdminExporter> getExporters() {
         return exporters;
     }
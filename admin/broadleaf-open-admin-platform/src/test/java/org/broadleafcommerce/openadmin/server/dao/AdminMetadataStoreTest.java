@@ -0,0 +1,183 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.dao;
+
+import org.broadleafcommerce.openadmin.dto.BasicFieldMetadata;
+import org.broadleafcommerce.openadmin.dto.FieldMetadata;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class AdminMetadataStoreTest extends TestCase {
+
+    protected File storeFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        AdminMetadataStore.clear();
+        storeFile = File.createTempFile("admin-metadata", ".ser");
+        storeFile.delete();
+        Payload.resolved = false;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        AdminMetadataStore.clear();
+        storeFile.delete();
+    }
+
+    public void testSaveAndLoadRoundTrip() throws Exception {
+        AdminMetadataStore store = buildStore("1");
+        store.put("org.broadleafcommerce.core.catalog.domain.Product", buildMetadata("name", "Product Name"));
+        store.save(storeFile);
+        assertTrue(storeFile.exists());
+
+        AdminMetadataStore.clear();
+        assertNull(store.get("org.broadleafcommerce.core.catalog.domain.Product"));
+
+        AdminMetadataStore loaded = buildStore("1");
+        loaded.load(storeFile);
+
+        assertTrue(loaded.isLoadedFromFile());
+        Map<String, FieldMetadata> metadata = loaded.get("org.broadleafcommerce.core.catalog.domain.Product");
+        assertNotNull(metadata);
+        assertEquals(1, metadata.size());
+        assertEquals("Product Name", metadata.get("name").getFriendlyName());
+        try {
+            metadata.put("other", new BasicFieldMetadata());
+            fail("Loaded entries should be unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testFingerprintMismatchIgnoresFile() throws Exception {
+        AdminMetadataStore store = buildStore("1");
+        store.put("org.broadleafcommerce.core.catalog.domain.Product", buildMetadata("name", "Product Name"));
+        store.save(storeFile);
+        AdminMetadataStore.clear();
+
+        AdminMetadataStore newVersion = buildStore("2");
+        newVersion.load(storeFile);
+        assertFalse(newVersion.isLoadedFromFile());
+        assertEquals(0, newVersion.getSize());
+
+        AdminMetadataStore newConfiguration = buildStore("1");
+        newConfiguration.propertyConfigurations.put("admin.entity.Product.name", "Title");
+        newConfiguration.load(storeFile);
+        assertFalse(newConfiguration.isLoadedFromFile());
+        assertEquals(0, newConfiguration.getSize());
+    }
+
+    public void testInvalidateBumpsVersion() throws Exception {
+        AdminMetadataStore store = buildStore("1");
+        store.put("org.broadleafcommerce.core.catalog.domain.Product", buildMetadata("name", "Product Name"));
+        long version = store.getVersion();
+
+        store.invalidate();
+
+        assertEquals(version + 1, store.getVersion());
+        assertEquals(0, store.getSize());
+        assertNull(store.get("org.broadleafcommerce.core.catalog.domain.Product"));
+    }
+
+    /**
+     * A store file whose fingerprint matches but which carries a class outside the metadata packages is refused
+     * before that class is instantiated
+     */
+    public void testUnexpectedClassesAreNotLoaded() throws Exception {
+        AdminMetadataStore store = buildStore("1");
+        Map<String, Object> entries = new HashMap<>();
+        entries.put("org.broadleafcommerce.core.catalog.domain.Product", new Payload());
+        ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile)));
+        try {
+            oos.writeObject(store.buildFingerprint());
+            oos.writeObject(entries);
+        } finally {
+            oos.close();
+        }
+
+        store.load(storeFile);
+
+        assertFalse(Payload.resolved);
+        assertFalse(store.isLoadedFromFile());
+        assertEquals(0, store.getSize());
+    }
+
+    public void testAllowedClasses() throws Exception {
+        AdminMetadataStore.MetadataObjectInputStream ois = new AdminMetadataStore.MetadataObjectInputStream(
+                new ByteArrayInputStream(emptyStream()));
+        assertTrue(ois.isAllowed(BasicFieldMetadata.class.getName()));
+        assertTrue(ois.isAllowed("java.util.Collections$UnmodifiableMap"));
+        assertTrue(ois.isAllowed("[Ljava.lang.String;"));
+        assertTrue(ois.isAllowed("[I"));
+        assertTrue(ois.isAllowed("org.broadleafcommerce.common.presentation.client.SupportedFieldType"));
+        assertFalse(ois.isAllowed(Payload.class.getName()));
+        assertFalse(ois.isAllowed("[L" + Payload.class.getName() + ";"));
+        assertFalse(ois.isAllowed("java.util.concurrent.ConcurrentHashMap"));
+        assertFalse(ois.isAllowed("java.lang.reflect.Proxy"));
+        assertFalse(ois.isAllowed("org.broadleafcommerce.openadmin.dtox.Other"));
+    }
+
+    protected byte[] emptyStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ObjectOutputStream(out).close();
+        return out.toByteArray();
+    }
+
+    protected AdminMetadataStore buildStore(String version) {
+        AdminMetadataStore store = new AdminMetadataStore();
+        store.enabled = true;
+        store.storeVersion = version;
+        store.propertyConfigurations.put("admin.entity.Product.name", "Name");
+        return store;
+    }
+
+    protected Map<String, FieldMetadata> buildMetadata(String name, String friendlyName) {
+        BasicFieldMetadata metadata = new BasicFieldMetadata();
+        metadata.setName(name);
+        metadata.setFriendlyName(friendlyName);
+        Map<String, FieldMetadata> response = new HashMap<>();
+        response.put(name, metadata);
+        return response;
+    }
+
+    public static class Payload implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static volatile boolean resolved;
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            resolved = true;
+            in.defaultReadObject();
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class CsvExportRowWriterTest extends TestCase {
+
+    protected String write(String... values) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvExportRowWriter writer = new CsvExportRowWriter(out, 16);
+        writer.writeRow(Arrays.asList(values));
+        writer.finish();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    public void testPlainValuesAreNotQuoted() throws Exception {
+        assertEquals("a,b c,1.5\r\n", write("a", "b c", "1.5"));
+    }
+
+    public void testNullAndEmptyValuesAreBlank() throws Exception {
+        assertEquals(",,x\r\n", write(null, "", "x"));
+    }
+
+    public void testCommaIsQuoted() throws Exception {
+        assertEquals("\"Smith, John\",x\r\n", write("Smith, John", "x"));
+    }
+
+    public void testQuotesAreDoubled() throws Exception {
+        assertEquals("\"say \"\"hi\"\"\",\"\"\"\"\r\n", write("say \"hi\"", "\""));
+    }
+
+    public void testLineBreaksAreQuoted() throws Exception {
+        assertEquals("\"line 1\nline 2\",\"a\r\nb\",\"c\rd\"\r\n", write("line 1\nline 2", "a\r\nb", "c\rd"));
+    }
+
+    public void testMultiByteValuesAreWrittenAsUtf8() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvExportRowWriter writer = new CsvExportRowWriter(out, 4);
+        writer.writeHeader(Arrays.asList("name"));
+        writer.writeRow(Arrays.asList("caf\u00e9, cr\u00e8me"));
+        writer.finish();
+        assertEquals("name\r\n\"caf\u00e9, cr\u00e8me\"\r\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,352 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.export;
+
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.file.domain.FileWorkArea;
+import org.broadleafcommerce.common.file.service.BroadleafFileService;
+import org.broadleafcommerce.common.util.StreamingTransactionCapableUtil;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.openadmin.dto.DynamicResultSet;
+import org.broadleafcommerce.openadmin.dto.Entity;
+import org.broadleafcommerce.openadmin.dto.FilterAndSortCriteria;
+import org.broadleafcommerce.openadmin.dto.Property;
+import org.broadleafcommerce.openadmin.dto.SortDirection;
+import org.broadleafcommerce.openadmin.server.domain.PersistencePackageRequest;
+import org.broadleafcommerce.openadmin.server.security.domain.AdminUser;
+import org.broadleafcommerce.openadmin.server.security.domain.AdminUserImpl;
+import org.broadleafcommerce.openadmin.server.security.remote.SecurityVerifier;
+import org.broadleafcommerce.openadmin.server.service.AdminEntityService;
+import org.broadleafcommerce.openadmin.server.service.persistence.PersistenceResponse;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.FilterMapping;
+import org.broadleafcommerce.openadmin.server.service.persistence.module.criteria.RestrictionType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class StreamingExportServiceImplTest extends TestCase {
+
+    protected static final String ENTITY = "org.broadleafcommerce.core.catalog.domain.Product";
+    protected static final String[] NAMES = {"b", "a", "b", "a", "b", "a", "a", "b", "a", "b"};
+
+    protected StreamingExportServiceImpl service;
+    protected FakeRecords records;
+    protected File workDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        records = new FakeRecords(NAMES);
+        workDirectory = Files.createTempDirectory("admin-export-test").toFile();
+        service = new StreamingExportServiceImpl();
+        service.adminEntityService = (AdminEntityService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { AdminEntityService.class }, records);
+        service.broadleafFileService = buildFileService(workDirectory);
+        final AdminUser adminUser = new AdminUserImpl();
+        adminUser.setId(7L);
+        service.adminRemoteSecurityService = (SecurityVerifier) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { SecurityVerifier.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return "getPersistentAdminUser".equals(method.getName()) ? adminUser : null;
+                    }
+                });
+        service.transUtil = new StreamingTransactionCapableUtil() {
+
+            @Override
+            public void runOptionalEntityManagerInViewOperation(Runnable runnable) {
+                runnable.run();
+            }
+        };
+        service.pageSize = 3;
+        service.writerStallTimeoutSeconds = 10;
+        service.jobThreads = 1;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        records.release.countDown();
+        service.destroy();
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+        deleteRecursively(workDirectory);
+    }
+
+    /**
+     * Sorting on a column with repeated values must not change which rows land on which page
+     */
+    public void testKeysetPagingAcrossDuplicateSortKeys() throws Exception {
+        FilterAndSortCriteria nameSort = new FilterAndSortCriteria("name");
+        nameSort.setSortDirection(SortDirection.ASCENDING);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = service.export(buildDefinition().addFilterCriteria(nameSort), CsvExportRowWriter.FORMAT, out);
+
+        assertEquals(10, count);
+        assertEquals(expectedCsv(1, 10), new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(4, records.requests.size());
+        for (PersistencePackageRequest request : records.requests) {
+            assertEquals(Integer.valueOf(3), request.getMaxResults());
+            for (FilterAndSortCriteria criteria : request.getFilterAndSortCriteria()) {
+                if (!"id".equals(criteria.getPropertyId())) {
+                    assertNull(criteria.getSortDirection());
+                }
+            }
+        }
+    }
+
+    public void testKeysetPagingEndsOnAnEmptyPage() throws Exception {
+        records = new FakeRecords(Arrays.copyOf(NAMES, 9));
+        service.adminEntityService = (AdminEntityService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { AdminEntityService.class }, records);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(9, service.export(buildDefinition(), CsvExportRowWriter.FORMAT, out));
+        assertEquals(expectedCsv(1, 9), new String(out.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(4, records.requests.size());
+    }
+
+    public void testJobStateTransitions() {
+        AdminExportJob job = new AdminExportJob("1", "export.csv");
+        assertEquals(AdminExportJob.Status.QUEUED, job.getStatus());
+        assertTrue(job.start());
+        assertEquals(AdminExportJob.Status.RUNNING, job.getStatus());
+        assertFalse(job.start());
+        assertTrue(job.cancel());
+        assertTrue(job.isCancelRequested());
+        assertEquals(AdminExportJob.Status.RUNNING, job.getStatus());
+        job.setStatus(AdminExportJob.Status.CANCELLED);
+        assertTrue(job.isDone());
+        assertFalse(job.cancel());
+
+        AdminExportJob queued = new AdminExportJob("2", "export.csv");
+        assertTrue(queued.cancel());
+        assertEquals(AdminExportJob.Status.CANCELLED, queued.getStatus());
+        assertTrue(queued.getCompletedTime() > 0);
+        assertFalse(queued.start());
+    }
+
+    public void testJobCompletes() throws Exception {
+        AdminExportJob job = service.submitExportJob(buildDefinition(), CsvExportRowWriter.FORMAT, "products.csv");
+        awaitDone(job);
+
+        assertEquals(AdminExportJob.Status.COMPLETE, job.getStatus());
+        assertEquals(10, job.getRowCount());
+        assertNull(job.getErrorMessage());
+        assertEquals(Long.valueOf(7L), job.getAdminUserId());
+        File result = service.getExportJobResult(job.getId());
+        assertNotNull(result);
+        assertEquals(expectedCsv(1, 10), new String(Files.readAllBytes(result.toPath()), StandardCharsets.UTF_8));
+        assertFalse(service.cancelExportJob(job.getId()));
+        assertEquals(AdminExportJob.Status.COMPLETE, job.getStatus());
+    }
+
+    public void testJobFails() throws Exception {
+        records.failOnRequest = 2;
+        AdminExportJob job = service.submitExportJob(buildDefinition(), CsvExportRowWriter.FORMAT, "products.csv");
+        awaitDone(job);
+
+        assertEquals(AdminExportJob.Status.FAILED, job.getStatus());
+        assertEquals("page unavailable", job.getErrorMessage());
+        assertNull(service.getExportJobResult(job.getId()));
+        assertFalse(new File(partialFilePath(job)).exists());
+    }
+
+    public void testRunningJobIsCancelled() throws Exception {
+        records.blockOnRequest = 2;
+        AdminExportJob job = service.submitExportJob(buildDefinition(), CsvExportRowWriter.FORMAT, "products.csv");
+        assertTrue(records.blocked.await(10, TimeUnit.SECONDS));
+        assertEquals(AdminExportJob.Status.RUNNING, job.getStatus());
+
+        assertTrue(service.cancelExportJob(job.getId()));
+        awaitDone(job);
+
+        assertEquals(AdminExportJob.Status.CANCELLED, job.getStatus());
+        assertNull(job.getErrorMessage());
+        assertNull(service.getExportJobResult(job.getId()));
+        assertFalse(new File(partialFilePath(job)).exists());
+        assertEquals(2, records.requests.size());
+    }
+
+    public void testQueuedJobIsCancelledBeforeItStarts() throws Exception {
+        records.blockOnRequest = 1;
+        AdminExportJob running = service.submitExportJob(buildDefinition(), CsvExportRowWriter.FORMAT, "first.csv");
+        assertTrue(records.blocked.await(10, TimeUnit.SECONDS));
+        AdminExportJob queued = service.submitExportJob(buildDefinition(), CsvExportRowWriter.FORMAT, "second.csv");
+
+        assertTrue(service.cancelExportJob(queued.getId()));
+        assertEquals(AdminExportJob.Status.CANCELLED, queued.getStatus());
+        assertFalse(service.cancelExportJob(queued.getId()));
+
+        records.release.countDown();
+        awaitDone(running);
+        assertEquals(AdminExportJob.Status.COMPLETE, running.getStatus());
+        assertEquals(AdminExportJob.Status.CANCELLED, queued.getStatus());
+        assertEquals(4, records.requests.size());
+    }
+
+    protected StreamingExportDefinition buildDefinition() {
+        return new StreamingExportDefinition()
+                .withCeilingEntityClassname(ENTITY)
+                .withColumns("id", "name")
+                .withColumnLabels("Id", "Name");
+    }
+
+    protected String expectedCsv(int firstId, int lastId) {
+        StringBuilder sb = new StringBuilder("Id,Name\r\n");
+        for (int id = firstId; id <= lastId; id++) {
+            sb.append(id).append(',').append(NAMES[id - 1]).append("\r\n");
+        }
+        return sb.toString();
+    }
+
+    protected String partialFilePath(AdminExportJob job) {
+        return workDirectory.getAbsolutePath() + File.separator + "admin-export" + File.separator + job.getId()
+                + File.separator + job.getFileName();
+    }
+
+    protected void awaitDone(AdminExportJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!job.isDone()) {
+            assertTrue("Export job did not finish", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    protected BroadleafFileService buildFileService(final File directory) {
+        return (BroadleafFileService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { BroadleafFileService.class }, new InvocationHandler() {
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("initializeWorkArea".equals(method.getName())) {
+                            FileWorkArea workArea = new FileWorkArea();
+                            workArea.setFilePathLocation(directory.getAbsolutePath() + File.separator);
+                            return workArea;
+                        }
+                        if ("addOrUpdateResourceForPath".equals(method.getName())) {
+                            return ((File) args[1]).getAbsolutePath();
+                        }
+                        if ("getResource".equals(method.getName())) {
+                            return new File((String) args[0]);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    protected void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Answers {@link AdminEntityService#getRecords(PersistencePackageRequest)} the way the persistence layer would:
+     * applying the id range, then the sorts in order, then the page size
+     */
+    protected static class FakeRecords implements InvocationHandler {
+
+        protected final String[] names;
+        protected final List<PersistencePackageRequest> requests = Collections.synchronizedList(new ArrayList<PersistencePackageRequest>());
+        protected final CountDownLatch blocked = new CountDownLatch(1);
+        protected final CountDownLatch release = new CountDownLatch(1);
+        protected volatile int failOnRequest = -1;
+        protected volatile int blockOnRequest = -1;
+
+        public FakeRecords(String[] names) {
+            this.names = names;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!"getRecords".equals(method.getName()) || !(args[0] instanceof PersistencePackageRequest)) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            PersistencePackageRequest request = (PersistencePackageRequest) args[0];
+            requests.add(request);
+            int requestNumber = requests.size();
+            if (requestNumber == failOnRequest) {
+                throw new ServiceException("page unavailable");
+            }
+            if (requestNumber == blockOnRequest) {
+                blocked.countDown();
+                release.await(10, TimeUnit.SECONDS);
+            }
+            return new PersistenceResponse().withDynamicResultSet(getRecords(request));
+        }
+
+        protected DynamicResultSet getRecords(PersistencePackageRequest request) {
+            long minId = 1;
+            final List<FilterAndSortCriteria> sorts = new ArrayList<FilterAndSortCriteria>();
+            for (FilterAndSortCriteria criteria : request.getFilterAndSortCriteria()) {
+                if ("id".equals(criteria.getPropertyId()) && criteria.getRestrictionType() == RestrictionType.LONG) {
+                    minId = Long.parseLong(criteria.getFilterValues().get(0).split(FilterMapping.RANGE_SPECIFIER_REGEX)[0]);
+                }
+                if (criteria.getSortDirection() != null) {
+                    sorts.add(criteria);
+                }
+            }
+            List<Entity> matches = new ArrayList<Entity>();
+            for (int id = (int) Math.max(minId, 1); id <= names.length; id++) {
+                Entity entity = new Entity();
+                entity.setProperties(new Property[] { new Property("id", String.valueOf(id)),
+                        new Property("name", names[id - 1]) });
+                matches.add(entity);
+            }
+            Collections.sort(matches, new Comparator<Entity>() {
+
+                @Override
+                public int compare(Entity o1, Entity o2) {
+                    for (FilterAndSortCriteria sort : sorts) {
+                        String property = sort.getPropertyId();
+                        int result = "id".equals(property)
+                                ? Long.valueOf(o1.getPMap().get(property).getValue()).compareTo(Long.valueOf(o2.getPMap().get(property).getValue()))
+                                : o1.getPMap().get(property).getValue().compareTo(o2.getPMap().get(property).getValue());
+                        if (result != 0) {
+                            return sort.getSortDirection() == SortDirection.DESCENDING ? -result : result;
+                        }
+                    }
+                    return 0;
+                }
+            });
+            List<Entity> page = matches.subList(0, Math.min(request.getMaxResults(), matches.size()));
+            return new DynamicResultSet(page.toArray(new Entity[page.size()]), matches.size());
+        }
+
+    }
+
+}
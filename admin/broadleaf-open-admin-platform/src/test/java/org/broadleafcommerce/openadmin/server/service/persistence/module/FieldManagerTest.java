@@ -0,0 +1,235 @@
+/*-
+ * #%L
+ * BroadleafCommerce Open Admin Platform
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.openadmin.server.service.persistence.module;
+
+import org.broadleafcommerce.common.persistence.EntityConfiguration;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class FieldManagerTest extends TestCase {
+
+    protected FieldManager fieldManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        fieldManager = new FieldManager(new TestEntityConfiguration(), null);
+    }
+
+    public void testGetNestedValue() throws Exception {
+        TestOrder order = new TestOrder();
+        order.customer = new TestCustomer();
+        TestAddressImpl address = new TestAddressImpl();
+        address.city = "Dallas";
+        order.customer.address = address;
+
+        assertEquals("Dallas", fieldManager.getFieldValue(order, "customer.address.city"));
+        assertSame(address, fieldManager.getFieldValue(order, "customer.address"));
+    }
+
+    public void testGetThroughNullIntermediateReturnsNull() throws Exception {
+        TestOrder order = new TestOrder();
+        assertNull(fieldManager.getFieldValue(order, "customer.address.city"));
+
+        order.customer = new TestCustomer();
+        assertNull(fieldManager.getFieldValue(order, "customer.address.city"));
+    }
+
+    public void testSetNestedValue() throws Exception {
+        TestOrder order = new TestOrder();
+        order.customer = new TestCustomer();
+        TestAddressImpl address = new TestAddressImpl();
+        order.customer.address = address;
+
+        fieldManager.setFieldValue(order, "customer.address.city", "Austin");
+
+        assertEquals("Austin", address.city);
+        assertSame(address, order.customer.address);
+        assertTrue(fieldManager.middleFields.isEmpty());
+    }
+
+    /**
+     * Missing entities along the path are created through the EntityConfiguration and remembered for
+     * {@link FieldManager#persistMiddleEntities()}
+     */
+    public void testSetCreatesMiddleEntities() throws Exception {
+        TestOrder order = new TestOrder();
+
+        fieldManager.setFieldValue(order, "customer.address.city", "Austin");
+
+        assertNotNull(order.customer);
+        assertTrue(order.customer.address instanceof TestAddressImpl);
+        assertEquals("Austin", ((TestAddressImpl) order.customer.address).city);
+        assertEquals(2, fieldManager.middleFields.size());
+        assertEquals("Austin", fieldManager.getFieldValue(order, "customer.address.city"));
+
+        fieldManager.clearMiddleFields();
+        assertTrue(fieldManager.middleFields.isEmpty());
+    }
+
+    public void testMapKeyPaths() throws Exception {
+        TestOrder order = new TestOrder();
+        order.attributes.put("color", "red");
+        order.customer = new TestCustomer();
+
+        assertEquals("red", fieldManager.getFieldValue(order, "attributes" + FieldManager.MAPFIELDSEPARATOR + "color"));
+        assertNull(fieldManager.getFieldValue(order, "attributes" + FieldManager.MAPFIELDSEPARATOR + "size"));
+
+        fieldManager.setFieldValue(order, "attributes" + FieldManager.MAPFIELDSEPARATOR + "size", "large");
+        assertEquals("large", order.attributes.get("size"));
+
+        fieldManager.setFieldValue(order, "attributes" + FieldManager.MAPFIELDSEPARATOR + "color", null);
+        assertFalse(order.attributes.containsKey("color"));
+
+        fieldManager.setFieldValue(order, "customer.preferences" + FieldManager.MAPFIELDSEPARATOR + "newsletter", "weekly");
+        assertEquals("weekly", order.customer.preferences.get("newsletter"));
+        assertEquals("weekly", fieldManager.getFieldValue(order, "customer.preferences" + FieldManager.MAPFIELDSEPARATOR + "newsletter"));
+    }
+
+    public void testPrimitiveFields() throws Exception {
+        TestOrder order = new TestOrder();
+
+        fieldManager.setFieldValue(order, "quantity", Integer.valueOf(3));
+        fieldManager.setFieldValue(order, "total", Integer.valueOf(7));
+        fieldManager.setFieldValue(order, "active", Boolean.TRUE);
+
+        assertEquals(3, order.quantity);
+        assertEquals(7L, order.total);
+        assertTrue(order.active);
+        assertEquals(Integer.valueOf(3), fieldManager.getFieldValue(order, "quantity"));
+        assertEquals(Long.valueOf(7L), fieldManager.getFieldValue(order, "total"));
+
+        try {
+            fieldManager.setFieldValue(order, "quantity", null);
+            fail("A primitive field cannot be set to null");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(3, order.quantity);
+
+        try {
+            fieldManager.setFieldValue(order, "quantity", "3");
+            fail("A String cannot be assigned to an int field");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testBoxedFieldAcceptsNull() throws Exception {
+        TestOrder order = new TestOrder();
+        order.discount = 5;
+
+        fieldManager.setFieldValue(order, "discount", null);
+
+        assertNull(order.discount);
+        assertNull(fieldManager.getFieldValue(order, "discount"));
+    }
+
+    public void testUnknownFields() throws Exception {
+        TestOrder order = new TestOrder();
+        order.customer = new TestCustomer();
+
+        try {
+            fieldManager.setFieldValue(order, "unknown", "x");
+            fail("Expected an IllegalAccessException");
+        } catch (IllegalAccessException e) {
+            assertTrue(e.getMessage().contains("(unknown)"));
+        }
+        try {
+            fieldManager.setFieldValue(order, "customer.unknown", "x");
+            fail("Expected an IllegalAccessException");
+        } catch (IllegalAccessException e) {
+            assertTrue(e.getMessage().contains(TestCustomer.class.getName()));
+        }
+        try {
+            fieldManager.getFieldValue(order, "customer.unknown");
+            fail("Expected a FieldNotAvailableException");
+        } catch (FieldNotAvailableException e) {
+            // expected
+        }
+    }
+
+    public void testInheritedFields() throws Exception {
+        TestSpecialOrder order = new TestSpecialOrder();
+
+        fieldManager.setFieldValue(order, "quantity", 2);
+        fieldManager.setFieldValue(order, "code", "SPECIAL");
+
+        assertEquals(2, order.quantity);
+        assertEquals(Integer.valueOf(2), fieldManager.getFieldValue(order, "quantity"));
+        assertEquals("SPECIAL", fieldManager.getFieldValue(order, "code"));
+    }
+
+    /**
+     * Resolves the interface of a middle entity to its implementation, the way the merged entity contexts would
+     */
+    protected static class TestEntityConfiguration extends EntityConfiguration {
+
+        @Override
+        public Object createEntityInstance(String beanId) {
+            if (TestAddress.class.getName().equals(beanId)) {
+                return new TestAddressImpl();
+            }
+            if (TestCustomer.class.getName().equals(beanId)) {
+                return new TestCustomer();
+            }
+            throw new IllegalArgumentException("No entity configured for " + beanId);
+        }
+    }
+
+    public interface TestAddress extends Serializable {
+    }
+
+    public static class TestAddressImpl implements TestAddress {
+
+        private static final long serialVersionUID = 1L;
+
+        protected String city;
+    }
+
+    public static class TestCustomer implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected TestAddress address;
+        protected Map<String, String> preferences = new HashMap<String, String>();
+    }
+
+    public static class TestOrder implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected TestCustomer customer;
+        protected Map<String, String> attributes = new HashMap<String, String>();
+        protected int quantity;
+        protected long total;
+        protected boolean active;
+        protected Integer discount;
+    }
+
+    public static class TestSpecialOrder extends TestOrder {
+
+        private static final long serialVersionUID = 1L;
+
+        protected String code;
+    }
+
+}
@@ -52,6 +52,6 @@ public class BreadcrumbServiceExtensionManager extends ExtensionManager<Breadcru
     @Override
     protected void sortHandlers() {
         super.sortHandlers();
-        Collections.reverse(getHandlers());
+        Collections.reverse(handlers);
     }
 }
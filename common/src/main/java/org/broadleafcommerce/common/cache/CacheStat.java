@@ -17,50 +17,94 @@
  */
 package org.broadleafcommerce.common.cache;
 
+import org.broadleafcommerce.common.time.SystemTime;
+
 import java.math.BigDecimal;
 import java.util.concurrent.atomic.AtomicLong;
-
-import org.broadleafcommerce.common.time.SystemTime;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Statistics for a single cache. Counters are {@link LongAdder}s so that request threads recording hits and misses
+ * for the same cache do not contend with each other.
+ *
  * @author Jeff Fischer
  */
 public class CacheStat {
 
-    protected AtomicLong requestCount = new AtomicLong(0L);
-    protected AtomicLong cacheHitCount = new AtomicLong(0L);
-    protected Long lastLogTime = SystemTime.asMillis(true);
+    protected LongAdder requestCount = new LongAdder();
+    protected LongAdder cacheHitCount = new LongAdder();
+    protected AtomicLong lastLogTime = new AtomicLong(SystemTime.asMillis(true));
+    protected LatencyHistogram loadLatency = new LatencyHistogram();
+    protected RateWindow requestRate = new RateWindow();
+    protected RateWindow hitRate = new RateWindow();
 
     public Long getCacheHitCount() {
-        return cacheHitCount.longValue();
+        return cacheHitCount.sum();
+    }
+
+    public Long getCacheMissCount() {
+        return Math.max(0L, requestCount.sum() - cacheHitCount.sum());
     }
 
     public Long getLastLogTime() {
-        return lastLogTime;
+        return lastLogTime.get();
+    }
+
+    public void setLastLogTime(Long lastLogTime) {
+        this.lastLogTime.set(lastLogTime);
     }
 
-    public synchronized void setLastLogTime(Long lastLogTime) {
-        this.lastLogTime = lastLogTime;
+    /**
+     * Claims the right to log this statistic if more than {@code logResolution} milliseconds have passed since it was
+     * last logged. Only one of several concurrent callers will get true.
+     */
+    public boolean tryClaimLog(long now, long logResolution) {
+        long last = lastLogTime.get();
+        return last + logResolution < now && lastLogTime.compareAndSet(last, now);
     }
 
     public Long getRequestCount() {
-        return requestCount.longValue();
+        return requestCount.sum();
     }
 
     public void incrementRequest() {
-        requestCount.incrementAndGet();
+        requestCount.increment();
+        requestRate.increment();
     }
 
     public void incrementHit() {
-        cacheHitCount.incrementAndGet();
+        cacheHitCount.increment();
+        hitRate.increment();
+    }
+
+    public void recordLoadTime(long loadTimeNanos) {
+        loadLatency.record(loadTimeNanos);
+    }
+
+    public LatencyHistogram getLoadLatency() {
+        return loadLatency;
+    }
+
+    /**
+     * @return requests per second over the trailing {@link RateWindow} period
+     */
+    public double getRequestRate() {
+        return requestRate.getRatePerSecond();
+    }
+
+    /**
+     * @return hits per second over the trailing {@link RateWindow} period
+     */
+    public double getHitsPerSecond() {
+        return hitRate.getRatePerSecond();
     }
 
     public BigDecimal getHitRate() {
-        if (getRequestCount() == 0) {
+        long requests = getRequestCount();
+        if (requests == 0) {
             return new BigDecimal(-1);
         }
-        BigDecimal percentage = new BigDecimal(getCacheHitCount()).divide(new BigDecimal(getRequestCount
-                ()), 2, BigDecimal.ROUND_HALF_UP);
+        BigDecimal percentage = new BigDecimal(getCacheHitCount()).divide(new BigDecimal(requests), 2, BigDecimal.ROUND_HALF_UP);
         percentage = percentage.multiply(new BigDecimal(100)).setScale(2, BigDecimal.ROUND_HALF_UP);
         return percentage;
     }
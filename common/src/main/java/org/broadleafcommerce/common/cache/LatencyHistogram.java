@@ -0,0 +1,140 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A fixed-bucket latency histogram that can be recorded into from many threads without locking. Bucket upper bounds
+ * follow a 1-2-5 progression from 10 microseconds to 10 seconds, which is enough resolution to spot cache loads that
+ * move from sub-millisecond to tens of milliseconds while keeping the footprint to a few dozen counters.
+ */
+public class LatencyHistogram {
+
+    protected static final long[] BUCKET_BOUNDS_MICROS = {
+            10L, 20L, 50L,
+            100L, 200L, 500L,
+            1000L, 2000L, 5000L,
+            10000L, 20000L, 50000L,
+            100000L, 200000L, 500000L,
+            1000000L, 2000000L, 5000000L,
+            10000000L
+    };
+
+    protected static final LongBinaryOperator MAX = new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    };
+
+    // the last bucket holds everything above the largest bound
+    protected final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MICROS.length + 1];
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder totalNanos = new LongAdder();
+    protected final LongAccumulator maxNanos = new LongAccumulator(MAX, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        buckets[bucketIndex(TimeUnit.NANOSECONDS.toMicros(nanos))].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    protected int bucketIndex(long micros) {
+        for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+            if (micros <= BUCKET_BOUNDS_MICROS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MICROS.length;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMillis() {
+        long c = count.sum();
+        return c == 0 ? 0D : totalNanos.sum() / (double) c / 1000000D;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1000000D;
+    }
+
+    /**
+     * Returns an upper bound, in milliseconds, for the given percentile. The value is the upper bound of the bucket in
+     * which the percentile falls, or the recorded maximum if it falls in the overflow bucket.
+     *
+     * @param percentile a value between 0 and 1, e.g. 0.99
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0D;
+        }
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return BUCKET_BOUNDS_MICROS[i] / 1000D;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * @return a snapshot of the per-bucket counts; the final element counts values above the largest bound
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return the upper bound of each bucket in milliseconds, aligned with {@link #getBucketCounts()}
+     */
+    public double[] getBucketBoundsMillis() {
+        double[] bounds = new double[BUCKET_BOUNDS_MICROS.length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = BUCKET_BOUNDS_MICROS[i] / 1000D;
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.cache;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events in a ring of fixed-width time slots so that a recent rate can be reported instead of a lifetime
+ * average. Each slot counts with its own {@link LongAdder}, so concurrent writers within the same period do not contend
+ * on a single value. A slot is rolled over to a new period by the first writer to see it stale, which swaps in a fresh
+ * slot rather than resetting the old one; a writer racing with that swap may lose an increment, which is acceptable for
+ * monitoring.
+ */
+public class RateWindow {
+
+    protected final long slotMillis;
+    protected final AtomicReferenceArray<Slot> slots;
+
+    /**
+     * Creates a window covering the last minute in one second slots.
+     */
+    public RateWindow() {
+        this(60, 1000L);
+    }
+
+    public RateWindow(int slots, long slotMillis) {
+        this.slotMillis = slotMillis;
+        this.slots = new AtomicReferenceArray<Slot>(slots);
+        for (int i = 0; i < slots; i++) {
+            this.slots.set(i, new Slot(-1L));
+        }
+    }
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void add(long amount) {
+        long period = currentTimeMillis() / slotMillis;
+        int index = (int) (period % slots.length());
+        Slot slot = slots.get(index);
+        if (slot.period != period) {
+            Slot fresh = new Slot(period);
+            if (slots.compareAndSet(index, slot, fresh)) {
+                slot = fresh;
+            } else {
+                slot = slots.get(index);
+            }
+        }
+        slot.count.add(amount);
+    }
+
+    /**
+     * @return the number of events recorded within the window
+     */
+    public long getCount() {
+        long period = currentTimeMillis() / slotMillis;
+        long total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (period - slot.period < slots.length()) {
+                total += slot.count.sum();
+            }
+        }
+        return total;
+    }
+
+    public double getRatePerSecond() {
+        return getCount() * 1000D / (slots.length() * slotMillis);
+    }
+
+    /**
+     * Reads the wall clock directly rather than through SystemTime, since every cache request goes through here
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    protected static class Slot {
+
+        protected final long period;
+        protected final LongAdder count = new LongAdder();
+
+        public Slot(long period) {
+            this.period = period;
+        }
+    }
+}
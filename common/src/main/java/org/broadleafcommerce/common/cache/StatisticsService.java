@@ -17,12 +17,32 @@
  */
 package org.broadleafcommerce.common.cache;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * @author Jeff Fischer
  */
 public interface StatisticsService {
     void addCacheStat(String key, boolean isHit);
 
+    /**
+     * Records how long it took to load a value into the cache identified by {@code key} after a miss.
+     *
+     * @param key the cache statistic key, usually a {@link CacheStatType}
+     * @param loadTimeNanos the load time in nanoseconds
+     */
+    default void addCacheLoadTime(String key, long loadTimeNanos) {
+        //do nothing
+    }
+
+    /**
+     * @return a read-only view of the statistics for every cache that has been recorded, keyed by cache statistic key
+     */
+    default Map<String, CacheStat> getCacheStats() {
+        return Collections.emptyMap();
+    }
+
     Long getLogResolution();
 
     void setLogResolution(Long logResolution);
@@ -27,11 +27,12 @@ import org.springframework.jmx.support.ObjectNameManager;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
@@ -60,7 +61,7 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
 
     protected StatisticsServiceLogAdapter adapter;
 
-    protected Map<String, CacheStat> cacheStats = Collections.synchronizedMap(new HashMap<String, CacheStat>());
+    protected ConcurrentMap<String, CacheStat> cacheStats = new ConcurrentHashMap<String, CacheStat>();
 
     @Override
     public void addCacheStat(String key, boolean isHit) {
@@ -69,21 +70,34 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
             myStat.incrementHit();
         }
         myStat.incrementRequest();
-        if (myStat.getLastLogTime() + logResolution < SystemTime.asMillis()) {
-            myStat.setLastLogTime(SystemTime.asMillis());
-            BigDecimal percentage = myStat.getHitRate();
+        if (myStat.tryClaimLog(SystemTime.asMillis(), logResolution)) {
             if (LOG.isInfoEnabled()) {
+                BigDecimal percentage = myStat.getHitRate();
                 LOG.info("Cache hit percentage for " + key + " is: " + percentage.toString() + "%");
             }
         }
     }
 
+    @Override
+    public void addCacheLoadTime(String key, long loadTimeNanos) {
+        getCacheStat(key).recordLoadTime(loadTimeNanos);
+    }
+
+    @Override
+    public Map<String, CacheStat> getCacheStats() {
+        return Collections.unmodifiableMap(cacheStats);
+    }
+
     protected CacheStat getCacheStat(String key) {
-        if (!cacheStats.containsKey(key)) {
-            CacheStat stat = new CacheStat();
-            cacheStats.put(key, stat);
+        CacheStat stat = cacheStats.get(key);
+        if (stat == null) {
+            stat = new CacheStat();
+            CacheStat existing = cacheStats.putIfAbsent(key, stat);
+            if (existing != null) {
+                stat = existing;
+            }
         }
-        return cacheStats.get(key);
+        return stat;
     }
 
     @Override
@@ -123,6 +137,10 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
         if (attribute.equals("LOG_RESOLUTION")) {
             return getLogResolution();
         }
+        Object value = buildStatAttributes().get(attribute);
+        if (value != null) {
+            return value;
+        }
         return getCacheStat(attribute).getHitRate().doubleValue();
     }
 
@@ -137,8 +155,8 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
     @Override
     public AttributeList getAttributes(String[] attributes) {
         AttributeList list = new AttributeList();
-        for (Map.Entry<String, CacheStat> stats : cacheStats.entrySet()) {
-            list.add(new Attribute(stats.getKey(), stats.getValue().getHitRate().doubleValue()));
+        for (Map.Entry<String, Object> attribute : buildStatAttributes().entrySet()) {
+            list.add(new Attribute(attribute.getKey(), attribute.getValue()));
         }
         return list;
     }
@@ -175,17 +193,15 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
 
     @Override
     public MBeanInfo getMBeanInfo() {
-        SortedSet<String> names = new TreeSet<String>();
-        for (Map.Entry<String, CacheStat> stats : cacheStats.entrySet()) {
-            names.add(stats.getKey());
-        }
-        MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[names.size()];
-        Iterator<String> it = names.iterator();
+        SortedMap<String, Object> values = buildStatAttributes();
+        MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[values.size()];
+        Iterator<Map.Entry<String, Object>> it = values.entrySet().iterator();
         for (int i = 0; i < attrs.length; i++) {
-            String name = it.next();
+            Map.Entry<String, Object> entry = it.next();
+            String name = entry.getKey();
             attrs[i] = new MBeanAttributeInfo(
                     name,
-                    "java.lang.Double",
+                    entry.getValue().getClass().getName(),
                     name,
                     true,   // isReadable
                     false,   // isWritable
@@ -222,6 +238,30 @@ public class StatisticsServiceImpl implements DynamicMBean, StatisticsService, S
             null); // notifications
     }
 
+    /**
+     * Builds the JMX attributes for every cache. The plain cache key keeps reporting the hit percentage, as it always
+     * has, and the remaining statistics are exposed as {@code <key>.<statistic>}.
+     */
+    protected SortedMap<String, Object> buildStatAttributes() {
+        SortedMap<String, Object> values = new TreeMap<String, Object>();
+        for (Map.Entry<String, CacheStat> stats : cacheStats.entrySet()) {
+            String key = stats.getKey();
+            CacheStat stat = stats.getValue();
+            LatencyHistogram loadLatency = stat.getLoadLatency();
+            values.put(key, stat.getHitRate().doubleValue());
+            values.put(key + ".requestCount", stat.getRequestCount());
+            values.put(key + ".hitCount", stat.getCacheHitCount());
+            values.put(key + ".missCount", stat.getCacheMissCount());
+            values.put(key + ".requestsPerSecond", stat.getRequestRate());
+            values.put(key + ".hitsPerSecond", stat.getHitsPerSecond());
+            values.put(key + ".loadCount", loadLatency.getCount());
+            values.put(key + ".loadTimeMeanMillis", loadLatency.getMeanMillis());
+            values.put(key + ".loadTimeP99Millis", loadLatency.getPercentileMillis(0.99D));
+            values.put(key + ".loadTimeMaxMillis", loadLatency.getMaxMillis());
+        }
+        return values;
+    }
+
     public StatisticsServiceLogAdapter getAdapter() {
         return adapter;
     }
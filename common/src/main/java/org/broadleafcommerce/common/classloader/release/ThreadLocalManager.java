@@ -20,8 +20,13 @@ package org.broadleafcommerce.common.classloader.release;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Jeff Fischer
@@ -42,6 +47,8 @@ public class ThreadLocalManager {
         }
     };
 
+    private static final Set<ThreadLocal> NOT_PROPAGATED = Collections.newSetFromMap(new ConcurrentHashMap<ThreadLocal, Boolean>());
+
     protected Map<Long, ThreadLocal> threadLocals = new LinkedHashMap<Long, ThreadLocal>();
     protected RuntimeException marker = null;
 
@@ -95,6 +102,30 @@ public class ThreadLocalManager {
         THREAD_LOCAL_MANAGER.remove();
     }
 
+    /**
+     * @return the ThreadLocals registered on the current thread, in registration order
+     */
+    public static List<ThreadLocal> getThreadLocals() {
+        return new ArrayList<ThreadLocal>(THREAD_LOCAL_MANAGER.get().threadLocals.values());
+    }
+
+    public static boolean isRegistered(ThreadLocal threadLocal) {
+        return THREAD_LOCAL_MANAGER.get().threadLocals.containsValue(threadLocal);
+    }
+
+    /**
+     * Keep the value of the given ThreadLocal on the thread that set it. Use this for values that are not safe to use
+     * from more than one thread at a time, so that {@link ThreadLocalSnapshot} does not hand them to work running on
+     * other threads.
+     */
+    public static void excludeFromPropagation(ThreadLocal threadLocal) {
+        NOT_PROPAGATED.add(threadLocal);
+    }
+
+    public static boolean isPropagated(ThreadLocal threadLocal) {
+        return !NOT_PROPAGATED.contains(threadLocal);
+    }
+
     public static void remove(ThreadLocal threadLocal) {
         Long removePosition = null;
         for (Map.Entry<Long, ThreadLocal> entry : THREAD_LOCAL_MANAGER.get().threadLocals.entrySet()) {
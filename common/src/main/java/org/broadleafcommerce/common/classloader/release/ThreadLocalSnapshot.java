@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.classloader.release;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The values of every ThreadLocal registered with {@link ThreadLocalManager} on a thread, captured so they can be
+ * applied to another thread. This is what allows work handed off by a request thread to see the same
+ * {@link org.broadleafcommerce.common.web.BroadleafRequestContext} (site, locale, sandbox, customer, etc...) and the
+ * other request scoped state tracked by ThreadLocalManager.
+ * </p>
+ * Values are shared by reference, not copied. Work running on other threads should treat them as read only. ThreadLocals
+ * passed to {@link ThreadLocalManager#excludeFromPropagation(ThreadLocal)} (e.g. the request's
+ * {@link org.broadleafcommerce.common.persistence.transaction.SqlProfile}) are left out. Resources bound through Spring's
+ * TransactionSynchronizationManager (e.g. the EntityManager) are not tracked by ThreadLocalManager and are intentionally
+ * not propagated either, since they are not thread safe.
+ */
+public class ThreadLocalSnapshot {
+
+    protected final Map<ThreadLocal, Object> values;
+
+    protected ThreadLocalSnapshot(Map<ThreadLocal, Object> values) {
+        this.values = values;
+    }
+
+    /**
+     * Capture the values of the ThreadLocals registered on the current thread
+     */
+    public static ThreadLocalSnapshot capture() {
+        return capture(false);
+    }
+
+    /**
+     * @param includeNotPropagated whether to include ThreadLocals excluded from propagation, which is only appropriate
+     * when the snapshot will be applied back to the current thread
+     */
+    protected static ThreadLocalSnapshot capture(boolean includeNotPropagated) {
+        Map<ThreadLocal, Object> values = new LinkedHashMap<ThreadLocal, Object>();
+        for (ThreadLocal threadLocal : ThreadLocalManager.getThreadLocals()) {
+            if (includeNotPropagated || ThreadLocalManager.isPropagated(threadLocal)) {
+                values.put(threadLocal, threadLocal.get());
+            }
+        }
+        return new ThreadLocalSnapshot(values);
+    }
+
+    /**
+     * Set the captured values on the current thread, registering each ThreadLocal with ThreadLocalManager
+     *
+     * @return the state of the current thread before the values were applied, to be passed to {@link #restore(ThreadLocalSnapshot)}
+     */
+    public ThreadLocalSnapshot apply() {
+        // the previous state is restored to this same thread, so it keeps everything
+        ThreadLocalSnapshot previous = capture(true);
+        for (Map.Entry<ThreadLocal, Object> entry : values.entrySet()) {
+            if (entry.getValue() != null) {
+                entry.getKey().set(entry.getValue());
+                if (!ThreadLocalManager.isRegistered(entry.getKey())) {
+                    ThreadLocalManager.addThreadLocal(entry.getKey());
+                }
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Clear all ThreadLocals on the current thread, including any created since the snapshot was applied, and return
+     * the thread to the given state
+     */
+    public static void restore(ThreadLocalSnapshot previous) {
+        ThreadLocalManager.remove();
+        if (previous != null && !previous.isEmpty()) {
+            previous.apply();
+        }
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    public Map<ThreadLocal, Object> getValues() {
+        return Collections.unmodifiableMap(values);
+    }
+}
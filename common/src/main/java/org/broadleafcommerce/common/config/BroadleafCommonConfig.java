@@ -21,6 +21,8 @@
 
 package org.broadleafcommerce.common.config;
 
+import org.broadleafcommerce.common.util.BroadleafContextExecutor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -45,4 +47,21 @@ public class BroadleafCommonConfig {
         return vendorAdapter;
     }
 
+    /**
+     * Executor for fanning out work within a request. Tasks run with the BroadleafRequestContext and the other
+     * ThreadLocalManager state of the submitting thread. See {@link BroadleafContextExecutor}.
+     */
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean(name = "blContextExecutor")
+    public BroadleafContextExecutor blContextExecutor(@Value("${context.executor.threads:0}") int threads,
+                                                      @Value("${context.executor.virtual.threads.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            return BroadleafContextExecutor.newVirtualThreadPerTaskExecutor("blContextExecutor");
+        }
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors() * 2;
+        }
+        return BroadleafContextExecutor.newFixedThreadPool(threads, "blContextExecutor");
+    }
+
 }
@@ -70,6 +70,11 @@ public class CommonCacheConfiguration {
         return new JCacheRegionConfiguration("blOffers", 86400, 100000);
     }
 
+    @Bean
+    public JCacheRegionConfiguration blProductListingViews() {
+        return new JCacheRegionConfiguration("blProductListingViews", 600, 20000);
+    }
+
     @Bean
     public JCacheRegionConfiguration blInventoryElements() {
         return new JCacheRegionConfiguration("blInventoryElements", 60, 100000);
@@ -26,6 +26,8 @@ import org.broadleafcommerce.common.exception.ExceptionHelper;
 import org.broadleafcommerce.common.extensibility.jpa.convert.BroadleafClassTransformer;
 import org.broadleafcommerce.common.extensibility.jpa.convert.BroadleafPersistenceUnitDeclaringClassTransformer;
 import org.broadleafcommerce.common.extensibility.jpa.convert.EntityMarkerClassTransformer;
+import org.broadleafcommerce.common.extensibility.jpa.convert.PreWovenAwareClassTransformer;
+import org.broadleafcommerce.common.extensibility.jpa.convert.PreWovenClassManifest;
 import org.broadleafcommerce.common.extensibility.jpa.copy.NullClassTransformer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -38,7 +40,10 @@ import org.springframework.jmx.export.MBeanExporter;
 import org.springframework.orm.jpa.persistenceunit.DefaultPersistenceUnitManager;
 import org.springframework.orm.jpa.persistenceunit.MutablePersistenceUnitInfo;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.URL;
 import java.util.ArrayList;
@@ -76,6 +81,8 @@ public class MergePersistenceUnitManager extends DefaultPersistenceUnitManager {
 
     protected HashMap<String, PersistenceUnitInfo> mergedPus = new HashMap<>();
     protected List<BroadleafClassTransformer> classTransformers = new ArrayList<>();
+    protected List<PreWovenAwareClassTransformer> registeredTransformers = new ArrayList<>();
+    protected PreWovenClassManifest preWovenClassManifest;
 
     @Resource(name="blMergedPersistenceXmlLocations")
     protected Set<String> mergedPersistenceXmlLocations;
@@ -169,6 +176,7 @@ public class MergePersistenceUnitManager extends DefaultPersistenceUnitManager {
                 exceptionIfEntityMarkerNotFound();
                 
                 triggerClassLoadForManagedClasses();
+                logClassTransformationSummary();
                 
                 List<String> nonTransformedClasses = detectNonTransformedClasses();
                 if (CollectionUtils.isNotEmpty(nonTransformedClasses)) {
@@ -193,7 +201,9 @@ public class MergePersistenceUnitManager extends DefaultPersistenceUnitManager {
     protected boolean addTransformersToPersistenceUnits() throws Exception {
         boolean weaverRegistered = true;
         for (PersistenceUnitInfo pui : mergedPus.values()) {
+            int position = 0;
             for (BroadleafClassTransformer transformer : classTransformers) {
+                String transformerId = transformer.getClass().getSimpleName() + "#" + position++;
                 try {
                     boolean isTransformerQualified = !(transformer instanceof NullClassTransformer) &&
                         (
@@ -205,7 +215,7 @@ public class MergePersistenceUnitManager extends DefaultPersistenceUnitManager {
                             pui.getPersistenceUnitName().equals(((BroadleafPersistenceUnitDeclaringClassTransformer) transformer).getPersistenceUnitName())
                         );
                     if (isTransformerQualified) {
-                        pui.addTransformer(transformer);
+                        pui.addTransformer(wrapTransformer(transformer, pui.getPersistenceUnitName() + ":" + transformerId));
                     }
                 } catch (Exception e) {
                     weaverRegistered = handleClassTransformerRegistrationProblem(transformer, e);
@@ -240,7 +250,7 @@ public class MergePersistenceUnitManager extends DefaultPersistenceUnitManager {
             if (!namedQueries.isEmpty() || !nativeQueries.isEmpty()) {
                 QueryConfigurationClassTransformer transformer = new QueryConfigurationClassTransformer(namedQueries, nativeQueries, pui.getManagedClassNames());
                 try {
-                    pui.addTransformer(transformer);
+                    pui.addTransformer(wrapTransformer(transformer, pui.getPersistenceUnitName() + ":" + transformer.getClass().getSimpleName()));
                 } catch (Exception e) {
                     weaverRegistered = handleClassTransformerRegistrationProblem(transformer, e);
                 }
@@ -249,6 +259,59 @@ public class MergePersistenceUnitManager extends DefaultPersistenceUnitManager {
         return weaverRegistered;
     }
 
+    /**
+     * Wraps the given transformer so that entity classes woven at build time are not transformed again at load time. The
+     * transformer id must be stable between the capture run and later runs, so it is derived from the persistence unit,
+     * the transformer type and its position in the configured transformer list.
+     * 
+     * @see PreWovenClassManifest
+     */
+    protected BroadleafClassTransformer wrapTransformer(BroadleafClassTransformer transformer, String transformerId) throws IOException {
+        if (!environment.getProperty("weave.prewoven.enabled", Boolean.class, true)) {
+            return transformer;
+        }
+        PreWovenAwareClassTransformer wrapper = new PreWovenAwareClassTransformer(transformer, transformerId, getPreWovenClassManifest());
+        registeredTransformers.add(wrapper);
+        return wrapper;
+    }
+
+    protected PreWovenClassManifest getPreWovenClassManifest() throws IOException {
+        if (preWovenClassManifest == null) {
+            String captureDirectory = environment.getProperty("weave.capture.directory");
+            File directory = null;
+            if (StringUtils.hasText(captureDirectory)) {
+                directory = new File(captureDirectory);
+                LOG.info("Capturing woven entity classes and manifest to " + directory.getAbsolutePath());
+            }
+            preWovenClassManifest = PreWovenClassManifest.load(getClass().getClassLoader(), directory);
+        }
+        return preWovenClassManifest;
+    }
+
+    /**
+     * Reports the time spent in load-time class transformation for the managed classes, along with the number of classes
+     * that were skipped because they had already been woven at build time
+     */
+    protected void logClassTransformationSummary() {
+        if (!LOG.isInfoEnabled() || registeredTransformers.isEmpty()) {
+            return;
+        }
+        long millis = 0;
+        int transformedCount = 0;
+        int skippedCount = 0;
+        StringBuilder sb = new StringBuilder();
+        for (PreWovenAwareClassTransformer transformer : registeredTransformers) {
+            millis += transformer.getTransformMillis();
+            transformedCount += transformer.getTransformedCount();
+            skippedCount += transformer.getSkippedCount();
+            sb.append("\n").append(transformer.getTransformerId()).append(": ").append(transformer.getTransformMillis())
+                .append("ms, transformed ").append(transformer.getTransformedCount())
+                .append(", skipped as pre-woven ").append(transformer.getSkippedCount());
+        }
+        LOG.info(String.format("Load-time class transformation took %sms (transformed %s, skipped as pre-woven %s)%s",
+            millis, transformedCount, skippedCount, LOG.isDebugEnabled() ? sb.toString() : ""));
+    }
+
     protected boolean handleClassTransformerRegistrationProblem(BroadleafClassTransformer transformer, Exception e) throws Exception {
         boolean weaverRegistered;
         Exception refined = ExceptionHelper.refineException(IllegalStateException.class, RuntimeException.class, e);
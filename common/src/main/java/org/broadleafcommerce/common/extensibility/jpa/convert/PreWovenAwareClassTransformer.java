@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extensibility.jpa.convert;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.lang.instrument.IllegalClassFormatException;
+import java.security.ProtectionDomain;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps a {@link BroadleafClassTransformer} registered with a persistence unit so that classes already woven at build
+ * time (see {@link PreWovenClassManifest}) are passed through without paying for javassist class pool work at load
+ * time. In capture mode, the output of the delegate transformer is recorded to the manifest instead.
+ * </p>
+ * Time spent in the delegate and the number of transformed and skipped classes are tracked so that the cost of
+ * load-time weaving can be reported at startup.
+ */
+public class PreWovenAwareClassTransformer implements BroadleafClassTransformer {
+
+    private static final Log LOG = LogFactory.getLog(PreWovenAwareClassTransformer.class);
+
+    protected final BroadleafClassTransformer delegate;
+    protected final String transformerId;
+    protected final PreWovenClassManifest manifest;
+
+    protected final AtomicLong transformNanos = new AtomicLong();
+    protected final AtomicInteger transformedCount = new AtomicInteger();
+    protected final AtomicInteger skippedCount = new AtomicInteger();
+
+    public PreWovenAwareClassTransformer(BroadleafClassTransformer delegate, String transformerId, PreWovenClassManifest manifest) {
+        this.delegate = delegate;
+        this.transformerId = transformerId;
+        this.manifest = manifest;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+        if (classBeingRedefined == null && manifest.isPreWoven(className, transformerId, classfileBuffer)) {
+            skippedCount.incrementAndGet();
+            return null;
+        }
+        long start = System.nanoTime();
+        byte[] response;
+        try {
+            response = delegate.transform(loader, className, classBeingRedefined, protectionDomain, classfileBuffer);
+        } finally {
+            transformNanos.addAndGet(System.nanoTime() - start);
+        }
+        if (response != null) {
+            transformedCount.incrementAndGet();
+            if (manifest.isCapturing()) {
+                try {
+                    manifest.record(className, transformerId, response);
+                } catch (IOException e) {
+                    LOG.error("Unable to record the woven version of " + className, e);
+                }
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public void compileJPAProperties(Properties props, Object key) throws Exception {
+        delegate.compileJPAProperties(props, key);
+    }
+
+    public BroadleafClassTransformer getDelegate() {
+        return delegate;
+    }
+
+    public String getTransformerId() {
+        return transformerId;
+    }
+
+    public long getTransformMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(transformNanos.get());
+    }
+
+    public int getTransformedCount() {
+        return transformedCount.get();
+    }
+
+    public int getSkippedCount() {
+        return skippedCount.get();
+    }
+}
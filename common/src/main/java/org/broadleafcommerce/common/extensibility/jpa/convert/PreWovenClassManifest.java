@@ -0,0 +1,159 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extensibility.jpa.convert;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Describes entity classes whose class transformation was performed ahead of time (at build time) rather than at class
+ * load. For each class, the manifest records the ids of the transformers that were applied and a digest of the
+ * resulting bytecode. At runtime, a transformer is skipped for a class only when the bytes being loaded match the
+ * recorded digest, so a stale or missing woven class simply falls back to load-time transformation.
+ * </p>
+ * Manifests are read from every {@link #MANIFEST_LOCATION} resource on the classpath. When a capture directory is
+ * configured, the manifest (and the woven class files) are written to that directory instead, so that a single boot of
+ * the application during the build produces the pre-woven output. That output should be placed on the classpath ahead
+ * of the original compiled classes (e.g. in WEB-INF/classes or a jar ordered first).
+ */
+public class PreWovenClassManifest {
+
+    private static final Log LOG = LogFactory.getLog(PreWovenClassManifest.class);
+
+    public static final String MANIFEST_LOCATION = "META-INF/broadleaf-woven-classes.properties";
+
+    protected static final String TRANSFORMERS = ".transformers";
+    protected static final String DIGEST = ".digest";
+
+    protected final Properties properties = new Properties();
+    protected final File captureDirectory;
+
+    public PreWovenClassManifest(File captureDirectory) {
+        this.captureDirectory = captureDirectory;
+    }
+
+    /**
+     * Load all manifests visible to the given {@link ClassLoader}.
+     *
+     * @param captureDirectory the directory woven classes should be written to, or null if capture is disabled
+     */
+    public static PreWovenClassManifest load(ClassLoader classLoader, File captureDirectory) throws IOException {
+        PreWovenClassManifest manifest = new PreWovenClassManifest(captureDirectory);
+        if (captureDirectory == null) {
+            Enumeration<URL> resources = classLoader.getResources(MANIFEST_LOCATION);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                InputStream is = url.openStream();
+                try {
+                    manifest.properties.load(is);
+                } finally {
+                    is.close();
+                }
+                LOG.info("Loaded pre-woven class manifest from " + url);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * @return whether or not the given bytecode is the pre-woven version of the class and already includes the work of
+     * the given transformer
+     */
+    public boolean isPreWoven(String className, String transformerId, byte[] classfileBuffer) {
+        if (properties.isEmpty() || className == null) {
+            return false;
+        }
+        String key = toKey(className);
+        String transformers = properties.getProperty(key + TRANSFORMERS);
+        if (transformers == null || !getTransformerIds(transformers).contains(transformerId)) {
+            return false;
+        }
+        return DigestUtils.md5Hex(classfileBuffer).equals(properties.getProperty(key + DIGEST));
+    }
+
+    public boolean isCapturing() {
+        return captureDirectory != null;
+    }
+
+    /**
+     * Record the output of a transformer during capture. Transformers are applied to a class in sequence, so the bytes
+     * recorded by the last transformer are the final, woven version of the class.
+     */
+    public synchronized void record(String className, String transformerId, byte[] transformed) throws IOException {
+        if (!isCapturing()) {
+            return;
+        }
+        String key = toKey(className);
+        Set<String> ids = getTransformerIds(properties.getProperty(key + TRANSFORMERS));
+        ids.add(transformerId);
+        properties.setProperty(key + TRANSFORMERS, StringUtils.join(ids, ','));
+        properties.setProperty(key + DIGEST, DigestUtils.md5Hex(transformed));
+
+        File classFile = new File(captureDirectory, className.replace('.', '/') + ".class");
+        write(classFile, transformed);
+        save();
+    }
+
+    protected void save() throws IOException {
+        File manifestFile = new File(captureDirectory, MANIFEST_LOCATION);
+        manifestFile.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream(manifestFile);
+        try {
+            properties.store(os, "Broadleaf pre-woven entity classes");
+        } finally {
+            os.close();
+        }
+    }
+
+    protected void write(File file, byte[] contents) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(contents);
+        } finally {
+            os.close();
+        }
+    }
+
+    protected Set<String> getTransformerIds(String transformers) {
+        Set<String> ids = new LinkedHashSet<>();
+        if (transformers != null) {
+            for (String id : StringUtils.split(transformers, ',')) {
+                ids.add(id.trim());
+            }
+        }
+        return ids;
+    }
+
+    protected String toKey(String className) {
+        return className.replace('/', '.');
+    }
+}
@@ -19,14 +19,20 @@ package org.broadleafcommerce.common.extension;
 
 import org.apache.commons.beanutils.BeanComparator;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The ExtensionManager pattern is intended for out of box components to be extended by Broadleaf modules.
@@ -37,17 +43,28 @@ import java.util.List;
  * The default extension manager pattern loops through all handlers and examines their {@link ExtensionResultStatusType} 
  * to determine whether or not to continue with other handlers.
  * 
+ * Handlers are dispatched to from an immutable, sorted snapshot of the registered handlers (see
+ * {@link #getHandlerSnapshot()}) that is replaced (rather than modified) when the handlers change, so the proxy never
+ * takes a lock. Calls on the proxy are dispatched
+ * through {@link MethodHandle}s created for each method of the handler interface when the manager is constructed, and
+ * return {@link ExtensionResultStatusType#NOT_HANDLED} straight away when no handlers are registered.
+ * 
  * @author bpolster
  *
  * @param <T>
  */
 public abstract class ExtensionManager<T extends ExtensionHandler> implements InvocationHandler {
 
-    protected boolean handlersSorted = false;
+    protected static final Object[] EMPTY_ARGS = new Object[0];
+
+    protected volatile boolean handlersSorted = false;
     protected static String LOCK_OBJECT = new String("EM_LOCK");
     
     protected T extensionHandler;
     protected List<T> handlers = new ArrayList<T>();
+    protected volatile List<T> handlerSnapshot = Collections.emptyList();
+    protected final List<T> handlerView = new HandlerListView();
+    protected final Map<Method, MethodHandle> dispatchers = new HashMap<Method, MethodHandle>();
 
     /**
      * Should take in a className that matches the ExtensionHandler interface being managed.
@@ -58,6 +75,12 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
         extensionHandler = (T) Proxy.newProxyInstance(_clazz.getClassLoader(),
                 new Class[] { _clazz },
                 this);
+        for (Method method : _clazz.getMethods()) {
+            MethodHandle dispatcher = createDispatcher(method);
+            if (dispatcher != null) {
+                dispatchers.put(method, dispatcher);
+            }
+        }
     }
     
     public T getProxy() {
@@ -68,27 +91,58 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
      * If you are attempting to register a handler with this manager and are invoking this outside of an {@link ExtensionManager}
      * subclass, consider using {@link #registerHandler(ExtensionHandler)} instead.
      * 
-     * While the sorting of the handlers prior to their return is thread safe, adding directly to this list is not.
+     * The returned list is sorted by priority and may be modified. Changes made through it are thread safe and are
+     * picked up by the next call on the proxy. Use {@link #getHandlerSnapshot()} to read the handlers without locking.
      * 
      * @return a list of handlers sorted by their priority
      * @see {@link #registerHandler(ExtensionHandler)}
      */
     public List<T> getHandlers() {
+        getHandlerSnapshot();
+        return handlerView;
+    }
+
+    /**
+     * @return an immutable snapshot of the handlers sorted by their priority. Handlers registered later are not
+     * reflected in it.
+     */
+    public List<T> getHandlerSnapshot() {
         if (!handlersSorted) {
             synchronized (LOCK_OBJECT) {
-                sortHandlers();
+                if (!handlersSorted) {
+                    sortHandlers();
+                    handlerSnapshot = Collections.unmodifiableList(new ArrayList<T>(handlers));
+                    handlersSorted = true;
+                }
             }
         }
-        return handlers;
+        return handlerSnapshot;
     }
 
+    /**
+     * The handlers a call on the proxy is dispatched to. Subclasses that override {@link #getHandlers()} to return a
+     * different list (for example to disable themselves in some contexts) are still honored.
+     */
+    protected List<T> getDispatchHandlers() {
+        List<T> current = getHandlers();
+        return current == handlerView ? getHandlerSnapshot() : current;
+    }
+
+    /**
+     * @return whether any handlers are registered. Callers on very hot paths may use this to avoid building the
+     * arguments of a call on the proxy.
+     */
+    public boolean hasHandlers() {
+        return !getDispatchHandlers().isEmpty();
+    }
+
+    /**
+     * Sort the working list of handlers, prior to a new snapshot being taken. Always called while holding the lock.
+     */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     protected void sortHandlers() {
-        if (!handlersSorted) {
-            Comparator fieldCompare = new BeanComparator("priority");
-            Collections.sort(handlers, fieldCompare);
-            handlersSorted = true;
-        }
+        Comparator fieldCompare = new BeanComparator("priority");
+        Collections.sort(handlers, fieldCompare);
     }
     
     /**
@@ -120,9 +174,12 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
     }
 
     public void setHandlers(List<T> handlers) {
-        this.handlers = handlers;
+        synchronized (LOCK_OBJECT) {
+            this.handlers = new ArrayList<T>(handlers);
+            handlersSorted = false;
+        }
     }
-    
+
     /**
      * Utility method that is useful for determining whether or not an ExtensionManager implementation
      * should continue after processing a ExtensionHandler call.
@@ -166,22 +223,40 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        boolean notHandled = true;
-        for (ExtensionHandler handler : getHandlers()) {
+        if (method.getDeclaringClass() == Object.class) {
             try {
-                if (handler.isEnabled()) {
-                    ExtensionResultStatusType result = (ExtensionResultStatusType) method.invoke(handler, args);
-                    if (!ExtensionResultStatusType.NOT_HANDLED.equals(result)) {
-                        notHandled = false;
-                    }
-                    if (!shouldContinue(result, handler, method, args)) {
-                        break;
-                    }
-                }
+                return method.invoke(this, args);
             } catch (InvocationTargetException e) {
                 throw e.getCause();
             }
         }
+        List<T> current = getDispatchHandlers();
+        if (current.isEmpty()) {
+            return ExtensionResultStatusType.NOT_HANDLED;
+        }
+        MethodHandle dispatcher = dispatchers.get(method);
+        Object[] params = args == null ? EMPTY_ARGS : args;
+        boolean notHandled = true;
+        for (ExtensionHandler handler : current) {
+            if (handler.isEnabled()) {
+                ExtensionResultStatusType result;
+                if (dispatcher != null) {
+                    result = (ExtensionResultStatusType) (Object) dispatcher.invokeExact((Object) handler, params);
+                } else {
+                    try {
+                        result = (ExtensionResultStatusType) method.invoke(handler, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+                if (!ExtensionResultStatusType.NOT_HANDLED.equals(result)) {
+                    notHandled = false;
+                }
+                if (!shouldContinue(result, handler, method, args)) {
+                    break;
+                }
+            }
+        }
         if (notHandled) {
             return ExtensionResultStatusType.NOT_HANDLED;
         } else {
@@ -189,6 +264,20 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
         }
     }
 
+    /**
+     * Create a handle that invokes the given interface method on a handler, taking the handler and an array of the
+     * arguments, or null if the method is not accessible (in which case the call falls back to reflection)
+     */
+    protected MethodHandle createDispatcher(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method)
+                    .asSpreader(Object[].class, method.getParameterTypes().length)
+                    .asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
     /**
      * Provides a mechanism for executing multiple extension handler touchpoints without utilizing reflection. This is a reasonable
      * alternative when the ExtensionManager is used in an operation that is very sensitive to the time cost involved in reflection
@@ -199,8 +288,12 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
      * @return
      */
     protected ExtensionResultStatusType execute(ExtensionManagerOperation operation, Object... params) {
+        List<T> current = getDispatchHandlers();
+        if (current.isEmpty()) {
+            return ExtensionResultStatusType.NOT_HANDLED;
+        }
         boolean notHandled = true;
-        for (ExtensionHandler handler : getHandlers()) {
+        for (ExtensionHandler handler : current) {
             if (handler.isEnabled()) {
                 ExtensionResultStatusType result = operation.execute(handler, params);
                 if (!ExtensionResultStatusType.NOT_HANDLED.equals(result)) {
@@ -217,4 +310,54 @@ public abstract class ExtensionManager<T extends ExtensionHandler> implements In
             return ExtensionResultStatusType.HANDLED;
         }
     }
+
+    /**
+     * The modifiable list returned by {@link #getHandlers()}. Reads go to the current snapshot without locking. Writes
+     * modify the working list under the lock and mark the snapshot stale, so handlers that add themselves with
+     * {@code getHandlers().add(this)} are dispatched to. Indexes refer to the sorted order of the snapshot.
+     */
+    protected class HandlerListView extends AbstractList<T> {
+
+        @Override
+        public T get(int index) {
+            return getHandlerSnapshot().get(index);
+        }
+
+        @Override
+        public int size() {
+            return getHandlerSnapshot().size();
+        }
+
+        @Override
+        public T set(int index, T element) {
+            synchronized (LOCK_OBJECT) {
+                // sort the working list first so that the index matches the snapshot
+                getHandlerSnapshot();
+                T previous = handlers.set(index, element);
+                handlersSorted = false;
+                return previous;
+            }
+        }
+
+        @Override
+        public void add(int index, T element) {
+            synchronized (LOCK_OBJECT) {
+                getHandlerSnapshot();
+                handlers.add(index, element);
+                handlersSorted = false;
+                modCount++;
+            }
+        }
+
+        @Override
+        public T remove(int index) {
+            synchronized (LOCK_OBJECT) {
+                getHandlerSnapshot();
+                T removed = handlers.remove(index);
+                handlersSorted = false;
+                modCount++;
+                return removed;
+            }
+        }
+    }
 }
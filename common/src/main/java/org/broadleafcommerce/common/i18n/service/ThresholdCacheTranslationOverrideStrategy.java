@@ -77,6 +77,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
         if (cacheResult == null) {
             statisticsService.addCacheStat(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), false);
             if (dao.countTranslationEntries(entityType, ResultType.STANDARD_CACHE) < translationSupport.getThresholdForFullCache()) {
+                long loadStart = System.nanoTime();
                 Map<String, Map<String, StandardCacheItem>> propertyTranslationMap = new HashMap<String, Map<String, StandardCacheItem>>();
                 List<StandardCacheItem> convertedList = dao.readConvertedTranslationEntries(entityType, ResultType.STANDARD_CACHE);
                 if (!CollectionUtils.isEmpty(convertedList)) {
@@ -90,6 +91,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
                     }
                 }
                 translationSupport.getCache().put(basicCacheKey, propertyTranslationMap);
+                statisticsService.addCacheLoadTime(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), System.nanoTime() - loadStart);
                 result = propertyTranslationMap;
             } else {
                 //Translation is dual discriminated by site and catalog, which can make it impossible to find results under normal
@@ -122,6 +124,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
         if (cacheResult == null) {
             statisticsService.addCacheStat(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), false);
             if (dao.countTranslationEntries(entityType, ResultType.TEMPLATE_CACHE) < translationSupport.getTemplateThresholdForFullCache()) {
+                long loadStart = System.nanoTime();
                 Map<String, Map<String, Translation>> propertyTranslationMap = new HashMap<String, Map<String, Translation>>();
                 List<Translation> translationList = dao.readAllTranslationEntries(entityType, ResultType.TEMPLATE_CACHE);
                 if (!CollectionUtils.isEmpty(translationList)) {
@@ -134,6 +137,7 @@ public class ThresholdCacheTranslationOverrideStrategy implements TranslationOve
                     }
                 }
                 translationSupport.getCache().put(templateCacheKey, propertyTranslationMap);
+                statisticsService.addCacheLoadTime(CacheStatType.TRANSLATION_CACHE_HIT_RATE.toString(), System.nanoTime() - loadStart);
                 Translation translation = translationSupport.findBestTemplateTranslation(specificPropertyKey, generalPropertyKey, propertyTranslationMap, entityId);
                 if (translation != null) {
                     buildSingleItemResponse(response, translation);
@@ -17,8 +17,14 @@
  */
 package org.broadleafcommerce.common.id.service;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Resource;
 import javax.persistence.OptimisticLockException;
@@ -27,17 +33,44 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.id.dao.IdGenerationDao;
 import org.broadleafcommerce.common.id.domain.IdGeneration;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * Generates ids from ranges claimed through {@link IdGenerationDao}. Each id type has its own
+ * {@link IdRangeAllocator}, which hands out ids without locking and claims the next range in the background before
+ * the current one runs out.
+ */
 @Service("blIdGenerationService")
-public class IdGenerationServiceImpl implements IdGenerationService {
+public class IdGenerationServiceImpl implements IdGenerationService, DisposableBean {
 
     private static final Log LOG = LogFactory.getLog(IdGenerationServiceImpl.class);
 
     @Resource(name="blIdGenerationDao")
     protected IdGenerationDao idGenerationDao;
 
-    protected Map<String, Id> idTypeIdMap = new HashMap<String, Id>();
+    /**
+     * If false, ranges are only ever claimed by the caller that finds the current range exhausted
+     */
+    @Value("${id.generation.prefetch.enabled:true}")
+    protected boolean prefetchEnabled = true;
+
+    /**
+     * The maximum number of ranges per id type to claim ahead of the one in use when ids are consumed quickly
+     */
+    @Value("${id.generation.prefetch.maxRanges:4}")
+    protected int maxPrefetchRanges = 4;
+
+    /**
+     * The fraction of the current range left when the next range is claimed in the background
+     */
+    @Value("${id.generation.prefetch.lowWaterRatio:0.25}")
+    protected double lowWaterRatio = 0.25D;
+
+    protected final ConcurrentMap<String, IdRangeAllocator> allocators = new ConcurrentHashMap<>();
+
+    protected volatile ExecutorService prefetchExecutor;
 
     @Override
     public Long findNextId(String idType) {
@@ -46,40 +79,75 @@ public class IdGenerationServiceImpl implements IdGenerationService {
 
     @Override
     public Long findNextId(String idType, Long batchSize) {
-        Id id;
-        synchronized (idTypeIdMap) {
-            id = idTypeIdMap.get(idType);
-            if (id == null) {
-                // recheck, another thread may have added this.
-                id = idTypeIdMap.get(idType);
-                if (id == null) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Getting the initial id from the database.");
-                    }
-                    IdGeneration idGeneration = getCurrentIdRange(idType, batchSize);
-                    id = new Id(idGeneration.getBatchStart(), idGeneration.getBatchSize());
-                }
-                idTypeIdMap.put(idType, id);
+        if (batchSize != null && batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size for idType " + idType + " must be greater than 0, but was "
+                    + batchSize);
+        }
+        IdRangeAllocator allocator = allocators.get(idType);
+        if (allocator == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Creating the id allocator for idType " + idType);
+            }
+            IdRangeAllocator created = createAllocator(idType, batchSize);
+            allocator = allocators.putIfAbsent(idType, created);
+            if (allocator == null) {
+                allocator = created;
             }
         }
+        return allocator.nextId();
+    }
+
+    /**
+     * @return the allocator of each id type that has been used so far, keyed by id type
+     */
+    public Map<String, IdRangeAllocator> getAllocators() {
+        return Collections.unmodifiableMap(allocators);
+    }
 
-        synchronized(id) {
-            if (id.batchSize == 0L) {
+    protected IdRangeAllocator createAllocator(String idType, final Long batchSize) {
+        IdRangeAllocator.RangeSource rangeSource = new IdRangeAllocator.RangeSource() {
+            @Override
+            public long[] claimRange(String type) {
                 if (LOG.isDebugEnabled()) {
-                    LOG.debug("Updating batch size for idType " + idType);
+                    LOG.debug("Claiming the next id range for idType " + type);
                 }
-                IdGeneration idGeneration = getCurrentIdRange(idType, batchSize);
-                id.nextId = idGeneration.getBatchStart();
-                id.batchSize = idGeneration.getBatchSize();
+                IdGeneration idGeneration = getCurrentIdRange(type, batchSize);
+                return new long[] { idGeneration.getBatchStart(), idGeneration.getBatchSize() };
             }
-            Long retId = id.nextId++;
-            id.batchSize--;
+        };
+        return new IdRangeAllocator(idType, rangeSource, prefetchEnabled ? getPrefetchExecutor() : null,
+                maxPrefetchRanges, lowWaterRatio);
+    }
+
+    protected ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            synchronized (this) {
+                if (prefetchExecutor == null) {
+                    prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
 
-            return retId;
+                        protected final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "id-generation-prefetch-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return prefetchExecutor;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
         }
     }
-    
-    private IdGeneration getCurrentIdRange(String idType, Long batchSize) {
+
+    protected IdGeneration getCurrentIdRange(String idType, Long batchSize) {
         IdGeneration idGeneration = null;
         int retryCount = 0;
         boolean stale = true;
@@ -102,14 +170,4 @@ public class IdGenerationServiceImpl implements IdGenerationService {
         }
         return idGeneration;
     }
-
-    private class Id {
-        public Long nextId;
-        public Long batchSize;
-
-        public Id(Long nextId, Long batchSize) {
-            this.nextId = nextId;
-            this.batchSize = batchSize;
-        }
-    }
 }
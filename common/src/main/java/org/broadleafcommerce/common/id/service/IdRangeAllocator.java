@@ -0,0 +1,255 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.id.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out ids for a single id type from ranges claimed through {@link IdGenerationServiceImpl}.
+ * <p>
+ * Ids are taken from the current range with an atomic increment, so callers never lock while the range lasts. Once
+ * a range has been consumed down to its low-water mark, the next range is claimed in the background so that it is
+ * normally already available when the current one runs out. Only if no prefetched range is available does a caller
+ * have to claim a range itself, which is counted as contention.
+ * <p>
+ * The number of ranges kept ahead adapts to the consumption rate: ranges that are used up faster than
+ * {@link #FAST_RANGE_NANOS} increase the prefetch depth, up to the configured maximum, and ranges that last longer
+ * than {@link #SLOW_RANGE_NANOS} decrease it again.
+ */
+public class IdRangeAllocator {
+
+    private static final Log LOG = LogFactory.getLog(IdRangeAllocator.class);
+
+    protected static final long FAST_RANGE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    protected static final long SLOW_RANGE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    /**
+     * A sequence with an end value can hand out an empty range when it wraps back to its beginning, so an empty range
+     * is retried, but only this many times in a row
+     */
+    protected static final int MAX_EMPTY_RANGES = 10;
+
+    protected final String idType;
+    protected final RangeSource rangeSource;
+    protected final Executor prefetchExecutor;
+    protected final int maxPrefetchRanges;
+    protected final double lowWaterRatio;
+
+    protected volatile IdRange current;
+    protected final ConcurrentLinkedQueue<IdRange> prefetched = new ConcurrentLinkedQueue<>();
+    protected final AtomicBoolean prefetching = new AtomicBoolean();
+    protected final AtomicInteger prefetchDepth = new AtomicInteger(1);
+
+    protected final AtomicLong refillCount = new AtomicLong();
+    protected final AtomicLong totalRefillNanos = new AtomicLong();
+    protected final AtomicLong maxRefillNanos = new AtomicLong();
+    protected final AtomicLong synchronousRefillCount = new AtomicLong();
+
+    /**
+     * @param idType the id type this allocator serves
+     * @param rangeSource claims the next range from the database
+     * @param prefetchExecutor runs background refills, or null to always refill on the calling thread
+     * @param maxPrefetchRanges the maximum number of ranges to claim ahead of the current one
+     * @param lowWaterRatio the fraction of a range left when the background refill starts
+     */
+    public IdRangeAllocator(String idType, RangeSource rangeSource, Executor prefetchExecutor, int maxPrefetchRanges,
+            double lowWaterRatio) {
+        this.idType = idType;
+        this.rangeSource = rangeSource;
+        this.prefetchExecutor = prefetchExecutor;
+        this.maxPrefetchRanges = Math.max(1, maxPrefetchRanges);
+        this.lowWaterRatio = Math.min(1D, Math.max(0D, lowWaterRatio));
+    }
+
+    public long nextId() {
+        while (true) {
+            IdRange range = current;
+            if (range != null) {
+                long id = range.next.getAndIncrement();
+                if (id < range.end) {
+                    if (id == range.lowWaterId) {
+                        prefetch();
+                    }
+                    return id;
+                }
+            }
+            advance(range);
+        }
+    }
+
+    /**
+     * Replaces the exhausted range with a prefetched one, or claims a new one on the calling thread if none is
+     * available. Only one thread performs the switch; the others retry against the new range.
+     */
+    protected synchronized void advance(IdRange exhausted) {
+        if (current != exhausted) {
+            return;
+        }
+        if (exhausted != null) {
+            adaptPrefetchDepth(System.nanoTime() - exhausted.startedNanos);
+        }
+        IdRange next = prefetched.poll();
+        if (next == null) {
+            if (exhausted != null) {
+                synchronousRefillCount.incrementAndGet();
+            }
+            next = claimRange();
+        }
+        next.startedNanos = System.nanoTime();
+        current = next;
+    }
+
+    protected void adaptPrefetchDepth(long rangeNanos) {
+        if (rangeNanos < FAST_RANGE_NANOS) {
+            int depth = prefetchDepth.get();
+            if (depth < maxPrefetchRanges && prefetchDepth.compareAndSet(depth, depth + 1) && LOG.isDebugEnabled()) {
+                LOG.debug("Increasing the id prefetch depth for " + idType + " to " + (depth + 1));
+            }
+        } else if (rangeNanos > SLOW_RANGE_NANOS) {
+            int depth = prefetchDepth.get();
+            if (depth > 1) {
+                prefetchDepth.compareAndSet(depth, depth - 1);
+            }
+        }
+    }
+
+    protected void prefetch() {
+        if (prefetchExecutor == null || !prefetching.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            prefetchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (prefetched.size() < prefetchDepth.get()) {
+                            prefetched.add(claimRange());
+                        }
+                    } catch (RuntimeException e) {
+                        LOG.warn("Unable to prefetch the next id range for " + idType
+                                + ". The range will be claimed when it is needed.", e);
+                    } finally {
+                        prefetching.set(false);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            prefetching.set(false);
+            LOG.warn("Unable to schedule the id range prefetch for " + idType, e);
+        }
+    }
+
+    protected IdRange claimRange() {
+        long start = System.nanoTime();
+        try {
+            for (int attempt = 0; attempt < MAX_EMPTY_RANGES; attempt++) {
+                long[] range = rangeSource.claimRange(idType);
+                if (range[1] > 0) {
+                    return new IdRange(range[0], range[1], lowWaterRatio);
+                }
+            }
+            throw new IllegalStateException("Unable to claim a non-empty id range for " + idType + " after "
+                    + MAX_EMPTY_RANGES + " attempts. Check the batch size, begin and end configured for this id type.");
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            refillCount.incrementAndGet();
+            totalRefillNanos.addAndGet(elapsed);
+            long max = maxRefillNanos.get();
+            while (elapsed > max && !maxRefillNanos.compareAndSet(max, elapsed)) {
+                max = maxRefillNanos.get();
+            }
+        }
+    }
+
+    public String getIdType() {
+        return idType;
+    }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth.get();
+    }
+
+    public int getPrefetchedRangeCount() {
+        return prefetched.size();
+    }
+
+    public long getRefillCount() {
+        return refillCount.get();
+    }
+
+    /**
+     * @return the average time, in milliseconds, taken to claim a range from the database
+     */
+    public double getAverageRefillMillis() {
+        long count = refillCount.get();
+        return count == 0 ? 0D : totalRefillNanos.get() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getMaxRefillMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxRefillNanos.get());
+    }
+
+    /**
+     * @return the number of times a caller found the current range exhausted with nothing prefetched and had to wait
+     * on the database
+     */
+    public long getSynchronousRefillCount() {
+        return synchronousRefillCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("IdRangeAllocator[%s] prefetch depth: %s, refills: %s, avg refill: %.2f ms, "
+                + "max refill: %s ms, synchronous refills: %s", idType, getPrefetchDepth(), getRefillCount(),
+                getAverageRefillMillis(), getMaxRefillMillis(), getSynchronousRefillCount());
+    }
+
+    /**
+     * Claims the next range of ids for an id type
+     */
+    public interface RangeSource {
+
+        /**
+         * @return a two element array holding the first id of the range and the number of ids in it
+         */
+        long[] claimRange(String idType);
+
+    }
+
+    protected static class IdRange {
+
+        protected final AtomicLong next;
+        protected final long end;
+        protected final long lowWaterId;
+        protected volatile long startedNanos;
+
+        public IdRange(long start, long size, double lowWaterRatio) {
+            this.next = new AtomicLong(start);
+            this.end = start + size;
+            this.lowWaterId = end - Math.max(1L, (long) (size * lowWaterRatio));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.persistence.transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The SQL executed during a single profiled request, grouped by statement shape. A shape is the statement with literals
+ * removed, IN lists collapsed and whitespace normalized, so that the same query issued for different ids is counted
+ * together. Once a shape is executed {@link #nPlusOneThreshold} times within the request, it is considered an N+1
+ * suspect and the first stack frame outside of the persistence infrastructure (Hibernate, Spring, the JDK, etc...) is recorded as its origin.
+ * </p>
+ * Instances are created by {@link SqlProfileManager} for sampled requests and are only ever updated by the request thread.
+ * The profile is also available from the {@link org.broadleafcommerce.common.web.BroadleafRequestContext} additional
+ * properties under {@link #REQUEST_CONTEXT_KEY}.
+ */
+public class SqlProfile {
+
+    public static final String REQUEST_CONTEXT_KEY = "blSqlProfile";
+
+    protected static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    protected static final Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    protected static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    protected static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    protected static final String[] INFRASTRUCTURE_PACKAGES = {"java.", "javax.", "jdk.", "sun.", "com.sun.",
+            "org.hibernate.", "org.springframework.", "org.apache.", "com.zaxxer."};
+    protected static final List<String> INFRASTRUCTURE_CLASSES = Arrays.asList(SqlProfile.class.getName(),
+            TransactionLifecycleAwareSqlStatementLogger.class.getName());
+
+    protected final String requestUri;
+    protected final int nPlusOneThreshold;
+    protected final long startTime = System.currentTimeMillis();
+    protected final Map<String, ShapeStatistics> shapes = new LinkedHashMap<>();
+    protected ShapeStatistics executing;
+    protected int queryCount = 0;
+    protected long totalTimeNanos = 0L;
+
+    public SqlProfile(String requestUri, int nPlusOneThreshold) {
+        this.requestUri = requestUri;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    /**
+     * Record a statement that is about to be executed
+     */
+    public void recordStatement(String statement) {
+        String shape = normalize(statement);
+        ShapeStatistics statistics = shapes.get(shape);
+        if (statistics == null) {
+            statistics = new ShapeStatistics(shape);
+            shapes.put(shape, statistics);
+        }
+        statistics.count++;
+        if (statistics.count == nPlusOneThreshold) {
+            statistics.origin = findOrigin(new Throwable().getStackTrace());
+        }
+        queryCount++;
+        executing = statistics;
+    }
+
+    /**
+     * Record the execution time of the statement most recently passed to {@link #recordStatement(String)}
+     */
+    public void recordExecutionTime(long nanos) {
+        if (executing != null) {
+            executing.totalTimeNanos += nanos;
+            totalTimeNanos += nanos;
+            executing = null;
+        }
+    }
+
+    public String getRequestUri() {
+        return requestUri;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public int getQueryCount() {
+        return queryCount;
+    }
+
+    public long getTotalDbTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalTimeNanos);
+    }
+
+    public int getShapeCount() {
+        return shapes.size();
+    }
+
+    /**
+     * @return the shapes executed most often during the request, ties broken by total time
+     */
+    public List<ShapeStatistics> getTopShapes(int max) {
+        List<ShapeStatistics> response = new ArrayList<>(shapes.values());
+        Collections.sort(response, new Comparator<ShapeStatistics>() {
+            @Override
+            public int compare(ShapeStatistics o1, ShapeStatistics o2) {
+                if (o1.count != o2.count) {
+                    return o1.count > o2.count ? -1 : 1;
+                }
+                return Long.compare(o2.totalTimeNanos, o1.totalTimeNanos);
+            }
+        });
+        return response.size() > max ? new ArrayList<>(response.subList(0, max)) : response;
+    }
+
+    /**
+     * @return the shapes executed at least {@link #nPlusOneThreshold} times during the request
+     */
+    public List<ShapeStatistics> getNPlusOneSuspects() {
+        List<ShapeStatistics> response = new ArrayList<>();
+        for (ShapeStatistics statistics : shapes.values()) {
+            if (statistics.count >= nPlusOneThreshold) {
+                response.add(statistics);
+            }
+        }
+        return response;
+    }
+
+    public Map<String, ShapeStatistics> getShapes() {
+        return Collections.unmodifiableMap(shapes);
+    }
+
+    public String toSummary(int maxShapes) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("SQL profile for %s: %s queries, %s distinct shapes, %sms in the database",
+                requestUri, queryCount, shapes.size(), getTotalDbTimeMillis()));
+        for (ShapeStatistics statistics : getTopShapes(maxShapes)) {
+            sb.append("\n\t").append(statistics);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toSummary(5);
+    }
+
+    public static String normalize(String statement) {
+        String shape = STRING_LITERAL.matcher(statement).replaceAll("?");
+        shape = NUMERIC_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (...)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    protected static String findOrigin(StackTraceElement[] elements) {
+        for (StackTraceElement element : elements) {
+            String className = element.getClassName();
+            if (className.contains("$$") || INFRASTRUCTURE_CLASSES.contains(className)) {
+                continue;
+            }
+            boolean isInfrastructure = false;
+            for (String prefix : INFRASTRUCTURE_PACKAGES) {
+                if (className.startsWith(prefix)) {
+                    isInfrastructure = true;
+                    break;
+                }
+            }
+            if (!isInfrastructure) {
+                return element.toString();
+            }
+        }
+        return null;
+    }
+
+    public static class ShapeStatistics {
+
+        protected final String shape;
+        protected int count = 0;
+        protected long totalTimeNanos = 0L;
+        protected String origin;
+
+        public ShapeStatistics(String shape) {
+            this.shape = shape;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getTotalTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(totalTimeNanos);
+        }
+
+        /**
+         * @return the first application stack frame that executed this shape once it became an N+1 suspect, or null
+         */
+        public String getOrigin() {
+            return origin;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%sx %sms %s%s", count, getTotalTimeMillis(), shape, origin == null ? "" : " <- " + origin);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.persistence.transaction;
+
+import org.broadleafcommerce.common.web.filter.AbstractIgnorableOncePerRequestFilter;
+import org.broadleafcommerce.common.web.filter.FilterOrdered;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Profiles the SQL executed by a sample of requests via {@link SqlProfileManager}. This filter is ordered after the
+ * BroadleafRequestFilter so that the profile can be attached to the BroadleafRequestContext.
+ */
+@Component("blSqlProfileFilter")
+public class SqlProfileFilter extends AbstractIgnorableOncePerRequestFilter {
+
+    @Autowired
+    @Qualifier("blSqlProfileManager")
+    protected SqlProfileManager sqlProfileManager;
+
+    @Override
+    protected void doFilterInternalUnlessIgnored(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
+        SqlProfile profile = sqlProfileManager.startProfile(request.getRequestURI());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (profile != null) {
+                sqlProfileManager.endProfile(profile);
+            }
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return FilterOrdered.PRE_SECURITY_LOW + 100;
+    }
+}
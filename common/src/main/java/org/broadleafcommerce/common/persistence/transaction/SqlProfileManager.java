@@ -0,0 +1,276 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.persistence.transaction;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts and finishes {@link SqlProfile} instances for a sample of requests (see {@link SqlProfileFilter}) and keeps
+ * running totals across the profiled requests that can be reviewed over JMX. Statements are fed to the current profile
+ * by {@link TransactionLifecycleAwareSqlStatementLogger}, regardless of whether {@link TransactionLifecycleMonitor} is
+ * enabled.
+ * </p>
+ * Profiling is disabled by default. The {@link #sampleRate} variable can be controlled via the 'sql.profile.sample.rate'
+ * property, as a fraction of requests between 0 and 1. Requests that are not sampled pay for a single ThreadLocal lookup
+ * per statement, so a rate of 0.01 is suitable for production.
+ * </p>
+ * The {@link #nPlusOneThreshold} variable can be controlled via the 'sql.profile.n.plus.one.threshold' property. The
+ * default value is 10.
+ * </p>
+ * The {@link #logEnabled} variable can be controlled via the 'sql.profile.log.enabled' property. When true, the summary
+ * of every profiled request is logged at INFO and requests with N+1 suspects are logged at WARN. The default value is false.
+ * </p>
+ * The {@link #maxShapes} variable can be controlled via the 'sql.profile.max.shapes' property and caps the number of
+ * distinct shapes aggregated for JMX. The default value is 1000.
+ */
+@Component("blSqlProfileManager")
+@ManagedResource(objectName="org.broadleafcommerce:name=SqlProfileManager", description="Per Request SQL Profiling", currencyTimeLimit=15)
+public class SqlProfileManager {
+
+    private static final Log LOG = LogFactory.getLog(SqlProfileManager.class);
+
+    private static final ThreadLocal<SqlProfile> PROFILE = ThreadLocalManager.createThreadLocal(SqlProfile.class, false);
+
+    static {
+        // a profile is only ever updated by the request thread
+        ThreadLocalManager.excludeFromPropagation(PROFILE);
+    }
+
+    /**
+     * @return the profile of the current request, or null if the current request is not being profiled
+     */
+    public static SqlProfile getCurrentProfile() {
+        return PROFILE.get();
+    }
+
+    @Value("${sql.profile.sample.rate:0}")
+    protected double sampleRate = 0D;
+
+    @Value("${sql.profile.n.plus.one.threshold:10}")
+    protected int nPlusOneThreshold = 10;
+
+    @Value("${sql.profile.log.enabled:false}")
+    protected boolean logEnabled = false;
+
+    @Value("${sql.profile.log.top.shapes:5}")
+    protected int logTopShapes = 5;
+
+    @Value("${sql.profile.max.shapes:1000}")
+    protected int maxShapes = 1000;
+
+    protected final AtomicLong profiledRequestCount = new AtomicLong();
+    protected final AtomicLong nPlusOneRequestCount = new AtomicLong();
+    protected final AtomicLong queryCount = new AtomicLong();
+    protected final AtomicLong totalDbTimeMillis = new AtomicLong();
+    protected final ConcurrentMap<String, AggregateShape> shapes = new ConcurrentHashMap<>();
+
+    /**
+     * Begin profiling the current request if it is selected by the sample rate
+     *
+     * @return the new profile, or null if the request is not sampled
+     */
+    public SqlProfile startProfile(String requestUri) {
+        double rate = sampleRate;
+        if (rate <= 0D || (rate < 1D && ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return null;
+        }
+        SqlProfile profile = new SqlProfile(requestUri, nPlusOneThreshold);
+        PROFILE.set(profile);
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (context != null) {
+            context.getAdditionalProperties().put(SqlProfile.REQUEST_CONTEXT_KEY, profile);
+        }
+        return profile;
+    }
+
+    public void endProfile(SqlProfile profile) {
+        ThreadLocalManager.remove(PROFILE);
+        profiledRequestCount.incrementAndGet();
+        queryCount.addAndGet(profile.getQueryCount());
+        totalDbTimeMillis.addAndGet(profile.getTotalDbTimeMillis());
+        for (SqlProfile.ShapeStatistics statistics : profile.getShapes().values()) {
+            AggregateShape aggregate = shapes.get(statistics.getShape());
+            if (aggregate == null) {
+                if (shapes.size() >= maxShapes) {
+                    continue;
+                }
+                AggregateShape newAggregate = new AggregateShape(statistics.getShape());
+                aggregate = shapes.putIfAbsent(statistics.getShape(), newAggregate);
+                if (aggregate == null) {
+                    aggregate = newAggregate;
+                }
+            }
+            aggregate.record(statistics);
+        }
+        List<SqlProfile.ShapeStatistics> suspects = profile.getNPlusOneSuspects();
+        if (!suspects.isEmpty()) {
+            nPlusOneRequestCount.incrementAndGet();
+        }
+        if (logEnabled) {
+            if (!suspects.isEmpty() && LOG.isWarnEnabled()) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(String.format("Possible N+1 query pattern detected for %s:", profile.getRequestUri()));
+                for (SqlProfile.ShapeStatistics suspect : suspects) {
+                    sb.append("\n\t").append(suspect);
+                }
+                LOG.warn(sb.toString());
+            }
+            if (LOG.isInfoEnabled()) {
+                LOG.info(profile.toSummary(logTopShapes));
+            }
+        }
+    }
+
+    @ManagedAttribute(description="The fraction of requests, between 0 and 1, that are profiled")
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @ManagedAttribute(description="The fraction of requests, between 0 and 1, that are profiled")
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @ManagedAttribute(description="The number of executions of a shape within a request that marks it as an N+1 suspect")
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+
+    @ManagedAttribute(description="The number of executions of a shape within a request that marks it as an N+1 suspect")
+    public void setNPlusOneThreshold(int nPlusOneThreshold) {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @ManagedAttribute(description="Log the summary of each profiled request")
+    public boolean isLogEnabled() {
+        return logEnabled;
+    }
+
+    @ManagedAttribute(description="Log the summary of each profiled request")
+    public void setLogEnabled(boolean logEnabled) {
+        this.logEnabled = logEnabled;
+    }
+
+    @ManagedAttribute(description="The number of requests profiled")
+    public long getProfiledRequestCount() {
+        return profiledRequestCount.get();
+    }
+
+    @ManagedAttribute(description="The number of profiled requests with at least one N+1 suspect")
+    public long getNPlusOneRequestCount() {
+        return nPlusOneRequestCount.get();
+    }
+
+    @ManagedAttribute(description="The average number of queries per profiled request")
+    public double getAverageQueryCount() {
+        long requests = profiledRequestCount.get();
+        return requests == 0 ? 0D : (double) queryCount.get() / requests;
+    }
+
+    @ManagedAttribute(description="The average database time in milliseconds per profiled request")
+    public double getAverageDbTimeMillis() {
+        long requests = profiledRequestCount.get();
+        return requests == 0 ? 0D : (double) totalDbTimeMillis.get() / requests;
+    }
+
+    @ManagedOperation(description="Retrieve the shapes with the most total executions across profiled requests")
+    @ManagedOperationParameters({@ManagedOperationParameter(name = "max", description = "the maximum number of shapes to return")})
+    public List<String> getTopShapes(int max) {
+        List<AggregateShape> sorted = new ArrayList<>(shapes.values());
+        Collections.sort(sorted, new Comparator<AggregateShape>() {
+            @Override
+            public int compare(AggregateShape o1, AggregateShape o2) {
+                return Long.compare(o2.count.get(), o1.count.get());
+            }
+        });
+        List<String> response = new ArrayList<>();
+        for (AggregateShape shape : sorted.subList(0, Math.min(max, sorted.size()))) {
+            response.add(shape.toString());
+        }
+        return response;
+    }
+
+    @ManagedOperation(description="Retrieve the shapes detected as N+1 suspects across profiled requests")
+    public List<String> getNPlusOneSuspects() {
+        List<String> response = new ArrayList<>();
+        for (AggregateShape shape : shapes.values()) {
+            if (shape.nPlusOneCount.get() > 0) {
+                response.add(shape.toString());
+            }
+        }
+        return response;
+    }
+
+    @ManagedOperation(description="Clear the statistics gathered across profiled requests")
+    public void reset() {
+        profiledRequestCount.set(0L);
+        nPlusOneRequestCount.set(0L);
+        queryCount.set(0L);
+        totalDbTimeMillis.set(0L);
+        shapes.clear();
+    }
+
+    protected class AggregateShape {
+
+        protected final String shape;
+        protected final AtomicLong count = new AtomicLong();
+        protected final AtomicLong timeMillis = new AtomicLong();
+        protected final AtomicLong nPlusOneCount = new AtomicLong();
+        protected volatile String origin;
+
+        public AggregateShape(String shape) {
+            this.shape = shape;
+        }
+
+        public void record(SqlProfile.ShapeStatistics statistics) {
+            count.addAndGet(statistics.getCount());
+            timeMillis.addAndGet(statistics.getTotalTimeMillis());
+            if (statistics.getCount() >= nPlusOneThreshold) {
+                nPlusOneCount.incrementAndGet();
+                if (statistics.getOrigin() != null) {
+                    origin = statistics.getOrigin();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%sx %sms (N+1 in %s requests) %s%s", count.get(), timeMillis.get(), nPlusOneCount.get(),
+                    shape, origin == null ? "" : " <- " + origin);
+        }
+    }
+}
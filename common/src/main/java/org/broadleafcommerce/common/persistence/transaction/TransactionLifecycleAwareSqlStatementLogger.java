@@ -20,8 +20,11 @@ package org.broadleafcommerce.common.persistence.transaction;
 import org.hibernate.engine.jdbc.internal.Formatter;
 import org.hibernate.engine.jdbc.spi.SqlStatementLogger;
 
+import java.sql.Statement;
+
 /**
- * Custom {@link SqlStatementLogger} that will log sql statements during a transaction with {@link TransactionLifecycleMonitor}.
+ * Custom {@link SqlStatementLogger} that will log sql statements during a transaction with {@link TransactionLifecycleMonitor}
+ * and record them, along with their execution time, in the {@link SqlProfile} of the current request, if any.
  *
  * @author Jeff Fischer
  */
@@ -41,5 +44,31 @@ public class TransactionLifecycleAwareSqlStatementLogger extends SqlStatementLog
         if (monitor != null) {
             monitor.log(statement);
         }
+        SqlProfile profile = SqlProfileManager.getCurrentProfile();
+        if (profile != null) {
+            profile.recordStatement(statement);
+        }
+    }
+
+    @Override
+    public long getLogSlowQuery() {
+        long logSlowQuery = super.getLogSlowQuery();
+        if (logSlowQuery < 1 && SqlProfileManager.getCurrentProfile() != null) {
+            //Hibernate only times statement execution when slow query logging is active. Ask for timing while
+            //the current request is profiled. The super implementation still decides whether a slow query is logged.
+            return Long.MAX_VALUE;
+        }
+        return logSlowQuery;
+    }
+
+    @Override
+    public void logSlowQuery(Statement statement, long startTimeNanos) {
+        if (startTimeNanos > 0) {
+            SqlProfile profile = SqlProfileManager.getCurrentProfile();
+            if (profile != null) {
+                profile.recordExecutionTime(System.nanoTime() - startTimeNanos);
+            }
+        }
+        super.logSlowQuery(statement, startTimeNanos);
     }
 }
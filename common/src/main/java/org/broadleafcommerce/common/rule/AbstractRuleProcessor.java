@@ -19,7 +19,6 @@ package org.broadleafcommerce.common.rule;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.mvel2.MVEL;
 import org.mvel2.ParserContext;
 
@@ -50,13 +49,39 @@ public abstract class AbstractRuleProcessor<T> implements RuleProcessor<T> {
     /**
      * Helpful method for processing a boolean MVEL expression and associated arguments.
      *
-     * Caches the expression in an LRUCache.
+     * Caches the expression in the {@link CompiledRuleCache} returned by {@link #getRuleCache()}.
      * @param expression
      * @param vars
      * @return the result of the expression
      */
-    protected Boolean executeExpression(String expression, Map<String, Object> vars) {
-        return MvelHelper.evaluateRule(expression, vars);
+    protected Boolean executeExpression(final String expression, final Map<String, Object> vars) {
+        RuleOutcomeMemoizer memoizer = getRuleOutcomeMemoizer();
+        if (memoizer == null) {
+            return MvelHelper.evaluateRule(expression, vars, getRuleCache(), null);
+        }
+        return memoizer.evaluate(expression, vars, new RuleOutcomeMemoizer.RuleEvaluation() {
+            @Override
+            public boolean evaluate() {
+                return MvelHelper.evaluateRule(expression, vars, getRuleCache(), null);
+            }
+        });
+    }
+
+    /**
+     * The memoizer used to reuse the outcome of expressions already evaluated against the same facts. Defaults to null,
+     * meaning every expression is evaluated. Processors whose outcome depends only on the expression and the vars
+     * passed to {@link #executeExpression(String, Map)} can return {@link RuleOutcomeMemoizer}.
+     */
+    protected RuleOutcomeMemoizer getRuleOutcomeMemoizer() {
+        return null;
+    }
+
+    /**
+     * The cache of compiled expressions used by this processor. Defaults to {@link MvelHelper#getDefaultRuleCache()},
+     * which is shared by the structured content and page rule processors.
+     */
+    protected CompiledRuleCache getRuleCache() {
+        return MvelHelper.getDefaultRuleCache();
     }
 
     /**
@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import java.io.Serializable;
+
+/**
+ * Cache of compiled rule expressions keyed by the raw rule text. Implementations must be safe for concurrent use and
+ * should compile a given rule at most once, even when many threads ask for the same uncompiled rule at the same time.
+ * <p>
+ * The default implementation is {@link DefaultCompiledRuleCache}. An alternate implementation can be used for all
+ * rules that don't supply their own cache via {@link MvelHelper#setDefaultRuleCache(CompiledRuleCache)}.
+ *
+ * @see MvelHelper#evaluateRule(String, java.util.Map, CompiledRuleCache, java.util.Map)
+ */
+public interface CompiledRuleCache {
+
+    /**
+     * Returns the compiled form of the rule, compiling it with the given compiler if it isn't cached yet.
+     *
+     * @param rule the raw rule text, used as the cache key
+     * @param compiler compiles the rule on a cache miss
+     * @return the compiled rule
+     */
+    Serializable getOrCompile(String rule, RuleCompiler compiler);
+
+    /**
+     * @return the compiled rule, or null if it is not cached
+     */
+    Serializable get(String rule);
+
+    void remove(String rule);
+
+    void clear();
+
+    int size();
+
+    /**
+     * @return the name this cache reports its statistics under
+     */
+    String getName();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    /**
+     * @return the total time, in nanoseconds, spent compiling rules for this cache
+     */
+    long getTotalCompileTime();
+
+    /**
+     * @return the ratio of hits to total lookups, or 0 if there have been no lookups
+     */
+    double getHitRate();
+
+    /**
+     * Compiles a raw rule into its executable form.
+     */
+    interface RuleCompiler {
+
+        Serializable compile(String rule);
+
+    }
+}
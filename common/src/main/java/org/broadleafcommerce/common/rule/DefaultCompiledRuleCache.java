@@ -0,0 +1,210 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Default, size-bounded {@link CompiledRuleCache}.
+ * <p>
+ * Lookups of already compiled rules never take a lock: entries live in a {@link ConcurrentHashMap} and only record a
+ * coarse last-access timestamp. Compilation happens at most once per rule, guarded by the entry for that rule, so
+ * threads compiling different rules never block each other. Once the cache grows past its maximum size, a single
+ * thread evicts the least recently used tenth of the entries in one pass while other threads carry on.
+ */
+public class DefaultCompiledRuleCache implements CompiledRuleCache {
+
+    /**
+     * Access timestamps are only refreshed when they are older than this, which keeps hot rules from constantly
+     * writing to the same entry from many threads
+     */
+    protected static final long ACCESS_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    protected final String name;
+    protected final int maxEntries;
+    protected final ConcurrentHashMap<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    protected final ReentrantLock evictionLock = new ReentrantLock();
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+    protected final LongAdder compileTime = new LongAdder();
+
+    public DefaultCompiledRuleCache(String name, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be greater than 0");
+        }
+        this.name = name;
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Serializable getOrCompile(String rule, RuleCompiler compiler) {
+        CacheEntry entry = entries.get(rule);
+        if (entry == null) {
+            CacheEntry created = new CacheEntry();
+            entry = entries.putIfAbsent(rule, created);
+            if (entry == null) {
+                entry = created;
+                evictIfNecessary();
+            }
+        }
+        entry.touch();
+
+        Serializable compiled = entry.compiled;
+        if (compiled != null) {
+            hits.increment();
+            return compiled;
+        }
+        return compile(rule, entry, compiler);
+    }
+
+    protected Serializable compile(String rule, CacheEntry entry, RuleCompiler compiler) {
+        synchronized (entry) {
+            if (entry.compiled != null) {
+                hits.increment();
+                return entry.compiled;
+            }
+            misses.increment();
+            long start = System.nanoTime();
+            try {
+                entry.compiled = compiler.compile(rule);
+            } catch (RuntimeException e) {
+                // don't keep an entry around for a rule that can't be compiled
+                entries.remove(rule, entry);
+                throw e;
+            } finally {
+                compileTime.add(System.nanoTime() - start);
+            }
+            return entry.compiled;
+        }
+    }
+
+    protected void evictIfNecessary() {
+        if (entries.size() <= maxEntries || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = entries.size() - (maxEntries - maxEntries / 10);
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<String, CacheEntry>> candidates = new ArrayList<>(entries.entrySet());
+            Collections.sort(candidates, new Comparator<Map.Entry<String, CacheEntry>>() {
+                @Override
+                public int compare(Map.Entry<String, CacheEntry> o1, Map.Entry<String, CacheEntry> o2) {
+                    return Long.compare(o1.getValue().lastAccess, o2.getValue().lastAccess);
+                }
+            });
+            for (int i = 0; i < excess && i < candidates.size(); i++) {
+                Map.Entry<String, CacheEntry> candidate = candidates.get(i);
+                if (entries.remove(candidate.getKey(), candidate.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Serializable get(String rule) {
+        CacheEntry entry = entries.get(rule);
+        return entry == null ? null : entry.compiled;
+    }
+
+    @Override
+    public void remove(String rule) {
+        entries.remove(rule);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public long getTotalCompileTime() {
+        return compileTime.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0D : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CompiledRuleCache[%s] size: %s, hits: %s, misses: %s, evictions: %s, hit rate: %.3f, "
+                + "compile time: %s ms", name, size(), getHitCount(), getMissCount(), getEvictionCount(), getHitRate(),
+                TimeUnit.NANOSECONDS.toMillis(getTotalCompileTime()));
+    }
+
+    protected static class CacheEntry {
+
+        protected volatile Serializable compiled;
+        protected volatile long lastAccess = System.nanoTime();
+
+        protected void touch() {
+            long now = System.nanoTime();
+            if (now - lastAccess > ACCESS_RESOLUTION_NANOS) {
+                lastAccess = now;
+            }
+        }
+    }
+}
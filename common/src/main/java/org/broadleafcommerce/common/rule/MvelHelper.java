@@ -24,7 +24,6 @@ import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.TimeDTO;
 import org.broadleafcommerce.common.presentation.client.SupportedFieldType;
 import org.broadleafcommerce.common.time.SystemTime;
-import org.broadleafcommerce.common.util.EfficientLRUMap;
 import org.broadleafcommerce.common.util.FormatUtil;
 import org.broadleafcommerce.common.util.StringUtil;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
@@ -56,10 +55,12 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class MvelHelper {
 
-    private static final Map<String, Serializable> DEFAULT_EXPRESSION_CACHE = new EfficientLRUMap<String, Serializable>(5000);
+    private static volatile CompiledRuleCache DEFAULT_RULE_CACHE = new DefaultCompiledRuleCache("default", 5000);
     private static final Log LOG = LogFactory.getLog(MvelHelper.class);
 
     private static boolean TEST_MODE = false;
+
+    private static volatile boolean RULE_COMPILATION_ENABLED = false;
     
     public static final String BLC_RULE_MAP_PARAM = "blRuleMap";
 
@@ -125,16 +126,17 @@ public class MvelHelper {
      * 
      * Also returns true if the rule is blank or null.
      * 
-     * Calls the {@link #evaluateRule(String, Map, Map)} method passing in the DEFAULT_EXPRESSION_CACHE.
-     * For systems that need to cache a large number of rule expressions, an alternate cache can be passed in.   The
-     * default cache is able to cache up to 1,000 rule expressions which should suffice for most systems.
+     * Calls the {@link #evaluateRule(String, Map, CompiledRuleCache, Map)} method passing in the default rule cache.
+     * For systems that need to cache a large number of rule expressions, an alternate cache can be passed in or
+     * configured as the default via {@link #setDefaultRuleCache(CompiledRuleCache)}. The default cache is able to
+     * cache up to 5,000 rule expressions which should suffice for most systems.
      * 
      * @param rule
      * @param ruleParameters
      * @return
      */
     public static boolean evaluateRule(String rule, Map<String, Object> ruleParameters) {
-        return evaluateRule(rule, ruleParameters, DEFAULT_EXPRESSION_CACHE);
+        return evaluateRule(rule, ruleParameters, DEFAULT_RULE_CACHE, null);
     }
 
     /**
@@ -156,7 +158,10 @@ public class MvelHelper {
      * @param additionalContextImports additional imports to give to the {@link ParserContext} besides "MVEL" ({@link MVEL} and
      * "MvelHelper" ({@link MvelHelper}) since they are automatically added 
      * @return
+     * @deprecated use {@link #evaluateRule(String, Map, CompiledRuleCache, Map)} instead, which does not need to
+     * synchronize on the cache
      */
+    @Deprecated
     public static boolean evaluateRule(String rule, Map<String, Object> ruleParameters,
         Map<String, Serializable> expressionCache, Map<String, Class<?>> additionalContextImports) {
         
@@ -170,49 +175,136 @@ public class MvelHelper {
                 exp = expressionCache.get(rule);
             }
             if (exp == null) {
-                ParserContext context = new ParserContext();
-                context.addImport("MVEL", MVEL.class);
-                context.addImport("MvelHelper", MvelHelper.class);
-                context.addImport("CollectionUtils", SelectizeCollectionUtils.class);
-                if (MapUtils.isNotEmpty(additionalContextImports)) {
-                    for (Entry<String, Class<?>> entry : additionalContextImports.entrySet()) {
-                        context.addImport(entry.getKey(), entry.getValue());
+                exp = compileRule(rule, ruleParameters, additionalContextImports);
+                if (expressionCache != null) {
+                    synchronized (expressionCache) {
+                        expressionCache.put(rule, exp);
                     }
                 }
-                
-                String modifiedRule = modifyExpression(rule, ruleParameters, context);
-
-                synchronized (expressionCache) {
-                    exp = MVEL.compileExpression(modifiedRule, context);
-                    expressionCache.put(rule, exp);
-                }
             }
 
-            Map<String, Object> mvelParameters = new HashMap<String, Object>();
+            return executeRule(rule, exp, ruleParameters);
+        }
+    }
+
+    /**
+     * @param rule
+     * @param ruleParameters
+     * @param ruleCache the cache to read compiled rules from and compile missing rules into, may be null
+     * @param additionalContextImports additional imports to give to the {@link ParserContext} besides "MVEL" ({@link MVEL} and
+     * "MvelHelper" ({@link MvelHelper}) since they are automatically added 
+     * @return
+     */
+    public static boolean evaluateRule(String rule, final Map<String, Object> ruleParameters,
+            CompiledRuleCache ruleCache, final Map<String, Class<?>> additionalContextImports) {
 
-            if (ruleParameters != null) {
-                for (String parameter : ruleParameters.keySet()) {
-                    mvelParameters.put(parameter, ruleParameters.get(parameter));
+        // Null or empty is a match
+        if (rule == null || "".equals(rule)) {
+            return true;
+        }
+
+        // MVEL expression compiling can be expensive so let's cache the expression
+        Serializable exp;
+        if (ruleCache == null) {
+            exp = compileRule(rule, ruleParameters, additionalContextImports);
+        } else {
+            exp = ruleCache.getOrCompile(rule, new CompiledRuleCache.RuleCompiler() {
+                @Override
+                public Serializable compile(String ruleToCompile) {
+                    return compileRule(ruleToCompile, ruleParameters, additionalContextImports);
                 }
+            });
+        }
+
+        return executeRule(rule, exp, ruleParameters);
+    }
+
+    /**
+     * Compiles the rule into a {@link RulePredicate} when rule compilation is enabled and the rule is within the
+     * subset supported by {@link RulePredicateCompiler}. Otherwise, compiles it into an MVEL expression.
+     */
+    protected static Serializable compileRule(String rule, Map<String, Object> ruleParameters,
+            Map<String, Class<?>> additionalContextImports) {
+        if (RULE_COMPILATION_ENABLED) {
+            RulePredicate predicate = RulePredicateCompiler.compile(rule,
+                    additionalContextImports == null ? null : additionalContextImports.keySet());
+            if (predicate != null) {
+                return predicate;
+            }
+        }
+
+        ParserContext context = new ParserContext();
+        context.addImport("MVEL", MVEL.class);
+        context.addImport("MvelHelper", MvelHelper.class);
+        context.addImport("CollectionUtils", SelectizeCollectionUtils.class);
+        if (MapUtils.isNotEmpty(additionalContextImports)) {
+            for (Entry<String, Class<?>> entry : additionalContextImports.entrySet()) {
+                context.addImport(entry.getKey(), entry.getValue());
             }
+        }
+
+        String modifiedRule = modifyExpression(rule, ruleParameters, context);
+        return MVEL.compileExpression(modifiedRule, context);
+    }
 
+    protected static boolean executeRule(String rule, Serializable exp, Map<String, Object> ruleParameters) {
+        if (exp instanceof RulePredicate) {
             try {
-                Object test = MVEL.executeExpression(exp, mvelParameters);
-                if (test == null) {
-                    // This can occur if there is no actual rule
-                    return true;
-                }
-                return (Boolean) test;
+                return ((RulePredicate) exp).evaluate(ruleParameters);
             } catch (Exception e) {
-                //Unable to execute the MVEL expression for some reason
-                //Return false, but notify about the bad expression through logs
+                // Same contract as an MVEL expression that fails to execute
                 if (!TEST_MODE && LOG.isInfoEnabled()) {
-                    LOG.info("Unable to parse and/or execute the mvel expression (" + StringUtil.sanitize(rule)
+                    LOG.info("Unable to execute the compiled rule (" + StringUtil.sanitize(rule)
                             + "). Reporting to the logs and returning false for the match expression", e);
                 }
                 return false;
             }
         }
+
+        Map<String, Object> mvelParameters = new HashMap<String, Object>();
+
+        if (ruleParameters != null) {
+            for (String parameter : ruleParameters.keySet()) {
+                mvelParameters.put(parameter, ruleParameters.get(parameter));
+            }
+        }
+
+        try {
+            Object test = MVEL.executeExpression(exp, mvelParameters);
+            if (test == null) {
+                // This can occur if there is no actual rule
+                return true;
+            }
+            return (Boolean) test;
+        } catch (Exception e) {
+            //Unable to execute the MVEL expression for some reason
+            //Return false, but notify about the bad expression through logs
+            if (!TEST_MODE && LOG.isInfoEnabled()) {
+                LOG.info("Unable to parse and/or execute the mvel expression (" + StringUtil.sanitize(rule)
+                        + "). Reporting to the logs and returning false for the match expression", e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @return the cache used for rules evaluated without an explicit cache
+     */
+    public static CompiledRuleCache getDefaultRuleCache() {
+        return DEFAULT_RULE_CACHE;
+    }
+
+    /**
+     * Replaces the cache used for rules evaluated without an explicit cache, for example with a larger or
+     * differently tuned {@link CompiledRuleCache} implementation.
+     * 
+     * @param ruleCache the new default cache, must not be null
+     */
+    public static void setDefaultRuleCache(CompiledRuleCache ruleCache) {
+        if (ruleCache == null) {
+            throw new IllegalArgumentException("The default rule cache cannot be null");
+        }
+        DEFAULT_RULE_CACHE = ruleCache;
     }
     
     /**
@@ -258,6 +350,27 @@ public class MvelHelper {
             "getAdditionalFields"}; 
     }
 
+    /**
+     * @return whether rules within the rule builder subset are compiled into {@link RulePredicate}s instead of MVEL
+     */
+    public static boolean isRuleCompilationEnabled() {
+        return RULE_COMPILATION_ENABLED;
+    }
+
+    /**
+     * Enables or disables compiling rules into {@link RulePredicate}s. Rules outside of the subset supported by
+     * {@link RulePredicateCompiler} are always compiled with MVEL. The default rule cache is cleared so that rules
+     * compiled in the previous mode are not reused; other {@link CompiledRuleCache}s should be cleared by their owners.
+     * 
+     * @param ruleCompilationEnabled
+     */
+    public static void setRuleCompilationEnabled(boolean ruleCompilationEnabled) {
+        if (RULE_COMPILATION_ENABLED != ruleCompilationEnabled) {
+            RULE_COMPILATION_ENABLED = ruleCompilationEnabled;
+            DEFAULT_RULE_CACHE.clear();
+        }
+    }
+
     /**
      * When true, LOG.info statement will be suppressed.   Should only be set from within MvelHelperTest.
      * Prevents an error from displaying during unit test runs.
@@ -0,0 +1,41 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the <code>rule.compilation.enabled</code> property to {@link MvelHelper}, which is otherwise only configurable
+ * statically.
+ *
+ * @see MvelHelper#setRuleCompilationEnabled(boolean)
+ */
+@Component("blRuleCompilationConfigurer")
+public class RuleCompilationConfigurer implements InitializingBean {
+
+    @Value("${rule.compilation.enabled:false}")
+    protected boolean ruleCompilationEnabled = false;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        MvelHelper.setRuleCompilationEnabled(ruleCompilationEnabled);
+    }
+
+}
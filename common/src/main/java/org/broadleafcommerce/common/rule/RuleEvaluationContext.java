@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rule outcomes memoized by {@link RuleOutcomeMemoizer} during a single request. The context is stored in the
+ * {@link BroadleafRequestContext} additional properties under {@link #REQUEST_CONTEXT_KEY}, so it lives exactly as long
+ * as the request and is shared by every content zone rendered for the request.
+ */
+public class RuleEvaluationContext {
+
+    public static final String REQUEST_CONTEXT_KEY = "blRuleEvaluationContext";
+
+    protected final Map<RuleOutcomeMemoizer.RuleOutcomeKey, Boolean> outcomes = new HashMap<>();
+    protected int evaluationCount = 0;
+    protected int hitCount = 0;
+
+    /**
+     * @return the context for the current request, created if necessary, or null if there is no BroadleafRequestContext
+     */
+    public static RuleEvaluationContext getRuleEvaluationContext() {
+        BroadleafRequestContext requestContext = BroadleafRequestContext.getBroadleafRequestContext();
+        if (requestContext == null) {
+            return null;
+        }
+        Map<String, Object> additionalProperties = requestContext.getAdditionalProperties();
+        // the additional properties are a synchronized map, so locking on it makes the check and put atomic
+        synchronized (additionalProperties) {
+            RuleEvaluationContext context = (RuleEvaluationContext) additionalProperties.get(REQUEST_CONTEXT_KEY);
+            if (context == null) {
+                context = new RuleEvaluationContext();
+                additionalProperties.put(REQUEST_CONTEXT_KEY, context);
+            }
+            return context;
+        }
+    }
+
+    public synchronized Boolean get(RuleOutcomeMemoizer.RuleOutcomeKey key) {
+        Boolean outcome = outcomes.get(key);
+        if (outcome != null) {
+            hitCount++;
+        }
+        return outcome;
+    }
+
+    public synchronized void put(RuleOutcomeMemoizer.RuleOutcomeKey key, boolean outcome) {
+        evaluationCount++;
+        outcomes.put(key, outcome);
+    }
+
+    /**
+     * @return the number of rules evaluated during the request
+     */
+    public synchronized int getEvaluationCount() {
+        return evaluationCount;
+    }
+
+    /**
+     * @return the number of rule evaluations during the request that were answered from the memoized outcomes
+     */
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+}
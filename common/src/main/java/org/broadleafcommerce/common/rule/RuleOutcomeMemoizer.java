@@ -0,0 +1,307 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.broadleafcommerce.common.TimeDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Memoizes the outcome of targeting rules, such as the structured content and page rules, so that a rule shared by many
+ * content items or zones is only evaluated once per set of relevant facts.
+ * </p>
+ * The key for an outcome is the rule expression plus a fingerprint of the rule variables the expression actually
+ * references. Variables that are not referenced do not affect the key, so a customer rule evaluated for zones with
+ * different product parameters is still only evaluated once. Entity and DTO variables are fingerprinted by identity.
+ * {@link TimeDTO} is fingerprinted by the minute and the calendar fields rules can reference, since a new instance is
+ * created for every content lookup.
+ * </p>
+ * Outcomes are memoized at two levels:
+ * <ul>
+ *     <li>per request, in the {@link RuleEvaluationContext} bound to the BroadleafRequestContext</li>
+ *     <li>across requests, for rules that only reference session invariant facts (time, strings, numbers, enums and
+ *     the like). For example, a rule scheduling content for a time window is evaluated once per minute rather than once
+ *     per request.</li>
+ * </ul>
+ * Memoization is disabled by default. The {@link #enabled} variable can be controlled via the
+ * 'rule.outcome.memoize.enabled' property. The size of the cross request cache is controlled via the
+ * 'rule.outcome.shared.cache.size' property, where 0 disables the cross request layer. The default size is 1000.
+ */
+@Component("blRuleOutcomeMemoizer")
+@ManagedResource(objectName="org.broadleafcommerce:name=RuleOutcomeMemoizer", description="Rule Outcome Memoization", currencyTimeLimit=15)
+public class RuleOutcomeMemoizer {
+
+    protected static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    protected static final int MAX_EXPRESSIONS = 10000;
+
+    @Value("${rule.outcome.memoize.enabled:false}")
+    protected boolean enabled = false;
+
+    @Value("${rule.outcome.shared.cache.size:1000}")
+    protected int sharedCacheSize = 1000;
+
+    protected final Map<String, Set<String>> identifiers = new ConcurrentHashMap<>();
+    protected volatile Map<RuleOutcomeKey, Boolean> sharedOutcomes;
+
+    protected final AtomicLong evaluationCount = new AtomicLong();
+    protected final AtomicLong requestHitCount = new AtomicLong();
+    protected final AtomicLong sharedHitCount = new AtomicLong();
+
+    /**
+     * Return the memoized outcome of the rule for the given variables, evaluating it if there is none
+     */
+    public boolean evaluate(String expression, Map<String, Object> vars, RuleEvaluation evaluation) {
+        if (!enabled || expression == null || expression.isEmpty()) {
+            return evaluation.evaluate();
+        }
+        RuleOutcomeKey key = buildKey(expression, vars);
+        Map<RuleOutcomeKey, Boolean> shared = key.isShareable() ? getSharedOutcomes() : null;
+        if (shared != null) {
+            Boolean outcome = shared.get(key);
+            if (outcome != null) {
+                sharedHitCount.incrementAndGet();
+                return outcome;
+            }
+        }
+        RuleEvaluationContext context = RuleEvaluationContext.getRuleEvaluationContext();
+        if (context != null) {
+            Boolean outcome = context.get(key);
+            if (outcome != null) {
+                requestHitCount.incrementAndGet();
+                return outcome;
+            }
+        }
+        boolean outcome = evaluation.evaluate();
+        evaluationCount.incrementAndGet();
+        if (context != null) {
+            context.put(key, outcome);
+        }
+        if (shared != null) {
+            shared.put(key, outcome);
+        }
+        return outcome;
+    }
+
+    public RuleOutcomeKey buildKey(String expression, Map<String, Object> vars) {
+        List<String> names = new ArrayList<>();
+        if (vars != null) {
+            Set<String> referenced = getIdentifiers(expression);
+            for (String name : vars.keySet()) {
+                if (referenced.contains(name)) {
+                    names.add(name);
+                }
+            }
+            Collections.sort(names);
+        }
+        Object[] facts = new Object[names.size() * 2];
+        boolean shareable = true;
+        for (int j = 0; j < names.size(); j++) {
+            Object value = vars.get(names.get(j));
+            Object fact = fingerprint(value);
+            if (fact instanceof IdentityFact) {
+                shareable = false;
+            }
+            facts[j * 2] = names.get(j);
+            facts[j * 2 + 1] = fact;
+        }
+        return new RuleOutcomeKey(expression, facts, shareable);
+    }
+
+    protected Object fingerprint(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum) {
+            return value;
+        }
+        if (value instanceof TimeDTO) {
+            TimeDTO time = (TimeDTO) value;
+            return "time:" + TimeUnit.MILLISECONDS.toMinutes(time.getDate().getTime()) + ":" + time.getMinute().getType()
+                    + ":" + time.getHour().getType() + ":" + time.getDayOfWeek().getType() + ":"
+                    + time.getDayOfMonth().getType() + ":" + time.getMonth().getType();
+        }
+        return new IdentityFact(value);
+    }
+
+    protected Set<String> getIdentifiers(String expression) {
+        Set<String> response = identifiers.get(expression);
+        if (response == null) {
+            response = new HashSet<>();
+            Matcher matcher = IDENTIFIER.matcher(expression);
+            while (matcher.find()) {
+                response.add(matcher.group());
+            }
+            if (identifiers.size() >= MAX_EXPRESSIONS) {
+                identifiers.clear();
+            }
+            identifiers.put(expression, response);
+        }
+        return response;
+    }
+
+    protected Map<RuleOutcomeKey, Boolean> getSharedOutcomes() {
+        if (sharedCacheSize <= 0) {
+            return null;
+        }
+        if (sharedOutcomes == null) {
+            synchronized (this) {
+                if (sharedOutcomes == null) {
+                    final int maxSize = sharedCacheSize;
+                    sharedOutcomes = Collections.synchronizedMap(new LinkedHashMap<RuleOutcomeKey, Boolean>(16, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<RuleOutcomeKey, Boolean> eldest) {
+                            return size() > maxSize;
+                        }
+                    });
+                }
+            }
+        }
+        return sharedOutcomes;
+    }
+
+    @ManagedAttribute(description="Whether rule outcomes are memoized")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @ManagedAttribute(description="Whether rule outcomes are memoized")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @ManagedAttribute(description="The number of rules actually evaluated")
+    public long getEvaluationCount() {
+        return evaluationCount.get();
+    }
+
+    @ManagedAttribute(description="The number of rule evaluations saved by the per request memo")
+    public long getRequestHitCount() {
+        return requestHitCount.get();
+    }
+
+    @ManagedAttribute(description="The number of rule evaluations saved by the cross request cache")
+    public long getSharedHitCount() {
+        return sharedHitCount.get();
+    }
+
+    @ManagedAttribute(description="The fraction of rule lookups answered without evaluating the rule")
+    public double getSavedRatio() {
+        long saved = requestHitCount.get() + sharedHitCount.get();
+        long total = saved + evaluationCount.get();
+        return total == 0 ? 0D : (double) saved / total;
+    }
+
+    @ManagedOperation(description="Clear the cross request cache and the statistics")
+    public void reset() {
+        if (sharedOutcomes != null) {
+            sharedOutcomes.clear();
+        }
+        evaluationCount.set(0L);
+        requestHitCount.set(0L);
+        sharedHitCount.set(0L);
+    }
+
+    public void setSharedCacheSize(int sharedCacheSize) {
+        this.sharedCacheSize = sharedCacheSize;
+    }
+
+    /**
+     * Evaluates a rule on a memoization miss
+     */
+    public interface RuleEvaluation {
+
+        boolean evaluate();
+    }
+
+    public static class RuleOutcomeKey {
+
+        protected final String expression;
+        protected final Object[] facts;
+        protected final boolean shareable;
+        protected final int hashCode;
+
+        public RuleOutcomeKey(String expression, Object[] facts, boolean shareable) {
+            this.expression = expression;
+            this.facts = facts;
+            this.shareable = shareable;
+            this.hashCode = 31 * expression.hashCode() + Arrays.hashCode(facts);
+        }
+
+        /**
+         * @return whether the outcome only depends on facts that are not specific to a request, so it can be cached
+         * across requests
+         */
+        public boolean isShareable() {
+            return shareable;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RuleOutcomeKey)) {
+                return false;
+            }
+            RuleOutcomeKey that = (RuleOutcomeKey) o;
+            return hashCode == that.hashCode && expression.equals(that.expression) && Arrays.equals(facts, that.facts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * A rule variable compared by identity
+     */
+    protected static class IdentityFact {
+
+        protected final Object value;
+
+        public IdentityFact(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityFact && ((IdentityFact) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * A rule that has been compiled into plain Java by {@link RulePredicateCompiler} instead of into an MVEL expression.
+ * Instances are immutable and safe to share between threads.
+ *
+ * @see MvelHelper#setRuleCompilationEnabled(boolean)
+ */
+public interface RulePredicate extends Serializable {
+
+    /**
+     * @param ruleParameters the variables the rule refers to, keyed by name
+     * @return the outcome of the rule
+     */
+    boolean evaluate(Map<String, Object> ruleParameters);
+
+}
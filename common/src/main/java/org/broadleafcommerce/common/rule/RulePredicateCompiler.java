@@ -0,0 +1,899 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.rule;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles the subset of MVEL produced by the admin rule builder into a {@link RulePredicate} made of plain Java nodes,
+ * so that evaluating the rule doesn't need to go through the MVEL interpreter or copy the rule parameters.
+ * <p>
+ * The supported subset is:
+ * <ul>
+ * <li>grouping with parentheses, <code>&amp;&amp;</code>, <code>||</code> and <code>!</code></li>
+ * <li>comparisons (<code>== != &gt; &gt;= &lt; &lt;=</code>) between null-safe property paths
+ * (<code>?order.?subTotal.getAmount()</code>) and string, number or boolean literals</li>
+ * <li>list membership (<code>["a","b"] contains ?customer.?firstName</code>)</li>
+ * <li>the <code>org.apache.commons.lang3.StringUtils</code> contains, startsWith and endsWith functions</li>
+ * </ul>
+ * Anything else, such as {@link MvelHelper} function calls, imported classes, attribute maps or collection
+ * intersections, causes {@link #compile(String, Collection)} to return null so that the caller falls back to MVEL.
+ * <p>
+ * Values are compared the way MVEL compares them: numbers by value regardless of their type, strings against numbers
+ * by parsing the string and enums against strings by name. As with MVEL, navigating through a null without the
+ * null-safe <code>?</code> operator or referencing a variable that wasn't supplied fails the evaluation.
+ */
+public class RulePredicateCompiler {
+
+    private static final Log LOG = LogFactory.getLog(RulePredicateCompiler.class);
+
+    public static final String CONTAINS_FUNCTION = "org.apache.commons.lang3.StringUtils.contains";
+    public static final String STARTS_WITH_FUNCTION = "org.apache.commons.lang3.StringUtils.startsWith";
+    public static final String ENDS_WITH_FUNCTION = "org.apache.commons.lang3.StringUtils.endsWith";
+
+    protected static final Set<String> FUNCTIONS = new HashSet<>(Arrays.asList(CONTAINS_FUNCTION, STARTS_WITH_FUNCTION,
+            ENDS_WITH_FUNCTION));
+
+    protected static final Set<String> DEFAULT_IMPORTS = new HashSet<>(Arrays.asList("MVEL", "MvelHelper",
+            "CollectionUtils"));
+
+    protected static final Map<Class<?>, Map<String, PropertyAccessor>> ACCESSORS = new ConcurrentHashMap<>();
+
+    /**
+     * @param rule the rule to compile
+     * @param importNames the names of the classes imported into the rule's MVEL context, which can't be resolved
+     * without MVEL
+     * @return the compiled predicate, or null if the rule is outside of the supported subset
+     */
+    public static RulePredicate compile(String rule, Collection<String> importNames) {
+        if (StringUtils.isBlank(rule)) {
+            return null;
+        }
+        try {
+            Set<String> imports = new HashSet<>(DEFAULT_IMPORTS);
+            if (importNames != null) {
+                imports.addAll(importNames);
+            }
+            Parser parser = new Parser(tokenize(rule), imports);
+            BooleanNode root = parser.parse();
+            return new CompiledRulePredicate(root);
+        } catch (RuntimeException e) {
+            // anything we can't parse is left for MVEL to compile, or to report
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Rule is not eligible for compilation and will be evaluated with MVEL (" + e.getMessage()
+                        + "): " + rule);
+            }
+            return null;
+        }
+    }
+
+    protected static List<Token> tokenize(String rule) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int length = rule.length();
+        while (i < length) {
+            char c = rule.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.LPAREN, "("));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.RPAREN, ")"));
+                i++;
+            } else if (c == '[') {
+                tokens.add(new Token(TokenType.LBRACKET, "["));
+                i++;
+            } else if (c == ']') {
+                tokens.add(new Token(TokenType.RBRACKET, "]"));
+                i++;
+            } else if (c == ',') {
+                tokens.add(new Token(TokenType.COMMA, ","));
+                i++;
+            } else if (rule.startsWith("&&", i)) {
+                tokens.add(new Token(TokenType.AND, "&&"));
+                i += 2;
+            } else if (rule.startsWith("||", i)) {
+                tokens.add(new Token(TokenType.OR, "||"));
+                i += 2;
+            } else if (rule.startsWith("==", i) || rule.startsWith("!=", i) || rule.startsWith(">=", i)
+                    || rule.startsWith("<=", i)) {
+                tokens.add(new Token(TokenType.OPERATOR, rule.substring(i, i + 2)));
+                i += 2;
+            } else if (c == '>' || c == '<') {
+                tokens.add(new Token(TokenType.OPERATOR, String.valueOf(c)));
+                i++;
+            } else if (c == '!') {
+                tokens.add(new Token(TokenType.NOT, "!"));
+                i++;
+            } else if (c == '"' || c == '\'') {
+                i = readString(rule, i, tokens);
+            } else if (Character.isDigit(c) || (c == '-' && i + 1 < length && Character.isDigit(rule.charAt(i + 1)))) {
+                i = readNumber(rule, i, tokens);
+            } else if (c == '?' || Character.isJavaIdentifierStart(c)) {
+                i = readPath(rule, i, tokens);
+            } else {
+                throw new UnsupportedRuleException("unsupported character '" + c + "'");
+            }
+        }
+        return tokens;
+    }
+
+    protected static int readString(String rule, int start, List<Token> tokens) {
+        char quote = rule.charAt(start);
+        StringBuilder sb = new StringBuilder();
+        int i = start + 1;
+        while (i < rule.length()) {
+            char c = rule.charAt(i);
+            if (c == quote) {
+                tokens.add(new Token(TokenType.STRING, rule.substring(start, i + 1), sb.toString()));
+                return i + 1;
+            }
+            if (c == '\\') {
+                if (i + 1 >= rule.length()) {
+                    break;
+                }
+                char escaped = rule.charAt(i + 1);
+                if (escaped == 'u' && i + 5 < rule.length()) {
+                    sb.append((char) Integer.parseInt(rule.substring(i + 2, i + 6), 16));
+                    i += 6;
+                    continue;
+                }
+                switch (escaped) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    default:
+                        sb.append(escaped);
+                }
+                i += 2;
+                continue;
+            }
+            sb.append(c);
+            i++;
+        }
+        throw new UnsupportedRuleException("unterminated string");
+    }
+
+    protected static int readNumber(String rule, int start, List<Token> tokens) {
+        int i = start + 1;
+        boolean decimal = false;
+        while (i < rule.length()) {
+            char c = rule.charAt(i);
+            if (c == '.' && !decimal && i + 1 < rule.length() && Character.isDigit(rule.charAt(i + 1))) {
+                decimal = true;
+            } else if (!Character.isDigit(c)) {
+                break;
+            }
+            i++;
+        }
+        if (i < rule.length() && Character.isJavaIdentifierPart(rule.charAt(i))) {
+            // typed literals such as 10L or 1.5d
+            throw new UnsupportedRuleException("unsupported number literal");
+        }
+        String text = rule.substring(start, i);
+        Object value;
+        if (decimal) {
+            value = Double.valueOf(text);
+        } else {
+            long longValue = Long.parseLong(text);
+            if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+                value = (int) longValue;
+            } else {
+                value = longValue;
+            }
+        }
+        tokens.add(new Token(TokenType.NUMBER, text, value));
+        return i;
+    }
+
+    protected static int readPath(String rule, int start, List<Token> tokens) {
+        List<PathSegment> segments = new ArrayList<>();
+        int i = start;
+        int length = rule.length();
+        while (true) {
+            boolean nullSafe = false;
+            if (i < length && rule.charAt(i) == '?') {
+                nullSafe = true;
+                i++;
+            }
+            if (i >= length || !Character.isJavaIdentifierStart(rule.charAt(i))) {
+                throw new UnsupportedRuleException("malformed property path");
+            }
+            int nameStart = i;
+            while (i < length && Character.isJavaIdentifierPart(rule.charAt(i))) {
+                i++;
+            }
+            String name = rule.substring(nameStart, i);
+            boolean method = false;
+            if (rule.startsWith("()", i)) {
+                method = true;
+                i += 2;
+            }
+            segments.add(new PathSegment(name, nullSafe, method));
+            if (i + 1 < length && rule.charAt(i) == '.'
+                    && (rule.charAt(i + 1) == '?' || Character.isJavaIdentifierStart(rule.charAt(i + 1)))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        tokens.add(new Token(TokenType.PATH, rule.substring(start, i), segments));
+        return i;
+    }
+
+    protected static class Parser {
+
+        protected final List<Token> tokens;
+        protected final Set<String> imports;
+        protected int position = 0;
+
+        public Parser(List<Token> tokens, Set<String> imports) {
+            this.tokens = tokens;
+            this.imports = imports;
+        }
+
+        public BooleanNode parse() {
+            BooleanNode node = toBoolean(parseOr());
+            if (position != tokens.size()) {
+                throw new UnsupportedRuleException("unexpected token '" + tokens.get(position).text + "'");
+            }
+            return node;
+        }
+
+        protected Object parseOr() {
+            Object left = parseAnd();
+            while (accept(TokenType.OR)) {
+                left = new OrNode(toBoolean(left), toBoolean(parseAnd()));
+            }
+            return left;
+        }
+
+        protected Object parseAnd() {
+            Object left = parseUnary();
+            while (accept(TokenType.AND)) {
+                left = new AndNode(toBoolean(left), toBoolean(parseUnary()));
+            }
+            return left;
+        }
+
+        protected Object parseUnary() {
+            if (accept(TokenType.NOT)) {
+                return new NotNode(toBoolean(parseUnary()));
+            }
+            return parsePrimary();
+        }
+
+        protected Object parsePrimary() {
+            if (peek(TokenType.LBRACKET)) {
+                return parseListContains();
+            }
+            if (peek(TokenType.PATH) && FUNCTIONS.contains(current().text)) {
+                return parseStringFunction();
+            }
+
+            Object left;
+            if (accept(TokenType.LPAREN)) {
+                left = parseOr();
+                expect(TokenType.RPAREN);
+            } else {
+                left = parseValue();
+            }
+
+            if (peek(TokenType.OPERATOR)) {
+                String operator = next().text;
+                ValueNode right = parseComparisonOperand();
+                if (!(left instanceof ValueNode)) {
+                    throw new UnsupportedRuleException("comparison of a boolean expression");
+                }
+                return new ComparisonNode(operator, (ValueNode) left, right);
+            }
+            return left;
+        }
+
+        protected ValueNode parseComparisonOperand() {
+            if (accept(TokenType.LPAREN)) {
+                ValueNode value = parseValue();
+                expect(TokenType.RPAREN);
+                return value;
+            }
+            return parseValue();
+        }
+
+        protected Object parseListContains() {
+            expect(TokenType.LBRACKET);
+            List<Object> values = new ArrayList<>();
+            if (!peek(TokenType.RBRACKET)) {
+                do {
+                    ValueNode value = parseValue();
+                    if (!(value instanceof LiteralNode)) {
+                        throw new UnsupportedRuleException("non-literal list element");
+                    }
+                    values.add(((LiteralNode) value).value);
+                } while (accept(TokenType.COMMA));
+            }
+            expect(TokenType.RBRACKET);
+            Token keyword = expect(TokenType.PATH);
+            if (!"contains".equals(keyword.text)) {
+                throw new UnsupportedRuleException("unsupported list operation '" + keyword.text + "'");
+            }
+            return new ListContainsNode(values, parseValue());
+        }
+
+        protected Object parseStringFunction() {
+            String function = next().text;
+            expect(TokenType.LPAREN);
+            ValueNode value = parseValue();
+            expect(TokenType.COMMA);
+            ValueNode search = parseValue();
+            expect(TokenType.RPAREN);
+            return new StringFunctionNode(function, value, search);
+        }
+
+        protected ValueNode parseValue() {
+            Token token = next();
+            switch (token.type) {
+                case STRING:
+                case NUMBER:
+                    return new LiteralNode(token.value);
+                case PATH:
+                    @SuppressWarnings("unchecked")
+                    List<PathSegment> segments = (List<PathSegment>) token.value;
+                    PathSegment root = segments.get(0);
+                    if (segments.size() == 1 && !root.nullSafe && !root.method) {
+                        if ("true".equals(root.name)) {
+                            return new LiteralNode(Boolean.TRUE);
+                        } else if ("false".equals(root.name)) {
+                            return new LiteralNode(Boolean.FALSE);
+                        } else if ("null".equals(root.name)) {
+                            return new LiteralNode(null);
+                        }
+                    }
+                    if (root.method || imports.contains(root.name) || Character.isUpperCase(root.name.charAt(0))
+                            || FUNCTIONS.contains(token.text) || "contains".equals(root.name)) {
+                        throw new UnsupportedRuleException("unsupported reference '" + token.text + "'");
+                    }
+                    return new PathNode(segments);
+                default:
+                    throw new UnsupportedRuleException("unexpected token '" + token.text + "'");
+            }
+        }
+
+        protected BooleanNode toBoolean(Object node) {
+            if (node instanceof BooleanNode) {
+                return (BooleanNode) node;
+            }
+            return new TruthyNode((ValueNode) node);
+        }
+
+        protected Token current() {
+            return tokens.get(position);
+        }
+
+        protected boolean peek(TokenType type) {
+            return position < tokens.size() && tokens.get(position).type == type;
+        }
+
+        protected boolean accept(TokenType type) {
+            if (peek(type)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        protected Token next() {
+            if (position >= tokens.size()) {
+                throw new UnsupportedRuleException("unexpected end of rule");
+            }
+            return tokens.get(position++);
+        }
+
+        protected Token expect(TokenType type) {
+            Token token = next();
+            if (token.type != type) {
+                throw new UnsupportedRuleException("expected " + type + " but found '" + token.text + "'");
+            }
+            return token;
+        }
+    }
+
+    /**
+     * Equality as MVEL's == operator sees it
+     */
+    protected static boolean isEqual(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (left instanceof Number || right instanceof Number) {
+            BigDecimal leftNumber = toBigDecimal(left);
+            BigDecimal rightNumber = toBigDecimal(right);
+            if (leftNumber == null || rightNumber == null) {
+                return false;
+            }
+            return leftNumber.compareTo(rightNumber) == 0;
+        }
+        if (left instanceof Enum && right instanceof String) {
+            return ((Enum<?>) left).name().equals(right);
+        }
+        if (right instanceof Enum && left instanceof String) {
+            return ((Enum<?>) right).name().equals(left);
+        }
+        if (left instanceof Character || right instanceof Character) {
+            return String.valueOf(left).equals(String.valueOf(right));
+        }
+        return left.equals(right);
+    }
+
+    /**
+     * Ordering as MVEL's relational operators see it. Comparisons against null are never true.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    protected static Integer compare(Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        if (left instanceof Number || right instanceof Number) {
+            BigDecimal leftNumber = toBigDecimal(left);
+            BigDecimal rightNumber = toBigDecimal(right);
+            if (leftNumber == null || rightNumber == null) {
+                throw new IllegalArgumentException("Cannot compare " + left + " to " + right);
+            }
+            return leftNumber.compareTo(rightNumber);
+        }
+        if (left instanceof Comparable && left.getClass().isInstance(right)) {
+            return ((Comparable) left).compareTo(right);
+        }
+        throw new IllegalArgumentException("Cannot compare " + left.getClass().getName() + " to "
+                + right.getClass().getName());
+    }
+
+    protected static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            return new BigDecimal(value.toString());
+        } else if (value instanceof Number) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        } else if (value instanceof String) {
+            try {
+                return new BigDecimal(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    protected static Object readProperty(Object target, PathSegment segment) {
+        if (!segment.method && target instanceof Map) {
+            return ((Map<?, ?>) target).get(segment.name);
+        }
+        Class<?> type = target.getClass();
+        Map<String, PropertyAccessor> accessors = ACCESSORS.get(type);
+        if (accessors == null) {
+            accessors = new ConcurrentHashMap<>();
+            Map<String, PropertyAccessor> existing = ACCESSORS.putIfAbsent(type, accessors);
+            if (existing != null) {
+                accessors = existing;
+            }
+        }
+        String key = segment.method ? segment.name + "()" : segment.name;
+        PropertyAccessor accessor = accessors.get(key);
+        if (accessor == null) {
+            accessor = PropertyAccessor.resolve(type, segment);
+            accessors.put(key, accessor);
+        }
+        return accessor.read(target);
+    }
+
+    protected interface BooleanNode extends Serializable {
+
+        boolean test(Map<String, Object> vars);
+
+    }
+
+    protected interface ValueNode extends Serializable {
+
+        Object value(Map<String, Object> vars);
+
+    }
+
+    protected static class CompiledRulePredicate implements RulePredicate {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final BooleanNode root;
+
+        public CompiledRulePredicate(BooleanNode root) {
+            this.root = root;
+        }
+
+        @Override
+        public boolean evaluate(Map<String, Object> ruleParameters) {
+            Map<String, Object> vars = ruleParameters;
+            if (vars == null) {
+                vars = Collections.emptyMap();
+            }
+            return root.test(vars);
+        }
+    }
+
+    protected static class AndNode implements BooleanNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final BooleanNode left;
+        protected final BooleanNode right;
+
+        public AndNode(BooleanNode left, BooleanNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> vars) {
+            return left.test(vars) && right.test(vars);
+        }
+    }
+
+    protected static class OrNode implements BooleanNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final BooleanNode left;
+        protected final BooleanNode right;
+
+        public OrNode(BooleanNode left, BooleanNode right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> vars) {
+            return left.test(vars) || right.test(vars);
+        }
+    }
+
+    protected static class NotNode implements BooleanNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final BooleanNode node;
+
+        public NotNode(BooleanNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> vars) {
+            return !node.test(vars);
+        }
+    }
+
+    protected static class TruthyNode implements BooleanNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final ValueNode node;
+
+        public TruthyNode(ValueNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> vars) {
+            return Boolean.TRUE.equals(node.value(vars));
+        }
+    }
+
+    protected static class ComparisonNode implements BooleanNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String operator;
+        protected final ValueNode left;
+        protected final ValueNode right;
+
+        public ComparisonNode(String operator, ValueNode left, ValueNode right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> vars) {
+            Object leftValue = left.value(vars);
+            Object rightValue = right.value(vars);
+            if ("==".equals(operator)) {
+                return isEqual(leftValue, rightValue);
+            } else if ("!=".equals(operator)) {
+                return !isEqual(leftValue, rightValue);
+            }
+            Integer comparison = compare(leftValue, rightValue);
+            if (comparison == null) {
+                return false;
+            }
+            switch (operator) {
+                case ">":
+                    return comparison > 0;
+                case ">=":
+                    return comparison >= 0;
+                case "<":
+                    return comparison < 0;
+                case "<=":
+                    return comparison <= 0;
+                default:
+                    throw new IllegalStateException("Unsupported operator " + operator);
+            }
+        }
+    }
+
+    protected static class ListContainsNode implements BooleanNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final List<Object> values;
+        protected final ValueNode node;
+
+        public ListContainsNode(List<Object> values, ValueNode node) {
+            this.values = values;
+            this.node = node;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> vars) {
+            Object value = node.value(vars);
+            for (Object candidate : values) {
+                if (isEqual(candidate, value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    protected static class StringFunctionNode implements BooleanNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String function;
+        protected final ValueNode value;
+        protected final ValueNode search;
+
+        public StringFunctionNode(String function, ValueNode value, ValueNode search) {
+            this.function = function;
+            this.value = value;
+            this.search = search;
+        }
+
+        @Override
+        public boolean test(Map<String, Object> vars) {
+            String valueString = toStringOrNull(value.value(vars));
+            String searchString = toStringOrNull(search.value(vars));
+            if (CONTAINS_FUNCTION.equals(function)) {
+                return StringUtils.contains(valueString, searchString);
+            } else if (STARTS_WITH_FUNCTION.equals(function)) {
+                return StringUtils.startsWith(valueString, searchString);
+            }
+            return StringUtils.endsWith(valueString, searchString);
+        }
+
+        protected String toStringOrNull(Object value) {
+            return value == null ? null : value.toString();
+        }
+    }
+
+    protected static class LiteralNode implements ValueNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final Object value;
+
+        public LiteralNode(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object value(Map<String, Object> vars) {
+            return value;
+        }
+    }
+
+    protected static class PathNode implements ValueNode {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final PathSegment[] segments;
+
+        public PathNode(List<PathSegment> segments) {
+            this.segments = segments.toArray(new PathSegment[segments.size()]);
+        }
+
+        @Override
+        public Object value(Map<String, Object> vars) {
+            String root = segments[0].name;
+            if (!vars.containsKey(root)) {
+                throw new IllegalArgumentException("Unresolvable variable: " + root);
+            }
+            Object current = vars.get(root);
+            for (int i = 1; i < segments.length; i++) {
+                if (current == null) {
+                    if (segments[i].nullSafe) {
+                        return null;
+                    }
+                    throw new NullPointerException("Null value while reading " + segments[i].name);
+                }
+                current = readProperty(current, segments[i]);
+            }
+            return current;
+        }
+    }
+
+    protected static class PathSegment implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String name;
+        protected final boolean nullSafe;
+        protected final boolean method;
+
+        public PathSegment(String name, boolean nullSafe, boolean method) {
+            this.name = name;
+            this.nullSafe = nullSafe;
+            this.method = method;
+        }
+    }
+
+    /**
+     * Reads a property or invokes a no-argument method. Methods are always resolved on a public type so that they can
+     * be invoked on instances of non-public implementation classes, such as the JDK's collection wrappers.
+     */
+    protected static class PropertyAccessor {
+
+        protected final Method method;
+        protected final Field field;
+
+        protected PropertyAccessor(Method method, Field field) {
+            this.method = method;
+            this.field = field;
+        }
+
+        public static PropertyAccessor resolve(Class<?> type, PathSegment segment) {
+            if (segment.method) {
+                Method method = findPublicMethod(type, segment.name);
+                if (method != null) {
+                    return new PropertyAccessor(method, null);
+                }
+            } else {
+                String capitalized = StringUtils.capitalize(segment.name);
+                Method getter = findPublicMethod(type, "get" + capitalized);
+                if (getter == null) {
+                    getter = findPublicMethod(type, "is" + capitalized);
+                }
+                if (getter != null) {
+                    return new PropertyAccessor(getter, null);
+                }
+                try {
+                    Field field = type.getField(segment.name);
+                    if (Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+                        return new PropertyAccessor(null, field);
+                    }
+                } catch (NoSuchFieldException e) {
+                    // fall through to the failure below
+                }
+            }
+            throw new IllegalArgumentException("Unable to resolve " + segment.name + " on " + type.getName());
+        }
+
+        protected static Method findPublicMethod(Class<?> type, String name) {
+            LinkedList<Class<?>> candidates = new LinkedList<>();
+            candidates.add(type);
+            Set<Class<?>> visited = new HashSet<>();
+            while (!candidates.isEmpty()) {
+                Class<?> candidate = candidates.removeFirst();
+                if (!visited.add(candidate)) {
+                    continue;
+                }
+                if (Modifier.isPublic(candidate.getModifiers())) {
+                    try {
+                        Method method = candidate.getMethod(name);
+                        if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                            return method;
+                        }
+                    } catch (NoSuchMethodException e) {
+                        continue;
+                    }
+                }
+                if (candidate.getSuperclass() != null) {
+                    candidates.add(candidate.getSuperclass());
+                }
+                candidates.addAll(Arrays.asList(candidate.getInterfaces()));
+            }
+            return null;
+        }
+
+        public Object read(Object target) {
+            try {
+                if (method != null) {
+                    return method.invoke(target);
+                }
+                return field.get(target);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to read " + (method != null ? method : field), e);
+            }
+        }
+    }
+
+    protected enum TokenType {
+        LPAREN, RPAREN, LBRACKET, RBRACKET, COMMA, AND, OR, NOT, OPERATOR, STRING, NUMBER, PATH
+    }
+
+    protected static class Token {
+
+        protected final TokenType type;
+        protected final String text;
+        protected final Object value;
+
+        public Token(TokenType type, String text) {
+            this(type, text, null);
+        }
+
+        public Token(TokenType type, String text, Object value) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+        }
+    }
+
+    protected static class UnsupportedRuleException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public UnsupportedRuleException(String message) {
+            super(message);
+        }
+    }
+}
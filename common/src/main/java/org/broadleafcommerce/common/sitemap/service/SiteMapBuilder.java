@@ -15,15 +15,14 @@
  * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
  * #L%
  */
-
 package org.broadleafcommerce.common.sitemap.service;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.file.domain.FileWorkArea;
+import org.broadleafcommerce.common.file.service.BroadleafFileService;
 import org.broadleafcommerce.common.file.service.BroadleafFileUtils;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
-import org.broadleafcommerce.common.sitemap.wrapper.SiteMapIndexWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLSetWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapWrapper;
@@ -37,6 +36,8 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -44,38 +45,136 @@ import javax.xml.bind.Marshaller;
 
 /**
  * Handles creating the various sitemap files. 
+ * </p>
+ * Urls are streamed straight to disk through a {@link SiteMapXmlWriter} as they are added, so memory use stays
+ * constant regardless of catalog size. Each generator may be given its own segment (see {@link #createSegment(String)})
+ * so that generators can run in parallel, and when a manifest from the previous generation is supplied, files whose
+ * content did not change are not re-published.
  * 
  * @author bpolster
  */
 public class SiteMapBuilder {
 
     protected static final Log LOG = LogFactory.getLog(SiteMapBuilder.class);
+
+    protected static final ConcurrentMap<Class<?>, JAXBContext> JAXB_CONTEXTS = new ConcurrentHashMap<Class<?>, JAXBContext>();
+
     protected FileWorkArea fileWorkArea;
 
     protected SiteMapConfiguration siteMapConfig;
-    protected SiteMapURLSetWrapper currentURLSetWrapper;
     protected List<String> indexedFileNames = new ArrayList<String>();
     protected String baseUrl;
     protected boolean gzipSiteMapFiles = true;
 
+    protected String segment;
+    protected List<SiteMapBuilder> segments = new ArrayList<SiteMapBuilder>();
+    protected SiteMapXmlWriter currentWriter;
+    protected String currentFileName;
+    protected Long currentLastKey;
+    protected List<GeneratedFile> generatedFiles = new ArrayList<GeneratedFile>();
+
+    protected SiteMapManifest previousManifest = new SiteMapManifest();
+    protected SiteMapManifest manifest = new SiteMapManifest();
+    protected BroadleafFileService fileService;
+
     public SiteMapBuilder(SiteMapConfiguration siteMapConfig, FileWorkArea fileWorkArea, String baseUrl, boolean gzipSiteMapFiles) {
         this.fileWorkArea = fileWorkArea;
         this.siteMapConfig = siteMapConfig;
-        this.currentURLSetWrapper = new SiteMapURLSetWrapper();
         this.baseUrl = baseUrl;
         this.gzipSiteMapFiles = gzipSiteMapFiles;
     }
 
     /**
-     * Returns the SiteMapURLSetWrapper that a Generator should use to add its next URL element.
+     * Create a child builder that writes its own numbered files (e.g. sitemap2-1.xml) into the same work area.
+     * Segments are included, in creation order, when this builder persists the sitemap index. A segment is meant to
+     * be used by a single thread.
+     *
+     * @param segment the segment name, used in the generated file names
+     * @return the new segment builder
+     */
+    public SiteMapBuilder createSegment(String segment) {
+        SiteMapBuilder child = new SiteMapBuilder(siteMapConfig, fileWorkArea, baseUrl, gzipSiteMapFiles);
+        child.segment = segment;
+        child.previousManifest = previousManifest;
+        child.fileService = fileService;
+        segments.add(child);
+        return child;
+    }
+
+    /**
+     * Supply the manifest of the previous generation, enabling stable file boundaries and the skipping of
+     * unchanged files.
+     *
+     * @param previousManifest the manifest read from the previously published sitemap
+     * @param fileService used to confirm that an unchanged file is still published
+     */
+    public void setPreviousManifest(SiteMapManifest previousManifest, BroadleafFileService fileService) {
+        this.previousManifest = previousManifest;
+        this.fileService = fileService;
+    }
+
+    /**
+     * Adds the next URL element, rolling over to a new file when the current one is full.
      * 
      */
     public void addUrl(SiteMapURLWrapper urlWrapper) {
-        if (currentURLSetWrapper.getSiteMapUrlWrappers().size() >= siteMapConfig.getMaximumUrlEntriesPerFile()) {
-            persistIndexedURLSetWrapper(currentURLSetWrapper);
-            currentURLSetWrapper = new SiteMapURLSetWrapper();
+        addUrl(urlWrapper, null);
+    }
+
+    /**
+     * Adds the next URL element. Generators that emit urls in ascending order of a stable key (such as the entity id)
+     * should pass that key - the file is then also rolled over where the previous generation ended it, so that a
+     * change in one part of the catalog does not shift, and re-publish, every later file.
+     *
+     * @param urlWrapper the url to add
+     * @param rangeKey the ascending key for this url, or null
+     */
+    public void addUrl(SiteMapURLWrapper urlWrapper, Long rangeKey) {
+        try {
+            if (currentWriter != null && (currentWriter.getEntryCount() >= siteMapConfig.getMaximumUrlEntriesPerFile()
+                    || crossesRangeBoundary(rangeKey))) {
+                closeCurrentFile();
+            }
+            if (currentWriter == null) {
+                openFile(createNextIndexedFileName());
+            }
+            currentWriter.writeUrl(urlWrapper);
+            if (rangeKey != null) {
+                currentLastKey = rangeKey;
+            }
+        } catch (IOException ioe) {
+            LOG.error("IOException occurred persisting XML Document", ioe);
+            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
+        }
+    }
+
+    protected boolean crossesRangeBoundary(Long rangeKey) {
+        if (rangeKey == null) {
+            return false;
+        }
+        Long previousLastKey = previousManifest.getLastKey(currentFileName);
+        return previousLastKey != null && rangeKey > previousLastKey;
+    }
+
+    protected void openFile(String fileName) throws IOException {
+        File file = new File(fileWorkArea.getFilePathLocation() + fileName);
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Persisting SiteMap document " + file.getAbsolutePath());
+        }
+        currentFileName = fileName;
+        currentLastKey = null;
+        currentWriter = SiteMapXmlWriter.open(file, gzipSiteMapFiles, SiteMapXmlWriter.URLSET);
+    }
+
+    protected void closeCurrentFile() throws IOException {
+        if (currentWriter == null) {
+            return;
         }
-        currentURLSetWrapper.getSiteMapUrlWrappers().add(urlWrapper);
+        currentWriter.close();
+        generatedFiles.add(new GeneratedFile(currentFileName, currentWriter.getDigest(), currentLastKey));
+        currentWriter = null;
+        currentFileName = null;
+        currentLastKey = null;
     }
 
     /**
@@ -87,7 +186,11 @@ public class SiteMapBuilder {
     protected void persistXMLDocument(String fileName, Object xmlObject) {
 
         try {
-            JAXBContext context = JAXBContext.newInstance(xmlObject.getClass());
+            JAXBContext context = JAXB_CONTEXTS.get(xmlObject.getClass());
+            if (context == null) {
+                context = JAXBContext.newInstance(xmlObject.getClass());
+                JAXB_CONTEXTS.putIfAbsent(xmlObject.getClass(), context);
+            }
             Marshaller m = context.createMarshaller();
             m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
             m.setProperty(Marshaller.JAXB_FRAGMENT, true);
@@ -119,19 +222,39 @@ public class SiteMapBuilder {
      * @return
      */
     protected void persistIndexedURLSetWrapper(SiteMapURLSetWrapper urlSetWrapper) {
-        String indexedFileName = createNextIndexedFileName();
-        indexedFileNames.add(indexedFileName);
-        persistXMLDocument(indexedFileName, urlSetWrapper);
+        try {
+            closeCurrentFile();
+            openFile(createNextIndexedFileName());
+            for (SiteMapURLWrapper urlWrapper : urlSetWrapper.getSiteMapUrlWrappers()) {
+                currentWriter.writeUrl(urlWrapper);
+            }
+            closeCurrentFile();
+        } catch (IOException ioe) {
+            LOG.error("IOException occurred persisting XML Document", ioe);
+            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
+        }
     }
 
     /**
-     * Save the passed in URL set to a non-indexed file. 
+     * Save the url set to a non-indexed file. This is used when all of the urls fit in a single file.
      * 
      * @return
      */
-    protected void persistNonIndexedSiteMap() {
-        indexedFileNames.add(siteMapConfig.getSiteMapFileName());
-        persistXMLDocument(siteMapConfig.getSiteMapFileName(), currentURLSetWrapper);
+    protected void persistNonIndexedSiteMap(List<GeneratedFile> files) throws IOException {
+        String fileName = siteMapConfig.getSiteMapFileName();
+        if (files.isEmpty()) {
+            openFile(fileName);
+            closeCurrentFile();
+            files.add(generatedFiles.remove(generatedFiles.size() - 1));
+        } else {
+            GeneratedFile generated = files.get(0);
+            renameWorkAreaFile(generated.fileName, fileName);
+            if (gzipSiteMapFiles) {
+                renameWorkAreaFile(generated.fileName + SiteMapXmlWriter.GZIP_EXTENSION, fileName + SiteMapXmlWriter.GZIP_EXTENSION);
+            }
+            generated.fileName = fileName;
+        }
+        recordFiles(files);
     }
 
     /**
@@ -139,53 +262,130 @@ public class SiteMapBuilder {
      * 
      * @return
      */
-    protected void persistIndexedSiteMap() {
+    protected void persistIndexedSiteMap(List<GeneratedFile> files) throws IOException {
+        List<String> lastmods = recordFiles(files);
+
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Persisting sitemap.xml file for indexed site map ");
+        }
+        String indexFileName = siteMapConfig.getIndexedSiteMapFileName();
+        File indexFile = new File(fileWorkArea.getFilePathLocation() + indexFileName);
+        SiteMapXmlWriter indexWriter = SiteMapXmlWriter.open(indexFile, gzipSiteMapFiles, SiteMapXmlWriter.SITEMAPINDEX);
+        try {
+            for (int j = 0; j < files.size(); j++) {
+                String fileName = files.get(j).fileName;
+                SiteMapWrapper siteMapWrapper = new SiteMapWrapper();
+                String fileLoc = null;
+                if (gzipSiteMapFiles) {
+                    fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName + SiteMapXmlWriter.GZIP_EXTENSION);
+                } else {
+                    fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName);
+                }
+                siteMapWrapper.setLoc(fileLoc);
+                siteMapWrapper.setLastmod(lastmods.get(j));
+                indexWriter.writeSiteMap(siteMapWrapper);
+            }
+        } finally {
+            indexWriter.close();
+        }
+        indexedFileNames.add(indexFileName);
+    }
+
+    /**
+     * Record each generated file in the manifest and determine the lastmod to publish for it. Files whose content
+     * matches the previous generation are removed from the work area so that the published copy, and its lastmod,
+     * are kept.
+     *
+     * @return the lastmod for each file, in order
+     */
+    protected List<String> recordFiles(List<GeneratedFile> files) {
         String now = FormatUtil.formatDateUsingW3C(new Date());
-        
-        // Save the leftover URL set
-        persistIndexedURLSetWrapper(currentURLSetWrapper);
-
-        // Build the siteMapIndex
-        SiteMapIndexWrapper siteMapIndexWrapper = new SiteMapIndexWrapper();
-        for (String fileName : indexedFileNames) {
-            SiteMapWrapper siteMapWrapper = new SiteMapWrapper();
-            String fileLoc = null;
-            if (gzipSiteMapFiles) {
-                fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName + ".gz");
-            } else {
-                fileLoc = BroadleafFileUtils.appendUnixPaths(baseUrl, fileName);
+        List<String> lastmods = new ArrayList<String>();
+        int unchanged = 0;
+        for (GeneratedFile file : files) {
+            String lastmod = now;
+            if (isUnchanged(file)) {
+                lastmod = previousManifest.getLastmod(file.fileName);
+                new File(fileWorkArea.getFilePathLocation() + file.fileName).delete();
+                new File(fileWorkArea.getFilePathLocation() + file.fileName + SiteMapXmlWriter.GZIP_EXTENSION).delete();
+                unchanged++;
             }
-            siteMapWrapper.setLoc(fileLoc)   ;         
-            siteMapWrapper.setLastmod(now);
-            siteMapIndexWrapper.getSiteMapWrappers().add(siteMapWrapper);
+            manifest.record(file.fileName, file.digest, file.lastKey, lastmod);
+            indexedFileNames.add(file.fileName);
+            lastmods.add(lastmod);
         }
+        if (unchanged > 0 && LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Skipped re-publishing %s of %s unchanged sitemap files", unchanged, files.size()));
+        }
+        return lastmods;
+    }
 
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Persisting sitemap.xml file for indexed site map ");
+    protected boolean isUnchanged(GeneratedFile file) {
+        if (fileService == null || previousManifest.getLastmod(file.fileName) == null
+                || !file.digest.equals(previousManifest.getDigest(file.fileName))) {
+            return false;
+        }
+        String published = gzipSiteMapFiles ? file.fileName + SiteMapXmlWriter.GZIP_EXTENSION : file.fileName;
+        return fileService.getResource("/" + file.fileName).exists() && fileService.getResource("/" + published).exists();
+    }
+
+    protected void renameWorkAreaFile(String fromName, String toName) throws IOException {
+        File from = new File(fileWorkArea.getFilePathLocation() + fromName);
+        File to = new File(fileWorkArea.getFilePathLocation() + toName);
+        if (!from.renameTo(to)) {
+            throw new IOException("Unable to rename sitemap file " + from.getAbsolutePath() + " to " + to.getAbsolutePath());
         }
-        indexedFileNames.add(siteMapConfig.getIndexedSiteMapFileName());
-        persistXMLDocument(siteMapConfig.getIndexedSiteMapFileName(),
-                siteMapIndexWrapper);
     }
 
     /**
      * Create the name of the indexed files.
-     * For example, sitemap1.xml, sitemap2.xml, etc.
+     * For example, sitemap1.xml, sitemap2.xml, etc. Files of a segment include the segment name, for example
+     * sitemap2-1.xml.
      * 
      * @return
      */
     protected String createNextIndexedFileName() {
         String pattern = siteMapConfig.getSiteMapIndexFilePattern();
-        int indexFileNumber = indexedFileNames.size() + 1;
-        String fileName = pattern.replaceFirst("###", String.valueOf(indexFileNumber));
+        int indexFileNumber = generatedFiles.size() + 1;
+        String number = segment == null ? String.valueOf(indexFileNumber) : segment + "-" + indexFileNumber;
+        String fileName = pattern.replaceFirst("###", number);
         return fileName;
     }
 
     protected void persistSiteMap() {
-        if (indexedFileNames.size() > 0) {
-            persistIndexedSiteMap();
-        } else {
-            persistNonIndexedSiteMap();
+        try {
+            closeCurrentFile();
+            List<GeneratedFile> files = new ArrayList<GeneratedFile>(generatedFiles);
+            for (SiteMapBuilder child : segments) {
+                child.closeCurrentFile();
+                files.addAll(child.generatedFiles);
+            }
+            if (files.size() > 1) {
+                persistIndexedSiteMap(files);
+            } else {
+                persistNonIndexedSiteMap(files);
+            }
+        } catch (IOException ioe) {
+            LOG.error("IOException occurred persisting XML Document", ioe);
+            throw new RuntimeException("Error persisting XML document when trying to build Sitemap", ioe);
+        }
+    }
+
+    /**
+     * Release any open file handles, for use when generation fails part way through
+     */
+    protected void abort() {
+        List<SiteMapBuilder> all = new ArrayList<SiteMapBuilder>(segments);
+        all.add(this);
+        for (SiteMapBuilder builder : all) {
+            if (builder.currentWriter != null) {
+                try {
+                    builder.currentWriter.close();
+                } catch (IOException e) {
+                    LOG.debug("Unable to close sitemap file", e);
+                }
+                builder.currentWriter = null;
+            }
         }
     }
 
@@ -193,8 +393,35 @@ public class SiteMapBuilder {
         return indexedFileNames;
     }
 
+    /**
+     * @return the manifest describing the files persisted by {@link #persistSiteMap()}
+     */
+    public SiteMapManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * @return whether files were gzipped as they were written
+     */
+    public boolean isGzipSiteMapFiles() {
+        return gzipSiteMapFiles;
+    }
+
     public String getBaseUrl() {
         return baseUrl;
     }
 
+    protected static class GeneratedFile {
+
+        protected String fileName;
+        protected final String digest;
+        protected final Long lastKey;
+
+        protected GeneratedFile(String fileName, String digest, Long lastKey) {
+            this.fileName = fileName;
+            this.digest = digest;
+            this.lastKey = lastKey;
+        }
+    }
+
 }
@@ -0,0 +1,90 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.sitemap.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Records, for each generated sitemap file, a digest of its url content, the last range key (e.g. product id) written
+ * to it and the lastmod published for it in the sitemap index. The manifest from the previous generation lets
+ * {@link SiteMapBuilder} keep file boundaries stable between runs and skip re-publishing files whose content did not
+ * change.
+ */
+public class SiteMapManifest {
+
+    protected static final String DIGEST = ".digest";
+    protected static final String LAST_KEY = ".lastKey";
+    protected static final String LASTMOD = ".lastmod";
+
+    protected final Properties properties = new Properties();
+
+    public static SiteMapManifest load(File file) throws IOException {
+        SiteMapManifest manifest = new SiteMapManifest();
+        if (file != null && file.exists()) {
+            InputStream is = new FileInputStream(file);
+            try {
+                manifest.properties.load(is);
+            } finally {
+                is.close();
+            }
+        }
+        return manifest;
+    }
+
+    public void save(File file) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            properties.store(os, "Sitemap generation manifest");
+        } finally {
+            os.close();
+        }
+    }
+
+    public void record(String fileName, String digest, Long lastKey, String lastmod) {
+        properties.setProperty(fileName + DIGEST, digest);
+        if (lastKey != null) {
+            properties.setProperty(fileName + LAST_KEY, String.valueOf(lastKey));
+        } else {
+            properties.remove(fileName + LAST_KEY);
+        }
+        properties.setProperty(fileName + LASTMOD, lastmod);
+    }
+
+    public String getDigest(String fileName) {
+        return properties.getProperty(fileName + DIGEST);
+    }
+
+    public Long getLastKey(String fileName) {
+        String value = properties.getProperty(fileName + LAST_KEY);
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    public String getLastmod(String fileName) {
+        return properties.getProperty(fileName + LASTMOD);
+    }
+
+    public boolean isEmpty() {
+        return properties.isEmpty();
+    }
+}
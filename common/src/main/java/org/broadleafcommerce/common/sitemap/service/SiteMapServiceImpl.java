@@ -21,6 +21,7 @@ package org.broadleafcommerce.common.sitemap.service;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalManager;
 import org.broadleafcommerce.common.config.domain.ModuleConfiguration;
 import org.broadleafcommerce.common.config.service.ModuleConfigurationService;
 import org.broadleafcommerce.common.config.service.type.ModuleConfigurationType;
@@ -30,7 +31,10 @@ import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
 import org.broadleafcommerce.common.sitemap.domain.SiteMapGeneratorConfiguration;
 import org.broadleafcommerce.common.sitemap.exception.SiteMapException;
 import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.broadleafcommerce.common.util.StreamingTransactionCapableUtil;
 import org.broadleafcommerce.common.web.BaseUrlResolver;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -39,6 +43,12 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.Resource;
@@ -59,6 +69,8 @@ public class SiteMapServiceImpl implements SiteMapService {
     
     protected static final String ENCODING_EXTENSION = ".gz";
 
+    protected static final String MANIFEST_FILE_NAME = "sitemap-manifest.properties";
+
     protected Boolean gzipSiteMapFiles;
 
     @Resource(name = "blModuleConfigurationService")
@@ -73,6 +85,26 @@ public class SiteMapServiceImpl implements SiteMapService {
     @Resource(name = "blBaseUrlResolver")
     protected BaseUrlResolver baseUrlResolver;
 
+    @Resource(name = "blStreamingTransactionCapableUtil")
+    protected StreamingTransactionCapableUtil transUtil;
+
+    /**
+     * Run each enabled generator configuration on its own thread, writing into its own set of sitemap files
+     */
+    @Value("${sitemap.generation.parallel:false}")
+    protected boolean parallelGeneration = false;
+
+    @Value("${sitemap.generation.threads:4}")
+    protected int generationThreads = 4;
+
+    /**
+     * Keep sitemap file boundaries stable between generations and only re-publish files whose content changed
+     */
+    @Value("${sitemap.generation.incremental:true}")
+    protected boolean incrementalGeneration = true;
+
+    protected volatile ExecutorService generationExecutor;
+
     @Override
     public SiteMapGenerationResponse generateSiteMap() throws SiteMapException, IOException {
         SiteMapGenerationResponse smgr = new SiteMapGenerationResponse();
@@ -88,10 +120,14 @@ public class SiteMapServiceImpl implements SiteMapService {
 
         FileWorkArea fileWorkArea = broadleafFileService.initializeWorkArea();
         SiteMapBuilder siteMapBuilder = new SiteMapBuilder(smc, fileWorkArea, baseUrlResolver.getSiteBaseUrl(), getGzipSiteMapFiles());
+        if (incrementalGeneration) {
+            siteMapBuilder.setPreviousManifest(readPreviousManifest(), broadleafFileService);
+        }
 
         if (LOG.isTraceEnabled()) {
             LOG.trace("File work area initalized with path " + fileWorkArea.getFilePathLocation());
         }
+        List<SiteMapGeneratorConfiguration> activeConfigurations = new ArrayList<SiteMapGeneratorConfiguration>();
         for (SiteMapGeneratorConfiguration currentConfiguration : smc.getSiteMapGeneratorConfigurations()) {
             if (currentConfiguration.isDisabled()) {
                 if (LOG.isTraceEnabled()) {
@@ -99,23 +135,24 @@ public class SiteMapServiceImpl implements SiteMapService {
                 }
                 continue;
             }
-            SiteMapGenerator generator = selectSiteMapGenerator(currentConfiguration);
-            if (generator != null) {
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("SiteMapGenerator found, adding entries" + generator.getClass());
-                }
-                generator.addSiteMapEntries(currentConfiguration, siteMapBuilder);
+            activeConfigurations.add(currentConfiguration);
+        }
+        try {
+            if (parallelGeneration && activeConfigurations.size() > 1) {
+                generateInParallel(activeConfigurations, siteMapBuilder);
             } else {
-                LOG.warn("No site map generator found to process generator configuration for " + currentConfiguration.getSiteMapGeneratorType());
+                for (SiteMapGeneratorConfiguration currentConfiguration : activeConfigurations) {
+                    addSiteMapEntries(currentConfiguration, siteMapBuilder);
+                }
             }
+            siteMapBuilder.persistSiteMap();
+        } catch (RuntimeException e) {
+            siteMapBuilder.abort();
+            throw e;
         }
 
-        siteMapBuilder.persistSiteMap();
-
-
-        // Check for GZip
-        if (getGzipSiteMapFiles()) {
-            gzipAndDeleteFiles(fileWorkArea, siteMapBuilder.getIndexedFileNames(), false);
+        // Files are gzipped as they are written
+        if (siteMapBuilder.isGzipSiteMapFiles()) {
             List<String> indexFileNames = new ArrayList<String>();
             for (String fileName: siteMapBuilder.getIndexedFileNames()) {
                 indexFileNames.add(fileName + ENCODING_EXTENSION);
@@ -124,7 +161,9 @@ public class SiteMapServiceImpl implements SiteMapService {
         } else {
             smgr.setSiteMapFilePaths(siteMapBuilder.getIndexedFileNames());
         }
-
+        if (incrementalGeneration) {
+            siteMapBuilder.getManifest().save(new File(fileWorkArea.getFilePathLocation() + MANIFEST_FILE_NAME));
+        }
 
         // Move the generated files to their permanent location
         broadleafFileService.addOrUpdateResources(fileWorkArea, true);
@@ -181,6 +220,106 @@ public class SiteMapServiceImpl implements SiteMapService {
         }        
     }
 
+    protected void addSiteMapEntries(SiteMapGeneratorConfiguration currentConfiguration, SiteMapBuilder siteMapBuilder) {
+        SiteMapGenerator generator = selectSiteMapGenerator(currentConfiguration);
+        if (generator != null) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("SiteMapGenerator found, adding entries" + generator.getClass());
+            }
+            generator.addSiteMapEntries(currentConfiguration, siteMapBuilder);
+        } else {
+            LOG.warn("No site map generator found to process generator configuration for " + currentConfiguration.getSiteMapGeneratorType());
+        }
+    }
+
+    /**
+     * Run each generator configuration on the generation pool, each writing to its own segment of the sitemap.
+     * The request context of the caller is copied to the worker threads.
+     */
+    protected void generateInParallel(List<SiteMapGeneratorConfiguration> configurations, SiteMapBuilder siteMapBuilder) throws SiteMapException {
+        BroadleafRequestContext currentContext = BroadleafRequestContext.getBroadleafRequestContext();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int j = 0; j < configurations.size(); j++) {
+            final SiteMapGeneratorConfiguration configuration = configurations.get(j);
+            final SiteMapBuilder segment = siteMapBuilder.createSegment(String.valueOf(j + 1));
+            final BroadleafRequestContext context = currentContext == null ? null : currentContext.createLightWeightClone();
+            futures.add(getGenerationExecutor().submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (context != null) {
+                        BroadleafRequestContext.setBroadleafRequestContext(context);
+                    }
+                    try {
+                        Runnable generation = new Runnable() {
+
+                            @Override
+                            public void run() {
+                                addSiteMapEntries(configuration, segment);
+                            }
+                        };
+                        if (transUtil != null) {
+                            transUtil.runOptionalEntityManagerInViewOperation(generation);
+                        } else {
+                            generation.run();
+                        }
+                    } finally {
+                        ThreadLocalManager.remove();
+                    }
+                }
+            }));
+        }
+        SiteMapException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new SiteMapException("Interrupted while generating the sitemap", e);
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = new SiteMapException("Unable to generate sitemap entries", e.getCause());
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    protected ExecutorService getGenerationExecutor() {
+        if (generationExecutor == null) {
+            synchronized (this) {
+                if (generationExecutor == null) {
+                    generationExecutor = Executors.newFixedThreadPool(Math.max(1, generationThreads), new ThreadFactory() {
+
+                        protected final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "sitemap-generator-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return generationExecutor;
+    }
+
+    /**
+     * Read the manifest published by the previous generation, if any
+     */
+    protected SiteMapManifest readPreviousManifest() {
+        try {
+            return SiteMapManifest.load(broadleafFileService.getResource("/" + MANIFEST_FILE_NAME));
+        } catch (Exception e) {
+            LOG.warn("Unable to read the previous sitemap manifest. All sitemap files will be regenerated.", e);
+            return new SiteMapManifest();
+        }
+    }
+
     protected SiteMapConfiguration findActiveSiteMapConfiguration() {
         List<ModuleConfiguration> configurations = moduleConfigurationService.findActiveConfigurationsByType(ModuleConfigurationType.SITE_MAP);
 
@@ -0,0 +1,208 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.sitemap.service;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.output.TeeOutputStream;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapImageWrapper;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapWrapper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streams a single sitemap document (either a urlset or a sitemapindex) to disk with StAX, one element at a time, so
+ * that memory use does not depend on the number of entries. When gzip is requested, the plain and the gzipped files
+ * are produced in the same pass.
+ * </p>
+ * A digest of the url content (excluding lastmod, which is typically the generation time) is maintained so that
+ * callers can tell whether a regenerated file differs from the previously published version.
+ */
+public class SiteMapXmlWriter implements Closeable {
+
+    public static final String SITEMAP_NAMESPACE = "http://www.sitemaps.org/schemas/sitemap/0.9";
+    public static final String IMAGE_NAMESPACE = "http://www.google.com/schemas/sitemap-image/1.1";
+    public static final String IMAGE_PREFIX = "image";
+    public static final String URLSET = "urlset";
+    public static final String SITEMAPINDEX = "sitemapindex";
+    public static final String GZIP_EXTENSION = ".gz";
+
+    //XMLOutputFactory is thread safe once configured
+    protected static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    protected final OutputStream outputStream;
+    protected final XMLStreamWriter writer;
+    protected final MessageDigest digest;
+    protected int entryCount = 0;
+    protected boolean closed = false;
+
+    public SiteMapXmlWriter(OutputStream outputStream, String rootElement) throws IOException {
+        this.outputStream = outputStream;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try {
+            writer = OUTPUT_FACTORY.createXMLStreamWriter(outputStream, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.setDefaultNamespace(SITEMAP_NAMESPACE);
+            writer.setPrefix(IMAGE_PREFIX, IMAGE_NAMESPACE);
+            writer.writeStartElement(SITEMAP_NAMESPACE, rootElement);
+            writer.writeDefaultNamespace(SITEMAP_NAMESPACE);
+            writer.writeNamespace(IMAGE_PREFIX, IMAGE_NAMESPACE);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Open a writer for the given file. If gzip is true, a sibling file with a ".gz" extension is written as well.
+     */
+    public static SiteMapXmlWriter open(File file, boolean gzip, String rootElement) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        if (gzip) {
+            OutputStream gzipOut = new GZIPOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file.getAbsolutePath() + GZIP_EXTENSION)), 8192);
+            out = new TeeOutputStream(out, gzipOut);
+        }
+        return new SiteMapXmlWriter(out, rootElement);
+    }
+
+    public void writeUrl(SiteMapURLWrapper url) throws IOException {
+        try {
+            startElement(1, SITEMAP_NAMESPACE, "url");
+            writeElement(2, "loc", url.getLoc(), true);
+            writeElement(2, "lastmod", url.getLastmod(), false);
+            writeElement(2, "changefreq", url.getChangefreq(), true);
+            writeElement(2, "priority", url.getPriority(), true);
+            for (SiteMapImageWrapper image : url.getSiteMapImageWrappers()) {
+                indent(2);
+                writer.writeStartElement(IMAGE_PREFIX, "image", IMAGE_NAMESPACE);
+                indent(3);
+                writer.writeStartElement(IMAGE_PREFIX, "loc", IMAGE_NAMESPACE);
+                writer.writeCharacters(image.getLoc());
+                writer.writeEndElement();
+                indent(2);
+                writer.writeEndElement();
+                updateDigest("image", image.getLoc());
+            }
+            indent(1);
+            writer.writeEndElement();
+            entryCount++;
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public void writeSiteMap(SiteMapWrapper siteMap) throws IOException {
+        try {
+            startElement(1, SITEMAP_NAMESPACE, "sitemap");
+            writeElement(2, "loc", siteMap.getLoc(), true);
+            writeElement(2, "lastmod", siteMap.getLastmod(), true);
+            indent(1);
+            writer.writeEndElement();
+            entryCount++;
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return the number of url or sitemap entries written so far
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return a hex digest of the content written so far, excluding lastmod values of url entries
+     */
+    public String getDigest() {
+        try {
+            return Hex.encodeHexString(((MessageDigest) digest.clone()).digest());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            indent(0);
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    protected void startElement(int depth, String namespace, String name) throws XMLStreamException {
+        indent(depth);
+        writer.writeStartElement(namespace, name);
+    }
+
+    protected void writeElement(int depth, String name, String value, boolean includeInDigest) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        startElement(depth, SITEMAP_NAMESPACE, name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+        if (includeInDigest) {
+            updateDigest(name, value);
+        }
+    }
+
+    protected void indent(int depth) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder("\n");
+        for (int j = 0; j < depth; j++) {
+            sb.append("    ");
+        }
+        writer.writeCharacters(sb.toString());
+    }
+
+    protected void updateDigest(String name, String value) {
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+}
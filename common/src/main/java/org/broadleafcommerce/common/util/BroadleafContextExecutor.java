@@ -0,0 +1,189 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.classloader.release.ThreadLocalSnapshot;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link ExecutorService} that runs tasks with the request context of the submitting thread. When a task is submitted,
+ * the values of everything tracked by {@link org.broadleafcommerce.common.classloader.release.ThreadLocalManager}
+ * (BroadleafRequestContext, sandbox state, etc...) are captured in a {@link ThreadLocalSnapshot}. The snapshot is applied
+ * on the worker thread before the task runs, and the worker is returned to its previous state afterwards. This makes it
+ * possible to fan out work within a request, such as content lookups or inventory checks, without losing site, locale,
+ * sandbox or customer context.
+ * </p>
+ * Tasks do not share the submitting thread's EntityManager or transaction. Tasks that need database access should use
+ * their own, e.g. via {@link EntityManagerAwareRunnable} or a TransactionTemplate, and should treat the propagated
+ * context as read only.
+ * </p>
+ * Use {@link #wrap(ExecutorService)} to propagate context through an existing executor, {@link #newFixedThreadPool(int, String)}
+ * for a pool of daemon threads, or {@link #newVirtualThreadPerTaskExecutor(String)} to run each task on its own virtual
+ * thread when the JVM supports it (Java 21+). On older JVMs the latter falls back to a pool sized for blocking work.
+ */
+public class BroadleafContextExecutor extends AbstractExecutorService {
+
+    private static final Log LOG = LogFactory.getLog(BroadleafContextExecutor.class);
+
+    protected final ExecutorService delegate;
+
+    public BroadleafContextExecutor(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    public static BroadleafContextExecutor wrap(ExecutorService delegate) {
+        if (delegate instanceof BroadleafContextExecutor) {
+            return (BroadleafContextExecutor) delegate;
+        }
+        return new BroadleafContextExecutor(delegate);
+    }
+
+    /**
+     * A pool of daemon threads that time out when idle
+     */
+    public static BroadleafContextExecutor newFixedThreadPool(int threads, String threadNamePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ContextThreadFactory(threadNamePrefix));
+        executor.allowCoreThreadTimeOut(true);
+        return new BroadleafContextExecutor(executor);
+    }
+
+    /**
+     * A virtual thread per task on Java 21+. Otherwise, a pool of platform threads sized for blocking work.
+     */
+    public static BroadleafContextExecutor newVirtualThreadPerTaskExecutor(String threadNamePrefix) {
+        try {
+            Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new BroadleafContextExecutor((ExecutorService) method.invoke(null));
+        } catch (NoSuchMethodException e) {
+            int threads = Math.max(16, Runtime.getRuntime().availableProcessors() * 8);
+            LOG.info("Virtual threads are not supported by this JVM. Using a pool of " + threads + " threads instead.");
+            return newFixedThreadPool(threads, threadNamePrefix);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wrap the task so that it runs with the request context of the calling thread, regardless of which executor runs it
+     */
+    public static Runnable wrap(final Runnable task) {
+        final ThreadLocalSnapshot snapshot = ThreadLocalSnapshot.capture();
+        return new Runnable() {
+            @Override
+            public void run() {
+                ThreadLocalSnapshot previous = snapshot.apply();
+                try {
+                    task.run();
+                } finally {
+                    ThreadLocalSnapshot.restore(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap the task so that it runs with the request context of the calling thread, regardless of which executor runs it
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final ThreadLocalSnapshot snapshot = ThreadLocalSnapshot.capture();
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                ThreadLocalSnapshot previous = snapshot.apply();
+                try {
+                    return task.call();
+                } finally {
+                    ThreadLocalSnapshot.restore(previous);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(wrap(command));
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    public ExecutorService getDelegate() {
+        return delegate;
+    }
+
+    protected static class ContextThreadFactory implements ThreadFactory {
+
+        protected final String threadNamePrefix;
+        protected final AtomicInteger count = new AtomicInteger();
+
+        public ContextThreadFactory(String threadNamePrefix) {
+            this.threadNamePrefix = threadNamePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, threadNamePrefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.web.controller;
+
+import org.broadleafcommerce.common.cache.CacheStat;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.common.cache.StatisticsService;
+import org.broadleafcommerce.common.web.controller.annotation.FrameworkMapping;
+import org.broadleafcommerce.common.web.controller.annotation.FrameworkRestController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Exposes the cache statistics gathered by {@link StatisticsService} in the Prometheus text exposition format so that
+ * they can be pulled by a metrics scraper. Hit and miss counts are exported as counters, recent rates as gauges and
+ * cache load times as a cumulative histogram.
+ * <p>
+ * The endpoint is disabled unless {@code cache.stat.metrics.endpoint.enabled} is true, and it should be secured or
+ * restricted to internal networks when enabled.
+ */
+@FrameworkRestController
+public class CacheStatisticsController {
+
+    protected static final String METRIC_PREFIX = "broadleaf_cache_";
+
+    @Resource(name = "blStatisticsService")
+    protected StatisticsService statisticsService;
+
+    @Value("${cache.stat.metrics.endpoint.enabled:false}")
+    protected boolean enabled = false;
+
+    @FrameworkMapping(value = "/cache-statistics", method = RequestMethod.GET, produces = "text/plain;version=0.0.4")
+    public String getCacheStatistics(HttpServletResponse response) {
+        if (!enabled) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return "";
+        }
+        return buildMetrics(statisticsService.getCacheStats());
+    }
+
+    protected String buildMetrics(Map<String, CacheStat> cacheStats) {
+        Map<String, CacheStat> sorted = new TreeMap<String, CacheStat>(cacheStats);
+        StringBuilder sb = new StringBuilder();
+
+        appendType(sb, "requests_total", "counter");
+        for (Map.Entry<String, CacheStat> entry : sorted.entrySet()) {
+            appendSample(sb, "requests_total", entry.getKey(), null, entry.getValue().getRequestCount());
+        }
+        appendType(sb, "hits_total", "counter");
+        for (Map.Entry<String, CacheStat> entry : sorted.entrySet()) {
+            appendSample(sb, "hits_total", entry.getKey(), null, entry.getValue().getCacheHitCount());
+        }
+        appendType(sb, "misses_total", "counter");
+        for (Map.Entry<String, CacheStat> entry : sorted.entrySet()) {
+            appendSample(sb, "misses_total", entry.getKey(), null, entry.getValue().getCacheMissCount());
+        }
+        appendType(sb, "requests_per_second", "gauge");
+        for (Map.Entry<String, CacheStat> entry : sorted.entrySet()) {
+            appendSample(sb, "requests_per_second", entry.getKey(), null, entry.getValue().getRequestRate());
+        }
+        appendType(sb, "hits_per_second", "gauge");
+        for (Map.Entry<String, CacheStat> entry : sorted.entrySet()) {
+            appendSample(sb, "hits_per_second", entry.getKey(), null, entry.getValue().getHitsPerSecond());
+        }
+
+        appendType(sb, "load_seconds", "histogram");
+        for (Map.Entry<String, CacheStat> entry : sorted.entrySet()) {
+            LatencyHistogram histogram = entry.getValue().getLoadLatency();
+            double[] bounds = histogram.getBucketBoundsMillis();
+            long[] counts = histogram.getBucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += counts[i];
+                appendSample(sb, "load_seconds_bucket", entry.getKey(), String.valueOf(bounds[i] / 1000D), cumulative);
+            }
+            cumulative += counts[counts.length - 1];
+            appendSample(sb, "load_seconds_bucket", entry.getKey(), "+Inf", cumulative);
+            appendSample(sb, "load_seconds_count", entry.getKey(), null, cumulative);
+            appendSample(sb, "load_seconds_sum", entry.getKey(), null,
+                    histogram.getMeanMillis() * histogram.getCount() / 1000D);
+        }
+        return sb.toString();
+    }
+
+    protected void appendType(StringBuilder sb, String name, String type) {
+        sb.append("# TYPE ").append(METRIC_PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    protected void appendSample(StringBuilder sb, String name, String cache, String le, Number value) {
+        sb.append(METRIC_PREFIX).append(name).append("{cache=\"").append(escapeLabel(cache)).append('"');
+        if (le != null) {
+            sb.append(",le=\"").append(le).append('"');
+        }
+        sb.append("} ").append(value).append('\n');
+    }
+
+    protected String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+public class StatisticsServiceImplTest extends TestCase {
+
+    /**
+     * Test that no hits or requests are lost when many threads record against the same cache
+     */
+    public void testConcurrentCacheStats() throws Exception {
+        final StatisticsServiceImpl service = new StatisticsServiceImpl();
+        service.setLogResolution(Long.MAX_VALUE / 2);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 10000; i++) {
+                        service.addCacheStat("test", i % 4 != 0);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        CacheStat stat = service.getCacheStats().get("test");
+        assertEquals(Long.valueOf(80000L), stat.getRequestCount());
+        assertEquals(Long.valueOf(60000L), stat.getCacheHitCount());
+        assertEquals(Long.valueOf(20000L), stat.getCacheMissCount());
+        assertEquals(75D, stat.getHitRate().doubleValue());
+        assertEquals(75D, service.getAttribute("test"));
+        assertEquals(80000L, service.getAttribute("test.requestCount"));
+    }
+
+    /**
+     * Test that load times land in the expected histogram buckets and percentiles
+     */
+    public void testLoadLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(150));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(30));
+
+        assertEquals(100L, histogram.getCount());
+        assertEquals(0.2D, histogram.getPercentileMillis(0.5D));
+        assertEquals(0.2D, histogram.getPercentileMillis(0.99D));
+        assertEquals(50D, histogram.getPercentileMillis(1D));
+        assertEquals(30D, histogram.getMaxMillis());
+    }
+
+    /**
+     * Test that the rate window only counts recent events
+     */
+    public void testRateWindow() {
+        RateWindow window = new RateWindow(10, 1000L);
+        for (int i = 0; i < 50; i++) {
+            window.increment();
+        }
+        assertEquals(50L, window.getCount());
+        assertEquals(5D, window.getRatePerSecond());
+    }
+
+    /**
+     * Test that slots roll over to new periods and that counts older than the window are dropped
+     */
+    public void testRateWindowRollsOver() {
+        final AtomicLong now = new AtomicLong(100000L);
+        RateWindow window = new RateWindow(10, 1000L) {
+            @Override
+            protected long currentTimeMillis() {
+                return now.get();
+            }
+        };
+        window.add(5L);
+        now.set(105000L);
+        window.add(3L);
+        assertEquals(8L, window.getCount());
+        now.set(110000L);
+        window.add(1L);
+        assertEquals(4L, window.getCount());
+        now.set(125000L);
+        assertEquals(0L, window.getCount());
+    }
+}
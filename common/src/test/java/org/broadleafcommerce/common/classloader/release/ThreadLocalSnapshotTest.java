@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.classloader.release;
+
+import org.broadleafcommerce.common.persistence.transaction.SqlProfile;
+import org.broadleafcommerce.common.persistence.transaction.SqlProfileManager;
+import org.broadleafcommerce.common.persistence.transaction.TransactionLifecycleAwareSqlStatementLogger;
+import org.broadleafcommerce.common.util.BroadleafContextExecutor;
+import org.hibernate.engine.jdbc.internal.FormatStyle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+public class ThreadLocalSnapshotTest extends TestCase {
+
+    protected static final ThreadLocal<String> CONTEXT = ThreadLocalManager.createThreadLocal(String.class, false);
+
+    @Override
+    protected void tearDown() throws Exception {
+        ThreadLocalManager.remove();
+    }
+
+    public void testContextIsPropagatedAndCleared() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        BroadleafContextExecutor executor = BroadleafContextExecutor.wrap(pool);
+        try {
+            CONTEXT.set("site1");
+            Future<String> propagated = executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return CONTEXT.get();
+                }
+            });
+            assertEquals("site1", propagated.get());
+
+            Future<String> leftover = pool.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return CONTEXT.get();
+                }
+            });
+            assertNull(leftover.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testCallerThreadStateIsRestored() throws Exception {
+        CONTEXT.set("site1");
+        Runnable task = BroadleafContextExecutor.wrap(new Runnable() {
+            @Override
+            public void run() {
+                CONTEXT.set("site2");
+            }
+        });
+        task.run();
+        assertEquals("site1", CONTEXT.get());
+        assertTrue(ThreadLocalManager.isRegistered(CONTEXT));
+    }
+
+    public void testSqlProfileStaysOnRequestThread() throws Exception {
+        SqlProfileManager profileManager = new SqlProfileManager();
+        profileManager.setSampleRate(1D);
+        SqlProfile profile = profileManager.startProfile("/test");
+        assertNotNull(profile);
+        final TransactionLifecycleAwareSqlStatementLogger statementLogger = new TransactionLifecycleAwareSqlStatementLogger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        BroadleafContextExecutor executor = BroadleafContextExecutor.wrap(pool);
+        try {
+            List<Future<SqlProfile>> results = new ArrayList<Future<SqlProfile>>();
+            for (int j = 0; j < 16; j++) {
+                results.add(executor.submit(new Callable<SqlProfile>() {
+                    @Override
+                    public SqlProfile call() {
+                        for (int i = 0; i < 100; i++) {
+                            statementLogger.logStatement("select * from BLC_SKU where SKU_ID=" + i, FormatStyle.NONE.getFormatter());
+                        }
+                        return SqlProfileManager.getCurrentProfile();
+                    }
+                }));
+            }
+            for (int i = 0; i < 100; i++) {
+                statementLogger.logStatement("select * from BLC_PRODUCT where PRODUCT_ID=" + i, FormatStyle.NONE.getFormatter());
+            }
+            for (Future<SqlProfile> result : results) {
+                assertNull(result.get());
+            }
+            assertEquals(100, profile.getQueryCount());
+            assertEquals(1, profile.getShapeCount());
+
+            // work run on the request thread itself must leave the profile in place
+            BroadleafContextExecutor.wrap(new Runnable() {
+                @Override
+                public void run() {
+                    statementLogger.logStatement("select * from BLC_SKU where SKU_ID=1", FormatStyle.NONE.getFormatter());
+                }
+            }).run();
+            assertSame(profile, SqlProfileManager.getCurrentProfile());
+        } finally {
+            executor.shutdownNow();
+            profileManager.endProfile(profile);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extensibility.jpa.convert;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+public class PreWovenAwareClassTransformerTest extends TestCase {
+
+    protected static final String CLASS_NAME = "org/broadleafcommerce/test/SampleEntity";
+    protected static final byte[] ORIGINAL = new byte[] {1, 2, 3};
+    protected static final byte[] WOVEN = new byte[] {4, 5, 6};
+
+    protected File captureDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        captureDirectory = Files.createTempDirectory("woven").toFile();
+    }
+
+    public void testCapturedClassesAreSkippedOnLaterRuns() throws Exception {
+        CountingTransformer capturing = new CountingTransformer();
+        PreWovenAwareClassTransformer captureWrapper = new PreWovenAwareClassTransformer(capturing, "blPU:CountingTransformer#0",
+                PreWovenClassManifest.load(getClass().getClassLoader(), captureDirectory));
+        assertTrue(Arrays.equals(WOVEN, captureWrapper.transform(null, CLASS_NAME, null, null, ORIGINAL)));
+
+        File classFile = new File(captureDirectory, CLASS_NAME + ".class");
+        assertTrue(Arrays.equals(WOVEN, Files.readAllBytes(classFile.toPath())));
+        Properties properties = new Properties();
+        InputStream is = new FileInputStream(new File(captureDirectory, PreWovenClassManifest.MANIFEST_LOCATION));
+        try {
+            properties.load(is);
+        } finally {
+            is.close();
+        }
+        assertEquals("blPU:CountingTransformer#0", properties.getProperty("org.broadleafcommerce.test.SampleEntity.transformers"));
+
+        ClassLoader loader = new URLClassLoader(new URL[] {captureDirectory.toURI().toURL()}, null);
+        CountingTransformer runtime = new CountingTransformer();
+        PreWovenAwareClassTransformer wrapper = new PreWovenAwareClassTransformer(runtime, "blPU:CountingTransformer#0",
+                PreWovenClassManifest.load(loader, null));
+        assertNull(wrapper.transform(null, CLASS_NAME, null, null, WOVEN));
+        assertEquals(0, runtime.invocations);
+        assertEquals(1, wrapper.getSkippedCount());
+
+        // a transformer that did not take part in the weaving still runs
+        PreWovenAwareClassTransformer other = new PreWovenAwareClassTransformer(runtime, "blPU:CountingTransformer#1",
+                PreWovenClassManifest.load(loader, null));
+        other.transform(null, CLASS_NAME, null, null, WOVEN);
+        assertEquals(1, runtime.invocations);
+    }
+
+    public void testStaleBytecodeIsTransformedAtLoadTime() throws Exception {
+        new PreWovenAwareClassTransformer(new CountingTransformer(), "blPU:CountingTransformer#0",
+                PreWovenClassManifest.load(getClass().getClassLoader(), captureDirectory))
+                .transform(null, CLASS_NAME, null, null, ORIGINAL);
+
+        ClassLoader loader = new URLClassLoader(new URL[] {captureDirectory.toURI().toURL()}, null);
+        CountingTransformer runtime = new CountingTransformer();
+        PreWovenAwareClassTransformer wrapper = new PreWovenAwareClassTransformer(runtime, "blPU:CountingTransformer#0",
+                PreWovenClassManifest.load(loader, null));
+        // the original, unwoven bytes were found first on the classpath
+        assertTrue(Arrays.equals(WOVEN, wrapper.transform(null, CLASS_NAME, null, null, ORIGINAL)));
+        assertEquals(1, runtime.invocations);
+        assertEquals(1, wrapper.getTransformedCount());
+    }
+
+    protected static class CountingTransformer implements BroadleafClassTransformer {
+
+        protected int invocations = 0;
+
+        @Override
+        public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+            invocations++;
+            return WOVEN;
+        }
+
+        @Override
+        public void compileJPAProperties(Properties props, Object key) throws Exception {
+            //do nothing
+        }
+    }
+}
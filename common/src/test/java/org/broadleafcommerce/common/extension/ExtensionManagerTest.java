@@ -0,0 +1,166 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.extension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ExtensionManagerTest extends TestCase {
+
+    public interface TestExtensionHandler extends ExtensionHandler {
+
+        ExtensionResultStatusType process(List<String> calls, int value);
+    }
+
+    public static class TestExtensionManager extends ExtensionManager<TestExtensionHandler> {
+
+        public TestExtensionManager() {
+            super(TestExtensionHandler.class);
+        }
+    }
+
+    public static class RecordingHandler extends AbstractExtensionHandler implements TestExtensionHandler {
+
+        protected final String name;
+        protected final ExtensionResultStatusType result;
+
+        public RecordingHandler(String name, int priority, ExtensionResultStatusType result) {
+            this.name = name;
+            this.priority = priority;
+            this.result = result;
+        }
+
+        @Override
+        public ExtensionResultStatusType process(List<String> calls, int value) {
+            calls.add(name + value);
+            return result;
+        }
+    }
+
+    public static class OtherRecordingHandler extends RecordingHandler {
+
+        public OtherRecordingHandler(String name, int priority, ExtensionResultStatusType result) {
+            super(name, priority, result);
+        }
+    }
+
+    public static class FailingHandler extends AbstractExtensionHandler implements TestExtensionHandler {
+
+        @Override
+        public ExtensionResultStatusType process(List<String> calls, int value) {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    public void testNoHandlers() {
+        TestExtensionManager manager = new TestExtensionManager();
+        assertFalse(manager.hasHandlers());
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, manager.getProxy().process(new ArrayList<String>(), 1));
+    }
+
+    public void testHandlersRunInPriorityOrderUntilHandled() {
+        TestExtensionManager manager = new TestExtensionManager();
+        manager.registerHandler(new RecordingHandler("b", 20, ExtensionResultStatusType.HANDLED));
+        manager.registerHandler(new OtherRecordingHandler("a", 10, ExtensionResultStatusType.NOT_HANDLED));
+        List<String> calls = new ArrayList<String>();
+
+        assertEquals(ExtensionResultStatusType.HANDLED, manager.getProxy().process(calls, 5));
+        assertEquals("[a5, b5]", calls.toString());
+    }
+
+    public void testHandlerSnapshotIsCopyOnWrite() {
+        TestExtensionManager manager = new TestExtensionManager();
+        manager.registerHandler(new RecordingHandler("a", 10, ExtensionResultStatusType.NOT_HANDLED));
+        List<TestExtensionHandler> snapshot = manager.getHandlerSnapshot();
+        assertFalse(manager.registerHandler(new RecordingHandler("a", 10, ExtensionResultStatusType.NOT_HANDLED)));
+        assertTrue(manager.registerHandler(new OtherRecordingHandler("b", 5, ExtensionResultStatusType.NOT_HANDLED)));
+
+        assertEquals(1, snapshot.size());
+        assertEquals(2, manager.getHandlerSnapshot().size());
+        assertTrue(manager.getHandlerSnapshot().get(0) instanceof OtherRecordingHandler);
+        try {
+            manager.getHandlerSnapshot().clear();
+            fail("The handler snapshot should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+    }
+
+    public void testHandlersAddedThroughGetHandlersAreDispatchedTo() {
+        TestExtensionManager manager = new TestExtensionManager();
+        manager.registerHandler(new RecordingHandler("b", 20, ExtensionResultStatusType.NOT_HANDLED));
+        List<String> calls = new ArrayList<String>();
+        manager.getProxy().process(calls, 1);
+
+        manager.getHandlers().add(new OtherRecordingHandler("a", 10, ExtensionResultStatusType.NOT_HANDLED));
+        manager.getProxy().process(calls, 2);
+        assertEquals("[b1, a2, b2]", calls.toString());
+        assertTrue(manager.getHandlers().get(0) instanceof OtherRecordingHandler);
+
+        manager.getHandlers().remove(0);
+        assertEquals(1, manager.getHandlerSnapshot().size());
+    }
+
+    public void testHandlerListReadsDoNotTakeTheLock() throws Exception {
+        final TestExtensionManager manager = new TestExtensionManager();
+        manager.registerHandler(new RecordingHandler("a", 10, ExtensionResultStatusType.NOT_HANDLED));
+        manager.getHandlerSnapshot();
+        final List<Object> read = Collections.synchronizedList(new ArrayList<Object>());
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                List<TestExtensionHandler> handlers = manager.getHandlers();
+                read.add(handlers.size());
+                read.add(handlers.get(0));
+            }
+        };
+        synchronized (ExtensionManager.LOCK_OBJECT) {
+            reader.start();
+            reader.join(5000);
+            assertFalse("Reading the handlers blocked on the lock", reader.isAlive());
+        }
+        assertEquals(1, read.get(0));
+        assertTrue(read.get(1) instanceof RecordingHandler);
+    }
+
+    public void testOverriddenGetHandlersIsHonored() {
+        TestExtensionManager manager = new TestExtensionManager() {
+            @Override
+            public List<TestExtensionHandler> getHandlers() {
+                return Collections.emptyList();
+            }
+        };
+        manager.registerHandler(new FailingHandler());
+        assertFalse(manager.hasHandlers());
+        assertEquals(ExtensionResultStatusType.NOT_HANDLED, manager.getProxy().process(new ArrayList<String>(), 1));
+    }
+
+    public void testHandlerExceptionIsNotWrapped() {
+        TestExtensionManager manager = new TestExtensionManager();
+        manager.registerHandler(new FailingHandler());
+        try {
+            manager.getProxy().process(new ArrayList<String>(), 1);
+            fail("Expected the handler exception");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+}
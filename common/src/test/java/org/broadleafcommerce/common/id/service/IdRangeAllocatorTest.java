@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.id.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+public class IdRangeAllocatorTest extends TestCase {
+
+    /**
+     * Test that ids are handed out in order from consecutive ranges on a single thread
+     */
+    public void testSequentialIds() {
+        IdRangeAllocator allocator = new IdRangeAllocator("test", new TestRangeSource(10), null, 1, 0.25D);
+        for (long expected = 1; expected <= 35; expected++) {
+            assertEquals(expected, allocator.nextId());
+        }
+        assertEquals(4, allocator.getRefillCount());
+    }
+
+    /**
+     * Test that many threads never receive the same id, with background prefetching enabled
+     */
+    public void testConcurrentIdsAreUnique() throws Exception {
+        ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try {
+            final IdRangeAllocator allocator = new IdRangeAllocator("test", new TestRangeSource(100),
+                    prefetchExecutor, 4, 0.25D);
+            final Set<Long> ids = ConcurrentHashMap.newKeySet();
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(callers.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int j = 0; j < 1000; j++) {
+                            if (!ids.add(allocator.nextId())) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue("A duplicate id was generated", result.get());
+            }
+            assertEquals(16000, ids.size());
+        } finally {
+            callers.shutdownNow();
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that a range source that only ever returns empty ranges fails instead of spinning forever
+     */
+    public void testEmptyRangesFail() {
+        IdRangeAllocator allocator = new IdRangeAllocator("test", new TestRangeSource(0), null, 1, 0.25D);
+        try {
+            allocator.nextId();
+            fail("Expected the allocator to give up on empty ranges");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    protected static class TestRangeSource implements IdRangeAllocator.RangeSource {
+
+        protected final AtomicLong nextStart = new AtomicLong(1);
+        protected final long batchSize;
+
+        public TestRangeSource(long batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public long[] claimRange(String idType) {
+            return new long[] { nextStart.getAndAdd(batchSize), batchSize };
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.persistence.transaction;
+
+import junit.framework.TestCase;
+
+public class SqlProfileTest extends TestCase {
+
+    public void testStatementsDifferingOnlyInLiteralsShareAShape() {
+        assertEquals(SqlProfile.normalize("select sku0_.SKU_ID from BLC_SKU sku0_ where sku0_.SKU_ID=12 and sku0_.NAME='a''b'"),
+                SqlProfile.normalize("select sku0_.SKU_ID   from BLC_SKU sku0_\n where sku0_.SKU_ID=7 and sku0_.NAME='c'"));
+        assertEquals("select * from BLC_SKU where SKU_ID in (...)",
+                SqlProfile.normalize("select * from BLC_SKU where SKU_ID in (?, ?, ?)"));
+    }
+
+    public void testRepeatedShapesAreReportedAsNPlusOneSuspects() {
+        SqlProfile profile = new SqlProfile("/cart", 3);
+        profile.recordStatement("select * from BLC_ORDER where ORDER_ID=?");
+        profile.recordExecutionTime(2000000L);
+        for (int j = 0; j < 4; j++) {
+            profile.recordStatement("select * from BLC_ORDER_ITEM where ORDER_ITEM_ID=" + j);
+            profile.recordExecutionTime(1000000L);
+        }
+        assertEquals(5, profile.getQueryCount());
+        assertEquals(6L, profile.getTotalDbTimeMillis());
+        assertEquals(1, profile.getNPlusOneSuspects().size());
+        SqlProfile.ShapeStatistics suspect = profile.getNPlusOneSuspects().get(0);
+        assertEquals(4, suspect.getCount());
+        assertTrue(suspect.getOrigin().contains(SqlProfileTest.class.getName()));
+        assertSame(suspect, profile.getTopShapes(1).get(0));
+    }
+}
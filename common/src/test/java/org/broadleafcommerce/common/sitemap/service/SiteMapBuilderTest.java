@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.common.sitemap.service;
+
+import org.apache.commons.io.FileUtils;
+import org.broadleafcommerce.common.file.domain.FileWorkArea;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapConfiguration;
+import org.broadleafcommerce.common.sitemap.domain.SiteMapConfigurationImpl;
+import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Tests for the streaming {@link SiteMapBuilder}
+ */
+public class SiteMapBuilderTest {
+
+    protected File directory;
+    protected FileWorkArea fileWorkArea;
+    protected SiteMapConfiguration smc;
+
+    @Before
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("sitemap-builder").toFile();
+        fileWorkArea = new FileWorkArea();
+        fileWorkArea.setFilePathLocation(directory.getAbsolutePath());
+        smc = new SiteMapConfigurationImpl();
+        smc.setMaximumUrlEntriesPerFile(3);
+        smc.setIndexedSiteMapFileName("sitemap_index.xml");
+    }
+
+    @After
+    public void deleteTempFiles() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    @Test
+    public void testFilesAreGzippedWhileWritten() throws IOException {
+        SiteMapBuilder builder = new SiteMapBuilder(smc, fileWorkArea, "http://www.heatclinic.com", true);
+        addUrls(builder, 1L, 2L, 3L, 4L);
+        builder.persistSiteMap();
+
+        Assert.assertEquals(Arrays.asList("sitemap1.xml", "sitemap2.xml", "sitemap_index.xml"), builder.getIndexedFileNames());
+        for (String fileName : builder.getIndexedFileNames()) {
+            Assert.assertTrue(new File(directory, fileName + ".gz").exists());
+        }
+        String index = FileUtils.readFileToString(new File(directory, "sitemap_index.xml"), "UTF-8");
+        Assert.assertTrue(index.contains("<loc>http://www.heatclinic.com/sitemap2.xml.gz</loc>"));
+    }
+
+    @Test
+    public void testSingleFileIsNotIndexed() throws IOException {
+        SiteMapBuilder builder = new SiteMapBuilder(smc, fileWorkArea, "http://www.heatclinic.com", false);
+        addUrls(builder, 1L, 2L);
+        builder.persistSiteMap();
+
+        Assert.assertEquals(Arrays.asList("sitemap.xml"), builder.getIndexedFileNames());
+        String siteMap = FileUtils.readFileToString(new File(directory, "sitemap.xml"), "UTF-8");
+        Assert.assertTrue(siteMap.contains("<loc>http://www.heatclinic.com/product/2</loc>"));
+    }
+
+    @Test
+    public void testRangeBoundariesAreStableBetweenGenerations() throws IOException {
+        SiteMapBuilder first = new SiteMapBuilder(smc, fileWorkArea, "http://www.heatclinic.com", false);
+        addUrls(first, 1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        first.persistSiteMap();
+        SiteMapManifest previous = first.getManifest();
+
+        // removing an entry from the first range must not shift the entries of the later files
+        SiteMapBuilder second = new SiteMapBuilder(smc, fileWorkArea, "http://www.heatclinic.com", false);
+        second.setPreviousManifest(previous, null);
+        addUrls(second, 1L, 3L, 4L, 5L, 6L, 7L);
+        second.persistSiteMap();
+        SiteMapManifest current = second.getManifest();
+
+        Assert.assertNotEquals(previous.getDigest("sitemap1.xml"), current.getDigest("sitemap1.xml"));
+        Assert.assertEquals(previous.getDigest("sitemap2.xml"), current.getDigest("sitemap2.xml"));
+        Assert.assertEquals(previous.getDigest("sitemap3.xml"), current.getDigest("sitemap3.xml"));
+        Assert.assertEquals(Long.valueOf(6L), current.getLastKey("sitemap2.xml"));
+    }
+
+    @Test
+    public void testSegmentsAreIndexedInOrder() throws IOException {
+        SiteMapBuilder builder = new SiteMapBuilder(smc, fileWorkArea, "http://www.heatclinic.com", false);
+        SiteMapBuilder segment1 = builder.createSegment("1");
+        SiteMapBuilder segment2 = builder.createSegment("2");
+        addUrls(segment2, 10L);
+        addUrls(segment1, 1L, 2L, 3L, 4L);
+        builder.persistSiteMap();
+
+        Assert.assertEquals(Arrays.asList("sitemap1-1.xml", "sitemap1-2.xml", "sitemap2-1.xml", "sitemap_index.xml"),
+                builder.getIndexedFileNames());
+    }
+
+    protected void addUrls(SiteMapBuilder builder, Long... ids) {
+        for (Long id : ids) {
+            SiteMapURLWrapper url = new SiteMapURLWrapper();
+            url.setLoc("http://www.heatclinic.com/product/" + id);
+            url.setLastmod("2013-11-04T13:06:12-06:00");
+            builder.addUrl(url, id);
+        }
+    }
+}
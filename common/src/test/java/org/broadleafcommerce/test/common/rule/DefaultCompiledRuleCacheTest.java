@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.rule;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.rule.CompiledRuleCache;
+import org.broadleafcommerce.common.rule.DefaultCompiledRuleCache;
+import org.broadleafcommerce.common.rule.MvelHelper;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class DefaultCompiledRuleCacheTest extends TestCase {
+
+    private static final Log LOG = LogFactory.getLog(DefaultCompiledRuleCacheTest.class);
+
+    private static final int THREADS = 64;
+
+    /**
+     * Test that a rule requested by many threads at once is only compiled a single time
+     */
+    public void testRuleIsCompiledOnce() throws Exception {
+        final DefaultCompiledRuleCache cache = new DefaultCompiledRuleCache("test", 100);
+        final AtomicInteger compileCount = new AtomicInteger();
+        final CompiledRuleCache.RuleCompiler compiler = new CompiledRuleCache.RuleCompiler() {
+            @Override
+            public Serializable compile(String rule) {
+                compileCount.incrementAndGet();
+                return rule.toUpperCase();
+            }
+        };
+
+        runConcurrently(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    assertEquals("RULE", cache.getOrCompile("rule", compiler));
+                }
+            }
+        });
+
+        assertEquals(1, compileCount.get());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(THREADS * 100 - 1, cache.getHitCount());
+    }
+
+    /**
+     * Test that the cache evicts the least recently used rules once it grows past its maximum size
+     */
+    public void testCacheIsBounded() throws Exception {
+        DefaultCompiledRuleCache cache = new DefaultCompiledRuleCache("test", 10);
+        CompiledRuleCache.RuleCompiler compiler = new CompiledRuleCache.RuleCompiler() {
+            @Override
+            public Serializable compile(String rule) {
+                return rule;
+            }
+        };
+
+        cache.getOrCompile("rule0", compiler);
+        // make sure the access time of every later rule is greater than the first one
+        Thread.sleep(5);
+        for (int i = 1; i <= 20; i++) {
+            cache.getOrCompile("rule" + i, compiler);
+        }
+
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.getEvictionCount() > 0);
+        assertNull(cache.get("rule0"));
+        assertNotNull(cache.get("rule20"));
+    }
+
+    /**
+     * Test that a rule that fails to compile is not cached
+     */
+    public void testFailedCompileIsNotCached() {
+        DefaultCompiledRuleCache cache = new DefaultCompiledRuleCache("test", 10);
+        try {
+            cache.getOrCompile("rule", new CompiledRuleCache.RuleCompiler() {
+                @Override
+                public Serializable compile(String rule) {
+                    throw new IllegalStateException("bad rule");
+                }
+            });
+            fail("Expected the compile failure to propagate");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Evaluates a rule through {@link MvelHelper} from many threads at once and reports the throughput
+     */
+    public void testConcurrentEvaluateRule() throws Exception {
+        final CompiledRuleCache cache = new DefaultCompiledRuleCache("test", 100);
+        final Map<String, Object> parameters = new HashMap<>();
+        parameters.put("quantity", 5);
+        final int iterations = 2000;
+
+        long start = System.nanoTime();
+        runConcurrently(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < iterations; i++) {
+                    assertTrue(MvelHelper.evaluateRule("quantity > " + (i % 4), parameters, cache, null));
+                }
+            }
+        });
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(4, cache.getMissCount());
+        LOG.info(String.format("Evaluated %s rules on %s threads in %s ms - %s", THREADS * iterations, THREADS,
+                TimeUnit.NANOSECONDS.toMillis(elapsed), cache));
+    }
+
+    protected void runConcurrently(final Runnable work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicInteger failures = new AtomicInteger();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            work.run();
+                        } catch (Throwable t) {
+                            LOG.error("Concurrent work failed", t);
+                            failures.incrementAndGet();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+            assertTrue(done.await(1, TimeUnit.MINUTES));
+            assertEquals(0, failures.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
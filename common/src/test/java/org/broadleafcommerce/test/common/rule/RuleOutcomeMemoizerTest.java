@@ -0,0 +1,110 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.rule;
+
+import org.broadleafcommerce.common.TimeDTO;
+import org.broadleafcommerce.common.rule.RuleOutcomeMemoizer;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class RuleOutcomeMemoizerTest extends TestCase {
+
+    protected RuleOutcomeMemoizer memoizer;
+    protected AtomicInteger evaluations;
+    protected RuleOutcomeMemoizer.RuleEvaluation evaluation;
+
+    @Override
+    protected void setUp() throws Exception {
+        memoizer = new RuleOutcomeMemoizer();
+        memoizer.setEnabled(true);
+        evaluations = new AtomicInteger();
+        evaluation = new RuleOutcomeMemoizer.RuleEvaluation() {
+            @Override
+            public boolean evaluate() {
+                evaluations.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        BroadleafRequestContext.setBroadleafRequestContext(null);
+    }
+
+    /**
+     * Test that a rule is evaluated once per request for the same customer, regardless of unreferenced variables
+     */
+    public void testRequestMemoization() {
+        BroadleafRequestContext.setBroadleafRequestContext(new BroadleafRequestContext());
+        Object customer = new Object();
+        for (int i = 0; i < 20; i++) {
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("customer", customer);
+            vars.put("product", new Object());
+            assertTrue(memoizer.evaluate("customer.registered == true", vars, evaluation));
+        }
+        assertEquals(1, evaluations.get());
+        assertEquals(19L, memoizer.getRequestHitCount());
+
+        BroadleafRequestContext.setBroadleafRequestContext(new BroadleafRequestContext());
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("customer", customer);
+        memoizer.evaluate("customer.registered == true", vars, evaluation);
+        assertEquals(2, evaluations.get());
+    }
+
+    /**
+     * Test that a rule that only references time is shared across requests within the same minute
+     */
+    public void testSharedMemoization() {
+        Calendar calendar = Calendar.getInstance();
+        for (int i = 0; i < 5; i++) {
+            BroadleafRequestContext.setBroadleafRequestContext(new BroadleafRequestContext());
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("time", new TimeDTO((Calendar) calendar.clone()));
+            vars.put("customer", new Object());
+            memoizer.evaluate("time.hour >= 8", vars, evaluation);
+        }
+        assertEquals(1, evaluations.get());
+        assertEquals(4L, memoizer.getSharedHitCount());
+
+        Calendar later = (Calendar) calendar.clone();
+        later.add(Calendar.MINUTE, 1);
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("time", new TimeDTO(later));
+        memoizer.evaluate("time.hour >= 8", vars, evaluation);
+        assertEquals(2, evaluations.get());
+    }
+
+    public void testDisabled() {
+        memoizer.setEnabled(false);
+        BroadleafRequestContext.setBroadleafRequestContext(new BroadleafRequestContext());
+        Map<String, Object> vars = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            memoizer.evaluate("true", vars, evaluation);
+        }
+        assertEquals(3, evaluations.get());
+    }
+}
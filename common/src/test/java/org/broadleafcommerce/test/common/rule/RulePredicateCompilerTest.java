@@ -0,0 +1,233 @@
+/*-
+ * #%L
+ * BroadleafCommerce Common Libraries
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.test.common.rule;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.rule.CompiledRuleCache;
+import org.broadleafcommerce.common.rule.DefaultCompiledRuleCache;
+import org.broadleafcommerce.common.rule.MvelHelper;
+import org.broadleafcommerce.common.rule.RulePredicate;
+import org.broadleafcommerce.common.rule.RulePredicateCompiler;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Verifies that rules compiled by {@link RulePredicateCompiler} produce the same outcome as MVEL
+ */
+public class RulePredicateCompilerTest extends TestCase {
+
+    private static final Log LOG = LogFactory.getLog(RulePredicateCompilerTest.class);
+
+    protected static final String[] SUPPORTED_RULES = new String[] {
+        "?order.?subTotal.getAmount()>=100",
+        "?order.?subTotal.getAmount()<100.50",
+        "?customer.?registered==true",
+        "?customer.?firstName==\"John\"",
+        "?customer.?lastName!=\"Smith\"",
+        "[\"John\",\"Jane\"] contains ?customer.?firstName",
+        "[5,7] contains ?customer.?id.intValue()",
+        "org.apache.commons.lang3.StringUtils.contains(?customer.?firstName,\"oh\")",
+        "!org.apache.commons.lang3.StringUtils.startsWith(?customer.?firstName,\"Ja\")",
+        "org.apache.commons.lang3.StringUtils.endsWith(?customer.?emailAddress,\".com\")",
+        "!(?customer.?id==5)",
+        "(?customer.?firstName==\"John\"&&?order.?subTotal.getAmount()>50)||?customer.?id==7",
+        "?customer.?firstName==\"John\"&&(?order.?itemCount>=2&&?order.?itemCount<=10)",
+        "?order.?customer.?firstName==\"John\"",
+        "?order.?missing==null"
+    };
+
+    protected static final String[] UNSUPPORTED_RULES = new String[] {
+        "MvelHelper.toUpperCase(?customer.?firstName)==MvelHelper.toUpperCase(\"john\")",
+        "CollectionUtils.intersection(?customer.?tags,[\"a\"]).size()>0",
+        "?customer.?firstName.substring(1)==\"ohn\"",
+        "?customer.getCustomerAttributes()[\"key\"]==\"value\"",
+        "?order.?type==OfferType.ORDER"
+    };
+
+    public void testSupportedRulesMatchMvel() {
+        for (Map<String, Object> parameters : buildParameterSets()) {
+            for (String rule : SUPPORTED_RULES) {
+                RulePredicate predicate = RulePredicateCompiler.compile(rule, null);
+                assertNotNull("Expected rule to compile: " + rule, predicate);
+
+                boolean mvelResult = MvelHelper.evaluateRule(rule, parameters, (CompiledRuleCache) null, null);
+                assertEquals("Compiled outcome differs from MVEL for rule: " + rule, mvelResult,
+                        predicate.evaluate(parameters));
+            }
+        }
+    }
+
+    public void testUnsupportedRulesFallBack() {
+        for (String rule : UNSUPPORTED_RULES) {
+            assertNull("Expected rule to fall back to MVEL: " + rule, RulePredicateCompiler.compile(rule, null));
+        }
+    }
+
+    public void testMissingVariableFails() {
+        MvelHelper.setTestMode(true);
+        MvelHelper.setRuleCompilationEnabled(true);
+        try {
+            assertFalse(MvelHelper.evaluateRule("?unknown.?firstName!=\"John\"", new HashMap<String, Object>(),
+                    new DefaultCompiledRuleCache("test", 10), null));
+        } finally {
+            MvelHelper.setRuleCompilationEnabled(false);
+            MvelHelper.setTestMode(false);
+        }
+    }
+
+    /**
+     * Compares the cost of evaluating the supported rules with and without rule compilation
+     */
+    public void testCompiledAndInterpretedModes() {
+        Map<String, Object> parameters = buildParameterSets()[0];
+        int iterations = 2000;
+        try {
+            MvelHelper.setRuleCompilationEnabled(false);
+            long interpreted = time(new DefaultCompiledRuleCache("interpreted", 100), parameters, iterations);
+            MvelHelper.setRuleCompilationEnabled(true);
+            long compiled = time(new DefaultCompiledRuleCache("compiled", 100), parameters, iterations);
+            LOG.info(String.format("Evaluated %s rules %s times - interpreted: %s ms, compiled: %s ms",
+                    SUPPORTED_RULES.length, iterations, TimeUnit.NANOSECONDS.toMillis(interpreted),
+                    TimeUnit.NANOSECONDS.toMillis(compiled)));
+        } finally {
+            MvelHelper.setRuleCompilationEnabled(false);
+        }
+    }
+
+    protected long time(CompiledRuleCache cache, Map<String, Object> parameters, int iterations) {
+        // warm up the cache and the JIT before measuring
+        for (int i = 0; i < iterations; i++) {
+            for (String rule : SUPPORTED_RULES) {
+                MvelHelper.evaluateRule(rule, parameters, cache, null);
+            }
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String rule : SUPPORTED_RULES) {
+                MvelHelper.evaluateRule(rule, parameters, cache, null);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<String, Object>[] buildParameterSets() {
+        TestCustomer john = new TestCustomer(5L, "John", "Doe", "john@example.com", true);
+        TestCustomer jane = new TestCustomer(7L, "Jane", "Smith", "jane@example.org", false);
+        TestCustomer anonymous = new TestCustomer(9L, null, null, null, false);
+
+        Map<String, Object>[] sets = new Map[4];
+        sets[0] = parameters(john, new TestOrder(new TestMoney(new BigDecimal("120.00")), 3, john));
+        sets[1] = parameters(jane, new TestOrder(new TestMoney(new BigDecimal("100.50")), 1, jane));
+        sets[2] = parameters(anonymous, new TestOrder(new TestMoney(new BigDecimal("49.99")), 11, null));
+        sets[3] = parameters(anonymous, new TestOrder(null, 2, anonymous));
+        return sets;
+    }
+
+    protected Map<String, Object> parameters(TestCustomer customer, TestOrder order) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("customer", customer);
+        parameters.put("order", order);
+        return parameters;
+    }
+
+    public static class TestCustomer {
+
+        protected Long id;
+        protected String firstName;
+        protected String lastName;
+        protected String emailAddress;
+        protected boolean registered;
+
+        public TestCustomer(Long id, String firstName, String lastName, String emailAddress, boolean registered) {
+            this.id = id;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.emailAddress = emailAddress;
+            this.registered = registered;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getFirstName() {
+            return firstName;
+        }
+
+        public String getLastName() {
+            return lastName;
+        }
+
+        public String getEmailAddress() {
+            return emailAddress;
+        }
+
+        public boolean isRegistered() {
+            return registered;
+        }
+    }
+
+    public static class TestOrder {
+
+        protected TestMoney subTotal;
+        protected Integer itemCount;
+        protected TestCustomer customer;
+
+        public TestOrder(TestMoney subTotal, Integer itemCount, TestCustomer customer) {
+            this.subTotal = subTotal;
+            this.itemCount = itemCount;
+            this.customer = customer;
+        }
+
+        public TestMoney getSubTotal() {
+            return subTotal;
+        }
+
+        public Integer getItemCount() {
+            return itemCount;
+        }
+
+        public TestCustomer getCustomer() {
+            return customer;
+        }
+
+        public Object getMissing() {
+            return null;
+        }
+    }
+
+    public static class TestMoney {
+
+        protected BigDecimal amount;
+
+        public TestMoney(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+    }
+}
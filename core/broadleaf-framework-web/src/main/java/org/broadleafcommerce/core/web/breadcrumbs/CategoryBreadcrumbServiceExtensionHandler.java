@@ -28,14 +28,18 @@ import org.broadleafcommerce.common.breadcrumbs.service.BreadcrumbServiceExtensi
 import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.CatalogHierarchySnapshot;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.service.CatalogHierarchyService;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -48,6 +52,9 @@ public class CategoryBreadcrumbServiceExtensionHandler extends AbstractBreadcrum
     @Resource(name = "blCatalogService")
     protected CatalogService catalogService;
 
+    @Resource(name = "blCatalogHierarchyService")
+    protected CatalogHierarchyService catalogHierarchyService;
+
     @Resource(name = "blBreadcrumbServiceExtensionManager")
     protected BreadcrumbServiceExtensionManager extensionManager;
 
@@ -115,6 +122,11 @@ public class CategoryBreadcrumbServiceExtensionHandler extends AbstractBreadcrum
     protected void addParentCrumbs(List<BreadcrumbDTO> parentCrumbs, Category category, String url,
             Map<String, String[]> params) {
 
+        CatalogHierarchySnapshot snapshot = catalogHierarchyService.getSnapshot();
+        if (snapshot != null && snapshot.contains(category.getId())) {
+            addParentCrumbs(parentCrumbs, snapshot, category, url, params);
+            return;
+        }
         Category parentCategory = category.getParentCategory();
         if (parentCategory != null && !parentCrumbs.contains(parentCategory)) { // prevent recursion
             BreadcrumbDTO dto = buildCrumbForCategory(parentCategory, url, params);
@@ -123,6 +135,26 @@ public class CategoryBreadcrumbServiceExtensionHandler extends AbstractBreadcrum
         }
     }
 
+    /**
+     * Add the parent crumbs for the passed in category by following parent ids in the shared catalog hierarchy
+     * snapshot, so that only the categories on the path are loaded
+     */
+    protected void addParentCrumbs(List<BreadcrumbDTO> parentCrumbs, CatalogHierarchySnapshot snapshot, Category category,
+            String url, Map<String, String[]> params) {
+        long now = catalogHierarchyService.getCurrentTime();
+        Set<Long> visited = new HashSet<Long>();
+        visited.add(category.getId());
+        Long parentId = snapshot.getParentId(category.getId(), now);
+        while (parentId != null && visited.add(parentId)) { // prevent recursion
+            Category parentCategory = catalogService.findCategoryById(parentId);
+            if (parentCategory == null) {
+                break;
+            }
+            parentCrumbs.add(0, buildCrumbForCategory(parentCategory, url, params));
+            parentId = snapshot.getParentId(parentId, now);
+        }
+    }
+
     /**
      * Hook for overrides, some implementations may want to build a crumb related to category filtering. 
      * 
@@ -0,0 +1,421 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.cache.LatencyHistogram;
+import org.broadleafcommerce.common.util.BLCSystemProperty;
+import org.broadleafcommerce.core.order.domain.NullOrderImpl;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.service.OrderLockManager;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link DatabaseOrderLockManager} that first serializes lock requests for the same order within this node. Threads
+ * waiting on an order that another local thread already holds or is acquiring park on a per-order {@link Semaphore}
+ * instead of polling the database, so only the thread at the head of the local queue issues lock writes to
+ * BLC_ORDER_LOCK. The database lock is still what guarantees exclusion across nodes.
+ * <p>
+ * The lock object returned by this implementation is an {@link OrderLockToken}, which must be passed back to
+ * {@link #releaseLock(Object)} as the {@link OrderLockManager} contract requires.
+ * <p>
+ * Configuration, all resolved through {@link BLCSystemProperty}:
+ * <ul>
+ *     <li>{@code order.lock.queue.fair} - whether local waiters are granted the lock in arrival order (default true)</li>
+ *     <li>{@code order.lock.queue.maxWaitMs} - how long a thread waits in the local queue before failing (defaults to
+ *     the database polling interval multiplied by the number of retries)</li>
+ *     <li>{@code order.lock.queue.leaseMs} - how long a local holder may keep the lock before a waiter is allowed to
+ *     take it over, to recover from a lock that was never released. Disabled by default; when used it should be at
+ *     least {@code order.lock.database.time.to.live}</li>
+ *     <li>{@code order.lock.queue.slowWaitLogMs} - waits longer than this are logged with the order's contention
+ *     statistics (default 2000)</li>
+ * </ul>
+ * To use this implementation, override the {@code blOrderLockManager} bean.
+ */
+public class QueuedDatabaseOrderLockManager extends DatabaseOrderLockManager {
+
+    protected static final Log LOG = LogFactory.getLog(QueuedDatabaseOrderLockManager.class);
+
+    protected final ConcurrentMap<Long, OrderLockQueue> queues = new ConcurrentHashMap<Long, OrderLockQueue>();
+
+    protected final LatencyHistogram waitTime = new LatencyHistogram();
+    protected final LongAdder acquisitionCount = new LongAdder();
+    protected final LongAdder contendedAcquisitionCount = new LongAdder();
+    protected final LongAdder timeoutCount = new LongAdder();
+    protected final LongAdder leaseExpirationCount = new LongAdder();
+
+    @Override
+    public Object acquireLock(Order order) {
+        if (order == null || order instanceof NullOrderImpl) {
+            return super.acquireLock(order);
+        }
+
+        long start = System.nanoTime();
+        OrderLockQueue queue = joinQueue(order.getId());
+        long generation = -1L;
+        try {
+            boolean contended = queue.getWaiting() > 1;
+            generation = queue.acquireLocal(getMaxWaitMs(), getLeaseMs());
+            if (generation < 0) {
+                timeoutCount.increment();
+                LOG.warn(String.format("Timed out waiting in the local queue for a lock on Order (%s) - %s", order.getId(), queue));
+                throw new RuntimeException("Timed out waiting to acquire a lock on current Order");
+            }
+            if (queue.lastAcquireWasLeaseExpiration) {
+                leaseExpirationCount.increment();
+                LOG.warn(String.format("Lease expired for the local holder of the lock on Order (%s) - taking over the lock", order.getId()));
+            }
+
+            // We are at the head of the local queue, so we are the only thread on this node polling the database
+            super.acquireLock(order);
+
+            recordAcquisition(order, queue, System.nanoTime() - start, contended);
+            return new OrderLockToken(order, queue, generation);
+        } catch (RuntimeException e) {
+            if (generation >= 0) {
+                queue.releaseLocal(generation);
+            }
+            leaveQueue(queue);
+            throw e;
+        }
+    }
+
+    @Override
+    public Object acquireLockIfAvailable(Order order) {
+        if (order == null || order instanceof NullOrderImpl) {
+            return super.acquireLockIfAvailable(order);
+        }
+
+        OrderLockQueue queue = joinQueue(order.getId());
+        long generation = queue.tryAcquireLocal(getLeaseMs());
+        if (generation < 0) {
+            leaveQueue(queue);
+            return null;
+        }
+        boolean acquired = false;
+        try {
+            acquired = super.acquireLockIfAvailable(order) != null;
+        } finally {
+            if (!acquired) {
+                queue.releaseLocal(generation);
+                leaveQueue(queue);
+            }
+        }
+        recordAcquisition(order, queue, 0L, false);
+        return new OrderLockToken(order, queue, generation);
+    }
+
+    @Override
+    public void releaseLock(Object lockObject) {
+        if (!(lockObject instanceof OrderLockToken)) {
+            super.releaseLock(lockObject);
+            return;
+        }
+
+        OrderLockToken token = (OrderLockToken) lockObject;
+        OrderLockQueue queue = token.getQueue();
+        try {
+            if (queue.isCurrentGeneration(token.getGeneration())) {
+                super.releaseLock(token.getOrder());
+            } else {
+                LOG.warn(String.format("The lease on the lock for Order (%s) expired before it was released. The lock is " +
+                        "now held by another thread and will not be released.", token.getOrder().getId()));
+            }
+        } finally {
+            queue.releaseLocal(token.getGeneration());
+            leaveQueue(queue);
+        }
+    }
+
+    protected OrderLockQueue joinQueue(Long orderId) {
+        while (true) {
+            OrderLockQueue queue = queues.get(orderId);
+            if (queue == null) {
+                OrderLockQueue newQueue = new OrderLockQueue(orderId, isFair());
+                queue = queues.putIfAbsent(orderId, newQueue);
+                if (queue == null) {
+                    queue = newQueue;
+                }
+            }
+            if (queue.join()) {
+                return queue;
+            }
+            // The queue was retired by its last user after we looked it up; remove it if that hasn't happened yet
+            queues.remove(orderId, queue);
+        }
+    }
+
+    protected void leaveQueue(OrderLockQueue queue) {
+        if (queue.leave()) {
+            queues.remove(queue.getOrderId(), queue);
+        }
+    }
+
+    protected void recordAcquisition(Order order, OrderLockQueue queue, long waitNanos, boolean contended) {
+        acquisitionCount.increment();
+        waitTime.record(waitNanos);
+        queue.recordAcquisition(waitNanos, contended);
+        if (contended) {
+            contendedAcquisitionCount.increment();
+        }
+        long slowWaitLogMs = getSlowWaitLogMs();
+        if (slowWaitLogMs >= 0 && TimeUnit.NANOSECONDS.toMillis(waitNanos) > slowWaitLogMs && LOG.isInfoEnabled()) {
+            LOG.info(String.format("Thread[%s] waited %sms for the lock on Order (%s) - %s", Thread.currentThread().getId(),
+                    TimeUnit.NANOSECONDS.toMillis(waitNanos), order.getId(), queue));
+        }
+    }
+
+    /**
+     * @return the local queues for orders that currently have a holder or waiters on this node, keyed by order id
+     */
+    public Map<Long, OrderLockQueue> getActiveQueues() {
+        return Collections.unmodifiableMap(queues);
+    }
+
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    public long getAcquisitionCount() {
+        return acquisitionCount.sum();
+    }
+
+    public long getContendedAcquisitionCount() {
+        return contendedAcquisitionCount.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    public long getLeaseExpirationCount() {
+        return leaseExpirationCount.sum();
+    }
+
+    protected boolean isFair() {
+        return BLCSystemProperty.resolveBooleanSystemProperty("order.lock.queue.fair", true);
+    }
+
+    protected long getMaxWaitMs() {
+        long defaultWait = getDatabaseLockPollingIntervalMs() * getDatabaseLockAcquisitionNumRetries();
+        return BLCSystemProperty.resolveLongSystemProperty("order.lock.queue.maxWaitMs", defaultWait);
+    }
+
+    protected long getLeaseMs() {
+        return BLCSystemProperty.resolveLongSystemProperty("order.lock.queue.leaseMs", -1L);
+    }
+
+    protected long getSlowWaitLogMs() {
+        return BLCSystemProperty.resolveLongSystemProperty("order.lock.queue.slowWaitLogMs", 2000L);
+    }
+
+    /**
+     * The lock object handed out by {@link QueuedDatabaseOrderLockManager}.
+     */
+    public static class OrderLockToken {
+
+        protected final Order order;
+        protected final OrderLockQueue queue;
+        protected final long generation;
+
+        public OrderLockToken(Order order, OrderLockQueue queue, long generation) {
+            this.order = order;
+            this.queue = queue;
+            this.generation = generation;
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+
+        public OrderLockQueue getQueue() {
+            return queue;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+    }
+
+    /**
+     * The local wait queue for a single order. A single permit is held by the thread that is acquiring or holding the
+     * database lock for the order; every other local thread waits for that permit. Each grant of the permit gets a new
+     * generation so that a holder whose lease was taken over cannot release the lock out from under the new holder.
+     */
+    public static class OrderLockQueue {
+
+        protected final Long orderId;
+        protected final Semaphore permit;
+        protected final AtomicLong generation = new AtomicLong();
+        // number of threads holding or waiting for the permit, or -1 once the queue is retired
+        protected final AtomicInteger users = new AtomicInteger();
+        protected final LongAdder acquisitionCount = new LongAdder();
+        protected final LongAdder contendedCount = new LongAdder();
+        protected final LongAdder totalWaitNanos = new LongAdder();
+        protected final AtomicLong maxWaitNanos = new AtomicLong();
+        protected volatile long leaseExpiration = Long.MAX_VALUE;
+        protected volatile boolean lastAcquireWasLeaseExpiration = false;
+
+        public OrderLockQueue(Long orderId, boolean fair) {
+            this.orderId = orderId;
+            this.permit = new Semaphore(1, fair);
+        }
+
+        protected boolean join() {
+            while (true) {
+                int current = users.get();
+                if (current < 0) {
+                    return false;
+                }
+                if (users.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * @return true if this was the last user and the queue is now retired
+         */
+        protected boolean leave() {
+            return users.decrementAndGet() == 0 && users.compareAndSet(0, -1);
+        }
+
+        /**
+         * Waits up to maxWaitMs for the local permit, taking it over from the current holder if its lease expires.
+         *
+         * @return the generation of this grant, or -1 if the wait timed out
+         */
+        protected long acquireLocal(long maxWaitMs, long leaseMs) {
+            long deadline = System.currentTimeMillis() + maxWaitMs;
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        return -1L;
+                    }
+                    long wait = leaseMs > 0 ? Math.max(1L, Math.min(remaining, leaseExpiration - now)) : remaining;
+                    if (permit.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                        return grant(leaseMs, false);
+                    }
+                    if (leaseMs > 0 && System.currentTimeMillis() >= leaseExpiration) {
+                        long expired = takeOverExpiredLease(leaseMs);
+                        if (expired >= 0) {
+                            return expired;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        protected long tryAcquireLocal(long leaseMs) {
+            if (permit.tryAcquire()) {
+                return grant(leaseMs, false);
+            }
+            return -1L;
+        }
+
+        protected long grant(long leaseMs, boolean leaseExpired) {
+            leaseExpiration = leaseMs > 0 ? System.currentTimeMillis() + leaseMs : Long.MAX_VALUE;
+            lastAcquireWasLeaseExpiration = leaseExpired;
+            return generation.incrementAndGet();
+        }
+
+        /**
+         * The permit stays taken and ownership moves to the caller by bumping the generation.
+         */
+        protected synchronized long takeOverExpiredLease(long leaseMs) {
+            if (permit.availablePermits() > 0 || System.currentTimeMillis() < leaseExpiration) {
+                return -1L;
+            }
+            return grant(leaseMs, true);
+        }
+
+        protected synchronized void releaseLocal(long releasingGeneration) {
+            // Only the current generation owns the permit; a holder whose lease was taken over has nothing to release
+            if (generation.get() == releasingGeneration) {
+                generation.incrementAndGet();
+                leaseExpiration = Long.MAX_VALUE;
+                permit.release();
+            }
+        }
+
+        protected boolean isCurrentGeneration(long checkGeneration) {
+            return generation.get() == checkGeneration;
+        }
+
+        protected void recordAcquisition(long waitNanos, boolean contended) {
+            acquisitionCount.increment();
+            totalWaitNanos.add(waitNanos);
+            if (contended) {
+                contendedCount.increment();
+            }
+            long max = maxWaitNanos.get();
+            while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+                max = maxWaitNanos.get();
+            }
+        }
+
+        public Long getOrderId() {
+            return orderId;
+        }
+
+        /**
+         * @return the number of local threads holding or waiting for this order's lock
+         */
+        public int getWaiting() {
+            return Math.max(0, users.get());
+        }
+
+        public long getAcquisitionCount() {
+            return acquisitionCount.sum();
+        }
+
+        public long getContendedCount() {
+            return contendedCount.sum();
+        }
+
+        public double getAverageWaitMillis() {
+            long count = acquisitionCount.sum();
+            return count == 0 ? 0D : totalWaitNanos.sum() / (double) count / 1000000D;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos.get() / 1000000D;
+        }
+
+        @Override
+        public String toString() {
+            return "waiting=" + getWaiting() + ", acquisitions=" + getAcquisitionCount() + ", contended="
+                    + getContendedCount() + ", avgWaitMs=" + getAverageWaitMillis() + ", maxWaitMs=" + getMaxWaitMillis();
+        }
+    }
+}
@@ -60,7 +60,7 @@ public class i18nUpdateCartServiceExtensionHandler extends AbstractUpdateCartSer
     @PostConstruct
     public void init() {
         if (isEnabled()) {
-            extensionManager.getHandlers().add(this);
+            extensionManager.registerHandler(this);
         }
     }
 
@@ -0,0 +1,295 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework Web
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.web.order;
+
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.order.service.OrderService;
+import org.broadleafcommerce.core.web.order.QueuedDatabaseOrderLockManager.OrderLockQueue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class QueuedDatabaseOrderLockManagerTest extends TestCase {
+
+    protected FakeOrderLocks orderLocks;
+    protected TestLockManager lockManager;
+    protected Order order;
+
+    @Override
+    protected void setUp() throws Exception {
+        orderLocks = new FakeOrderLocks();
+        lockManager = new TestLockManager();
+        lockManager.orderService = (OrderService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { OrderService.class }, orderLocks);
+        order = new OrderImpl();
+        order.setId(1L);
+    }
+
+    /**
+     * Local waiters are granted the lock one at a time, in the order they arrived, and only the head of the local
+     * queue goes to the database
+     */
+    public void testContendedLockIsGrantedInArrivalOrder() throws Exception {
+        Object lock = lockManager.acquireLock(order);
+        OrderLockQueue queue = lockManager.getActiveQueues().get(order.getId());
+        assertNotNull(queue);
+
+        final List<Integer> grants = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> waiters = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i++) {
+            final int position = i;
+            Thread waiter = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        Object lock = lockManager.acquireLock(order);
+                        try {
+                            grants.add(position);
+                            Thread.sleep(5);
+                        } finally {
+                            lockManager.releaseLock(lock);
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            });
+            waiter.start();
+            waiters.add(waiter);
+            awaitQueueLength(queue, i + 1);
+        }
+        assertEquals(6, queue.getWaiting());
+        assertEquals(1, orderLocks.acquireAttempts.get());
+
+        lockManager.releaseLock(lock);
+        for (Thread waiter : waiters) {
+            waiter.join(10000);
+        }
+
+        assertNull(failure.get());
+        assertEquals(5, grants.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.valueOf(i), grants.get(i));
+        }
+        assertEquals(6, orderLocks.acquireAttempts.get());
+        assertEquals(6, orderLocks.releases.get());
+        assertEquals(1, orderLocks.maxHolders.get());
+        assertEquals(6, lockManager.getAcquisitionCount());
+        assertEquals(5, lockManager.getContendedAcquisitionCount());
+        assertTrue(lockManager.getActiveQueues().isEmpty());
+    }
+
+    public void testWaitTimesOut() throws Exception {
+        lockManager.maxWaitMs = 50L;
+        Object lock = lockManager.acquireLock(order);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread waiter = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    lockManager.acquireLock(order);
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        });
+        waiter.start();
+        waiter.join(10000);
+
+        assertTrue(failure.get() instanceof RuntimeException);
+        assertEquals("Timed out waiting to acquire a lock on current Order", failure.get().getMessage());
+        assertEquals(1, lockManager.getTimeoutCount());
+        assertEquals(1, orderLocks.acquireAttempts.get());
+        assertEquals(1, lockManager.getActiveQueues().get(order.getId()).getWaiting());
+
+        lockManager.releaseLock(lock);
+        assertTrue(lockManager.getActiveQueues().isEmpty());
+        assertFalse(orderLocks.locked.get());
+    }
+
+    /**
+     * A failure to get the database lock must give the local permit back, or every later caller would time out
+     */
+    public void testFailedDatabaseAcquireReleasesLocalLock() throws Exception {
+        orderLocks.failAcquire = true;
+        try {
+            lockManager.acquireLock(order);
+            fail("Expected the database lock to fail");
+        } catch (RuntimeException e) {
+            assertEquals("Exceeded max retries to attempt to acquire a lock on current Order", e.getMessage());
+        }
+        assertTrue(lockManager.getActiveQueues().isEmpty());
+
+        orderLocks.failAcquire = false;
+        lockManager.maxWaitMs = 50L;
+        Object lock = lockManager.acquireLock(order);
+        lockManager.releaseLock(lock);
+        assertEquals(0, lockManager.getTimeoutCount());
+        assertTrue(lockManager.getActiveQueues().isEmpty());
+    }
+
+    public void testLockIsReleasedWhenTheHolderThrows() throws Exception {
+        final CountDownLatch granted = new CountDownLatch(1);
+        final Object lock = lockManager.acquireLock(order);
+        OrderLockQueue queue = lockManager.getActiveQueues().get(order.getId());
+        Thread waiter = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                lockManager.releaseLock(lockManager.acquireLock(order));
+                granted.countDown();
+            }
+        });
+        waiter.start();
+        awaitQueueLength(queue, 1);
+
+        try {
+            try {
+                throw new IllegalStateException("cart operation failed");
+            } finally {
+                lockManager.releaseLock(lock);
+            }
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertTrue(granted.await(10, TimeUnit.SECONDS));
+        waiter.join(10000);
+        assertEquals(2, orderLocks.releases.get());
+        assertFalse(orderLocks.locked.get());
+        assertTrue(lockManager.getActiveQueues().isEmpty());
+    }
+
+    public void testAcquireIfAvailable() throws Exception {
+        Object lock = lockManager.acquireLockIfAvailable(order);
+        assertNotNull(lock);
+        final AtomicReference<Object> second = new AtomicReference<Object>("not run");
+        Thread other = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                second.set(lockManager.acquireLockIfAvailable(order));
+            }
+        });
+        other.start();
+        other.join(10000);
+        assertNull(second.get());
+        assertEquals(1, orderLocks.acquireAttempts.get());
+
+        lockManager.releaseLock(lock);
+        assertTrue(lockManager.getActiveQueues().isEmpty());
+    }
+
+    protected void awaitQueueLength(OrderLockQueue queue, int length) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (queue.permit.getQueueLength() < length) {
+            assertTrue("Waiters did not queue up", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    protected static class TestLockManager extends QueuedDatabaseOrderLockManager {
+
+        protected volatile long maxWaitMs = 10000L;
+
+        @Override
+        protected boolean isFair() {
+            return true;
+        }
+
+        @Override
+        protected long getMaxWaitMs() {
+            return maxWaitMs;
+        }
+
+        @Override
+        protected long getLeaseMs() {
+            return -1L;
+        }
+
+        @Override
+        protected long getSlowWaitLogMs() {
+            return -1L;
+        }
+
+        @Override
+        protected long getDatabaseLockPollingIntervalMs() {
+            return 1L;
+        }
+
+        @Override
+        protected int getDatabaseLockAcquisitionNumRetries() {
+            return 3;
+        }
+    }
+
+    /**
+     * Stands in for the BLC_ORDER_LOCK row behind {@link OrderService#acquireLock(Order)} and
+     * {@link OrderService#releaseLock(Order)}
+     */
+    protected static class FakeOrderLocks implements InvocationHandler {
+
+        protected final AtomicBoolean locked = new AtomicBoolean();
+        protected final AtomicInteger acquireAttempts = new AtomicInteger();
+        protected final AtomicInteger releases = new AtomicInteger();
+        protected final AtomicInteger holders = new AtomicInteger();
+        protected final AtomicInteger maxHolders = new AtomicInteger();
+        protected volatile boolean failAcquire;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("acquireLock".equals(method.getName())) {
+                acquireAttempts.incrementAndGet();
+                if (failAcquire) {
+                    throw new RuntimeException("database unavailable");
+                }
+                if (!locked.compareAndSet(false, true)) {
+                    return false;
+                }
+                int current = holders.incrementAndGet();
+                if (current > maxHolders.get()) {
+                    maxHolders.set(current);
+                }
+                return true;
+            }
+            if ("releaseLock".equals(method.getName())) {
+                releases.incrementAndGet();
+                holders.decrementAndGet();
+                locked.set(false);
+                return true;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+}
@@ -0,0 +1,383 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable, compact view of the category hierarchy used for ancestor and descendant lookups without walking lazy
+ * {@link org.broadleafcommerce.core.catalog.domain.CategoryXref} collections. Categories are addressed by their
+ * position in a sorted id array, and parent and child edges are stored in offset/index arrays (one contiguous run of
+ * edges per category), so that a lookup is a binary search followed by array walks.
+ * </p>
+ * Active flags are stored as the active date range so that activity is evaluated at lookup time with the same rules as
+ * {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#isActive()}. Instances are never mutated; a rebuilt
+ * snapshot is swapped in as a whole by {@link org.broadleafcommerce.core.catalog.service.CatalogHierarchyService}.
+ */
+public class CatalogHierarchySnapshot {
+
+    protected static final int NONE = -1;
+
+    protected final long version;
+    protected final long[] ids;
+    protected final long[] activeStart;
+    protected final long[] activeEnd;
+    protected final boolean[] archived;
+    protected final int[] explicitDefaultParent;
+    protected final int[] parentOffsets;
+    protected final int[] parents;
+    protected final boolean[] parentDefaultReference;
+    protected final int[] childOffsets;
+    protected final int[] children;
+
+    protected CatalogHierarchySnapshot(Builder builder, long version) {
+        this.version = version;
+        int size = builder.categoryCount;
+        long[] sortedIds = Arrays.copyOf(builder.ids, size);
+        Arrays.sort(sortedIds);
+        int unique = 0;
+        for (int j = 0; j < size; j++) {
+            if (unique == 0 || sortedIds[unique - 1] != sortedIds[j]) {
+                sortedIds[unique++] = sortedIds[j];
+            }
+        }
+        ids = Arrays.copyOf(sortedIds, unique);
+        size = unique;
+        activeStart = new long[size];
+        activeEnd = new long[size];
+        archived = new boolean[size];
+        explicitDefaultParent = new int[size];
+        for (int j = 0; j < builder.categoryCount; j++) {
+            int index = indexOf(builder.ids[j]);
+            activeStart[index] = builder.activeStart[j];
+            activeEnd[index] = builder.activeEnd[j];
+            archived[index] = builder.archived[j];
+            explicitDefaultParent[index] = indexOf(builder.defaultParentIds[j]);
+        }
+
+        int edgeCount = 0;
+        int[] edgeChild = new int[builder.edgeCount];
+        int[] edgeParent = new int[builder.edgeCount];
+        boolean[] edgeDefault = new boolean[builder.edgeCount];
+        int[] parentCounts = new int[size];
+        int[] childCounts = new int[size];
+        for (int j = 0; j < builder.edgeCount; j++) {
+            int child = indexOf(builder.edgeChildIds[j]);
+            int parent = indexOf(builder.edgeParentIds[j]);
+            if (child == NONE || parent == NONE) {
+                continue;
+            }
+            edgeChild[edgeCount] = child;
+            edgeParent[edgeCount] = parent;
+            edgeDefault[edgeCount] = builder.edgeDefaultReferences[j];
+            parentCounts[child]++;
+            childCounts[parent]++;
+            edgeCount++;
+        }
+        parentOffsets = toOffsets(parentCounts);
+        childOffsets = toOffsets(childCounts);
+        parents = new int[edgeCount];
+        parentDefaultReference = new boolean[edgeCount];
+        children = new int[edgeCount];
+        int[] parentCursor = Arrays.copyOf(parentOffsets, size);
+        int[] childCursor = Arrays.copyOf(childOffsets, size);
+        //edges keep the order in which they were added (e.g. display order) within each category's run
+        for (int j = 0; j < edgeCount; j++) {
+            int parentPosition = parentCursor[edgeChild[j]]++;
+            parents[parentPosition] = edgeParent[j];
+            parentDefaultReference[parentPosition] = edgeDefault[j];
+            children[childCursor[edgeParent[j]]++] = edgeChild[j];
+        }
+    }
+
+    /**
+     * @return the version of the catalog this snapshot was built from. Versions increase with each rebuild.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public boolean contains(Long categoryId) {
+        return indexOf(categoryId) != NONE;
+    }
+
+    /**
+     * Mirrors {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#isActive()}
+     */
+    public boolean isActive(Long categoryId, long now) {
+        int index = indexOf(categoryId);
+        return index != NONE && isActive(index, now);
+    }
+
+    public List<Long> getParentIds(Long categoryId) {
+        int index = indexOf(categoryId);
+        if (index == NONE) {
+            return Collections.emptyList();
+        }
+        return toIds(parents, parentOffsets[index], parentOffsets[index + 1]);
+    }
+
+    public List<Long> getChildIds(Long categoryId) {
+        int index = indexOf(categoryId);
+        if (index == NONE) {
+            return Collections.emptyList();
+        }
+        return toIds(children, childOffsets[index], childOffsets[index + 1]);
+    }
+
+    /**
+     * Mirrors {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#getParentCategory()}: the first active parent
+     * marked as the default reference, otherwise the first active parent.
+     */
+    public Long getParentId(Long categoryId, long now) {
+        int index = indexOf(categoryId);
+        if (index == NONE) {
+            return null;
+        }
+        int parent = getParentIndex(index, now);
+        return parent == NONE ? null : ids[parent];
+    }
+
+    /**
+     * Mirrors {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#getDefaultParentCategory()}: the explicit
+     * default parent if there is one, otherwise {@link #getParentId(Long, long)}.
+     */
+    public Long getDefaultParentId(Long categoryId, long now) {
+        int index = indexOf(categoryId);
+        if (index == NONE) {
+            return null;
+        }
+        int parent = getDefaultParentIndex(index, now);
+        return parent == NONE ? null : ids[parent];
+    }
+
+    /**
+     * Mirrors {@link org.broadleafcommerce.core.catalog.domain.CategoryImpl#buildDefaultParentCategoryPath(List)}
+     *
+     * @return the ids from the root category down to (and including) the given category, following default parents
+     */
+    public List<Long> getDefaultParentPath(Long categoryId, long now) {
+        int index = indexOf(categoryId);
+        if (index == NONE) {
+            return Collections.emptyList();
+        }
+        List<Long> path = new ArrayList<>();
+        boolean[] visited = new boolean[ids.length];
+        while (index != NONE && !visited[index]) {
+            visited[index] = true;
+            path.add(ids[index]);
+            index = getDefaultParentIndex(index, now);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * @return the ids of every category reachable through any parent relationship of the given category, nearest first
+     */
+    public Set<Long> getAncestorIds(Long categoryId) {
+        return walk(categoryId, parentOffsets, parents);
+    }
+
+    /**
+     * @return the ids of every category reachable through any child relationship of the given category, nearest first
+     */
+    public Set<Long> getDescendantIds(Long categoryId) {
+        return walk(categoryId, childOffsets, children);
+    }
+
+    /**
+     * Walks up from the given category through the parents marked as the default reference until the stop category (or
+     * a root) is reached.
+     *
+     * @return false if the starting category or any category visited along the way is inactive
+     */
+    public boolean isActiveUpTo(Long categoryId, Long stopCategoryId, long now) {
+        int index = indexOf(categoryId);
+        int stop = indexOf(stopCategoryId);
+        if (index == NONE || !isActive(index, now)) {
+            return false;
+        }
+        boolean[] visited = new boolean[ids.length];
+        while (index != NONE && index != stop && !visited[index]) {
+            if (!isActive(index, now)) {
+                return false;
+            }
+            visited[index] = true;
+            index = getDefaultReferenceParentIndex(index);
+        }
+        return true;
+    }
+
+    protected boolean isActive(int index, long now) {
+        return !archived[index] && activeStart[index] < now && activeEnd[index] >= now;
+    }
+
+    protected int getDefaultParentIndex(int index, long now) {
+        if (explicitDefaultParent[index] != NONE) {
+            return explicitDefaultParent[index];
+        }
+        return getParentIndex(index, now);
+    }
+
+    protected int getParentIndex(int index, long now) {
+        int firstActive = NONE;
+        for (int j = parentOffsets[index]; j < parentOffsets[index + 1]; j++) {
+            if (isActive(parents[j], now)) {
+                if (parentDefaultReference[j]) {
+                    return parents[j];
+                }
+                if (firstActive == NONE) {
+                    firstActive = parents[j];
+                }
+            }
+        }
+        return firstActive;
+    }
+
+    protected int getDefaultReferenceParentIndex(int index) {
+        for (int j = parentOffsets[index]; j < parentOffsets[index + 1]; j++) {
+            if (parentDefaultReference[j]) {
+                return parents[j];
+            }
+        }
+        return NONE;
+    }
+
+    protected Set<Long> walk(Long categoryId, int[] offsets, int[] edges) {
+        int start = indexOf(categoryId);
+        if (start == NONE) {
+            return Collections.emptySet();
+        }
+        Set<Long> response = new LinkedHashSet<>();
+        boolean[] visited = new boolean[ids.length];
+        visited[start] = true;
+        int[] queue = new int[ids.length];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int index = queue[head++];
+            for (int j = offsets[index]; j < offsets[index + 1]; j++) {
+                int next = edges[j];
+                if (!visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
+                    response.add(ids[next]);
+                }
+            }
+        }
+        return response;
+    }
+
+    protected int indexOf(Long categoryId) {
+        if (categoryId == null) {
+            return NONE;
+        }
+        int index = Arrays.binarySearch(ids, categoryId);
+        return index < 0 ? NONE : index;
+    }
+
+    protected List<Long> toIds(int[] edges, int from, int to) {
+        List<Long> response = new ArrayList<>(to - from);
+        for (int j = from; j < to; j++) {
+            response.add(ids[edges[j]]);
+        }
+        return response;
+    }
+
+    protected static int[] toOffsets(int[] counts) {
+        int[] offsets = new int[counts.length + 1];
+        for (int j = 0; j < counts.length; j++) {
+            offsets[j + 1] = offsets[j] + counts[j];
+        }
+        return offsets;
+    }
+
+    /**
+     * Accumulates categories and parent relationships in primitive arrays. Relationships referring to categories that
+     * were never added are dropped when the snapshot is built.
+     */
+    public static class Builder {
+
+        protected int categoryCount = 0;
+        protected long[] ids = new long[256];
+        protected Long[] defaultParentIds = new Long[256];
+        protected long[] activeStart = new long[256];
+        protected long[] activeEnd = new long[256];
+        protected boolean[] archived = new boolean[256];
+
+        protected int edgeCount = 0;
+        protected long[] edgeChildIds = new long[256];
+        protected long[] edgeParentIds = new long[256];
+        protected boolean[] edgeDefaultReferences = new boolean[256];
+
+        public Builder addCategory(Long id, Long defaultParentId, Date activeStartDate, Date activeEndDate, Character archivedFlag) {
+            if (categoryCount == ids.length) {
+                int length = ids.length * 2;
+                ids = Arrays.copyOf(ids, length);
+                defaultParentIds = Arrays.copyOf(defaultParentIds, length);
+                activeStart = Arrays.copyOf(activeStart, length);
+                activeEnd = Arrays.copyOf(activeEnd, length);
+                archived = Arrays.copyOf(archived, length);
+            }
+            ids[categoryCount] = id;
+            defaultParentIds[categoryCount] = defaultParentId;
+            //a category without a start date is never active
+            activeStart[categoryCount] = activeStartDate == null ? Long.MAX_VALUE : activeStartDate.getTime();
+            activeEnd[categoryCount] = activeEndDate == null ? Long.MAX_VALUE : activeEndDate.getTime();
+            archived[categoryCount] = archivedFlag != null && 'Y' == archivedFlag;
+            categoryCount++;
+            return this;
+        }
+
+        /**
+         * Add a parent relationship. Relationships for a category should be added in display order.
+         */
+        public Builder addParent(Long childId, Long parentId, Boolean defaultReference) {
+            if (childId == null || parentId == null) {
+                return this;
+            }
+            if (edgeCount == edgeChildIds.length) {
+                int length = edgeChildIds.length * 2;
+                edgeChildIds = Arrays.copyOf(edgeChildIds, length);
+                edgeParentIds = Arrays.copyOf(edgeParentIds, length);
+                edgeDefaultReferences = Arrays.copyOf(edgeDefaultReferences, length);
+            }
+            edgeChildIds[edgeCount] = childId;
+            edgeParentIds[edgeCount] = parentId;
+            edgeDefaultReferences[edgeCount] = defaultReference != null && defaultReference;
+            edgeCount++;
+            return this;
+        }
+
+        public CatalogHierarchySnapshot build(long version) {
+            return new CatalogHierarchySnapshot(this, version);
+        }
+    }
+}
@@ -242,4 +242,12 @@ public interface CategoryDao {
      * @return returns a list of CategoryProductXref where provided category is default reference(xref.defaultReference=true)
      */
     List<CategoryProductXref> findXrefByCategoryWithDefaultReference(Long categoryId);
+
+    /**
+     * Reads the id, active dates, archived status and parent relationships of every category visible in the current
+     * context into the given builder, using lightweight projections rather than loading the category entities.
+     *
+     * @param builder the builder to populate
+     */
+    void populateCatalogHierarchy(CatalogHierarchySnapshot.Builder builder);
 }
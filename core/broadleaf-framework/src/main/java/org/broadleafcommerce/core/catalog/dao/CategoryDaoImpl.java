@@ -24,6 +24,7 @@ import org.broadleafcommerce.common.persistence.Status;
 import org.broadleafcommerce.common.sandbox.SandBoxHelper;
 import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.util.dao.TypedQueryBuilder;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.CategoryImpl;
 import org.broadleafcommerce.core.catalog.domain.CategoryProductXref;
@@ -333,4 +334,27 @@ public class CategoryDaoImpl implements CategoryDao {
         return query.getResultList();
 
     }
+
+    @Override
+    public void populateCatalogHierarchy(CatalogHierarchySnapshot.Builder builder) {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        Boolean oldIgnoreFilters = context == null ? null : context.getInternalIgnoreFilters();
+        if (context != null) {
+            context.setInternalIgnoreFilters(false);
+        }
+        try {
+            TypedQuery<Object[]> categoryQuery = em.createNamedQuery("BC_READ_CATEGORY_HIERARCHY_NODES", Object[].class);
+            for (Object[] row : categoryQuery.getResultList()) {
+                builder.addCategory((Long) row[0], (Long) row[1], (Date) row[2], (Date) row[3], (Character) row[4]);
+            }
+            TypedQuery<Object[]> xrefQuery = em.createNamedQuery("BC_READ_CATEGORY_HIERARCHY_XREFS", Object[].class);
+            for (Object[] row : xrefQuery.getResultList()) {
+                builder.addParent((Long) row[0], (Long) row[1], (Boolean) row[2]);
+            }
+        } finally {
+            if (context != null) {
+                context.setInternalIgnoreFilters(oldIgnoreFilters);
+            }
+        }
+    }
 }
@@ -19,6 +19,8 @@ package org.broadleafcommerce.core.catalog.dao;
 
 import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.domain.ProductBundle;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductListingView;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductSiteMapDTO;
 import org.broadleafcommerce.core.catalog.service.type.ProductType;
 import org.broadleafcommerce.core.search.domain.SearchCriteria;
 
@@ -347,4 +349,26 @@ public interface ProductDao {
     public List<Long> readAllActiveProductIds(Long lastId, int pageSize);
 
     List<Product> readAllActiveProductsForSiteMap(int page, int pageSize);
+
+    /**
+     * Reads a page of lightweight sitemap projections for active products, in ascending id order, starting
+     * immediately after the lastId. If the lastId is null, then this returns the first page. Unlike
+     * {@link #readAllActiveProductsForSiteMap(int, int)}, no Product entities are hydrated and the cost of a page
+     * does not grow with its position in the catalog.
+     *
+     * @param lastId the id of the last product on the previous page, or null
+     * @param pageSize
+     * @return
+     */
+    List<ProductSiteMapDTO> readAllActiveProductSiteMapEntries(Long lastId, int pageSize);
+
+    /**
+     * Reads untranslated listing projections for the given products with a fixed number of projection queries,
+     * regardless of the number of ids. Unlike {@link #readProductsByIds(List)}, no Product entities are hydrated. The
+     * url is only populated when it is explicitly set on the product.
+     *
+     * @param productIds
+     * @return the views, in no particular order. Products that were not found are omitted.
+     */
+    List<ProductListingView> readProductListingViews(List<Long> productIds);
 }
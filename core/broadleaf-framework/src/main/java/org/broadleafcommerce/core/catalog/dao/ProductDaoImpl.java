@@ -36,6 +36,8 @@ import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.domain.ProductBundle;
 import org.broadleafcommerce.core.catalog.domain.ProductImpl;
 import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductListingView;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductSiteMapDTO;
 import org.broadleafcommerce.core.catalog.service.type.ProductType;
 import org.broadleafcommerce.core.search.domain.SearchCriteria;
 import org.broadleafcommerce.core.util.service.SiteMapExtensionManager;
@@ -46,7 +48,9 @@ import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import javax.annotation.Nonnull;
@@ -564,6 +568,112 @@ public class ProductDaoImpl implements ProductDao {
 
     }
 
+    @Override
+    public List<ProductSiteMapDTO> readAllActiveProductSiteMapEntries(Long lastId, int pageSize) {
+        Date currentDate = DateUtil.getCurrentDateAfterFactoringInDateResolution(cachedDate, getCurrentDateResolution());
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> criteria = builder.createQuery(Object[].class);
+        Root<ProductImpl> product = criteria.from(ProductImpl.class);
+        Join<Product, Sku> sku = product.join("defaultSku");
+
+        // Only the columns needed for the sitemap entry are selected
+        criteria.multiselect(product.get("id"), product.get("url"), sku.get("id"));
+
+        List<Predicate> restrictions = new ArrayList<Predicate>();
+        attachActiveRestriction(currentDate, product, sku, restrictions);
+        if (lastId != null) {
+            restrictions.add(builder.gt(product.get("id").as(Long.class), lastId));
+        }
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        if (productTypeSiteMapExtensionManager != null) {
+            productTypeSiteMapExtensionManager.getProxy().modifyQuery(criteria, builder, product);
+        }
+        criteria.orderBy(builder.asc(product.get("id")));
+
+        List<ProductSiteMapDTO> response = new ArrayList<ProductSiteMapDTO>();
+        Map<Long, ProductSiteMapDTO> bySkuId = new HashMap<Long, ProductSiteMapDTO>();
+        for (Object[] row : em.createQuery(criteria).setMaxResults(pageSize).getResultList()) {
+            ProductSiteMapDTO dto = new ProductSiteMapDTO((Long) row[0], (String) row[1], (Long) row[2]);
+            response.add(dto);
+            bySkuId.put(dto.getDefaultSkuId(), dto);
+        }
+        if (!bySkuId.isEmpty()) {
+            TypedQuery<Object[]> mediaQuery = em.createQuery("SELECT xref.sku.id, xref.media.url FROM " +
+                    "org.broadleafcommerce.core.catalog.domain.SkuMediaXrefImpl xref WHERE xref.sku.id IN :skuIds " +
+                    "ORDER BY xref.sku.id, xref.key", Object[].class);
+            mediaQuery.setParameter("skuIds", new ArrayList<Long>(bySkuId.keySet()));
+            for (Object[] row : mediaQuery.getResultList()) {
+                if (row[1] != null) {
+                    bySkuId.get(row[0]).getMediaUrls().add((String) row[1]);
+                }
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public List<ProductListingView> readProductListingViews(List<Long> productIds) {
+        List<ProductListingView> response = new ArrayList<ProductListingView>();
+        if (productIds == null || productIds.isEmpty()) {
+            return response;
+        }
+        TypedQuery<Object[]> query = em.createQuery("SELECT product.id, product.url, sku.id, sku.name, sku.retailPrice, " +
+                "sku.salePrice FROM org.broadleafcommerce.core.catalog.domain.ProductImpl product " +
+                "LEFT JOIN product.defaultSku sku WHERE product.id IN :productIds", Object[].class);
+        query.setParameter("productIds", productIds);
+        Map<Long, ProductListingView> byProductId = new HashMap<Long, ProductListingView>();
+        Map<Long, ProductListingView> bySkuId = new HashMap<Long, ProductListingView>();
+        for (Object[] row : query.getResultList()) {
+            ProductListingView view = new ProductListingView((Long) row[0], (Long) row[2]);
+            view.setUrl((String) row[1]);
+            view.setName((String) row[3]);
+            view.setRetailPrice((BigDecimal) row[4]);
+            view.setSalePrice((BigDecimal) row[5]);
+            response.add(view);
+            byProductId.put(view.getProductId(), view);
+            if (view.getDefaultSkuId() != null) {
+                bySkuId.put(view.getDefaultSkuId(), view);
+            }
+        }
+        if (!bySkuId.isEmpty()) {
+            TypedQuery<Object[]> mediaQuery = em.createQuery("SELECT xref.sku.id, xref.media.url FROM " +
+                    "org.broadleafcommerce.core.catalog.domain.SkuMediaXrefImpl xref WHERE xref.sku.id IN :skuIds " +
+                    "AND xref.key = 'primary'", Object[].class);
+            mediaQuery.setParameter("skuIds", new ArrayList<Long>(bySkuId.keySet()));
+            for (Object[] row : mediaQuery.getResultList()) {
+                bySkuId.get(row[0]).setPrimaryMediaUrl((String) row[1]);
+            }
+        }
+        if (!byProductId.isEmpty()) {
+            // Mirrors the default parent resolution used when filtering search results: the xref marked as the
+            // default reference, or the only xref if there is just one
+            TypedQuery<Object[]> categoryQuery = em.createQuery("SELECT xref.product.id, xref.category.id, " +
+                    "xref.defaultReference FROM org.broadleafcommerce.core.catalog.domain.CategoryProductXrefImpl xref " +
+                    "WHERE xref.product.id IN :productIds ORDER BY xref.product.id, xref.displayOrder", Object[].class);
+            categoryQuery.setParameter("productIds", new ArrayList<Long>(byProductId.keySet()));
+            Map<Long, Long> firstCategories = new HashMap<Long, Long>();
+            Map<Long, Long> defaultCategories = new HashMap<Long, Long>();
+            Map<Long, Integer> xrefCounts = new HashMap<Long, Integer>();
+            for (Object[] row : categoryQuery.getResultList()) {
+                Long productId = (Long) row[0];
+                Integer count = xrefCounts.get(productId);
+                xrefCounts.put(productId, count == null ? 1 : count + 1);
+                if (count == null) {
+                    firstCategories.put(productId, (Long) row[1]);
+                }
+                if (Boolean.TRUE.equals(row[2]) && !defaultCategories.containsKey(productId)) {
+                    defaultCategories.put(productId, (Long) row[1]);
+                }
+            }
+            for (Entry<Long, Integer> entry : xrefCounts.entrySet()) {
+                Long productId = entry.getKey();
+                byProductId.get(productId).setDefaultCategoryId(entry.getValue() > 1 ?
+                        defaultCategories.get(productId) : firstCategories.get(productId));
+            }
+        }
+        return response;
+    }
+
     protected CriteriaQuery<Product> getCriteriaForActiveProductsForSiteMap(Date currentDate) {
         return getCriteriaForActiveProducts(currentDate, null, true);
     }
@@ -0,0 +1,144 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain.dto;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Compact, cacheable projection of the {@link org.broadleafcommerce.core.catalog.domain.Product} fields needed to render
+ * a product tile in a search or category listing. Instances are built for a specific locale (the name is translated)
+ * and are shared between requests, so they should be treated as read-only.
+ * </p>
+ * Prices are the base retail and sale prices of the default sku. Templates that need dynamic pricing, options or other
+ * details should use the full Product entities from {@link org.broadleafcommerce.core.search.domain.SearchResult#getProducts()}.
+ */
+public class ProductListingView implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Long productId;
+    private Long defaultSkuId;
+    private String name;
+    private String url;
+    private BigDecimal retailPrice;
+    private BigDecimal salePrice;
+    private String primaryMediaUrl;
+    private Long defaultCategoryId;
+    private String localeCode;
+
+    public ProductListingView(Long productId, Long defaultSkuId) {
+        this.productId = productId;
+        this.defaultSkuId = defaultSkuId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Long getDefaultSkuId() {
+        return defaultSkuId;
+    }
+
+    public void setDefaultSkuId(Long defaultSkuId) {
+        this.defaultSkuId = defaultSkuId;
+    }
+
+    /**
+     * @return the name of the default sku, translated for {@link #getLocaleCode()}
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public BigDecimal getRetailPrice() {
+        return retailPrice;
+    }
+
+    public void setRetailPrice(BigDecimal retailPrice) {
+        this.retailPrice = retailPrice;
+    }
+
+    public BigDecimal getSalePrice() {
+        return salePrice;
+    }
+
+    public void setSalePrice(BigDecimal salePrice) {
+        this.salePrice = salePrice;
+    }
+
+    /**
+     * @return the sale price if there is one lower than the retail price, otherwise the retail price
+     */
+    public BigDecimal getPrice() {
+        if (salePrice != null && (retailPrice == null || salePrice.compareTo(retailPrice) < 0)) {
+            return salePrice;
+        }
+        return retailPrice;
+    }
+
+    public boolean isOnSale() {
+        return salePrice != null && retailPrice != null && salePrice.compareTo(retailPrice) < 0;
+    }
+
+    /**
+     * @return the url of the "primary" media of the default sku, if any
+     */
+    public String getPrimaryMediaUrl() {
+        return primaryMediaUrl;
+    }
+
+    public void setPrimaryMediaUrl(String primaryMediaUrl) {
+        this.primaryMediaUrl = primaryMediaUrl;
+    }
+
+    /**
+     * @return the id of the category referenced by the product's default category xref (or its only xref)
+     */
+    public Long getDefaultCategoryId() {
+        return defaultCategoryId;
+    }
+
+    public void setDefaultCategoryId(Long defaultCategoryId) {
+        this.defaultCategoryId = defaultCategoryId;
+    }
+
+    public String getLocaleCode() {
+        return localeCode;
+    }
+
+    public void setLocaleCode(String localeCode) {
+        this.localeCode = localeCode;
+    }
+}
@@ -0,0 +1,77 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.domain.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight projection of the {@link org.broadleafcommerce.core.catalog.domain.Product} fields needed to build a
+ * sitemap entry, used so that sitemap generation does not hydrate full Product entities.
+ */
+public class ProductSiteMapDTO {
+
+    private Long productId;
+    private String url;
+    private Long defaultSkuId;
+    private List<String> mediaUrls = new ArrayList<>();
+
+    public ProductSiteMapDTO(Long productId, String url, Long defaultSkuId) {
+        this.productId = productId;
+        this.url = url;
+        this.defaultSkuId = defaultSkuId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    /**
+     * @return the explicit url of the product. Null if the product relies on a generated url.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public Long getDefaultSkuId() {
+        return defaultSkuId;
+    }
+
+    public void setDefaultSkuId(Long defaultSkuId) {
+        this.defaultSkuId = defaultSkuId;
+    }
+
+    /**
+     * @return the urls of the media attached to the default sku
+     */
+    public List<String> getMediaUrls() {
+        return mediaUrls;
+    }
+
+    public void setMediaUrls(List<String> mediaUrls) {
+        this.mediaUrls = mediaUrls;
+    }
+}
@@ -0,0 +1,47 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.core.catalog.dao.CatalogHierarchySnapshot;
+
+/**
+ * Provides a shared {@link CatalogHierarchySnapshot} for category ancestor and descendant lookups so that callers do
+ * not need to walk lazy category relationships.
+ */
+public interface CatalogHierarchyService {
+
+    /**
+     * Returns the current snapshot, building it if necessary. The snapshot only reflects the production catalog, so
+     * null is returned when snapshots are disabled or when the current request is in the admin or a non-production
+     * sandbox. Callers should fall back to walking the category entities in that case.
+     *
+     * @return the current snapshot, or null if one should not be used in this context
+     */
+    CatalogHierarchySnapshot getSnapshot();
+
+    /**
+     * Marks the current snapshots as stale so that the next call to {@link #getSnapshot()} rebuilds them. Callers will
+     * continue to see the previous snapshot until the rebuilt one is swapped in.
+     */
+    void invalidate();
+
+    /**
+     * @return the current time, as used to evaluate the activity of categories in the snapshot
+     */
+    long getCurrentTime();
+}
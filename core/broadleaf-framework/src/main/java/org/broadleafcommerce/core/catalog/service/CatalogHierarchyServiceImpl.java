@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.CatalogHierarchySnapshot;
+import org.broadleafcommerce.core.catalog.dao.CategoryDao;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+
+/**
+ * Keeps one {@link CatalogHierarchySnapshot} per site. A snapshot is rebuilt when it is older than
+ * {@link #refreshSeconds} or has been {@link #invalidate() invalidated}. The rebuild is performed by a single caller
+ * while every other caller keeps reading the previous snapshot, and the rebuilt snapshot is swapped in atomically.
+ * Category changes made on another node (e.g. in the admin) are picked up at the next refresh.
+ */
+@Service("blCatalogHierarchyService")
+public class CatalogHierarchyServiceImpl implements CatalogHierarchyService {
+
+    private static final Log LOG = LogFactory.getLog(CatalogHierarchyServiceImpl.class);
+
+    @Resource(name = "blCategoryDao")
+    protected CategoryDao categoryDao;
+
+    @Value("${catalog.hierarchy.snapshot.enabled:true}")
+    protected boolean snapshotEnabled = true;
+
+    @Value("${catalog.hierarchy.snapshot.refresh.seconds:300}")
+    protected long refreshSeconds = 300;
+
+    protected final ConcurrentMap<Long, SnapshotHolder> holders = new ConcurrentHashMap<>();
+    protected final AtomicLong versions = new AtomicLong();
+    protected final AtomicLong invalidations = new AtomicLong();
+
+    @Override
+    public CatalogHierarchySnapshot getSnapshot() {
+        if (!snapshotEnabled) {
+            return null;
+        }
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (context != null && (context.getAdmin() || !context.isProductionSandBox())) {
+            return null;
+        }
+        Long key = getSnapshotKey(context);
+        SnapshotHolder holder = holders.get(key);
+        if (holder == null) {
+            SnapshotHolder newHolder = new SnapshotHolder();
+            holder = holders.putIfAbsent(key, newHolder);
+            if (holder == null) {
+                holder = newHolder;
+            }
+        }
+        if (holder.snapshot == null) {
+            synchronized (holder) {
+                if (holder.snapshot == null) {
+                    long invalidation = invalidations.get();
+                    holder.swap(buildSnapshot(), invalidation, getRefreshMillis());
+                }
+            }
+        } else if (holder.isExpired(invalidations.get()) && holder.refreshing.compareAndSet(false, true)) {
+            try {
+                //an invalidation that arrives while rebuilding will trigger another rebuild
+                long invalidation = invalidations.get();
+                holder.swap(buildSnapshot(), invalidation, getRefreshMillis());
+            } catch (RuntimeException e) {
+                LOG.error("Unable to rebuild the catalog hierarchy snapshot. Continuing with version "
+                        + holder.snapshot.getVersion(), e);
+                holder.invalidation = invalidations.get();
+                holder.expires = System.currentTimeMillis() + getRefreshMillis();
+            } finally {
+                holder.refreshing.set(false);
+            }
+        }
+        return holder.snapshot;
+    }
+
+    @Override
+    public void invalidate() {
+        invalidations.incrementAndGet();
+    }
+
+    @Override
+    public long getCurrentTime() {
+        return SystemTime.asMillis(true);
+    }
+
+    protected CatalogHierarchySnapshot buildSnapshot() {
+        long start = System.currentTimeMillis();
+        CatalogHierarchySnapshot.Builder builder = new CatalogHierarchySnapshot.Builder();
+        categoryDao.populateCatalogHierarchy(builder);
+        CatalogHierarchySnapshot snapshot = builder.build(versions.incrementAndGet());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Built catalog hierarchy snapshot version %s with %s categories in %sms",
+                    snapshot.getVersion(), snapshot.size(), System.currentTimeMillis() - start));
+        }
+        return snapshot;
+    }
+
+    protected Long getSnapshotKey(BroadleafRequestContext context) {
+        Site site = context == null ? null : context.getNonPersistentSite();
+        return site == null || site.getId() == null ? 0L : site.getId();
+    }
+
+    protected long getRefreshMillis() {
+        return TimeUnit.SECONDS.toMillis(refreshSeconds);
+    }
+
+    protected static class SnapshotHolder {
+
+        protected volatile CatalogHierarchySnapshot snapshot;
+        protected volatile long expires;
+        protected volatile long invalidation;
+        protected final AtomicBoolean refreshing = new AtomicBoolean();
+
+        protected void swap(CatalogHierarchySnapshot snapshot, long invalidation, long refreshMillis) {
+            this.expires = System.currentTimeMillis() + refreshMillis;
+            this.invalidation = invalidation;
+            this.snapshot = snapshot;
+        }
+
+        protected boolean isExpired(long currentInvalidation) {
+            return invalidation != currentInvalidation || System.currentTimeMillis() >= expires;
+        }
+    }
+}
@@ -38,6 +38,8 @@ import org.broadleafcommerce.core.catalog.service.type.ProductType;
 import org.broadleafcommerce.core.search.domain.SearchCriteria;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Collections;
 import java.util.Date;
@@ -64,6 +66,12 @@ public class CatalogServiceImpl implements CatalogService {
     @Resource(name = "blCatalogServiceExtensionManager")
     protected CatalogServiceExtensionManager extensionManager;
 
+    @Resource(name = "blCatalogHierarchyService")
+    protected CatalogHierarchyService catalogHierarchyService;
+
+    @Resource(name = "blProductListingViewService")
+    protected ProductListingViewService productListingViewService;
+
     @Override
     public Product findProductById(Long productId) {
         return productDao.readProductById(productId);
@@ -138,7 +146,9 @@ public class CatalogServiceImpl implements CatalogService {
     @Override
     @Transactional("blTransactionManager")
     public Product saveProduct(Product product) {
-        return productDao.save(product);
+        Product response = productDao.save(product);
+        invalidateProductListingView(response.getId());
+        return response;
     }
 
     @Override
@@ -170,13 +180,51 @@ public class CatalogServiceImpl implements CatalogService {
     @Override
     @Transactional("blTransactionManager")
     public Category saveCategory(Category category) {
-        return categoryDao.save(category);
+        Category response = categoryDao.save(category);
+        invalidateCatalogHierarchy();
+        return response;
     }
     
     @Override
     @Transactional("blTransactionManager")
     public void removeCategory(Category category){
         categoryDao.delete(category);
+        invalidateCatalogHierarchy();
+    }
+
+    /**
+     * Evict the cached listing views of the product once the change is visible to other transactions
+     */
+    protected void invalidateProductListingView(final Long productId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    productListingViewService.invalidate(productId);
+                }
+            });
+        } else {
+            productListingViewService.invalidate(productId);
+        }
+    }
+
+    /**
+     * Rebuild the shared {@link org.broadleafcommerce.core.catalog.dao.CatalogHierarchySnapshot} once the category change
+     * is visible to other transactions
+     */
+    protected void invalidateCatalogHierarchy() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    catalogHierarchyService.invalidate();
+                }
+            });
+        } else {
+            catalogHierarchyService.invalidate();
+        }
     }
     
     @Override
@@ -189,6 +237,7 @@ public class CatalogServiceImpl implements CatalogService {
     @Transactional("blTransactionManager")
     public void removeProduct(Product product) {
         productDao.delete(product);
+        invalidateProductListingView(product.getId());
     }
 
     @Override
@@ -264,7 +313,11 @@ public class CatalogServiceImpl implements CatalogService {
     @Override
     @Transactional("blTransactionManager")
     public Sku saveSku(Sku sku) {
-        return skuDao.save(sku);
+        Sku response = skuDao.save(sku);
+        if (response.getDefaultProduct() != null) {
+            invalidateProductListingView(response.getDefaultProduct().getId());
+        }
+        return response;
     }
     
     @Override
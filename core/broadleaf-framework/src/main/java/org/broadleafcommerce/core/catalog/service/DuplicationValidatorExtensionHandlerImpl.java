@@ -44,7 +44,7 @@ public class DuplicationValidatorExtensionHandlerImpl implements EntityDuplicato
     @PostConstruct
     public void init() {
         if (this.isEnabled()) {
-            this.extensionManager.getHandlers().add(this);
+            this.extensionManager.registerHandler(this);
         }
     }
 
@@ -0,0 +1,46 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.broadleafcommerce.core.catalog.domain.dto.ProductListingView;
+
+import java.util.List;
+
+/**
+ * Serves {@link ProductListingView} projections for product listings (e.g. search and category pages) from a cache
+ * keyed by product id, locale and site, so that rendering listing tiles does not require hydrating Product entities.
+ */
+public interface ProductListingViewService {
+
+    /**
+     * Returns the listing views for the given products, loading cache misses in a single batch.
+     *
+     * @param productIds
+     * @return the views in the same order as the ids (products that could not be found are omitted), or null if listing
+     * views are disabled or should not be used in the current context (e.g. the admin or a non-production sandbox)
+     */
+    List<ProductListingView> findListingViews(List<Long> productIds);
+
+    /**
+     * Remove any cached views of the given product, for all locales and sites. Only the cache of the current node is
+     * affected; other nodes serve their cached views until they expire.
+     *
+     * @param productId
+     */
+    void invalidate(Long productId);
+}
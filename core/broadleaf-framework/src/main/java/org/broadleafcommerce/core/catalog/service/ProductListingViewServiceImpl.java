@@ -0,0 +1,213 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.service;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.broadleafcommerce.common.extension.ResultType;
+import org.broadleafcommerce.common.i18n.domain.TranslatedEntity;
+import org.broadleafcommerce.common.i18n.domain.Translation;
+import org.broadleafcommerce.common.i18n.service.TranslationConsiderationContext;
+import org.broadleafcommerce.common.i18n.service.TranslationService;
+import org.broadleafcommerce.common.locale.domain.Locale;
+import org.broadleafcommerce.common.site.domain.Site;
+import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.ProductDao;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductListingView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Resource;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+/**
+ * Caches {@link ProductListingView} instances in the "blProductListingViews" cache region. Misses are read with
+ * {@link ProductDao#readProductListingViews(List)} and the default sku names are translated in one batch for the
+ * current locale. Views are evicted when products are saved or removed through {@link CatalogService} or the admin
+ * product and sku persistence handlers. The eviction only affects the local cache, so other nodes (such as the site
+ * when the edit was made in the admin), and changes made elsewhere (e.g. translations or category urls), are only
+ * picked up once the view expires with the 600 second TTL of the "blProductListingViews" region.
+ */
+@Service("blProductListingViewService")
+public class ProductListingViewServiceImpl implements ProductListingViewService {
+
+    protected static final String NAME_FIELD = "name";
+
+    @Resource(name = "blProductDao")
+    protected ProductDao productDao;
+
+    @Resource(name = "blTranslationService")
+    protected TranslationService translationService;
+
+    @Resource(name = "blCacheManager")
+    protected CacheManager cacheManager;
+
+    @Value("${solr.search.listing.views.enabled:false}")
+    protected boolean listingViewsEnabled = false;
+
+    protected Cache<String, Object> cache;
+
+    /**
+     * The locale and site combinations that views have been cached for, used to evict every variant of a product
+     */
+    protected final Set<String> cacheKeySuffixes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Override
+    public List<ProductListingView> findListingViews(List<Long> productIds) {
+        BroadleafRequestContext context = BroadleafRequestContext.getBroadleafRequestContext();
+        if (!listingViewsEnabled || context == null || context.getAdmin() || !context.isProductionSandBox()) {
+            return null;
+        }
+        String localeCode = getLocaleCode(context);
+        String suffix = buildCacheKeySuffix(localeCode, context);
+        cacheKeySuffixes.add(suffix);
+
+        Map<Long, ProductListingView> views = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long productId : productIds) {
+            Object cached = getCache().get(productId + suffix);
+            if (cached != null) {
+                views.put(productId, (ProductListingView) cached);
+            } else {
+                misses.add(productId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<ProductListingView> loaded = productDao.readProductListingViews(misses);
+            populateLocalizedFields(loaded, localeCode);
+            for (ProductListingView view : loaded) {
+                getCache().put(view.getProductId() + suffix, view);
+                views.put(view.getProductId(), view);
+            }
+        }
+
+        List<ProductListingView> response = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            ProductListingView view = views.get(productId);
+            if (view != null) {
+                response.add(view);
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public void invalidate(Long productId) {
+        if (productId == null) {
+            return;
+        }
+        for (String suffix : cacheKeySuffixes) {
+            getCache().remove(productId + suffix);
+        }
+    }
+
+    /**
+     * Translate the names and resolve generated urls of freshly read views
+     */
+    protected void populateLocalizedFields(List<ProductListingView> views, String localeCode) {
+        if (TranslationConsiderationContext.hasTranslation() && localeCode != null) {
+            List<String> skuIds = new ArrayList<>();
+            Map<String, ProductListingView> bySkuId = new HashMap<>();
+            for (ProductListingView view : views) {
+                if (view.getDefaultSkuId() != null) {
+                    skuIds.add(String.valueOf(view.getDefaultSkuId()));
+                    bySkuId.put(String.valueOf(view.getDefaultSkuId()), view);
+                }
+            }
+            if (!skuIds.isEmpty()) {
+                String languageCode = StringUtils.substringBefore(localeCode, "_");
+                List<Translation> translations = translationService.findAllTranslationEntries(TranslatedEntity.SKU, ResultType.STANDARD, skuIds);
+                Map<String, String> languageMatches = new HashMap<>();
+                if (CollectionUtils.isNotEmpty(translations)) {
+                    for (Translation translation : translations) {
+                        if (!NAME_FIELD.equals(translation.getFieldName()) || StringUtils.isBlank(translation.getTranslatedValue())) {
+                            continue;
+                        }
+                        ProductListingView view = bySkuId.get(translation.getEntityId());
+                        if (view == null) {
+                            continue;
+                        }
+                        if (localeCode.equals(translation.getLocaleCode())) {
+                            view.setName(translation.getTranslatedValue());
+                            languageMatches.remove(translation.getEntityId());
+                            bySkuId.remove(translation.getEntityId());
+                        } else if (languageCode.equals(translation.getLocaleCode())) {
+                            languageMatches.put(translation.getEntityId(), translation.getTranslatedValue());
+                        }
+                    }
+                }
+                for (Map.Entry<String, String> entry : languageMatches.entrySet()) {
+                    ProductListingView view = bySkuId.get(entry.getKey());
+                    if (view != null) {
+                        view.setName(entry.getValue());
+                    }
+                }
+            }
+        }
+        List<Long> generatedUrlIds = new ArrayList<>();
+        for (ProductListingView view : views) {
+            view.setLocaleCode(localeCode);
+            if (view.getUrl() == null) {
+                generatedUrlIds.add(view.getProductId());
+            }
+        }
+        if (!generatedUrlIds.isEmpty()) {
+            // the url is generated from the product's default category and url key
+            Map<Long, String> urls = new HashMap<>();
+            for (Product product : productDao.readProductsByIds(generatedUrlIds)) {
+                urls.put(product.getId(), product.getUrl());
+            }
+            for (ProductListingView view : views) {
+                if (view.getUrl() == null) {
+                    view.setUrl(urls.get(view.getProductId()));
+                }
+            }
+        }
+    }
+
+    protected String getLocaleCode(BroadleafRequestContext context) {
+        Locale locale = context.getLocale();
+        return locale == null ? null : locale.getLocaleCode();
+    }
+
+    protected String buildCacheKeySuffix(String localeCode, BroadleafRequestContext context) {
+        Site site = context.getNonPersistentSite();
+        return "_" + localeCode + "_" + (site == null ? null : site.getId());
+    }
+
+    protected Cache<String, Object> getCache() {
+        if (cache == null) {
+            synchronized (this) {
+                if (cache == null) {
+                    cache = cacheManager.getCache("blProductListingViews");
+                }
+            }
+        }
+        return cache;
+    }
+}
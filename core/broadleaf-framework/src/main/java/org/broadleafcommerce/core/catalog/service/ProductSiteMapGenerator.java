@@ -28,12 +28,16 @@ import org.broadleafcommerce.common.sitemap.wrapper.SiteMapImageWrapper;
 import org.broadleafcommerce.common.sitemap.wrapper.SiteMapURLWrapper;
 import org.broadleafcommerce.core.catalog.dao.ProductDao;
 import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductSiteMapDTO;
 import org.broadleafcommerce.core.util.service.BroadleafSitemapUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 
@@ -51,6 +55,19 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
     @Value("${product.site.map.generator.row.limit}")
     protected int pageSize;
 
+    /**
+     * Read lightweight projections a page at a time using the last product id of the previous page, rather than
+     * reading Product entities with ever increasing offsets. Disabled by default.
+     * <p>
+     * Products with an explicit url are built from the projection through {@link #generateUri(SiteMapBuilder, ProductSiteMapDTO)},
+     * {@link #generateDate(ProductSiteMapDTO)} and {@link #constructImageURLs(SiteMapBuilder, SiteMapURLWrapper, ProductSiteMapDTO)}
+     * instead of the {@link Product} variants of those methods. Subclasses that customize the Product variants should
+     * override the projection variants as well before enabling this. Products relying on a generated url are read as
+     * entities, one query per page, and go through the Product variants.
+     */
+    @Value("${product.site.map.generator.keyset.enabled:false}")
+    protected boolean keysetPagingEnabled = false;
+
     @Override
     public boolean canHandleSiteMapConfiguration(SiteMapGeneratorConfiguration siteMapGeneratorConfiguration) {
         return SiteMapGeneratorType.PRODUCT.equals(siteMapGeneratorConfiguration.getSiteMapGeneratorType());
@@ -58,6 +75,10 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
 
     @Override
     public void addSiteMapEntries(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
+        if (keysetPagingEnabled) {
+            addSiteMapEntriesByKeyset(smgc, siteMapBuilder);
+            return;
+        }
 
         int pageNum = 0;
         List<Product> products;
@@ -65,29 +86,89 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
         do {
             products = productDao.readAllActiveProductsForSiteMap(pageNum++, pageSize);
             for (Product product : products) {
-                if (StringUtils.isEmpty(product.getUrl())) {
-                    continue;
+                SiteMapURLWrapper siteMapUrl = buildSiteMapUrl(smgc, siteMapBuilder, product);
+                if (siteMapUrl != null) {
+                    siteMapBuilder.addUrl(siteMapUrl);
+                }
+            }
+        } while (products.size() == pageSize);
+    }
+
+    protected void addSiteMapEntriesByKeyset(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder) {
+        Long lastId = null;
+        List<ProductSiteMapDTO> entries;
+
+        do {
+            entries = productDao.readAllActiveProductSiteMapEntries(lastId, pageSize);
+            Map<Long, Product> generatedUrlProducts = readGeneratedUrlProducts(entries);
+            for (ProductSiteMapDTO entry : entries) {
+                lastId = entry.getProductId();
+                Product product = generatedUrlProducts.get(entry.getProductId());
+                SiteMapURLWrapper siteMapUrl = product == null ? buildSiteMapUrl(smgc, siteMapBuilder, entry)
+                        : buildSiteMapUrl(smgc, siteMapBuilder, product);
+                if (siteMapUrl != null) {
+                    siteMapBuilder.addUrl(siteMapUrl, entry.getProductId());
                 }
+            }
+        } while (entries.size() == pageSize);
+    }
+
+    /**
+     * The url of a product without an explicit url is generated from its category and url key, so those products are
+     * read as entities, all at once for the page
+     */
+    protected Map<Long, Product> readGeneratedUrlProducts(List<ProductSiteMapDTO> entries) {
+        List<Long> productIds = new ArrayList<Long>();
+        for (ProductSiteMapDTO entry : entries) {
+            if (StringUtils.isEmpty(entry.getUrl())) {
+                productIds.add(entry.getProductId());
+            }
+        }
+        Map<Long, Product> response = new HashMap<Long, Product>();
+        if (!productIds.isEmpty()) {
+            for (Product product : productDao.readProductsByIds(productIds)) {
+                response.put(product.getId(), product);
+            }
+        }
+        return response;
+    }
 
-                SiteMapURLWrapper siteMapUrl = new SiteMapURLWrapper();
+    protected SiteMapURLWrapper buildSiteMapUrl(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder, Product product) {
+        if (StringUtils.isEmpty(product.getUrl())) {
+            return null;
+        }
 
-                // location
-                siteMapUrl.setLoc(generateUri(siteMapBuilder, product));
+        SiteMapURLWrapper siteMapUrl = new SiteMapURLWrapper();
 
-                // change frequency
-                siteMapUrl.setChangeFreqType(smgc.getSiteMapChangeFreq());
+        // location
+        siteMapUrl.setLoc(generateUri(siteMapBuilder, product));
 
-                // priority
-                siteMapUrl.setPriorityType(smgc.getSiteMapPriority());
+        // change frequency
+        siteMapUrl.setChangeFreqType(smgc.getSiteMapChangeFreq());
 
-                // lastModDate
-                siteMapUrl.setLastModDate(generateDate(product));
+        // priority
+        siteMapUrl.setPriorityType(smgc.getSiteMapPriority());
 
-                constructImageURLs(siteMapBuilder, siteMapUrl, product);
+        // lastModDate
+        siteMapUrl.setLastModDate(generateDate(product));
 
-                siteMapBuilder.addUrl(siteMapUrl);
-            }
-        } while (products.size() == pageSize);
+        constructImageURLs(siteMapBuilder, siteMapUrl, product);
+
+        return siteMapUrl;
+    }
+
+    protected SiteMapURLWrapper buildSiteMapUrl(SiteMapGeneratorConfiguration smgc, SiteMapBuilder siteMapBuilder, ProductSiteMapDTO entry) {
+        if (StringUtils.isEmpty(entry.getUrl())) {
+            return null;
+        }
+
+        SiteMapURLWrapper siteMapUrl = new SiteMapURLWrapper();
+        siteMapUrl.setLoc(generateUri(siteMapBuilder, entry));
+        siteMapUrl.setChangeFreqType(smgc.getSiteMapChangeFreq());
+        siteMapUrl.setPriorityType(smgc.getSiteMapPriority());
+        siteMapUrl.setLastModDate(generateDate(entry));
+        constructImageURLs(siteMapBuilder, siteMapUrl, entry);
+        return siteMapUrl;
     }
 
     protected void constructImageURLs(SiteMapBuilder siteMapBuilder, SiteMapURLWrapper siteMapUrl, Product product) {
@@ -100,14 +181,30 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
         }
     }
 
+    protected void constructImageURLs(SiteMapBuilder siteMapBuilder, SiteMapURLWrapper siteMapUrl, ProductSiteMapDTO entry) {
+        for (String mediaUrl : entry.getMediaUrls()) {
+            SiteMapImageWrapper siteMapImage = new SiteMapImageWrapper();
+            siteMapImage.setLoc(BroadleafFileUtils.appendUnixPaths(siteMapBuilder.getBaseUrl(), mediaUrl));
+            siteMapUrl.addImage(siteMapImage);
+        }
+    }
+
     protected String generateUri(SiteMapBuilder smb, Product product) {
         return BroadleafFileUtils.appendUnixPaths(smb.getBaseUrl(), product.getUrl());
     }
 
+    protected String generateUri(SiteMapBuilder smb, ProductSiteMapDTO entry) {
+        return BroadleafFileUtils.appendUnixPaths(smb.getBaseUrl(), entry.getUrl());
+    }
+
     protected Date generateDate(Product product) {
         return new Date();
     }
 
+    protected Date generateDate(ProductSiteMapDTO entry) {
+        return new Date();
+    }
+
     public ProductDao getProductDao() {
         return productDao;
     }
@@ -116,6 +213,14 @@ public class ProductSiteMapGenerator implements SiteMapGenerator {
         this.productDao = productDao;
     }
 
+    public boolean isKeysetPagingEnabled() {
+        return keysetPagingEnabled;
+    }
+
+    public void setKeysetPagingEnabled(boolean keysetPagingEnabled) {
+        this.keysetPagingEnabled = keysetPagingEnabled;
+    }
+
     public int getPageSize() {
         return pageSize;
     }
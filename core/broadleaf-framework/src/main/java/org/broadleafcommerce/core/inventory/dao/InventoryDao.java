@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Performs inventory adjustments directly against the Sku table. Adjustments are issued as single conditional
+ * update statements so that the database row lock, rather than a read-modify-write of the managed Sku entity,
+ * guarantees that concurrent checkouts can never oversell a Sku.
+ */
+public interface InventoryDao {
+
+    /**
+     * Atomically decrement the quantity available for the Sku, but only if at least {@code quantity} units are
+     * currently available.
+     *
+     * @param skuId the id of the Sku to decrement
+     * @param quantity the number of units to remove
+     * @return true if the decrement was applied, false if there was not enough inventory, the quantity available is
+     * null, or the Sku does not exist
+     */
+    boolean decrementQuantityAvailable(Long skuId, int quantity);
+
+    /**
+     * Atomically increment the quantity available for the Sku. A null quantity available is left untouched.
+     *
+     * @param skuId the id of the Sku to increment
+     * @param quantity the number of units to add back
+     * @return true if the increment was applied, false if the quantity available is null or the Sku does not exist
+     */
+    boolean incrementQuantityAvailable(Long skuId, int quantity);
+
+    /**
+     * Read the current quantity available for the given Skus straight from the database, bypassing the Sku
+     * second level cache entry.
+     *
+     * @param skuIds the ids of the Skus to read
+     * @return the quantity available keyed by Sku id. Skus with a null quantity are included with a null value.
+     */
+    Map<Long, Integer> readQuantitiesAvailable(Collection<Long> skuIds);
+
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.dao;
+
+import org.broadleafcommerce.common.util.UpdateExecutor;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+/**
+ * {@inheritDoc}
+ */
+@Repository("blInventoryDao")
+public class InventoryDaoImpl implements InventoryDao {
+
+    protected static final String DECREMENT_TEMPLATE = "UPDATE BLC_SKU SET QUANTITY_AVAILABLE = QUANTITY_AVAILABLE - ? " +
+            "WHERE QUANTITY_AVAILABLE >= ? AND SKU_ID IN (%s)";
+
+    protected static final String INCREMENT_TEMPLATE = "UPDATE BLC_SKU SET QUANTITY_AVAILABLE = QUANTITY_AVAILABLE + ? " +
+            "WHERE QUANTITY_AVAILABLE IS NOT NULL AND SKU_ID IN (%s)";
+
+    protected static final String READ_LOCKED_TEMPLATE = "SELECT QUANTITY_AVAILABLE FROM BLC_SKU WHERE SKU_ID = ?";
+
+    protected static final int READ_BATCH_SIZE = 800;
+
+    @PersistenceContext(unitName = "blPU")
+    protected EntityManager em;
+
+    @Override
+    public boolean decrementQuantityAvailable(Long skuId, int quantity) {
+        //an empty table space keeps Hibernate from clearing the whole Sku cache region - only the updated Sku is
+        //evicted afterwards
+        int rows = UpdateExecutor.executeUpdateQuery(em, DECREMENT_TEMPLATE, "", new Object[]{quantity, quantity},
+                new Type[]{IntegerType.INSTANCE, IntegerType.INSTANCE}, Collections.singletonList(skuId));
+        if (rows == 1) {
+            synchronizeSku(skuId);
+        }
+        return rows == 1;
+    }
+
+    @Override
+    public boolean incrementQuantityAvailable(Long skuId, int quantity) {
+        int rows = UpdateExecutor.executeUpdateQuery(em, INCREMENT_TEMPLATE, "", new Object[]{quantity},
+                new Type[]{IntegerType.INSTANCE}, Collections.singletonList(skuId));
+        if (rows == 1) {
+            synchronizeSku(skuId);
+        }
+        return rows == 1;
+    }
+
+    @Override
+    public Map<Long, Integer> readQuantitiesAvailable(Collection<Long> skuIds) {
+        Map<Long, Integer> response = new HashMap<>();
+        List<Long> ids = new ArrayList<>(skuIds);
+        for (int start = 0; start < ids.size(); start += READ_BATCH_SIZE) {
+            List<Long> batch = ids.subList(start, Math.min(ids.size(), start + READ_BATCH_SIZE));
+            TypedQuery<Object[]> query = em.createQuery("SELECT sku.id, sku.quantityAvailable FROM " +
+                    "org.broadleafcommerce.core.catalog.domain.SkuImpl sku WHERE sku.id IN :skuIds", Object[].class);
+            query.setParameter("skuIds", batch);
+            for (Object[] row : query.getResultList()) {
+                response.put((Long) row[0], (Integer) row[1]);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * The conditional update bypasses the persistence context, so the Sku's second level cache entry and any instance
+     * of the Sku already managed by this EntityManager still hold the previous quantity, and the next save of that Sku
+     * would write it back over the update. The cache entry is evicted and the managed instance, if there is one, is
+     * given the quantity now in the row. The update holds the row lock until this transaction completes, so that value
+     * cannot change underneath it. Other pending changes to the managed instance are kept, which a refresh would discard.
+     */
+    protected void synchronizeSku(Long skuId) {
+        em.getEntityManagerFactory().getCache().evict(SkuImpl.class, skuId);
+        SharedSessionContractImplementor session = em.unwrap(SharedSessionContractImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(SkuImpl.class);
+        Object managed = session.getPersistenceContext().getEntity(session.generateEntityKey(skuId, persister));
+        if (managed instanceof Sku) {
+            //don't let the read flush the stale quantity before it is replaced
+            Query query = em.createNativeQuery(READ_LOCKED_TEMPLATE);
+            query.setFlushMode(FlushModeType.COMMIT);
+            query.setParameter(1, skuId);
+            Number quantity = (Number) query.getSingleResult();
+            ((Sku) managed).setQuantityAvailable(quantity == null ? null : quantity.intValue());
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import org.broadleafcommerce.core.catalog.domain.Sku;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Maintains per-Sku availability counters and time limited cart reservations for {@link InventoryServiceImpl}.
+ * </p>
+ * Counters are refreshed incrementally from the values written by the atomic inventory adjustments, and from the
+ * database once they are older than the configured ttl. Reservations are node-local and advisory - they keep this
+ * node from promising the same unit to several carts, while the conditional database decrement performed at
+ * checkout remains the final arbiter.
+ * </p>
+ * When {@code inventory.reservation.enabled} is true, {@link InventoryServiceImpl#checkSkuAvailability(org.broadleafcommerce.core.order.domain.Order, Sku, Integer)},
+ * which runs when items are added to or updated in the cart and again at checkout, reserves the result of
+ * {@link InventoryService#buildSkuInventoryMap(org.broadleafcommerce.core.order.domain.Order)} using the order id as the
+ * reservation id. The reservation is released automatically when inventory is decremented for that order, or when it
+ * expires. Removing items from the cart does not shrink the reservation until the next availability check.
+ */
+public interface InventoryReservationService {
+
+    /**
+     * Retrieve the quantity free for purchase for each Sku id, which is the database quantity less any quantity
+     * reserved by other carts.
+     *
+     * @param skuIds the Skus to check
+     * @param reservationId the reservation belonging to the caller, whose holds should not count against it. Can be null.
+     * @return the free quantity keyed by Sku id. A null value means the database quantity is null.
+     */
+    Map<Long, Integer> retrieveUnreservedQuantities(Collection<Long> skuIds, String reservationId);
+
+    /**
+     * Record quantities that were just written to the database, avoiding a later reload or cache eviction.
+     *
+     * @param quantities the new database quantity keyed by Sku id
+     */
+    void refreshQuantities(Map<Long, Integer> quantities);
+
+    /**
+     * Hold inventory for a cart. Any previous reservation with the same id is replaced. The reservation is
+     * all-or-nothing.
+     *
+     * @param reservationId the reservation identifier, usually the order id
+     * @param skuQuantities the quantities to hold
+     * @param ttlMillis how long the hold lasts. Values less than 1 use the configured default.
+     * @throws InventoryUnavailableException if any Sku does not have enough unreserved inventory
+     */
+    void reserveInventory(String reservationId, Map<Sku, Integer> skuQuantities, long ttlMillis) throws InventoryUnavailableException;
+
+    /**
+     * Release a reservation, if it still exists
+     *
+     * @param reservationId the reservation identifier
+     * @return whether or not a reservation was released
+     */
+    boolean releaseReservation(String reservationId);
+
+    /**
+     * Release every expired reservation. Quantities are aggregated per Sku so that each counter is adjusted only once.
+     *
+     * @return the number of reservations released
+     */
+    int releaseExpiredReservations();
+
+}
@@ -0,0 +1,279 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.inventory.dao.InventoryDao;
+import org.broadleafcommerce.core.inventory.service.type.InventoryType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+
+/**
+ * {@inheritDoc}
+ */
+@Service("blInventoryReservationService")
+public class InventoryReservationServiceImpl implements InventoryReservationService {
+
+    private static final Log LOG = LogFactory.getLog(InventoryReservationServiceImpl.class);
+
+    @Resource(name = "blInventoryDao")
+    protected InventoryDao inventoryDao;
+
+    @Value("${inventory.counter.ttl.ms:10000}")
+    protected long counterTtl = 10000L;
+
+    @Value("${inventory.reservation.ttl.ms:900000}")
+    protected long reservationTtl = 900000L;
+
+    @Value("${inventory.reservation.sweep.interval.ms:30000}")
+    protected long sweepInterval = 30000L;
+
+    protected final ConcurrentMap<Long, SkuAvailabilityCounter> counters = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<String, Reservation> reservations = new ConcurrentHashMap<>();
+    protected final AtomicLong nextSweep = new AtomicLong();
+
+    @Override
+    public Map<Long, Integer> retrieveUnreservedQuantities(Collection<Long> skuIds, String reservationId) {
+        sweepIfDue();
+        Reservation own = reservationId == null ? null : reservations.get(reservationId);
+        Map<Long, SkuAvailabilityCounter> current = retrieveCounters(skuIds);
+        Map<Long, Integer> response = new HashMap<>();
+        for (Map.Entry<Long, SkuAvailabilityCounter> entry : current.entrySet()) {
+            int excluded = 0;
+            if (own != null && !own.isExpired(System.currentTimeMillis())) {
+                Integer held = own.quantities.get(entry.getKey());
+                excluded = held == null ? 0 : held;
+            }
+            response.put(entry.getKey(), entry.getValue().getUnreservedQuantity(excluded));
+        }
+        return response;
+    }
+
+    @Override
+    public void refreshQuantities(Map<Long, Integer> quantities) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            SkuAvailabilityCounter counter = counters.get(entry.getKey());
+            if (counter == null) {
+                counter = counters.putIfAbsent(entry.getKey(), new SkuAvailabilityCounter(entry.getValue(), now));
+            }
+            if (counter != null) {
+                counter.refresh(entry.getValue(), now);
+            }
+        }
+    }
+
+    @Override
+    public void reserveInventory(String reservationId, Map<Sku, Integer> skuQuantities, long ttlMillis) throws InventoryUnavailableException {
+        sweepIfDue();
+        releaseReservation(reservationId);
+        //visit skus in id order so that competing multi-sku reservations observe each other consistently
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (Map.Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
+            Sku sku = entry.getKey();
+            if (sku.getId() == null || !InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
+                continue;
+            }
+            Integer quantity = entry.getValue();
+            if (quantity == null || quantity < 1) {
+                throw new IllegalArgumentException("Quantity " + quantity + " is not valid. Must be greater than zero and not null.");
+            }
+            Integer existing = quantities.get(sku.getId());
+            quantities.put(sku.getId(), existing == null ? quantity : existing + quantity);
+        }
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Map<Long, SkuAvailabilityCounter> current = retrieveCounters(quantities.keySet());
+        List<Map.Entry<Long, Integer>> reserved = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            SkuAvailabilityCounter counter = current.get(entry.getKey());
+            if (counter == null || !counter.tryReserve(entry.getValue())) {
+                for (Map.Entry<Long, Integer> undo : reserved) {
+                    current.get(undo.getKey()).release(undo.getValue());
+                }
+                Integer available = counter == null ? Integer.valueOf(0) : counter.getUnreservedQuantity(0);
+                throw new InventoryUnavailableException("There was not enough unreserved inventory to fulfill this request.",
+                        entry.getKey(), entry.getValue(), available);
+            }
+            reserved.add(entry);
+        }
+        long ttl = ttlMillis > 0 ? ttlMillis : reservationTtl;
+        Reservation previous = reservations.put(reservationId, new Reservation(quantities, System.currentTimeMillis() + ttl));
+        if (previous != null) {
+            //a concurrent call for the same reservation id slipped in - only the latest hold is kept
+            releaseCounters(previous.quantities);
+        }
+    }
+
+    @Override
+    public boolean releaseReservation(String reservationId) {
+        if (reservationId == null) {
+            return false;
+        }
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation == null) {
+            return false;
+        }
+        releaseCounters(reservation.quantities);
+        return true;
+    }
+
+    @Override
+    public int releaseExpiredReservations() {
+        long now = System.currentTimeMillis();
+        Map<Long, Integer> totals = new HashMap<>();
+        int count = 0;
+        for (Iterator<Map.Entry<String, Reservation>> itr = reservations.entrySet().iterator(); itr.hasNext();) {
+            Map.Entry<String, Reservation> entry = itr.next();
+            Reservation reservation = entry.getValue();
+            //only the thread that actually removes the reservation may release its quantities
+            if (reservation.isExpired(now) && reservations.remove(entry.getKey(), reservation)) {
+                for (Map.Entry<Long, Integer> quantity : reservation.quantities.entrySet()) {
+                    Integer total = totals.get(quantity.getKey());
+                    totals.put(quantity.getKey(), total == null ? quantity.getValue() : total + quantity.getValue());
+                }
+                count++;
+            }
+        }
+        releaseCounters(totals);
+        if (count > 0 && LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Released %s expired inventory reservations across %s skus", count, totals.size()));
+        }
+        return count;
+    }
+
+    /**
+     * Retrieve the counters for the given Skus, loading missing or stale counters from the database in a single batch
+     */
+    protected Map<Long, SkuAvailabilityCounter> retrieveCounters(Collection<Long> skuIds) {
+        long now = System.currentTimeMillis();
+        Map<Long, SkuAvailabilityCounter> response = new HashMap<>();
+        List<Long> load = new ArrayList<>();
+        for (Long skuId : skuIds) {
+            SkuAvailabilityCounter counter = counters.get(skuId);
+            if (counter == null || counter.isStale(now, counterTtl)) {
+                load.add(skuId);
+            } else {
+                response.put(skuId, counter);
+            }
+        }
+        if (!load.isEmpty()) {
+            Map<Long, Integer> loaded = inventoryDao.readQuantitiesAvailable(load);
+            for (Long skuId : load) {
+                if (!loaded.containsKey(skuId)) {
+                    continue;
+                }
+                SkuAvailabilityCounter counter = counters.get(skuId);
+                if (counter == null) {
+                    SkuAvailabilityCounter created = new SkuAvailabilityCounter(loaded.get(skuId), now);
+                    counter = counters.putIfAbsent(skuId, created);
+                    if (counter == null) {
+                        counter = created;
+                    }
+                }
+                counter.refresh(loaded.get(skuId), now);
+                response.put(skuId, counter);
+            }
+        }
+        return response;
+    }
+
+    protected void releaseCounters(Map<Long, Integer> quantities) {
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            SkuAvailabilityCounter counter = counters.get(entry.getKey());
+            if (counter != null) {
+                counter.release(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Opportunistically release expired reservations. Only one caller wins the right to sweep for each interval.
+     */
+    protected void sweepIfDue() {
+        long now = System.currentTimeMillis();
+        long due = nextSweep.get();
+        if (now >= due && nextSweep.compareAndSet(due, now + sweepInterval)) {
+            releaseExpiredReservations();
+        }
+    }
+
+    public long getCounterTtl() {
+        return counterTtl;
+    }
+
+    public void setCounterTtl(long counterTtl) {
+        this.counterTtl = counterTtl;
+    }
+
+    public long getReservationTtl() {
+        return reservationTtl;
+    }
+
+    public void setReservationTtl(long reservationTtl) {
+        this.reservationTtl = reservationTtl;
+    }
+
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public InventoryDao getInventoryDao() {
+        return inventoryDao;
+    }
+
+    public void setInventoryDao(InventoryDao inventoryDao) {
+        this.inventoryDao = inventoryDao;
+    }
+
+    protected static class Reservation {
+
+        protected final Map<Long, Integer> quantities;
+        protected final long expiresAt;
+
+        protected Reservation(Map<Long, Integer> quantities, long expiresAt) {
+            this.quantities = Collections.unmodifiableMap(quantities);
+            this.expiresAt = expiresAt;
+        }
+
+        protected boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.broadleafcommerce.common.util.TransactionUtils;
 import org.broadleafcommerce.core.catalog.domain.ProductSkuUsage;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.core.inventory.dao.InventoryDao;
 import org.broadleafcommerce.core.inventory.service.type.InventoryType;
 import org.broadleafcommerce.core.order.domain.BundleOrderItem;
 import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
@@ -45,12 +46,14 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronizationAdapter;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import javax.annotation.Resource;
 
@@ -65,12 +68,35 @@ public class InventoryServiceImpl implements ContextualInventoryService {
     @Resource(name = "blInventoryServiceExtensionManager")
     protected InventoryServiceExtensionManager extensionManager;
 
+    @Resource(name = "blInventoryDao")
+    protected InventoryDao inventoryDao;
+
+    @Resource(name = "blInventoryReservationService")
+    protected InventoryReservationService reservationService;
+
     @Autowired
     protected ApplicationContext applicationContext;
 
     @Value("${enable.weave.use.default.sku.inventory:false}")
     protected boolean enableUseDefaultSkuInventory = false;
 
+    /**
+     * When true, inventory is adjusted with conditional update statements and availability is served from
+     * {@link InventoryReservationService} counters rather than a read-modify-write of the Sku entity followed by a
+     * cluster wide cache invalidation. Disabled by default, since the counters can lag the database by up to
+     * {@code inventory.counter.ttl.ms} for changes made on other nodes.
+     */
+    @Value("${inventory.atomic.enabled:false}")
+    protected boolean atomicInventoryEnabled = false;
+
+    /**
+     * When true, along with {@link #atomicInventoryEnabled}, a successful {@link #checkSkuAvailability(Order, Sku, Integer)}
+     * also holds the cart's quantities in a time limited {@link InventoryReservationService} reservation keyed by the
+     * order id, so other carts on this node are not promised the same units.
+     */
+    @Value("${inventory.reservation.enabled:false}")
+    protected boolean cartReservationEnabled = false;
+
     @Override
     public boolean checkBasicAvailablility(Sku sku) {
         if(sku != null) {
@@ -140,6 +166,7 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         ExtensionResultStatusType res = extensionManager.getProxy().retrieveQuantitiesAvailable(skus, context, holder);
         if (ExtensionResultStatusType.NOT_HANDLED.equals(res)) {
             Map<Sku, Integer> inventories = new HashMap<>();
+            Map<Long, Integer> counted = retrieveCountedQuantities(skus, context);
 
             for (Sku sku : skus) {
                 Sku skuForInventory = sku;
@@ -150,7 +177,12 @@ public class InventoryServiceImpl implements ContextualInventoryService {
                 if(checkBasicAvailablility(skuForInventory)) {
                     InventoryType skuInventoryType = skuForInventory.getInventoryType();
                     if(InventoryType.CHECK_QUANTITY.equals(skuInventoryType)) {
-                        if(skuForInventory.getQuantityAvailable() != null) {
+                        if (counted.containsKey(skuForInventory.getId())) {
+                            Integer countedQuantity = counted.get(skuForInventory.getId());
+                            if (countedQuantity != null) {
+                                quantityAvailable = countedQuantity;
+                            }
+                        } else if(skuForInventory.getQuantityAvailable() != null) {
                             quantityAvailable = skuForInventory.getQuantityAvailable();
                         }
                     } else if(skuForInventory.getInventoryType() == null || InventoryType.ALWAYS_AVAILABLE.equals(skuInventoryType)) {
@@ -166,6 +198,45 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         }
     }
 
+    /**
+     * Retrieve the counter based quantities for the CHECK_QUANTITY Skus in a single batch. Quantity held by the
+     * current order's own reservation does not count against it.
+     *
+     * @return the unreserved quantity keyed by Sku id, or an empty map if atomic inventory is disabled
+     */
+    protected Map<Long, Integer> retrieveCountedQuantities(Collection<Sku> skus, Map<String, Object> context) {
+        if (!atomicInventoryEnabled) {
+            return new HashMap<>();
+        }
+        List<Long> skuIds = new ArrayList<>();
+        for (Sku sku : skus) {
+            Sku skuForInventory = sku;
+            if (enableUseDefaultSkuInventory && ((ProductSkuUsage) sku.getProduct()).getUseDefaultSkuInInventory()){
+                skuForInventory = sku.getProduct().getDefaultSku();
+            }
+            if (skuForInventory.getId() != null && InventoryType.CHECK_QUANTITY.equals(skuForInventory.getInventoryType())) {
+                skuIds.add(skuForInventory.getId());
+            }
+        }
+        if (skuIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return reservationService.retrieveUnreservedQuantities(skuIds, getReservationId(context));
+    }
+
+    /**
+     * @return the reservation id for the order in the context, if any
+     */
+    protected String getReservationId(Map<String, Object> context) {
+        if (context != null && context.get(ORDER_KEY) instanceof Order) {
+            Order order = (Order) context.get(ORDER_KEY);
+            if (order.getId() != null) {
+                return String.valueOf(order.getId());
+            }
+        }
+        return null;
+    }
+
     //here
     @Override
     public boolean isAvailable(Sku sku, int quantity, Map<String, Object> context) {
@@ -207,6 +278,10 @@ public class InventoryServiceImpl implements ContextualInventoryService {
     }
 
     protected void decrementSku(Map<Sku, Integer> skuQuantities, Map<String, Object> context) throws InventoryUnavailableException {
+        if (atomicInventoryEnabled) {
+            decrementSkuAtomically(skuQuantities, context);
+            return;
+        }
         for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
             Sku sku = entry.getKey();
             Sku skuForInventory = sku;
@@ -258,7 +333,113 @@ public class InventoryServiceImpl implements ContextualInventoryService {
         }
     }
 
+    /**
+     * Decrement inventory with one conditional update per Sku, visiting Skus in id order so that concurrent
+     * multi-Sku checkouts always acquire row locks in the same order. A Sku without enough inventory fails the whole
+     * request, and the surrounding transaction rolls back any decrements already issued.
+     */
+    protected void decrementSkuAtomically(Map<Sku, Integer> skuQuantities, Map<String, Object> context) throws InventoryUnavailableException {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
+            Sku sku = entry.getKey();
+            Sku skuForInventory = sku;
+            if (enableUseDefaultSkuInventory && ((ProductSkuUsage) sku.getProduct()).getUseDefaultSkuInInventory()){
+                skuForInventory = sku.getProduct().getDefaultSku();
+            }
+            Integer quantity = entry.getValue();
+            if (quantity == null || quantity < 1) {
+                throw new IllegalArgumentException("Quantity " + quantity + " is not valid. Must be greater than zero and not null.");
+            }
+
+            if (checkBasicAvailablility(skuForInventory)) {
+                if (InventoryType.CHECK_QUANTITY.equals(skuForInventory.getInventoryType())) {
+                    Integer existing = quantities.get(skuForInventory.getId());
+                    quantities.put(skuForInventory.getId(), existing == null ? quantity : existing + quantity);
+                } else {
+                    LOG.info("Not decrementing inventory as the Sku has been marked as always available");
+                }
+            } else {
+                throw new InventoryUnavailableException("The Sku has been marked as unavailable", sku.getId(), quantity, 0);
+            }
+        }
+        List<Long> decremented = new ArrayList<>();
+        for (Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (!inventoryDao.decrementQuantityAvailable(entry.getKey(), entry.getValue())) {
+                Map<Long, Integer> current = inventoryDao.readQuantitiesAvailable(Arrays.asList(entry.getKey()));
+                if (current.containsKey(entry.getKey()) && current.get(entry.getKey()) == null) {
+                    //as with the entity based path, a Sku without a quantity is not decremented
+                    LOG.info("Not decrementing inventory as the Sku " + entry.getKey() + " does not have a quantity available");
+                    continue;
+                }
+                Integer inventoryAvailable = current.get(entry.getKey());
+                throw new InventoryUnavailableException("There was not enough inventory to fulfill this request.",
+                        entry.getKey(), entry.getValue(), inventoryAvailable == null ? 0 : inventoryAvailable);
+            }
+            decremented.add(entry.getKey());
+        }
+        refreshSkuInventory(decremented, getReservationId(context));
+    }
+
+    /**
+     * Increment inventory with one update per Sku, in Sku id order
+     */
+    protected void incrementSkuAtomically(Map<Sku, Integer> skuQuantities, Map<String, Object> context) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
+            Sku sku = entry.getKey();
+            Sku skuForInventory = sku;
+            if (enableUseDefaultSkuInventory && ((ProductSkuUsage) sku.getProduct()).getUseDefaultSkuInInventory()){
+                skuForInventory = sku.getProduct().getDefaultSku();
+            }
+            Integer quantity = entry.getValue();
+            if (quantity == null || quantity < 1) {
+                throw new IllegalArgumentException("Quantity " + quantity + " is not valid. Must be greater than zero and not null.");
+            }
+            if (InventoryType.CHECK_QUANTITY.equals(sku.getInventoryType())) {
+                Integer existing = quantities.get(skuForInventory.getId());
+                quantities.put(skuForInventory.getId(), existing == null ? quantity : existing + quantity);
+            } else {
+                LOG.info("Not incrementing inventory as the Sku has been marked as always available");
+            }
+        }
+        for (Entry<Long, Integer> entry : quantities.entrySet()) {
+            if (!inventoryDao.incrementQuantityAvailable(entry.getKey(), entry.getValue())) {
+                throw new IllegalArgumentException("The current inventory for Sku " + entry.getKey() + " is null");
+            }
+        }
+        refreshSkuInventory(quantities.keySet(), null);
+    }
+
+    /**
+     * Read back the quantities just written (the row locks are still held, so the values are exact) and push them
+     * into the availability counters once the transaction commits. The order's own cart reservation, if any, is
+     * released at the same time since the decrement now covers it.
+     */
+    protected void refreshSkuInventory(Collection<Long> skuIds, final String reservationId) {
+        if (skuIds.isEmpty()) {
+            return;
+        }
+        final Map<Long, Integer> updated = inventoryDao.readQuantitiesAvailable(skuIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    reservationService.refreshQuantities(updated);
+                    reservationService.releaseReservation(reservationId);
+                }
+            });
+        } else {
+            reservationService.refreshQuantities(updated);
+            reservationService.releaseReservation(reservationId);
+        }
+    }
+
     protected void incrementSku(Map<Sku, Integer> skuQuantities, Map<String, Object> context) {
+        if (atomicInventoryEnabled) {
+            incrementSkuAtomically(skuQuantities, context);
+            return;
+        }
         for (Entry<Sku, Integer> entry : skuQuantities.entrySet()) {
             Sku sku = entry.getKey();
 
@@ -429,8 +610,25 @@ public class InventoryServiceImpl implements ContextualInventoryService {
                 throw new InventoryUnavailableException(sku.getId(),
                         requestedQuantity, retrieveQuantityAvailable(sku, inventoryContext));
             }
+            if (atomicInventoryEnabled && cartReservationEnabled) {
+                reserveCartInventory(order, skuForInventory, requestedQuantity);
+            }
         }
 
         // the other case here is ALWAYS_AVAILABLE and null, which we are treating as being available
     }
+
+    /**
+     * Replace the order's reservation with the quantities currently in the cart, using the requested quantity for
+     * the Sku being checked. The reservation is released when inventory is decremented for the order, or expires
+     * after {@code inventory.reservation.ttl.ms}.
+     */
+    protected void reserveCartInventory(Order order, Sku sku, Integer requestedQuantity) throws InventoryUnavailableException {
+        if (order == null || order.getId() == null) {
+            return;
+        }
+        Map<Sku, Integer> quantities = buildSkuInventoryMap(order);
+        quantities.put(sku, requestedQuantity);
+        reservationService.reserveInventory(String.valueOf(order.getId()), quantities, 0L);
+    }
 }
@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node-local view of the inventory for a single Sku. Holds the last quantity read from (or written to) the database
+ * along with the total quantity currently held by unexpired cart reservations on this node.
+ */
+public class SkuAvailabilityCounter {
+
+    protected volatile Integer quantityAvailable;
+    protected volatile long refreshedTime;
+    protected final AtomicInteger reserved = new AtomicInteger();
+
+    public SkuAvailabilityCounter(Integer quantityAvailable, long refreshedTime) {
+        this.quantityAvailable = quantityAvailable;
+        this.refreshedTime = refreshedTime;
+    }
+
+    /**
+     * Record the latest quantity known to be in the database
+     */
+    public void refresh(Integer quantityAvailable, long refreshedTime) {
+        this.quantityAvailable = quantityAvailable;
+        this.refreshedTime = refreshedTime;
+    }
+
+    public boolean isStale(long now, long ttl) {
+        return now - refreshedTime >= ttl;
+    }
+
+    /**
+     * @param excludeReserved quantity reserved by the caller itself, which should not count against it
+     * @return the quantity still free for purchase, or null if the database quantity is null
+     */
+    public Integer getUnreservedQuantity(int excludeReserved) {
+        Integer available = quantityAvailable;
+        if (available == null) {
+            return null;
+        }
+        return Math.max(0, available - reserved.get() + excludeReserved);
+    }
+
+    /**
+     * Attempt to hold {@code quantity} units against this Sku. Succeeds only if the unreserved quantity covers the
+     * request.
+     */
+    public boolean tryReserve(int quantity) {
+        while (true) {
+            Integer available = quantityAvailable;
+            int current = reserved.get();
+            if (available == null || available - current < quantity) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + quantity)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(int quantity) {
+        while (true) {
+            int current = reserved.get();
+            if (reserved.compareAndSet(current, Math.max(0, current - quantity))) {
+                return;
+            }
+        }
+    }
+
+    public Integer getQuantityAvailable() {
+        return quantityAvailable;
+    }
+
+    public int getReserved() {
+        return reserved.get();
+    }
+
+    public long getRefreshedTime() {
+        return refreshedTime;
+    }
+}
@@ -0,0 +1,492 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.time.SystemTime;
+import org.broadleafcommerce.core.catalog.domain.Category;
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.BundleOrderItem;
+import org.broadleafcommerce.core.order.domain.DiscreteOrderItem;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An in-memory index of automatically added offers used by {@link OfferServiceImpl#buildOfferListForOrder(Order)} to
+ * skip offers that cannot apply to any item in the order before their rules are evaluated.
+ * <p>
+ * Order item offers whose target item rules require a specific category, product or SKU (for example
+ * {@code orderItem.?category.?name=="Shirts"} or {@code [1,2] contains orderItem.?sku.?id}) are indexed under those
+ * keys. Offers with rules that cannot be reduced to such keys, and order and fulfillment group offers, are always
+ * candidates. The index only narrows the list; every candidate is still evaluated by the offer processors, so an
+ * offer indexed under more keys than strictly necessary is harmless.
+ * <p>
+ * Entries are built the first time an offer is seen and rebuilt when the offer's type, dates or target rules change
+ * (offers edited in the admin do not go through {@link OfferService#save(Offer)}), after
+ * {@code offer.candidate.index.refresh.seconds}, or when the offer is saved through {@link OfferService#save(Offer)}.
+ */
+@Component("blOfferCandidateIndex")
+public class OfferCandidateIndex {
+
+    private static final Log LOG = LogFactory.getLog(OfferCandidateIndex.class);
+
+    protected static final long ONE_DAY_MILLIS = 24L * 60L * 60L * 1000L;
+
+    protected static final String ITEM_PATH = "(?:orderItem|discreteOrderItem)\\s*\\.\\??\\s*(category|product|sku)\\s*\\.\\??\\s*(id|name|url)";
+    protected static final String LITERAL = "\"[^\"]*\"|'[^']*'|-?\\d+[lL]?";
+    protected static final Pattern UPPER_CASE_CALL = Pattern.compile("MvelHelper\\s*\\.\\s*toUpperCase\\s*\\(([^()]*)\\)");
+    protected static final Pattern EQUALS_PATH_FIRST = Pattern.compile("^" + ITEM_PATH + "\\s*==\\s*(" + LITERAL + ")$");
+    protected static final Pattern EQUALS_LITERAL_FIRST = Pattern.compile("^(" + LITERAL + ")\\s*==\\s*" + ITEM_PATH + "$");
+    protected static final Pattern CONTAINS = Pattern.compile("^\\[(.*)\\]\\s*contains\\s+" + ITEM_PATH + "$");
+
+    @Value("${offer.candidate.index.enabled:false}")
+    protected boolean enabled = false;
+
+    @Value("${offer.candidate.index.refresh.seconds:300}")
+    protected int refreshSeconds = 300;
+
+    protected final ConcurrentMap<Long, OfferIndexEntry> entries = new ConcurrentHashMap<Long, OfferIndexEntry>();
+
+    protected final LongAdder offersConsidered = new LongAdder();
+    protected final LongAdder offersSkipped = new LongAdder();
+
+    /**
+     * Returns the offers from the given list that could apply to the order, preserving their order.
+     *
+     * @param offers automatically added offers
+     * @param order the order being priced
+     * @return the candidate offers
+     */
+    public List<Offer> filterCandidateOffers(List<Offer> offers, Order order) {
+        if (!enabled || offers.isEmpty()) {
+            return offers;
+        }
+        Set<String> orderKeys = buildOrderKeys(order);
+        long now = SystemTime.asMillis();
+
+        List<Offer> candidates = new ArrayList<Offer>(offers.size());
+        for (Offer offer : offers) {
+            if (offer.getId() == null) {
+                candidates.add(offer);
+                continue;
+            }
+            OfferIndexEntry entry = getEntry(offer, now);
+            if (entry.isWithinDateWindow(now) && (entry.isUnrestricted() || !Collections.disjoint(entry.getKeys(), orderKeys))) {
+                candidates.add(offer);
+            }
+        }
+
+        offersConsidered.add(offers.size());
+        offersSkipped.add(offers.size() - candidates.size());
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Narrowed " + offers.size() + " automatic offers to " + candidates.size() + " candidates for order "
+                    + order.getId());
+        }
+        return candidates;
+    }
+
+    /**
+     * Removes the entry for the given offer so that it is indexed again the next time it is seen.
+     */
+    public void invalidate(Long offerId) {
+        if (offerId != null) {
+            entries.remove(offerId);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    protected OfferIndexEntry getEntry(Offer offer, long now) {
+        OfferIndexEntry entry = entries.get(offer.getId());
+        int signature = computeSignature(offer);
+        if (entry == null || entry.getSignature() != signature
+                || (refreshSeconds >= 0 && now - entry.getIndexedTime() > refreshSeconds * 1000L)) {
+            entry = buildEntry(offer, signature, now);
+            entries.put(offer.getId(), entry);
+        }
+        return entry;
+    }
+
+    protected OfferIndexEntry buildEntry(Offer offer, int signature, long now) {
+        Set<String> keys = null;
+        if (OfferType.ORDER_ITEM.equals(offer.getType())) {
+            keys = extractTargetKeys(offer);
+        }
+        return new OfferIndexEntry(offer.getId(), offer.getType(), offer.getStartDate(), offer.getEndDate(), keys,
+                signature, now);
+    }
+
+    /**
+     * {@link Offer} has no last updated date, so an entry is stamped with a hash of everything it is built from. Any
+     * edit to the offer's type, dates or target rules changes the hash and the entry is rebuilt the next time the offer
+     * is priced.
+     */
+    protected int computeSignature(Offer offer) {
+        int signature = String.valueOf(offer.getType()).hashCode();
+        signature = 31 * signature + (offer.getStartDate() == null ? 0 : Long.hashCode(offer.getStartDate().getTime()));
+        signature = 31 * signature + (offer.getEndDate() == null ? 0 : Long.hashCode(offer.getEndDate().getTime()));
+        Set<OfferTargetCriteriaXref> targetCriteria = offer.getTargetItemCriteriaXref();
+        if (targetCriteria != null) {
+            int rules = 0;
+            for (OfferTargetCriteriaXref xref : targetCriteria) {
+                OfferItemCriteria criteria = xref.getOfferItemCriteria();
+                if (criteria != null && criteria.getMatchRule() != null) {
+                    // the target criteria are a set, so combine the rules without regard to their order
+                    rules += criteria.getMatchRule().hashCode();
+                }
+            }
+            signature = 31 * signature + rules;
+        }
+        return signature;
+    }
+
+    /**
+     * Every target criteria must be met by some item for an item offer to apply, so the keys of any one criteria whose
+     * rule can be reduced to keys are enough to rule the offer out.
+     *
+     * @return the keys, or null if the offer cannot be narrowed by key
+     */
+    protected Set<String> extractTargetKeys(Offer offer) {
+        Set<OfferTargetCriteriaXref> targetCriteria = offer.getTargetItemCriteriaXref();
+        if (targetCriteria == null) {
+            return null;
+        }
+        for (OfferTargetCriteriaXref xref : targetCriteria) {
+            OfferItemCriteria criteria = xref.getOfferItemCriteria();
+            if (criteria != null && criteria.getMatchRule() != null) {
+                Set<String> keys = extractRuleKeys(criteria.getMatchRule());
+                if (keys != null) {
+                    return keys;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reduces an item rule to the set of keys, one of which an item must have to satisfy the rule.
+     *
+     * @return the keys, or null if the rule cannot be reduced
+     */
+    protected Set<String> extractRuleKeys(String rule) {
+        String expression = stripOuterParentheses(rule.trim());
+        if (expression.isEmpty()) {
+            return null;
+        }
+
+        List<String> alternatives = splitTopLevel(expression, "||");
+        if (alternatives.size() > 1) {
+            Set<String> keys = new HashSet<String>();
+            for (String alternative : alternatives) {
+                Set<String> alternativeKeys = extractRuleKeys(alternative);
+                if (alternativeKeys == null) {
+                    return null;
+                }
+                keys.addAll(alternativeKeys);
+            }
+            return keys;
+        }
+
+        List<String> conjuncts = splitTopLevel(expression, "&&");
+        if (conjuncts.size() > 1) {
+            for (String conjunct : conjuncts) {
+                Set<String> conjunctKeys = extractRuleKeys(conjunct);
+                if (conjunctKeys != null) {
+                    return conjunctKeys;
+                }
+            }
+            return null;
+        }
+
+        return extractComparisonKeys(expression);
+    }
+
+    protected Set<String> extractComparisonKeys(String expression) {
+        String normalized = UPPER_CASE_CALL.matcher(expression).replaceAll("$1").trim();
+
+        Matcher m = EQUALS_PATH_FIRST.matcher(normalized);
+        if (m.matches()) {
+            return buildKeySet(m.group(1), m.group(2), Collections.singletonList(m.group(3)));
+        }
+        m = EQUALS_LITERAL_FIRST.matcher(normalized);
+        if (m.matches()) {
+            return buildKeySet(m.group(2), m.group(3), Collections.singletonList(m.group(1)));
+        }
+        m = CONTAINS.matcher(normalized);
+        if (m.matches()) {
+            List<String> literals = splitTopLevel(m.group(1), ",");
+            for (String literal : literals) {
+                if (!literal.trim().matches(LITERAL)) {
+                    return null;
+                }
+            }
+            return buildKeySet(m.group(2), m.group(3), literals);
+        }
+        return null;
+    }
+
+    protected Set<String> buildKeySet(String entity, String property, List<String> literals) {
+        if (!"category".equals(entity) && !"id".equals(property)) {
+            // products and skus are only indexed by id
+            return null;
+        }
+        Set<String> keys = new HashSet<String>();
+        for (String literal : literals) {
+            keys.add(buildKey(entity, property, unquote(literal.trim())));
+        }
+        return keys;
+    }
+
+    protected String unquote(String literal) {
+        if (literal.startsWith("\"") || literal.startsWith("'")) {
+            return literal.substring(1, literal.length() - 1);
+        }
+        if (literal.endsWith("l") || literal.endsWith("L")) {
+            return literal.substring(0, literal.length() - 1);
+        }
+        return literal;
+    }
+
+    protected String buildKey(String entity, String property, Object value) {
+        String stringValue = String.valueOf(value).trim();
+        if (!"id".equals(property)) {
+            // Name and url comparisons are commonly case-insensitive, so index them that way; a case-sensitive rule
+            // simply ends up with an extra candidate
+            stringValue = stringValue.toUpperCase();
+        }
+        return entity + "." + property + ":" + stringValue;
+    }
+
+    protected Set<String> buildOrderKeys(Order order) {
+        Set<String> keys = new HashSet<String>();
+        if (order.getOrderItems() != null) {
+            for (OrderItem orderItem : order.getOrderItems()) {
+                addOrderItemKeys(orderItem, keys);
+            }
+        }
+        return keys;
+    }
+
+    protected void addOrderItemKeys(OrderItem orderItem, Set<String> keys) {
+        Category category = orderItem.getCategory();
+        if (category != null) {
+            if (category.getId() != null) {
+                keys.add(buildKey("category", "id", category.getId()));
+            }
+            if (category.getName() != null) {
+                keys.add(buildKey("category", "name", category.getName()));
+            }
+            if (category.getUrl() != null) {
+                keys.add(buildKey("category", "url", category.getUrl()));
+            }
+        }
+        Sku sku = null;
+        Product product = null;
+        if (orderItem instanceof DiscreteOrderItem) {
+            sku = ((DiscreteOrderItem) orderItem).getSku();
+            product = ((DiscreteOrderItem) orderItem).getProduct();
+        } else if (orderItem instanceof BundleOrderItem) {
+            BundleOrderItem bundleOrderItem = (BundleOrderItem) orderItem;
+            sku = bundleOrderItem.getSku();
+            product = bundleOrderItem.getProduct();
+            for (DiscreteOrderItem discreteOrderItem : bundleOrderItem.getDiscreteOrderItems()) {
+                addOrderItemKeys(discreteOrderItem, keys);
+            }
+        }
+        if (sku != null && sku.getId() != null) {
+            keys.add(buildKey("sku", "id", sku.getId()));
+        }
+        if (product != null && product.getId() != null) {
+            keys.add(buildKey("product", "id", product.getId()));
+        }
+        if (orderItem.getChildOrderItems() != null) {
+            for (OrderItem child : orderItem.getChildOrderItems()) {
+                addOrderItemKeys(child, keys);
+            }
+        }
+    }
+
+    protected String stripOuterParentheses(String expression) {
+        while (expression.startsWith("(") && expression.endsWith(")") && closingParenthesis(expression) == expression.length() - 1) {
+            expression = expression.substring(1, expression.length() - 1).trim();
+        }
+        return expression;
+    }
+
+    protected int closingParenthesis(String expression) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits the expression on the given operator wherever it appears outside of parentheses, brackets and string
+     * literals.
+     */
+    protected List<String> splitTopLevel(String expression, String operator) {
+        List<String> parts = new ArrayList<String>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '(' || c == '[') {
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth--;
+            } else if (depth == 0 && expression.startsWith(operator, i)) {
+                parts.add(expression.substring(start, i).trim());
+                i += operator.length() - 1;
+                start = i + 1;
+            }
+        }
+        parts.add(expression.substring(start).trim());
+        return parts;
+    }
+
+    public int getIndexedOfferCount() {
+        return entries.size();
+    }
+
+    public long getOffersConsidered() {
+        return offersConsidered.sum();
+    }
+
+    public long getOffersSkipped() {
+        return offersSkipped.sum();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * What the index knows about a single offer.
+     */
+    public static class OfferIndexEntry {
+
+        protected final Long offerId;
+        protected final OfferType type;
+        protected final Date startDate;
+        protected final Date endDate;
+        protected final Set<String> keys;
+        protected final int signature;
+        protected final long indexedTime;
+
+        public OfferIndexEntry(Long offerId, OfferType type, Date startDate, Date endDate, Set<String> keys, int signature,
+                long indexedTime) {
+            this.offerId = offerId;
+            this.type = type;
+            this.startDate = startDate == null ? null : new Date(startDate.getTime());
+            this.endDate = endDate == null ? null : new Date(endDate.getTime());
+            this.keys = keys == null ? null : Collections.unmodifiableSet(keys);
+            this.signature = signature;
+            this.indexedTime = indexedTime;
+        }
+
+        /**
+         * Uses the same one day tolerance as {@code OfferDao#readOffersByAutomaticDeliveryType()}; the offer processors
+         * make the exact, time zone aware date check.
+         */
+        public boolean isWithinDateWindow(long now) {
+            return (startDate == null || startDate.getTime() < now + ONE_DAY_MILLIS)
+                    && (endDate == null || endDate.getTime() > now - ONE_DAY_MILLIS);
+        }
+
+        public boolean isUnrestricted() {
+            return keys == null;
+        }
+
+        public Long getOfferId() {
+            return offerId;
+        }
+
+        public OfferType getType() {
+            return type;
+        }
+
+        public Date getStartDate() {
+            return startDate;
+        }
+
+        public Date getEndDate() {
+            return endDate;
+        }
+
+        public Set<String> getKeys() {
+            return keys;
+        }
+
+        public int getSignature() {
+            return signature;
+        }
+
+        public long getIndexedTime() {
+            return indexedTime;
+        }
+    }
+}
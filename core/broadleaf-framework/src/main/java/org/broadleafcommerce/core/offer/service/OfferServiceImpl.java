@@ -108,6 +108,9 @@ public class OfferServiceImpl implements OfferService {
     @Resource(name = "blOrderService")
     protected OrderService orderService;
 
+    @Resource(name = "blOfferCandidateIndex")
+    protected OfferCandidateIndex offerCandidateIndex;
+
     @Resource(name = "blSandBoxHelper")
     protected SandBoxHelper sandBoxHelper;
 
@@ -134,7 +137,11 @@ public class OfferServiceImpl implements OfferService {
     @Override
     @Transactional("blTransactionManager")
     public Offer save(Offer offer) {
-        return offerDao.save(offer);
+        Offer saved = offerDao.save(offer);
+        if (offerCandidateIndex != null) {
+            offerCandidateIndex.invalidate(saved.getId());
+        }
+        return saved;
     }
 
     @Override
@@ -195,23 +202,30 @@ public class OfferServiceImpl implements OfferService {
     @Override
     public List<Offer> buildOfferListForOrder(Order order) {
         List<Offer> offers = new ArrayList<Offer>();
+        Set<Offer> addedOffers = new HashSet<Offer>();
         List<CustomerOffer> customerOffers = lookupOfferCustomerByCustomer(order.getCustomer());
         for (CustomerOffer customerOffer : customerOffers) {
-            if (!offers.contains(customerOffer.getOffer())) {
+            if (addedOffers.add(customerOffer.getOffer())) {
                 offers.add(customerOffer.getOffer());
             }
         }
         List<OfferCode> orderOfferCodes = refreshOfferCodesIfApplicable(order);
         orderOfferCodes = removeOutOfDateOfferCodes(orderOfferCodes);
         for (OfferCode orderOfferCode : orderOfferCodes) {
-            if (!offers.contains(orderOfferCode.getOffer())) {
+            if (addedOffers.add(orderOfferCode.getOffer())) {
                 offers.add(orderOfferCode.getOffer());
             }
+            int sizeBeforeExtension = offers.size();
             extensionManager.getProxy().addAdditionalOffersForCode(offers, orderOfferCode);
+            addedOffers.addAll(offers.subList(sizeBeforeExtension, offers.size()));
         }
         List<Offer> globalOffers = lookupAutomaticDeliveryOffers();
+        if (offerCandidateIndex != null) {
+            globalOffers = offerCandidateIndex.filterCandidateOffers(globalOffers, order);
+        }
         for (Offer globalOffer : globalOffers) {
-            if (!offers.contains(globalOffer) && verifyMaxCustomerUsageThreshold(order, globalOffer)) {
+            if (!addedOffers.contains(globalOffer) && verifyMaxCustomerUsageThreshold(order, globalOffer)) {
+                addedOffers.add(globalOffer);
                 offers.add(globalOffer);
             }
         }
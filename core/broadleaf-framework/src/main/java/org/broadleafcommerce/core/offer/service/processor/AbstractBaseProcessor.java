@@ -19,13 +19,14 @@ package org.broadleafcommerce.core.offer.service.processor;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.collections4.Predicate;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.RequestDTO;
 import org.broadleafcommerce.common.TimeDTO;
 import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.rule.CompiledRuleCache;
+import org.broadleafcommerce.common.rule.DefaultCompiledRuleCache;
 import org.broadleafcommerce.common.rule.MvelHelper;
 import org.broadleafcommerce.common.time.SystemTime;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
@@ -69,7 +70,7 @@ import javax.annotation.Resource;
 public abstract class AbstractBaseProcessor implements BaseProcessor {
 
     private static final Log LOG = LogFactory.getLog(AbstractBaseProcessor.class);
-    private static final Map EXPRESSION_CACHE = new LRUMap(1000);
+    private static final CompiledRuleCache EXPRESSION_CACHE = new DefaultCompiledRuleCache("offerRules", 1000);
 
     @Resource(name = "blOfferTimeZoneProcessor")
     protected OfferTimeZoneProcessor offerTimeZoneProcessor;
@@ -294,10 +295,17 @@ public abstract class AbstractBaseProcessor implements BaseProcessor {
         expression = usePriceBeforeAdjustments(expression);
         contextImports.put("OfferType", OfferType.class);
         contextImports.put("FulfillmentType", FulfillmentType.class);
-        return MvelHelper.evaluateRule(expression, vars, EXPRESSION_CACHE, contextImports);
+        return MvelHelper.evaluateRule(expression, vars, getExpressionCache(), contextImports);
 
     }
 
+    /**
+     * @return the cache of compiled offer rules used by {@link #executeExpression(String, Map)}
+     */
+    protected CompiledRuleCache getExpressionCache() {
+        return EXPRESSION_CACHE;
+    }
+
     protected String usePriceBeforeAdjustments(String expression) {
         return expression.replace("?price.", "?getPriceBeforeAdjustments(true).");
     }
@@ -81,6 +81,7 @@ import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -197,6 +198,21 @@ public class OrderServiceImpl implements OrderService {
     @Value("${auto.flush.on.query.during.cart.pricing.save:false}")
     protected boolean autoFlushSaveCart = false;
 
+    /**
+     * Advanced setting. When true, an order save that prices the order persists, prices and saves the order in a single
+     * transaction with a single, JDBC batched flush at the end, rather than committing the order before and after pricing.
+     * Hibernate dirty checking limits the flush to the OrderItems, PriceDetails, adjustments and other entities whose
+     * state was actually changed by the cart operation and the pricing workflow.
+     */
+    @Value("${pricing.single.flush.enabled:false}")
+    protected boolean singleFlushPricing = false;
+
+    /**
+     * The JDBC batch size used for the flush performed when {@link #singleFlushPricing} is enabled
+     */
+    @Value("${pricing.single.flush.jdbc.batch.size:50}")
+    protected int singleFlushJdbcBatchSize = 50;
+
     @PersistenceContext(unitName="blPU")
     protected EntityManager em;
 
@@ -332,6 +348,26 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public Order save(Order order, Boolean priceOrder) throws PricingException {
+        if (priceOrder && singleFlushPricing) {
+            try {
+                return saveWithSingleFlush(order);
+            } catch (RuntimeException ex) {
+                if (!isLockAcquisitionFailure(ex) || TransactionSynchronizationManager.isActualTransactionActive()) {
+                    throw ex;
+                }
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Problem acquiring lock during single flush pricing of order (" + order.getId() + "). Retrying with separate pricing transactions.");
+                }
+                //the single flush transaction was rolled back, so start over from the persisted state
+                if (order.getId() != null) {
+                    Order persisted = findOrderById(order.getId());
+                    if (persisted != null) {
+                        order = persisted;
+                    }
+                }
+            }
+        }
+
         //persist the order first
         TransactionStatus status = TransactionUtils.createTransaction("saveOrder",
                     TransactionDefinition.PROPAGATION_REQUIRED, transactionManager);
@@ -360,18 +396,7 @@ public class OrderServiceImpl implements OrderService {
                     order = pricingService.executePricing(order);
                     isValid = true;
                 } catch (Exception ex) {
-                    boolean isValidCause = false;
-                    Throwable cause = ex;
-                    while (!isValidCause) {
-                        if (cause.getClass().equals(LockAcquisitionException.class)) {
-                            isValidCause = true;
-                        }
-                        cause = cause.getCause();
-                        if (cause == null) {
-                            break;
-                        }
-                    }
-                    if (isValidCause) {
+                    if (isLockAcquisitionFailure(ex)) {
                         if (LOG.isInfoEnabled()) {
                             LOG.info("Problem acquiring lock during pricing call - attempting to price again.");
                         }
@@ -442,6 +467,58 @@ public class OrderServiceImpl implements OrderService {
         return order;
     }
     
+    /**
+     * Persist, price and save the order in a single transaction. Unless {@link #autoFlushSaveCart} is enabled, the session
+     * is kept in manual flush mode for the whole unit of work so that nothing is written until the final, JDBC batched
+     * flush, at which point Hibernate's dirty checking writes only the entities that differ from their loaded state.
+     */
+    protected Order saveWithSingleFlush(Order order) throws PricingException {
+        TransactionStatus status = TransactionUtils.createTransaction("saveAndPriceOrder",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager);
+        Session session = em.unwrap(Session.class);
+        FlushMode currentFlushMode = session.getHibernateFlushMode();
+        Integer currentBatchSize = session.getJdbcBatchSize();
+        try {
+            if (!autoFlushSaveCart) {
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+            }
+            session.setJdbcBatchSize(singleFlushJdbcBatchSize);
+            order = persist(order);
+            order = pricingService.executePricing(order);
+            order = persist(order);
+
+            if (extensionManager != null) {
+                extensionManager.getProxy().attachAdditionalDataToOrder(order, true);
+            }
+            session.flush();
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+        } catch (PricingException ex) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw ex;
+        } catch (RuntimeException ex) {
+            TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            throw ex;
+        } finally {
+            if (!autoFlushSaveCart) {
+                session.setHibernateFlushMode(currentFlushMode);
+            }
+            session.setJdbcBatchSize(currentBatchSize);
+        }
+
+        return order;
+    }
+
+    protected boolean isLockAcquisitionFailure(Throwable ex) {
+        Throwable cause = ex;
+        while (cause != null) {
+            if (cause.getClass().equals(LockAcquisitionException.class)) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
     // This method exists to provide OrderService methods the ability to save an order
     // without having to worry about a PricingException being thrown.
     protected Order persist(Order order) {
@@ -19,6 +19,7 @@ package org.broadleafcommerce.core.search.domain;
 
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductListingView;
 
 import java.util.List;
 
@@ -30,6 +31,8 @@ import java.util.List;
 public class SearchResult {
     
     protected List<Product> products;
+    protected ProductLoader productLoader;
+    protected List<ProductListingView> listingViews;
     protected List<SearchFacetDTO> facets;
     
     protected Integer totalResults;
@@ -38,12 +41,41 @@ public class SearchResult {
 
     protected QueryResponse queryResponse;
 
+    /**
+     * If the result was hydrated with {@link #getListingViews() listing views}, the Product entities are only loaded
+     * the first time this is called.
+     */
     public List<Product> getProducts() {
+        if (products == null && productLoader != null) {
+            ProductLoader loader = productLoader;
+            productLoader = null;
+            products = loader.loadProducts();
+        }
         return products;
     }
 
     public void setProducts(List<Product> products) {
         this.products = products;
+        this.productLoader = null;
+    }
+
+    /**
+     * Defer loading the Product entities of this result until {@link #getProducts()} is called
+     */
+    public void setProductLoader(ProductLoader productLoader) {
+        this.productLoader = productLoader;
+    }
+
+    /**
+     * @return lightweight, cached projections of the products in this result, in result order, or null if the result
+     * was not hydrated with listing views
+     */
+    public List<ProductListingView> getListingViews() {
+        return listingViews;
+    }
+
+    public void setListingViews(List<ProductListingView> listingViews) {
+        this.listingViews = listingViews;
     }
 
     public List<SearchFacetDTO> getFacets() {
@@ -79,7 +111,7 @@ public class SearchResult {
     }
     
     public Integer getStartResult() {
-        return (products == null || products.size() == 0) ? 0 : ((page - 1) * pageSize) + 1;
+        return getResultCount() == 0 ? 0 : ((page - 1) * pageSize) + 1;
     }
     
     public Integer getEndResult() {
@@ -87,7 +119,17 @@ public class SearchResult {
     }
     
     public Integer getTotalPages() {
-        return (products == null || products.size() == 0) ? 1 : (int) Math.ceil(totalResults * 1.0 / pageSize);
+        return getResultCount() == 0 ? 1 : (int) Math.ceil(totalResults * 1.0 / pageSize);
+    }
+
+    /**
+     * @return the number of products in this page of results, without forcing the Product entities to load
+     */
+    protected int getResultCount() {
+        if (products == null && listingViews != null) {
+            return listingViews.size();
+        }
+        return products == null ? 0 : products.size();
     }
 
     public QueryResponse getQueryResponse() {
@@ -97,4 +139,12 @@ public class SearchResult {
     public void setQueryResponse(QueryResponse queryResponse) {
         this.queryResponse = queryResponse;
     }
+
+    /**
+     * Loads the full Product entities of a result on demand
+     */
+    public interface ProductLoader {
+
+        List<Product> loadProducts();
+    }
 }
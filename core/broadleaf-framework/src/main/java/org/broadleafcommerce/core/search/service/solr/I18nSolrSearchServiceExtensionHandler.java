@@ -68,7 +68,7 @@ public class I18nSolrSearchServiceExtensionHandler extends AbstractSolrSearchSer
             }
         }
         if (shouldAdd) {
-            extensionManager.getHandlers().add(this);
+            extensionManager.registerHandler(this);
         }
     }
 
@@ -32,12 +32,16 @@ import org.broadleafcommerce.common.extension.ExtensionResultHolder;
 import org.broadleafcommerce.common.extension.ExtensionResultStatusType;
 import org.broadleafcommerce.common.locale.domain.Locale;
 import org.broadleafcommerce.common.web.BroadleafRequestContext;
+import org.broadleafcommerce.core.catalog.dao.CatalogHierarchySnapshot;
 import org.broadleafcommerce.core.catalog.dao.ProductDao;
 import org.broadleafcommerce.core.catalog.dao.SkuDao;
 import org.broadleafcommerce.core.catalog.domain.Category;
 import org.broadleafcommerce.core.catalog.domain.CategoryProductXref;
 import org.broadleafcommerce.core.catalog.domain.CategoryXref;
 import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductListingView;
+import org.broadleafcommerce.core.catalog.service.CatalogHierarchyService;
+import org.broadleafcommerce.core.catalog.service.ProductListingViewService;
 import org.broadleafcommerce.core.search.dao.FieldDao;
 import org.broadleafcommerce.core.search.dao.IndexFieldDao;
 import org.broadleafcommerce.core.search.dao.SearchFacetDao;
@@ -64,11 +68,13 @@ import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.annotation.Resource;
 
@@ -102,6 +108,12 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
     @Resource(name = "blSolrHelperService")
     protected SolrHelperService shs;
 
+    @Resource(name = "blCatalogHierarchyService")
+    protected CatalogHierarchyService catalogHierarchyService;
+
+    @Resource(name = "blProductListingViewService")
+    protected ProductListingViewService productListingViewService;
+
     @Resource(name = "blIndexFieldDao")
     protected IndexFieldDao indexFieldDao;
 
@@ -277,17 +289,78 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         result.setQueryResponse(response);
         setPagingAttributes(result, numResults, searchCriteria);
 
-        // Get the products
-        List<Product> products = getProducts(responseDocuments);
-        if (products != null && searchCriteria.getCategory() != null) {
-            filterProductsBasedOnInactiveCategory(products, searchCriteria.getCategory());
+        // Get the products, preferring cached listing views and deferring entity loading until it is asked for
+        List<ProductListingView> listingViews = getListingViews(responseDocuments, searchCriteria);
+        if (listingViews != null) {
+            result.setListingViews(listingViews);
+            result.setProductLoader(buildProductLoader(responseDocuments, listingViews));
+        } else {
+            List<Product> products = getProducts(responseDocuments);
+            if (products != null && searchCriteria.getCategory() != null) {
+                filterProductsBasedOnInactiveCategory(products, searchCriteria.getCategory());
+            }
+            result.setProducts(products);
         }
-        result.setProducts(products);
 
         return result;
     }
 
+    /**
+     * Reads the listing views for the search results and applies the same inactive category filtering as
+     * {@link #filterProductsBasedOnInactiveCategory(List, Category)} using the catalog hierarchy snapshot.
+     *
+     * @return the listing views, or null if the result should be hydrated with Product entities instead
+     */
+    protected List<ProductListingView> getListingViews(List<SolrDocument> responseDocuments, SearchCriteria searchCriteria) {
+        List<ProductListingView> listingViews = productListingViewService.findListingViews(getProductIds(responseDocuments));
+        if (listingViews == null || searchCriteria.getCategory() == null) {
+            return listingViews;
+        }
+        CatalogHierarchySnapshot snapshot = catalogHierarchyService.getSnapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        long now = catalogHierarchyService.getCurrentTime();
+        Iterator<ProductListingView> iterator = listingViews.iterator();
+        while (iterator.hasNext()) {
+            Long defaultCategoryId = iterator.next().getDefaultCategoryId();
+            if (defaultCategoryId != null && !snapshot.isActiveUpTo(defaultCategoryId, searchCriteria.getCategory().getId(), now)) {
+                iterator.remove();
+            }
+        }
+        return listingViews;
+    }
+
+    /**
+     * @return a loader for the full Product entities of the given listing views, used only if a caller (e.g. a
+     * template) asks the {@link SearchResult} for its products
+     */
+    protected SearchResult.ProductLoader buildProductLoader(final List<SolrDocument> responseDocuments, List<ProductListingView> listingViews) {
+        final Set<Long> productIds = new HashSet<>();
+        for (ProductListingView view : listingViews) {
+            productIds.add(view.getProductId());
+        }
+        return new SearchResult.ProductLoader() {
+
+            @Override
+            public List<Product> loadProducts() {
+                List<Product> products = getProducts(responseDocuments);
+                if (products != null) {
+                    Iterator<Product> iterator = products.iterator();
+                    while (iterator.hasNext()) {
+                        if (!productIds.contains(shs.getIndexableId(iterator.next()))) {
+                            iterator.remove();
+                        }
+                    }
+                }
+                return products;
+            }
+        };
+    }
+
     protected void filterProductsBasedOnInactiveCategory(List<Product> products, Category category) {
+        CatalogHierarchySnapshot snapshot = catalogHierarchyService.getSnapshot();
+        long now = catalogHierarchyService.getCurrentTime();
         Iterator<Product> iterator = products.iterator();
         while (iterator.hasNext()) {
             Product product = iterator.next();
@@ -298,7 +371,12 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
             } else {
                 defaultParent = Optional.of(product.getAllParentCategoryXrefs().get(0));
             }
-            if (defaultParent.isPresent() && defaultParent.get().getCategory().isActive()) {
+            if (defaultParent.isPresent() && snapshot != null && snapshot.contains(defaultParent.get().getCategory().getId())) {
+                // walk the shared hierarchy snapshot rather than loading each ancestor's parent xrefs
+                if (!snapshot.isActiveUpTo(defaultParent.get().getCategory().getId(), category.getId(), now)) {
+                    iterator.remove();
+                }
+            } else if (defaultParent.isPresent() && defaultParent.get().getCategory().isActive()) {
                 Category parentCategory = defaultParent.get().getCategory();
                 while (parentCategory != null && !Objects.equals(parentCategory.getId(), category.getId())) {
                     if (!parentCategory.isActive()) {
@@ -575,10 +653,7 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
      * @return the actual Product instances as a result of the search
      */
     protected List<Product> getProducts(List<SolrDocument> responseDocuments) {
-        final List<Long> productIds = new ArrayList<>();
-        for (SolrDocument doc : responseDocuments) {
-            productIds.add((Long) doc.getFieldValue(shs.getIndexableIdFieldName()));
-        }
+        final List<Long> productIds = getProductIds(responseDocuments);
 
         List<Product> products = productDao.readProductsByIds(productIds);
 
@@ -601,6 +676,14 @@ public class SolrSearchServiceImpl implements SearchService, DisposableBean {
         return products;
     }
 
+    protected List<Long> getProductIds(List<SolrDocument> responseDocuments) {
+        List<Long> productIds = new ArrayList<>();
+        for (SolrDocument doc : responseDocuments) {
+            productIds.add((Long) doc.getFieldValue(shs.getIndexableIdFieldName()));
+        }
+        return productIds;
+    }
+
     /**
      * Create the wrapper DTO around the SearchFacet
      * 
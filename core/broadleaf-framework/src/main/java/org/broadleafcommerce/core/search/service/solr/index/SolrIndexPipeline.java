@@ -0,0 +1,377 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.core.catalog.domain.Indexable;
+import org.broadleafcommerce.core.search.dao.CatalogStructure;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipelined full reindex used by {@link SolrIndexServiceImpl} when <code>solr.index.pipeline.enabled</code> is true.
+ * <p>
+ * The work is split into three stages connected by bounded queues:
+ * <ol>
+ * <li>the calling thread reads pages of ids using keyset pagination</li>
+ * <li>a pool of builder threads loads each page and builds its documents, each thread with its own read-only
+ * transaction per page and its own {@link SolrIndexCachedOperation} cache</li>
+ * <li>a single sender thread batches the built documents and adds them to the reindex collection</li>
+ * </ol>
+ * The bounded queues provide backpressure: a slow Solr server stalls the builders, which in turn stalls the reader,
+ * so memory use stays constant regardless of catalog size. Nothing is committed by the pipeline itself; the caller
+ * is expected to issue a single commit once {@link #execute(int)} returns.
+ * <p>
+ * The {@link SolrIndexOperation} hooks are called as in {@link SolrIndexServiceImpl#executeSolrIndexOperation(SolrIndexOperation)}:
+ * the count hooks once, on the calling thread, the read hooks around each page of ids read by the reader, and the
+ * build page hooks around each page loaded and built by a builder. Since pages are built in parallel, the build page
+ * hooks of different pages can run concurrently on different builder threads.
+ */
+public class SolrIndexPipeline {
+
+    private static final Log LOG = LogFactory.getLog(SolrIndexPipeline.class);
+
+    protected static final List<Long> END_OF_IDS = Collections.emptyList();
+    protected static final Collection<SolrInputDocument> END_OF_DOCUMENTS = Collections.emptyList();
+    protected static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    protected final SolrIndexServiceImpl indexService;
+    protected final SolrIndexOperation operation;
+    protected final String collection;
+    protected final SolrClient solrServer;
+    protected final int builderThreads;
+    protected final int sendBatchSize;
+
+    protected final BlockingQueue<List<Long>> idQueue;
+    protected final BlockingQueue<Collection<SolrInputDocument>> documentQueue;
+    protected final AtomicReference<Throwable> failure = new AtomicReference<>();
+    protected final SolrIndexPipelineStatistics statistics = new SolrIndexPipelineStatistics();
+
+    public SolrIndexPipeline(SolrIndexServiceImpl indexService, SolrIndexOperation operation, String collection,
+            SolrClient solrServer, int builderThreads, int maxPendingPages, int maxPendingBatches, int sendBatchSize) {
+        this.indexService = indexService;
+        this.operation = operation;
+        this.collection = collection;
+        this.solrServer = solrServer;
+        this.builderThreads = Math.max(1, builderThreads);
+        this.sendBatchSize = Math.max(1, sendBatchSize);
+        this.idQueue = new ArrayBlockingQueue<>(Math.max(1, maxPendingPages));
+        this.documentQueue = new ArrayBlockingQueue<>(Math.max(1, maxPendingBatches));
+    }
+
+    /**
+     * Runs the pipeline to completion, reading the ids on the calling thread.
+     *
+     * @param pageSize the number of ids read, and documents built, per page
+     * @return the statistics gathered for each stage
+     * @throws ServiceException if any of the stages failed
+     */
+    public SolrIndexPipelineStatistics execute(int pageSize) throws ServiceException {
+        countIndexables();
+        final Object[] pack = indexService.saveState();
+        ExecutorService executor = Executors.newFixedThreadPool(builderThreads + 1, new PipelineThreadFactory());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < builderThreads; i++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        runBuilder(pack);
+                    }
+                }));
+            }
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runSender();
+                }
+            }));
+
+            runReader(pageSize);
+
+            for (Future<?> future : futures) {
+                waitFor(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Throwable t = failure.get();
+        if (t != null) {
+            if (t instanceof ServiceException) {
+                throw (ServiceException) t;
+            }
+            throw new ServiceException("Could not rebuild index", t);
+        }
+        return statistics;
+    }
+
+    protected void countIndexables() throws ServiceException {
+        Long numItemsToIndex;
+        try {
+            operation.beforeCountIndexables();
+            numItemsToIndex = operation.countIndexables();
+        } finally {
+            operation.afterCountIndexables();
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("There are at most " + numItemsToIndex + " items to index");
+        }
+    }
+
+    protected void runReader(int pageSize) {
+        try {
+            Long lastId = null;
+            while (!isFailed()) {
+                long start = System.nanoTime();
+                List<Long> ids = readIds(lastId, pageSize);
+                statistics.recordRead(ids == null ? 0 : ids.size(), System.nanoTime() - start);
+                if (CollectionUtils.isEmpty(ids)) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+                put(idQueue, ids, true);
+            }
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            for (int i = 0; i < builderThreads; i++) {
+                put(idQueue, END_OF_IDS, false);
+            }
+        }
+    }
+
+    protected List<Long> readIds(Long lastId, int pageSize) {
+        TransactionStatus status = TransactionUtils.createTransaction("readIdsToIndex",
+                TransactionDefinition.PROPAGATION_REQUIRED, indexService.transactionManager, true);
+        try {
+            List<Long> ids;
+            try {
+                operation.beforeReadIndexables();
+                ids = indexService.readAllActiveIndexableIds(lastId, pageSize);
+            } finally {
+                operation.afterReadIndexables();
+            }
+            TransactionUtils.finalizeTransaction(status, indexService.transactionManager, false);
+            return ids;
+        } catch (RuntimeException e) {
+            TransactionUtils.finalizeTransaction(status, indexService.transactionManager, true);
+            throw e;
+        }
+    }
+
+    protected void runBuilder(Object[] pack) {
+        Object[] originalState = indexService.saveState();
+        indexService.restoreState(pack);
+        SolrIndexCachedOperation.setCache(new CatalogStructure());
+        try {
+            while (true) {
+                List<Long> ids = take(idQueue);
+                if (ids == null || ids == END_OF_IDS) {
+                    break;
+                }
+                if (isFailed()) {
+                    // keep draining so that the reader can deliver its end markers
+                    continue;
+                }
+                try {
+                    long start = System.nanoTime();
+                    Collection<SolrInputDocument> documents = buildDocuments(ids);
+                    statistics.recordBuild(documents.size(), System.nanoTime() - start);
+                    if (!documents.isEmpty()) {
+                        long blockedStart = System.nanoTime();
+                        put(documentQueue, documents, true);
+                        statistics.recordBuildBlocked(System.nanoTime() - blockedStart);
+                    }
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        } finally {
+            put(documentQueue, END_OF_DOCUMENTS, false);
+            SolrIndexCachedOperation.clearCache();
+            indexService.restoreState(originalState);
+        }
+    }
+
+    protected Collection<SolrInputDocument> buildDocuments(List<Long> ids) {
+        TransactionStatus status = TransactionUtils.createTransaction("buildDocumentsToIndex",
+                TransactionDefinition.PROPAGATION_REQUIRED, indexService.transactionManager, true);
+        List<? extends Indexable> indexables = null;
+        try {
+            operation.beforeBuildPage();
+            indexService.sandBoxHelper.ignoreCloneCache(true);
+            indexables = indexService.readIndexablesByIds(ids);
+            if (CollectionUtils.isEmpty(indexables)) {
+                TransactionUtils.finalizeTransaction(status, indexService.transactionManager, false);
+                return Collections.emptyList();
+            }
+            indexService.extensionManager.getProxy().startBatchEvent(indexables);
+            Collection<SolrInputDocument> documents = indexService.buildDocuments(indexables);
+            TransactionUtils.finalizeTransaction(status, indexService.transactionManager, false);
+            return documents;
+        } catch (RuntimeException e) {
+            if (!status.isCompleted()) {
+                TransactionUtils.finalizeTransaction(status, indexService.transactionManager, true);
+            }
+            throw e;
+        } finally {
+            try {
+                if (CollectionUtils.isNotEmpty(indexables)) {
+                    indexService.extensionManager.getProxy().endBatchEvent(indexables);
+                }
+                indexService.sandBoxHelper.ignoreCloneCache(false);
+            } finally {
+                operation.afterBuildPage();
+            }
+        }
+    }
+
+    protected void runSender() {
+        List<SolrInputDocument> batch = new ArrayList<>(sendBatchSize);
+        int finishedBuilders = 0;
+        try {
+            while (finishedBuilders < builderThreads) {
+                Collection<SolrInputDocument> documents = take(documentQueue);
+                if (documents == null || documents == END_OF_DOCUMENTS) {
+                    finishedBuilders++;
+                    continue;
+                }
+                if (isFailed()) {
+                    continue;
+                }
+                batch.addAll(documents);
+                if (batch.size() >= sendBatchSize) {
+                    send(batch);
+                    batch = new ArrayList<>(sendBatchSize);
+                }
+            }
+            if (!batch.isEmpty() && !isFailed()) {
+                send(batch);
+            }
+        } catch (Throwable t) {
+            fail(t);
+            // keep draining so that blocked builders can finish
+            while (finishedBuilders < builderThreads) {
+                Collection<SolrInputDocument> documents = take(documentQueue);
+                if (documents == null || documents == END_OF_DOCUMENTS) {
+                    finishedBuilders++;
+                }
+            }
+        }
+    }
+
+    protected void send(List<SolrInputDocument> batch) throws Exception {
+        if (solrServer == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        solrServer.add(collection, batch);
+        statistics.recordSend(batch.size(), System.nanoTime() - start);
+    }
+
+    /**
+     * Blocks until the item is accepted by the queue. If <b>abortOnFailure</b> is true, gives up once another stage
+     * has failed so that the pipeline can shut down. End markers are always delivered.
+     */
+    protected <T> void put(BlockingQueue<T> queue, T item, boolean abortOnFailure) {
+        long start = System.nanoTime();
+        try {
+            while (!queue.offer(item, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (abortOnFailure && isFailed()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } finally {
+            if (queue == idQueue) {
+                statistics.recordReadBlocked(System.nanoTime() - start);
+            }
+        }
+    }
+
+    protected <T> T take(BlockingQueue<T> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            return null;
+        }
+    }
+
+    protected void waitFor(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (ExecutionException e) {
+            fail(e.getCause());
+        }
+    }
+
+    protected void fail(Throwable t) {
+        if (failure.compareAndSet(null, t)) {
+            LOG.error("Pipelined Solr indexing failed, stopping all stages", t);
+        }
+    }
+
+    protected boolean isFailed() {
+        return failure.get() != null;
+    }
+
+    public SolrIndexPipelineStatistics getStatistics() {
+        return statistics;
+    }
+
+    protected static class PipelineThreadFactory implements ThreadFactory {
+
+        protected final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "solr-index-pipeline-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
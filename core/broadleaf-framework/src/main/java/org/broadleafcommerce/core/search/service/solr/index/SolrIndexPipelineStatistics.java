@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-stage throughput counters for a single {@link SolrIndexPipeline} run. Each stage (read, build, send) records
+ * the number of items it processed, the time it spent doing work and the time it spent blocked waiting on the next
+ * stage, which makes it easy to tell which stage is the bottleneck for a given reindex.
+ */
+public class SolrIndexPipelineStatistics {
+
+    protected final AtomicLong idsRead = new AtomicLong();
+    protected final AtomicLong readNanos = new AtomicLong();
+    protected final AtomicLong readBlockedNanos = new AtomicLong();
+
+    protected final AtomicLong documentsBuilt = new AtomicLong();
+    protected final AtomicLong buildNanos = new AtomicLong();
+    protected final AtomicLong buildBlockedNanos = new AtomicLong();
+
+    protected final AtomicLong documentsSent = new AtomicLong();
+    protected final AtomicLong batchesSent = new AtomicLong();
+    protected final AtomicLong sendNanos = new AtomicLong();
+
+    public void recordRead(int count, long nanos) {
+        idsRead.addAndGet(count);
+        readNanos.addAndGet(nanos);
+    }
+
+    public void recordReadBlocked(long nanos) {
+        readBlockedNanos.addAndGet(nanos);
+    }
+
+    public void recordBuild(int count, long nanos) {
+        documentsBuilt.addAndGet(count);
+        buildNanos.addAndGet(nanos);
+    }
+
+    public void recordBuildBlocked(long nanos) {
+        buildBlockedNanos.addAndGet(nanos);
+    }
+
+    public void recordSend(int count, long nanos) {
+        documentsSent.addAndGet(count);
+        batchesSent.incrementAndGet();
+        sendNanos.addAndGet(nanos);
+    }
+
+    public long getIdsRead() {
+        return idsRead.get();
+    }
+
+    public long getDocumentsBuilt() {
+        return documentsBuilt.get();
+    }
+
+    public long getDocumentsSent() {
+        return documentsSent.get();
+    }
+
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    /**
+     * @return the number of ids read per second of time spent reading
+     */
+    public double getReadThroughput() {
+        return perSecond(idsRead.get(), readNanos.get());
+    }
+
+    /**
+     * Note that the build stage runs on several threads, so this is the throughput of a single builder thread.
+     * 
+     * @return the number of documents built per second of time spent building
+     */
+    public double getBuildThroughput() {
+        return perSecond(documentsBuilt.get(), buildNanos.get());
+    }
+
+    /**
+     * @return the number of documents sent per second of time spent sending
+     */
+    public double getSendThroughput() {
+        return perSecond(documentsSent.get(), sendNanos.get());
+    }
+
+    protected double perSecond(long count, long nanos) {
+        if (nanos <= 0) {
+            return 0D;
+        }
+        return count / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("read: [%s ids, %.1f/s, blocked %s ms], build: [%s docs, %.1f/s per thread, blocked %s ms], "
+                        + "send: [%s docs in %s batches, %.1f/s]",
+                idsRead.get(), getReadThroughput(), TimeUnit.NANOSECONDS.toMillis(readBlockedNanos.get()),
+                documentsBuilt.get(), getBuildThroughput(), TimeUnit.NANOSECONDS.toMillis(buildBlockedNanos.get()),
+                documentsSent.get(), batchesSent.get(), getSendThroughput());
+    }
+}
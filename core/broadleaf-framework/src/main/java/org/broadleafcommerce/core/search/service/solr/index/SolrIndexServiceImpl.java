@@ -119,6 +119,21 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
     @Value(value = "${solr.catalog.useLegacySolrIndexer:true}")
     protected boolean useLegacySolrIndexer = true;
 
+    @Value("${solr.index.pipeline.enabled:false}")
+    protected boolean pipelineEnabled = false;
+
+    @Value("${solr.index.pipeline.builderThreads:4}")
+    protected int pipelineBuilderThreads = 4;
+
+    @Value("${solr.index.pipeline.maxPendingPages:8}")
+    protected int pipelineMaxPendingPages = 8;
+
+    @Value("${solr.index.pipeline.maxPendingBatches:8}")
+    protected int pipelineMaxPendingBatches = 8;
+
+    @Value("${solr.index.pipeline.sendBatchSize:1000}")
+    protected int pipelineSendBatchSize = 1000;
+
     @Resource(name = "blProductDao")
     protected ProductDao productDao;
 
@@ -195,7 +210,11 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
 
     @Override
     public void buildIndex() throws IOException, ServiceException {
-        executeSolrIndexOperation(getReindexOperation());
+        if (pipelineEnabled) {
+            executePipelinedSolrIndexOperation(getReindexOperation());
+        } else {
+            executeSolrIndexOperation(getReindexOperation());
+        }
     }
 
     @Override
@@ -283,6 +302,40 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
         }
     }
 
+    /**
+     * Executes a full reindex through a {@link SolrIndexPipeline}: ids are read with keyset pagination, documents are
+     * built in parallel and sent to Solr in batches by a single sender. Only one commit is issued, after every
+     * document has been added. The operation's lifecycle hooks are called for each page as in
+     * {@link #executeSolrIndexOperation(SolrIndexOperation)}, but its readIndexables and buildPage methods are not used
+     * in this mode; override {@link #readAllActiveIndexableIds(Long, int)} and {@link #readIndexablesByIds(List)} instead.
+     * 
+     * @param operation the operation providing the lock and the target collection
+     * @throws ServiceException
+     * @throws IOException
+     */
+    protected void executePipelinedSolrIndexOperation(SolrIndexOperation operation) throws ServiceException, IOException {
+        operation.obtainLock();
+
+        try {
+            LOG.info("Executing pipelined indexing operation");
+            StopWatch s = new StopWatch();
+
+            String collection = operation.getSolrCollectionForIndexing();
+            SolrClient solrServer = operation.getSolrServerForIndexing();
+            SolrIndexPipeline pipeline = new SolrIndexPipeline(this, operation, collection, solrServer, pipelineBuilderThreads,
+                    pipelineMaxPendingPages, pipelineMaxPendingBatches, pipelineSendBatchSize);
+            SolrIndexPipelineStatistics statistics = pipeline.execute(pageSize);
+
+            if (solrServer != null) {
+                commit(collection, solrServer);
+            }
+
+            LOG.info(String.format("Pipelined indexing operation completed in %s - %s", s.toLapString(), statistics));
+        } finally {
+            operation.releaseLock();
+        }
+    }
+
     protected long getTotalPageCount(Long numItemsToIndex) {
         long numPagesToIndex = numItemsToIndex / pageSize;
         boolean hasRemainingItemsToIndex = numItemsToIndex % pageSize != 0;
@@ -414,37 +467,7 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
         try {
             sandBoxHelper.ignoreCloneCache(true);
             extensionManager.getProxy().startBatchEvent(indexables);
-            Collection<SolrInputDocument> documents = new ArrayList<>();
-            List<Locale> locales = getAllLocales();
-
-            List<Long> productIds = BLCCollectionUtils.collectList(indexables, new TypedTransformer<Long>() {
-                @Override
-                public Long transform(Object input) {
-                    return shs.getCurrentProductId((Indexable) input);
-                }
-            });
-
-            solrIndexDao.populateProductCatalogStructure(productIds, SolrIndexCachedOperation.getCache());
-
-            List<IndexField> fields = null;
-            FieldEntity currentFieldType = null;
-            for (Indexable indexable : indexables) {
-                if (fields == null || ObjectUtils.notEqual(currentFieldType, indexable.getFieldEntityType())) {
-                    fields = indexFieldDao.readFieldsByEntityType(indexable.getFieldEntityType());
-                }
-
-                SolrInputDocument doc = buildDocument(indexable, fields, locales);
-                //If someone overrides the buildDocument method and determines that they don't want a product 
-                //indexed, then they can return null. If the document is null it does not get added to 
-                //to the index.
-                if (doc != null) {
-                    documents.add(doc);
-                }
-            }
-
-            extensionManager.getProxy().modifyBuiltDocuments(documents, indexables, fields, locales);
-
-            logDocuments(documents);
+            Collection<SolrInputDocument> documents = buildDocuments(indexables);
 
             if (!CollectionUtils.isEmpty(documents) && solrServer != null) {
                 solrServer.add(collection, documents);
@@ -472,10 +495,61 @@ public class SolrIndexServiceImpl implements SolrIndexService, InitializingBean
         }
     }
 
+    /**
+     * Builds the {@link SolrInputDocument}s for the given page of {@link Indexable}s without sending them to Solr. This
+     * expects to be called inside of a transaction and between the extension manager's start and end batch events.
+     * 
+     * @param indexables the page of items to build documents for
+     * @return the built documents, never null
+     */
+    protected Collection<SolrInputDocument> buildDocuments(List<? extends Indexable> indexables) {
+        Collection<SolrInputDocument> documents = new ArrayList<>();
+        List<Locale> locales = getAllLocales();
+
+        List<Long> productIds = BLCCollectionUtils.collectList(indexables, new TypedTransformer<Long>() {
+            @Override
+            public Long transform(Object input) {
+                return shs.getCurrentProductId((Indexable) input);
+            }
+        });
+
+        solrIndexDao.populateProductCatalogStructure(productIds, SolrIndexCachedOperation.getCache());
+
+        List<IndexField> fields = null;
+        FieldEntity currentFieldType = null;
+        for (Indexable indexable : indexables) {
+            if (fields == null || ObjectUtils.notEqual(currentFieldType, indexable.getFieldEntityType())) {
+                fields = indexFieldDao.readFieldsByEntityType(indexable.getFieldEntityType());
+            }
+
+            SolrInputDocument doc = buildDocument(indexable, fields, locales);
+            //If someone overrides the buildDocument method and determines that they don't want a product 
+            //indexed, then they can return null. If the document is null it does not get added to 
+            //to the index.
+            if (doc != null) {
+                documents.add(doc);
+            }
+        }
+
+        extensionManager.getProxy().modifyBuiltDocuments(documents, indexables, fields, locales);
+
+        logDocuments(documents);
+
+        return documents;
+    }
+
     protected List<? extends Indexable> readAllActiveIndexables(int pageSize, Long lastId) {
         return productDao.readAllActiveProducts(pageSize, lastId);
     }
 
+    protected List<Long> readAllActiveIndexableIds(Long lastId, int pageSize) {
+        return productDao.readAllActiveProductIds(lastId, pageSize);
+    }
+
+    protected List<? extends Indexable> readIndexablesByIds(List<Long> ids) {
+        return productDao.readProductsByIds(ids);
+    }
+
     @Override
     public List<Locale> getAllLocales() {
         List<Locale> allLocales = localeService.findAllLocales();
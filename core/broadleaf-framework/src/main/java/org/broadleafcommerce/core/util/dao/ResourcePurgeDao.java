@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.broadleafcommerce.core.order.domain.Order;
 import org.broadleafcommerce.core.order.service.type.OrderStatus;
+import org.broadleafcommerce.core.util.domain.PurgeCheckpoint;
 import org.broadleafcommerce.profile.core.domain.Customer;
 
 /**
@@ -123,4 +124,43 @@ public interface ResourcePurgeDao {
      * @return the count of found customers
      */
     Long findCustomersCount(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview, List<Long> excludedIds);
+
+    /**
+     * Finds the ids of carts matching the same criteria as {@link #findCarts(String[], OrderStatus[], Date, Boolean, List)},
+     * in ascending order and starting after the given id. This keyset form of paging stays cheap no matter how far
+     * into the candidates a purge has progressed.
+     *
+     * @param lastId only ids greater than this are returned. Can be null to start from the beginning.
+     * @param length the max number of ids to return
+     * @return the list of found cart ids
+     */
+    List<Long> findCartIds(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview,
+            Long lastId, int length, List<Long> excludedIds);
+
+    /**
+     * Finds the ids of customers matching the same criteria as {@link #findCustomers(Date, Boolean, Boolean, Boolean, List)},
+     * in ascending order and starting after the given id.
+     *
+     * @param lastId only ids greater than this are returned. Can be null to start from the beginning.
+     * @param length the max number of ids to return
+     * @return the list of found customer ids
+     */
+    List<Long> findCustomerIds(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview,
+            Long lastId, int length, List<Long> excludedIds);
+
+    /**
+     * Read the bulk purge checkpoint with the given name, creating (but not persisting) a new one if none exists
+     *
+     * @param name the checkpoint name
+     * @return the checkpoint
+     */
+    PurgeCheckpoint readPurgeCheckpoint(String name);
+
+    /**
+     * Persist the state of the given checkpoint
+     *
+     * @param checkpoint the checkpoint to save
+     * @return the managed checkpoint
+     */
+    PurgeCheckpoint savePurgeCheckpoint(PurgeCheckpoint checkpoint);
 }
@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import javax.annotation.Resource;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
@@ -32,9 +33,12 @@ import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Selection;
 import javax.persistence.criteria.Subquery;
 
+import org.broadleafcommerce.common.persistence.EntityConfiguration;
 import org.broadleafcommerce.core.order.domain.Order;
 import org.broadleafcommerce.core.order.domain.OrderImpl;
 import org.broadleafcommerce.core.order.service.type.OrderStatus;
+import org.broadleafcommerce.core.util.domain.PurgeCheckpoint;
+import org.broadleafcommerce.core.util.domain.PurgeCheckpointImpl;
 import org.broadleafcommerce.profile.core.domain.Customer;
 import org.broadleafcommerce.profile.core.domain.CustomerImpl;
 import org.springframework.stereotype.Repository;
@@ -52,6 +56,9 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
     @PersistenceContext(unitName = "blPU")
     protected EntityManager em;
 
+    @Resource(name = "blEntityConfiguration")
+    protected EntityConfiguration entityConfiguration;
+
     @Override
     public List<Order> findCarts(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview,
             List<Long> excludedIds) {
@@ -96,6 +103,57 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         return query.getSingleResult();
     }
 
+    @Override
+    public List<Long> findCartIds(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold, Boolean isPreview,
+            Long lastId, int length, List<Long> excludedIds) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+        Root<OrderImpl> root = criteria.from(OrderImpl.class);
+        criteria.select(root.get("id").as(Long.class));
+        List<Predicate> restrictions = buildCartRestrictions(names, statuses, dateCreatedMinThreshold, isPreview, excludedIds,
+                builder, root);
+        return readIdsAfter(builder, criteria, root, restrictions, lastId, length);
+    }
+
+    @Override
+    public List<Long> findCustomerIds(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview,
+            Long lastId, int length, List<Long> excludedIds) {
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = builder.createQuery(Long.class);
+        Root<CustomerImpl> root = criteria.from(CustomerImpl.class);
+        criteria.select(root.get("id").as(Long.class));
+        List<Predicate> restrictions = buildCustomerRestrictions(dateCreatedMinThreshold, registered, deactivated, isPreview,
+                excludedIds, builder, criteria, root);
+        return readIdsAfter(builder, criteria, root, restrictions, lastId, length);
+    }
+
+    @Override
+    public PurgeCheckpoint readPurgeCheckpoint(String name) {
+        PurgeCheckpoint checkpoint = em.find(PurgeCheckpointImpl.class, name);
+        if (checkpoint == null) {
+            checkpoint = (PurgeCheckpoint) entityConfiguration.createEntityInstance(PurgeCheckpoint.class.getName());
+            checkpoint.setName(name);
+        }
+        return checkpoint;
+    }
+
+    @Override
+    public PurgeCheckpoint savePurgeCheckpoint(PurgeCheckpoint checkpoint) {
+        return em.merge(checkpoint);
+    }
+
+    protected <T> List<Long> readIdsAfter(CriteriaBuilder builder, CriteriaQuery<Long> criteria, Root<T> root,
+            List<Predicate> restrictions, Long lastId, int length) {
+        if (lastId != null) {
+            restrictions.add(builder.greaterThan(root.get("id").as(Long.class), lastId));
+        }
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        criteria.orderBy(builder.asc(root.get("id")));
+        TypedQuery<Long> query = em.createQuery(criteria);
+        query.setMaxResults(length);
+        return query.getResultList();
+    }
+
     protected <T> TypedQuery<T> buildCustomerQuery(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated, Boolean isPreview, Class<T> returnType,
             List<Long> excludedIds) {
         CriteriaBuilder builder = em.getCriteriaBuilder();
@@ -107,6 +165,14 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
             criteria.select((Selection<? extends T>) root);
         }
 
+        List<Predicate> restrictions = buildCustomerRestrictions(dateCreatedMinThreshold, registered, deactivated, isPreview,
+                excludedIds, builder, criteria, root);
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        return em.createQuery(criteria);
+    }
+
+    protected List<Predicate> buildCustomerRestrictions(Date dateCreatedMinThreshold, Boolean registered, Boolean deactivated,
+            Boolean isPreview, List<Long> excludedIds, CriteriaBuilder builder, CriteriaQuery<?> criteria, Root<CustomerImpl> root) {
         //find only customers that do not have any orders, otherwise a purge would fail because of referential integrity
         Subquery<Long> subquery = criteria.subquery(Long.class);
         Root orderRoot = subquery.from(OrderImpl.class);
@@ -145,8 +211,7 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         if (excludedIds != null && excludedIds.size() > 0) {
                 applyLimitedInClause(excludedIds, builder, root, restrictions);
         }
-        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
-        return em.createQuery(criteria);
+        return restrictions;
     }
 
     protected <T> void applyLimitedInClause(List<Long> ids, CriteriaBuilder builder, Root<T> root, List<Predicate> restrictions) {
@@ -168,6 +233,14 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         } else {
             criteria.select((Selection<? extends T>) root);
         }
+        List<Predicate> restrictions = buildCartRestrictions(names, statuses, dateCreatedMinThreshold, isPreview, excludedIds,
+                builder, root);
+        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
+        return em.createQuery(criteria);
+    }
+
+    protected List<Predicate> buildCartRestrictions(String[] names, OrderStatus[] statuses, Date dateCreatedMinThreshold,
+            Boolean isPreview, List<Long> excludedIds, CriteriaBuilder builder, Root<OrderImpl> root) {
         List<Predicate> restrictions = new ArrayList<Predicate>();
         List<String> statusList = new ArrayList<String>();
         if (statuses != null) {
@@ -195,7 +268,6 @@ public class ResourcePurgeDaoImpl implements ResourcePurgeDao {
         if (excludedIds != null && excludedIds.size() > 0) {
             applyLimitedInClause(excludedIds, builder, root, restrictions);
         }
-        criteria.where(restrictions.toArray(new Predicate[restrictions.size()]));
-        return em.createQuery(criteria);
+        return restrictions;
     }
 }
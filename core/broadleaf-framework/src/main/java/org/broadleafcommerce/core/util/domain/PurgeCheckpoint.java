@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.util.domain;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent progress record for a bulk purge run (see
+ * {@link org.broadleafcommerce.core.util.service.ResourcePurgeServiceImpl}). The checkpoint remembers the last id
+ * processed so that an interrupted or capped run resumes where it stopped, and remembers the ids that could not be
+ * purged so that they are skipped until their retry time has passed.
+ */
+public interface PurgeCheckpoint extends Serializable {
+
+    /**
+     * @return the unique name of the checkpoint, usually the type of purge (e.g. CART)
+     */
+    String getName();
+
+    void setName(String name);
+
+    /**
+     * @return the highest id handled by the current pass, or null if the next run should start from the beginning
+     */
+    Long getLastProcessedId();
+
+    void setLastProcessedId(Long lastProcessedId);
+
+    /**
+     * @return the number of entities purged in the current pass
+     */
+    Long getProcessedCount();
+
+    void setProcessedCount(Long processedCount);
+
+    Date getPassStarted();
+
+    void setPassStarted(Date passStarted);
+
+    Date getDateUpdated();
+
+    void setDateUpdated(Date dateUpdated);
+
+    /**
+     * @return the ids that failed to purge, keyed to the time (in milliseconds) of the failure
+     */
+    Map<Long, Long> getFailures();
+
+    void setFailures(Map<Long, Long> failures);
+
+    /**
+     * Record a failure to purge the entity with the given id
+     */
+    void addFailure(Long id, long failedTime);
+
+    /**
+     * Forget failures that happened before the given time and return the ids of the remaining failures. Those ids
+     * should be excluded from the purge.
+     *
+     * @param failedRetryTime failures before this time (in milliseconds) may be retried
+     * @return the ids to exclude
+     */
+    List<Long> getFailuresSince(long failedRetryTime);
+}
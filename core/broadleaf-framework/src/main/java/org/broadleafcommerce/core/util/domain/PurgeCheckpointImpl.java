@@ -0,0 +1,153 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.util.domain;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.Inheritance;
+import javax.persistence.InheritanceType;
+import javax.persistence.JoinColumn;
+import javax.persistence.MapKeyColumn;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * @see PurgeCheckpoint
+ */
+@Entity
+@Table(name = "BLC_PURGE_CHECKPOINT")
+@Inheritance(strategy = InheritanceType.JOINED)
+public class PurgeCheckpointImpl implements PurgeCheckpoint {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "CHECKPOINT_NAME")
+    protected String name;
+
+    @Column(name = "LAST_PROCESSED_ID")
+    protected Long lastProcessedId;
+
+    @Column(name = "PROCESSED_COUNT")
+    protected Long processedCount = 0L;
+
+    @Column(name = "PASS_STARTED")
+    @Temporal(TemporalType.TIMESTAMP)
+    protected Date passStarted;
+
+    @Column(name = "DATE_UPDATED")
+    @Temporal(TemporalType.TIMESTAMP)
+    protected Date dateUpdated;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @MapKeyColumn(name = "FAILED_ID")
+    @Column(name = "FAILED_TIME")
+    @CollectionTable(name = "BLC_PURGE_CHECKPOINT_FAILURE", joinColumns = @JoinColumn(name = "CHECKPOINT_NAME"))
+    protected Map<Long, Long> failures = new HashMap<Long, Long>();
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Long getLastProcessedId() {
+        return lastProcessedId;
+    }
+
+    @Override
+    public void setLastProcessedId(Long lastProcessedId) {
+        this.lastProcessedId = lastProcessedId;
+    }
+
+    @Override
+    public Long getProcessedCount() {
+        return processedCount == null ? 0L : processedCount;
+    }
+
+    @Override
+    public void setProcessedCount(Long processedCount) {
+        this.processedCount = processedCount;
+    }
+
+    @Override
+    public Date getPassStarted() {
+        return passStarted;
+    }
+
+    @Override
+    public void setPassStarted(Date passStarted) {
+        this.passStarted = passStarted;
+    }
+
+    @Override
+    public Date getDateUpdated() {
+        return dateUpdated;
+    }
+
+    @Override
+    public void setDateUpdated(Date dateUpdated) {
+        this.dateUpdated = dateUpdated;
+    }
+
+    @Override
+    public Map<Long, Long> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public void setFailures(Map<Long, Long> failures) {
+        this.failures = failures;
+    }
+
+    @Override
+    public void addFailure(Long id, long failedTime) {
+        failures.put(id, failedTime);
+    }
+
+    @Override
+    public List<Long> getFailuresSince(long failedRetryTime) {
+        List<Long> response = new ArrayList<Long>();
+        for (Iterator<Map.Entry<Long, Long>> itr = failures.entrySet().iterator(); itr.hasNext();) {
+            Map.Entry<Long, Long> entry = itr.next();
+            if (entry.getValue() < failedRetryTime) {
+                itr.remove();
+            } else {
+                response.add(entry.getKey());
+            }
+        }
+        return response;
+    }
+}
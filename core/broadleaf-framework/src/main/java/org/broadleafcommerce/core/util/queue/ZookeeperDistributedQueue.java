@@ -19,8 +19,10 @@ package org.broadleafcommerce.core.util.queue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooDefs;
@@ -41,15 +43,22 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -63,6 +72,15 @@ import java.util.concurrent.TimeUnit;
  * This Queue works quite well for smaller, lower capacity / throughput queues where you need to read/write in a distributed way. 
  * Try to limit the size of this queue to around 500 elements or fewer. Otherwise, consider a different queue implementation.
  * 
+ * To reduce the number of Zookeeper round trips, elements written together (e.g. via {@link #offerAll(Collection)} or 
+ * {@link #addAll(Collection)}) are created with a single multi-op per batch, elements read together (e.g. via 
+ * {@link #drainTo(Collection, int)}) are fetched with pipelined asynchronous reads (see {@link #setMaxOutstandingReads(int)}) 
+ * and removed with a single multi-op per batch. The batch size can be set via {@link #setBatchSize(int)}. 
+ * 
+ * Consumers that poll one element at a time can also claim several elements at once into a local prefetch buffer by 
+ * setting {@link #setPrefetchSize(int)}. Prefetched elements are removed from Zookeeper when they are claimed, so they 
+ * are lost if this JVM stops before consuming them. Prefetching is therefore disabled by default.
+ * 
  * @author Kelly Tisdell
  *
  */
@@ -81,8 +99,27 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
     
     public static final int DEFAULT_MAX_QUEUE_SIZE = 500;
     
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    
+    public static final int DEFAULT_MAX_OUTSTANDING_READS = 32;
+    
+    /**
+     * Upper bound on the serialized size of the elements created in a single multi-op, to stay clear of Zookeeper's 
+     * default 1MB transport limit.
+     */
+    protected static final int MAX_BATCH_BYTES = 512 * 1024;
+    
     private static final String QUEUE_ENTRY_NAME = "dz-queue-entry";
     
+    private static final ExecutorService WATCH_NOTIFIER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ZookeeperDistributedQueueWatchNotifier");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    
     protected final Object QUEUE_MONITOR = new Object();
     private final String queueFolderPath;
     private final ZooKeeper zk;
@@ -91,6 +128,10 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
     private final DistributedLock queueAccessLock;
     private final DistributedLock configLock;
     private int capacity;
+    private final Deque<T> prefetchBuffer = new ArrayDeque<>();
+    private volatile int prefetchSize = 1;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile int maxOutstandingReads = DEFAULT_MAX_OUTSTANDING_READS;
     
     /**
      * Constructs a folder structure in Zookeeper for managing a queue and queue state..  The argument, queuePath, should start with a forward slash ('/') and should not 
@@ -182,10 +223,9 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
     @Override
     public T remove() {
         try {
-            Map<String, T> entries = readQueueInternal(1, true, 0L);
-            Iterator<Map.Entry<String, T>> itr = entries.entrySet().iterator();
-            if (itr.hasNext()) {
-                return itr.next().getValue();
+            T element = pollInternal(0L);
+            if (element != null) {
+                return element;
             }
             
             throw new DistributedQueueException("The queue was empty.");
@@ -198,12 +238,7 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
     @Override
     public T poll() {
         try {
-            Map<String, T> entries = readQueueInternal(1, true, 0L);
-            Iterator<Map.Entry<String, T>> itr = entries.entrySet().iterator();
-            if (itr.hasNext()) {
-                return itr.next().getValue();
-            }
-            return null;
+            return pollInternal(0L);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             return null;
@@ -221,6 +256,11 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
 
     @Override
     public T peek() {
+        synchronized (QUEUE_MONITOR) {
+            if (!prefetchBuffer.isEmpty()) {
+                return prefetchBuffer.peek();
+            }
+        }
         try {
             Map<String, T> elements = readQueueInternal(1, false, 0L);
             Iterator<Map.Entry<String, T>> entries = elements.entrySet().iterator();
@@ -235,8 +275,21 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
         }
     }
 
+    /**
+     * @return the number of elements in Zookeeper plus the number of elements claimed into this instance's prefetch buffer
+     * and not yet consumed
+     */
     @Override
     public int size() {
+        synchronized (QUEUE_MONITOR) {
+            return getStoredSize() + prefetchBuffer.size();
+        }
+    }
+    
+    /**
+     * @return the number of elements in Zookeeper
+     */
+    protected int getStoredSize() {
         DistributedLock lock = getQueueAccessLock();
         try {
             lock.lockInterruptibly();
@@ -282,21 +335,27 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
         throw new UnsupportedOperationException("This method is not supported by default.");
     }
 
+    /**
+     * Elements claimed into this instance's prefetch buffer are still considered part of the queue
+     */
     @Override
     public boolean containsAll(Collection<?> c) {
         DistributedLock lock = getQueueAccessLock();
         try {
-            lock.lockInterruptibly();
-            try {
-                Map<String, T> elements = readQueueInternal(geMaxCapacity(), false, 0L);
-                if (!elements.isEmpty()) {
-                    return elements.values().containsAll(c);
+            synchronized (QUEUE_MONITOR) {
+                lock.lockInterruptibly();
+                try {
+                    List<T> elements = new ArrayList<>(prefetchBuffer);
+                    elements.addAll(readQueueInternal(geMaxCapacity(), false, 0L).values());
+                    if (!elements.isEmpty()) {
+                        return elements.containsAll(c);
+                    }
+
+                    return false;
+
+                } finally {
+                    lock.unlock();
                 }
-                
-                return false;
-                
-            } finally {
-                lock.unlock();
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -304,6 +363,42 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
         }
     }
 
+    /**
+     * Adds as many of the given elements as there is capacity for, without waiting. Elements are created in batches, 
+     * one Zookeeper round trip per batch.
+     * 
+     * @param c
+     * @return the number of elements added, in the iteration order of the collection
+     */
+    public int offerAll(Collection<? extends T> c) {
+        if (c == null || c.isEmpty()) {
+            return 0;
+        }
+        try {
+            return writeToQueue(new ArrayList<>(c), 0L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+    
+    /**
+     * Adds the given elements, waiting up to the timeout for capacity to become available. Elements are created in batches, 
+     * one Zookeeper round trip per batch.
+     * 
+     * @param c
+     * @param timeout
+     * @param unit
+     * @return the number of elements added, in the iteration order of the collection
+     * @throws InterruptedException
+     */
+    public int offerAll(Collection<? extends T> c, long timeout, TimeUnit unit) throws InterruptedException {
+        if (c == null || c.isEmpty()) {
+            return 0;
+        }
+        return writeToQueue(new ArrayList<>(c), unit.toMillis(timeout));
+    }
+
     @Override
     public boolean addAll(Collection<? extends T> c) {
         if (c == null || c.isEmpty()) {
@@ -334,18 +429,18 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
         try {
             lock.lockInterruptibly();
             try {
-                executeOperation(new GenericOperation<Void>() {
+                List<String> entryNames = executeOperation(new GenericOperation<List<String>>() {
                     @Override
-                    public Void execute() throws Exception {
-                        List<String> entryNames = getZookeeperClient().getChildren(getQueueEntryFolder(), null);
-                        if (entryNames != null) {
-                            for (String entry : entryNames) {
-                                getZookeeperClient().delete(getQueueEntryFolder() + '/' + entry, 0);
-                            }
-                        }
-                        return null;
+                    public List<String> execute() throws Exception {
+                        return getZookeeperClient().getChildren(getQueueEntryFolder(), null);
                     }
                 });
+                if (entryNames != null && !entryNames.isEmpty()) {
+                    deleteEntries(entryNames);
+                }
+                synchronized (QUEUE_MONITOR) {
+                    prefetchBuffer.clear();
+                }
                 
             } finally {
                 lock.unlock();
@@ -406,30 +501,18 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
 
     @Override
     public T take() throws InterruptedException { 
-        Map<String, T> elements = readQueueInternal(1, true, -1L);
-        Iterator<Map.Entry<String,T>> itr = elements.entrySet().iterator();
-        if (itr.hasNext()) {
-            return itr.next().getValue();
-        }
-        
-        return null;
+        return pollInternal(-1L);
     }
 
     @Override
     public T poll(long timeout, TimeUnit unit) throws InterruptedException {
-        Map<String, T> elements = readQueueInternal(1, true, unit.toMillis(timeout));
-        Iterator<Map.Entry<String,T>> itr = elements.entrySet().iterator();
-        if (itr.hasNext()) {
-            return itr.next().getValue();
-        }
-        
-        return null;
+        return pollInternal(unit.toMillis(timeout));
     }
 
     @Override
     public int remainingCapacity() {
         synchronized (QUEUE_MONITOR) {
-            final int cap = geMaxCapacity() - size();
+            final int cap = geMaxCapacity() - getStoredSize();
             if (cap < 0) {
                 return 0;
             }
@@ -437,8 +520,20 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
         }
     }
 
+    /**
+     * Removes the element from this instance's prefetch buffer if it was already claimed, otherwise from Zookeeper
+     */
     @Override
     public boolean remove(Object o) {
+        synchronized (QUEUE_MONITOR) {
+            if (prefetchBuffer.remove(o)) {
+                return true;
+            }
+            return removeStored(o);
+        }
+    }
+
+    protected boolean removeStored(Object o) {
         try {
             DistributedLock lock = getQueueAccessLock();
             lock.lockInterruptibly();
@@ -467,6 +562,7 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
                 lock.unlock();
             }
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
         }
     }
@@ -478,28 +574,77 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
 
     @Override
     public int drainTo(Collection<? super T> c) {
-        try {
-            Map<String, T> entries = readQueueInternal(geMaxCapacity(), true, 0L);
-            c.addAll(entries.values());
-            return entries.size();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            return 0;
-        }
+        return drainTo(c, Integer.MAX_VALUE);
     }
 
     @Override
     public int drainTo(Collection<? super T> c, int maxElements) {
         try {
-            Map<String,T> entries = readQueueInternal(maxElements, true, 0L);
-            c.addAll(entries.values());
-            return entries.size();
+            return drainTo(c, maxElements, 0L, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             return 0;
         }
     }
     
+    /**
+     * Removes up to maxElements elements, waiting up to the timeout for at least one element to become available. The 
+     * elements are read with pipelined asynchronous requests and removed in batches, rather than with several round trips 
+     * per element.
+     * 
+     * @param c
+     * @param maxElements
+     * @param timeout
+     * @param unit
+     * @return the number of elements added to the collection
+     * @throws InterruptedException
+     */
+    public int drainTo(Collection<? super T> c, int maxElements, long timeout, TimeUnit unit) throws InterruptedException {
+        if (maxElements <= 0) {
+            return 0;
+        }
+        synchronized (QUEUE_MONITOR) {
+            int count = 0;
+            while (count < maxElements && !prefetchBuffer.isEmpty()) {
+                c.add(prefetchBuffer.poll());
+                count++;
+            }
+            if (count < maxElements) {
+                Map<String, T> entries = readQueueInternal(Math.min(maxElements - count, geMaxCapacity()), true, 
+                        count > 0 ? 0L : unit.toMillis(timeout));
+                c.addAll(entries.values());
+                count += entries.size();
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * Removes a single element, serving it from the prefetch buffer if possible. Otherwise, up to {@link #getPrefetchSize()} 
+     * elements are claimed from Zookeeper at once and the ones not returned are kept in the prefetch buffer.
+     * 
+     * @param timeout
+     * @return the element, or null if none was available within the timeout
+     * @throws InterruptedException
+     */
+    protected T pollInternal(long timeout) throws InterruptedException {
+        synchronized (QUEUE_MONITOR) {
+            if (!prefetchBuffer.isEmpty()) {
+                return prefetchBuffer.poll();
+            }
+            Map<String, T> entries = readQueueInternal(Math.max(1, getPrefetchSize()), true, timeout);
+            Iterator<T> itr = entries.values().iterator();
+            if (!itr.hasNext()) {
+                return null;
+            }
+            T response = itr.next();
+            while (itr.hasNext()) {
+                prefetchBuffer.add(itr.next());
+            }
+            return response;
+        }
+    }
+    
     protected int writeToQueue(List<? extends T> entries, final long timeout) throws InterruptedException {
         if (entries == null || entries.isEmpty()) {
             return 0;
@@ -530,26 +675,10 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
                     try {
                         int remainingCapacity = remainingCapacity();
                         if (remainingCapacity > 0) {
-                            ListIterator<? extends T> itr = entries.listIterator();
-                            while (itr.hasNext()) {
-                                final T entry = itr.next();
-                                if (remainingCapacity > 0) {
-                                    executeOperation(new GenericOperation<Void>() {
-                                        @Override
-                                        public Void execute() throws Exception {
-                                            byte[] data = serialize(entry);
-                                            ZookeeperUtil.makePath(getQueueEntryFolder() + '/' + getQueueEntryName(), data, getZookeeperClient(), CreateMode.PERSISTENT_SEQUENTIAL, getAcls());
-                                            return null;
-                                        }
-                                    });
-                                    remainingCapacity--;
-                                    entryCount++;
-                                    itr.remove();
-                                    
-                                } else {
-                                    break;
-                                }
-                            }
+                            List<? extends T> batch = entries.subList(0, Math.min(remainingCapacity, entries.size()));
+                            createEntries(batch);
+                            entryCount += batch.size();
+                            batch.clear();
                             
                             if (entries.isEmpty()) {
                                 return entryCount;
@@ -618,9 +747,14 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
                                 return getZookeeperClient().getChildren(getQueueEntryFolder(), new Watcher() {
                                     @Override
                                     public void process(WatchedEvent event) {
-                                        synchronized (QUEUE_MONITOR) {
-                                            QUEUE_MONITOR.notifyAll();
-                                        }
+                                        runOffEventThread(new Runnable() {
+                                            @Override
+                                            public void run() {
+                                                synchronized (QUEUE_MONITOR) {
+                                                    QUEUE_MONITOR.notifyAll();
+                                                }
+                                            }
+                                        });
                                     }
                                     
                                 });
@@ -630,49 +764,22 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
                         if (entryNames != null && ! entryNames.isEmpty()) {
                             Collections.sort(entryNames);
                             
-                            int count = 0;
-                            for (final String entryName : entryNames) {
-                                try {
-                                    T entry = executeOperation(new GenericOperation<T>() {
-                                        @Override
-                                        public T execute() throws Exception {
-                                            byte[] data = getZookeeperClient().getData(getQueueEntryFolder() + '/' + entryName, null, null);
-                                            
-                                            @SuppressWarnings("unchecked")
-                                            T deserialized = (T)deserialize(data);
-                                            
-                                            if (remove) {
-                                                getZookeeperClient().delete(getQueueEntryFolder() + '/' + entryName, 0);
-                                            }
-                                            
-                                            return deserialized;
-                                        }
-                                    });
-                                    
-                                    if (entry != null) {
-                                        count++;
-                                        out.put(entryName, entry);
-                                    }
-                                    
-                                    if (count >= qty) {
-                                        break;
-                                    }
-                                    
-                                } catch (Exception e) {
-                                    //This may have been removed by another thread, so just continue.
-                                    if (e.getCause() != null && KeeperException.NoNodeException.class.isAssignableFrom(e.getCause().getClass())) {
-                                        continue;
-                                    } else if (RuntimeException.class.isAssignableFrom(e.getClass())) {
-                                        throw (RuntimeException)e;
-                                    } else if (InterruptedException.class.isAssignableFrom(e.getClass())) {
-                                        Thread.currentThread().interrupt();
-                                        throw (InterruptedException)e;
-                                    } else {
-                                        throw new DistributedQueueException("An unexpected error occured executing a retryable operation for distributed Zookeeper queue, " + getQueueFolderPath(), e);
-                                    }
+                            List<String> claimedNames = entryNames.subList(0, Math.min(qty, entryNames.size()));
+                            Map<String, byte[]> data = readEntries(claimedNames);
+                            for (String entryName : claimedNames) {
+                                byte[] bytes = data.get(entryName);
+                                //A missing entry may have been removed by another thread, so just continue.
+                                if (bytes != null) {
+                                    @SuppressWarnings("unchecked")
+                                    T deserialized = (T) deserialize(bytes);
+                                    out.put(entryName, deserialized);
                                 }
                             }
                             
+                            if (remove && !out.isEmpty()) {
+                                deleteEntries(new ArrayList<>(out.keySet()));
+                            }
+                            
                             return out;
                         } else {
                             //Unlock here so that we're not holding the lock while we wait...
@@ -704,6 +811,143 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
         }
     }
     
+    /**
+     * Creates sequential entries for the given elements, in order, with one multi-op per batch. Batches are bounded by 
+     * {@link #getBatchSize()} and by {@link #MAX_BATCH_BYTES}.
+     * 
+     * @param elements
+     * @throws InterruptedException
+     */
+    protected void createEntries(List<? extends T> elements) throws InterruptedException {
+        final String path = getQueueEntryFolder() + '/' + getQueueEntryName();
+        List<Op> ops = new ArrayList<>();
+        int bytes = 0;
+        for (T element : elements) {
+            byte[] data = serialize(element);
+            if (!ops.isEmpty() && (ops.size() >= getBatchSize() || bytes + data.length > MAX_BATCH_BYTES)) {
+                executeMulti(ops);
+                ops = new ArrayList<>();
+                bytes = 0;
+            }
+            ops.add(Op.create(path, data, getAcls(), CreateMode.PERSISTENT_SEQUENTIAL));
+            bytes += data.length;
+        }
+        if (!ops.isEmpty()) {
+            executeMulti(ops);
+        }
+    }
+    
+    /**
+     * Deletes the given entries with one multi-op per batch. If an entry was already removed by another thread, the 
+     * batch is retried one entry at a time, ignoring the missing entries.
+     * 
+     * @param entryNames
+     * @throws InterruptedException
+     */
+    protected void deleteEntries(List<String> entryNames) throws InterruptedException {
+        for (int j = 0; j < entryNames.size(); j += getBatchSize()) {
+            final List<String> batch = entryNames.subList(j, Math.min(j + getBatchSize(), entryNames.size()));
+            executeOperation(new GenericOperation<Void>() {
+                @Override
+                public Void execute() throws Exception {
+                    List<Op> ops = new ArrayList<>();
+                    for (String entryName : batch) {
+                        ops.add(Op.delete(getQueueEntryFolder() + '/' + entryName, -1));
+                    }
+                    try {
+                        getZookeeperClient().multi(ops);
+                    } catch (KeeperException.NoNodeException e) {
+                        for (String entryName : batch) {
+                            try {
+                                getZookeeperClient().delete(getQueueEntryFolder() + '/' + entryName, -1);
+                            } catch (KeeperException.NoNodeException nne) {
+                                //This may have been removed by another thread, so just continue.
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+    
+    /**
+     * Reads the data of the given entries with pipelined asynchronous requests, with at most 
+     * {@link #getMaxOutstandingReads()} requests in flight. Reads that fail for a reason other than the entry having been 
+     * removed are retried synchronously.
+     * 
+     * @param entryNames
+     * @return the data keyed by entry name. Entries that no longer exist are not included.
+     * @throws InterruptedException
+     */
+    protected Map<String, byte[]> readEntries(List<String> entryNames) throws InterruptedException {
+        final Map<String, byte[]> response = new ConcurrentHashMap<>();
+        final Map<String, KeeperException.Code> failures = new ConcurrentHashMap<>();
+        final Semaphore permits = new Semaphore(Math.max(1, getMaxOutstandingReads()));
+        final CountDownLatch latch = new CountDownLatch(entryNames.size());
+        for (String entryName : entryNames) {
+            permits.acquire();
+            getZookeeperClient().getData(getQueueEntryFolder() + '/' + entryName, false, new AsyncCallback.DataCallback() {
+                @Override
+                public void processResult(int rc, String path, Object ctx, byte[] data, Stat stat) {
+                    try {
+                        KeeperException.Code code = KeeperException.Code.get(rc);
+                        if (code == KeeperException.Code.OK) {
+                            response.put((String) ctx, data);
+                        } else if (code != KeeperException.Code.NONODE) {
+                            failures.put((String) ctx, code);
+                        }
+                    } finally {
+                        permits.release();
+                        latch.countDown();
+                    }
+                }
+            }, entryName);
+        }
+        latch.await();
+        
+        for (final String entryName : failures.keySet()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Asynchronous read of " + entryName + " failed with " + failures.get(entryName) + ". Retrying synchronously.");
+            }
+            byte[] data = executeOperation(new GenericOperation<byte[]>() {
+                @Override
+                public byte[] execute() throws Exception {
+                    try {
+                        return getZookeeperClient().getData(getQueueEntryFolder() + '/' + entryName, null, null);
+                    } catch (KeeperException.NoNodeException e) {
+                        return null;
+                    }
+                }
+            });
+            if (data != null) {
+                response.put(entryName, data);
+            }
+        }
+        return response;
+    }
+    
+    /**
+     * Watch notifications that need {@link #QUEUE_MONITOR} are handed off to a separate thread. Zookeeper delivers 
+     * watch events and asynchronous callbacks on the same event thread, so blocking that thread on the monitor while 
+     * {@link #readEntries(List)} holds it and waits for its callbacks would deadlock.
+     * 
+     * @param runnable
+     */
+    protected void runOffEventThread(Runnable runnable) {
+        WATCH_NOTIFIER.execute(runnable);
+    }
+    
+    protected void executeMulti(final List<Op> ops) throws InterruptedException {
+        executeOperation(new GenericOperation<Void>() {
+            @Override
+            public Void execute() throws Exception {
+                getZookeeperClient().multi(ops);
+                return null;
+            }
+        });
+    }
+    
     /**
      * Creates the appropriate folder(s) in Zookeeper if they don't already exist.
      */
@@ -767,14 +1011,16 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
                                 @Override
                                 public void process(WatchedEvent event) {
                                     //This happens in a callback on another thread, allowing us to avoid an infinite recursive loop.
-                                    try {
-                                        determineMaxCapacity();
-                                    } catch (Exception e) {
-                                        LOG.error("An error occured in a callback to determine the max queue size.", e);
-                                        if (InterruptedException.class.isAssignableFrom(e.getClass())) {
-                                            Thread.currentThread().interrupt();
+                                    runOffEventThread(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            try {
+                                                determineMaxCapacity();
+                                            } catch (Exception e) {
+                                                LOG.error("An error occured in a callback to determine the max queue size.", e);
+                                            }
                                         }
-                                    }
+                                    });
                                 }
                                 
                             }, null));
@@ -917,6 +1163,50 @@ public class ZookeeperDistributedQueue<T extends Serializable> implements Distri
         return QUEUE_ENTRY_NAME;
     }
     
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+    
+    /**
+     * The number of elements claimed from Zookeeper at once by single element removals (poll, take, remove). Elements 
+     * beyond the first are kept in a local buffer and are lost if this JVM stops before they are consumed. The default 
+     * is 1, which disables prefetching.
+     * 
+     * @param prefetchSize
+     */
+    public void setPrefetchSize(int prefetchSize) {
+        Assert.isTrue(prefetchSize > 0, "prefetchSize must be greater than 0.");
+        this.prefetchSize = prefetchSize;
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    /**
+     * The maximum number of elements created or removed with a single Zookeeper multi-op. The default is 100.
+     * 
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be greater than 0.");
+        this.batchSize = batchSize;
+    }
+    
+    public int getMaxOutstandingReads() {
+        return maxOutstandingReads;
+    }
+    
+    /**
+     * The maximum number of asynchronous element reads in flight at once. The default is 32.
+     * 
+     * @param maxOutstandingReads
+     */
+    public void setMaxOutstandingReads(int maxOutstandingReads) {
+        Assert.isTrue(maxOutstandingReads > 0, "maxOutstandingReads must be greater than 0.");
+        this.maxOutstandingReads = maxOutstandingReads;
+    }
+    
     protected ZooKeeper getZookeeperClient() {
         return zk;
     }
@@ -30,12 +30,22 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Resource;
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.broadleafcommerce.common.exception.ServiceException;
@@ -49,16 +59,19 @@ import org.broadleafcommerce.core.order.domain.OrderImpl;
 import org.broadleafcommerce.core.order.service.OrderService;
 import org.broadleafcommerce.core.order.service.type.OrderStatus;
 import org.broadleafcommerce.core.util.dao.ResourcePurgeDao;
+import org.broadleafcommerce.core.util.domain.PurgeCheckpoint;
 import org.broadleafcommerce.core.util.service.type.PurgeCartVariableNames;
 import org.broadleafcommerce.core.util.service.type.PurgeCustomerVariableNames;
 import org.broadleafcommerce.core.util.service.type.PurgeOrderHistoryVariableNames;
 import org.broadleafcommerce.profile.core.domain.Customer;
+import org.broadleafcommerce.profile.core.domain.CustomerImpl;
 import org.broadleafcommerce.profile.core.service.CustomerService;
 
 import org.hibernate.Session;
 import org.hibernate.jdbc.Work;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -107,9 +120,37 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
     protected static final Long BATCH_SIZE = 50L;
     protected static final Long PURGE_ERROR_CACHE_RETRY_SECONDS = System.currentTimeMillis() - 172800; //48 HOURS
 
+    protected static final String BULK_PURGE_ID_MARKER = "BULK_PURGE_IDS";
+    protected static final String CART_CHECKPOINT = "CART";
+    protected static final String CUSTOMER_CHECKPOINT = "CUSTOMER";
+
     protected PurgeErrorCache customerPurgeErrors = new PurgeErrorCache();
     protected PurgeErrorCache cartPurgeErrors = new PurgeErrorCache();
 
+    protected final Set<String> runningCheckpoints = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    protected volatile ExecutorService bulkPurgeExecutor;
+
+    /**
+     * Whether carts and customers are purged with set based delete statements, a chunk of ids at a time, rather than
+     * by loading and removing each entity. Disabled by default, since the statements bypass
+     * {@link OrderService#deleteOrder(Order)} and {@link CustomerService#deleteCustomer(Customer)}.
+     */
+    @Value("${purge.bulk.enabled:false}")
+    protected boolean bulkPurgeEnabled = false;
+
+    @Value("${purge.bulk.chunk.size:500}")
+    protected int bulkPurgeChunkSize = 500;
+
+    @Value("${purge.bulk.threads:2}")
+    protected int bulkPurgeThreads = 2;
+
+    /**
+     * After each wave of chunks, pause for this fraction of the time the wave took. A slower database therefore
+     * results in longer pauses.
+     */
+    @Value("${purge.bulk.throttle.ratio:0.5}")
+    protected double bulkPurgeThrottleRatio = 0.5;
+
     @Resource(name = "blTransactionManager")
     protected PlatformTransactionManager transactionManager;
     
@@ -148,6 +189,10 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
                     "In the absence of config params, all carts would be candidates for deletion.");
         }
         CartPurgeParams purgeParams = new CartPurgeParams(config).invoke();
+        if (bulkPurgeEnabled) {
+            bulkPurgeCarts(purgeParams);
+            return;
+        }
         int processedCount = 0, batchCount = 0;
         synchronized(cartPurgeErrors) {
             Set<Long> failedCartIds = getCartsInErrorToIgnore(purgeParams);
@@ -208,23 +253,8 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         Integer batchSize = config.get(PurgeOrderHistoryVariableNames.BATCH_SIZE.toString());
 
         List<Order> oldOrders = orderService.findOrdersByDaysCount(daysCount, batchSize);
-        Map<String, List<DeleteStatementGeneratorImpl.PathElement>> dependencies = new HashMap<>(depends);
-
-        List<DeleteStatementGeneratorImpl.PathElement> orderDependencies = new ArrayList<>();
-
-        orderDependencies.add(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER_LOCK", "ORDER_ID", "ORDER_ID"));
-
-        dependencies.put("BLC_ORDER", orderDependencies);
-
-        ArrayList<DeleteStatementGeneratorImpl.PathElement> orderItemDependencies = new ArrayList<>();
-        orderDependencies.add(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER_MULTISHIP_OPTION", "ORDER_MULTISHIP_OPTION_ID", "ORDER_ITEM_ID"));
-        orderDependencies.add(new DeleteStatementGeneratorImpl.PathElement("BLC_GIFTWRAP_ORDER_ITEM", "ORDER_ITEM_ID", "ORDER_ITEM_ID"));
-        dependencies.put("BLC_ORDER_ITEM", orderItemDependencies);
-        dependencies.put("BLC_ORDER_PAYMENT", Collections.singletonList(new DeleteStatementGeneratorImpl.PathElement("BLC_PAYMENT_LOG", "ORDER_PAYMENT_ID", "ORDER_PAYMENT_ID")));
-        extensionManager.getProxy().addPurgeDependencies(dependencies);
-        Set<String> exclusions = new HashSet<>();
-        exclusions.add("BLC_ADMIN_USER");
-        extensionManager.getProxy().addPurgeExclusions(exclusions);
+        Map<String, List<DeleteStatementGeneratorImpl.PathElement>> dependencies = buildOrderPurgeDependencies(depends);
+        Set<String> exclusions = buildPurgeExclusions();
         Map<String, String> deleteStatement = deleteStatementGenerator.generateDeleteStatementsForType(OrderImpl.class, "?", dependencies, exclusions);
         for (Order order : oldOrders) {
             TransactionStatus status = TransactionUtils.createTransaction("Cart Purge",
@@ -255,6 +285,333 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         LOG.info("Finished purging historical orders.");
     }
 
+    /**
+     * Build the dependencies, not discoverable from the entity mappings, of the tables deleted along with an order
+     *
+     * @param depends additional dependencies supplied by the caller
+     * @return the complete dependency map to pass to the {@link DeleteStatementGenerator}
+     */
+    protected Map<String, List<DeleteStatementGeneratorImpl.PathElement>> buildOrderPurgeDependencies(Map<String, List<DeleteStatementGeneratorImpl.PathElement>> depends) {
+        Map<String, List<DeleteStatementGeneratorImpl.PathElement>> dependencies = new HashMap<>(depends);
+
+        List<DeleteStatementGeneratorImpl.PathElement> orderDependencies = new ArrayList<>();
+
+        orderDependencies.add(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER_LOCK", "ORDER_ID", "ORDER_ID"));
+
+        dependencies.put("BLC_ORDER", orderDependencies);
+
+        ArrayList<DeleteStatementGeneratorImpl.PathElement> orderItemDependencies = new ArrayList<>();
+        orderItemDependencies.add(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER_MULTISHIP_OPTION", "ORDER_MULTISHIP_OPTION_ID", "ORDER_ITEM_ID"));
+        orderItemDependencies.add(new DeleteStatementGeneratorImpl.PathElement("BLC_GIFTWRAP_ORDER_ITEM", "ORDER_ITEM_ID", "ORDER_ITEM_ID"));
+        dependencies.put("BLC_ORDER_ITEM", orderItemDependencies);
+        dependencies.put("BLC_ORDER_PAYMENT", Collections.singletonList(new DeleteStatementGeneratorImpl.PathElement("BLC_PAYMENT_LOG", "ORDER_PAYMENT_ID", "ORDER_PAYMENT_ID")));
+        extensionManager.getProxy().addPurgeDependencies(dependencies);
+        return dependencies;
+    }
+
+    /**
+     * Build the set of tables that must never be deleted from as part of a purge
+     */
+    protected Set<String> buildPurgeExclusions() {
+        Set<String> exclusions = new HashSet<>();
+        exclusions.add("BLC_ADMIN_USER");
+        extensionManager.getProxy().addPurgeExclusions(exclusions);
+        return exclusions;
+    }
+
+    /**
+     * Purge the carts matching the params with set based deletes. Candidate ids are selected in ascending chunks and
+     * progress is kept in a persistent {@link PurgeCheckpoint}, so that a run that is capped by the batch size, or
+     * that is interrupted, resumes where it stopped.
+     *
+     * @param purgeParams configured parameters for the cart purge process
+     */
+    protected void bulkPurgeCarts(final CartPurgeParams purgeParams) {
+        Map<String, String> deleteStatements = deleteStatementGenerator.generateDeleteStatementsForType(OrderImpl.class,
+                BULK_PURGE_ID_MARKER, buildOrderPurgeDependencies(new HashMap<String, List<DeleteStatementGeneratorImpl.PathElement>>()),
+                buildPurgeExclusions());
+        String checkpointName = purgeParams.getCheckpointName() == null ? CART_CHECKPOINT : purgeParams.getCheckpointName();
+        int purged = bulkPurge(checkpointName, OrderImpl.class, deleteStatements, new BulkPurgeTarget() {
+            @Override
+            public List<Long> findIds(Long lastId, int length, List<Long> excludedIds) {
+                return getCartIdsToPurge(purgeParams, lastId, length, excludedIds);
+            }
+
+            @Override
+            public void addStatements(Statement statement, Long id) {
+                extensionManager.getProxy().addPurgeStatements(statement, String.valueOf(id));
+            }
+        }, purgeParams.getBatchSize(), purgeParams.getFailedRetryTime());
+        LOG.info(String.format("Bulk cart purge processed.  Purged %d carts", purged));
+    }
+
+    /**
+     * Purge the customers matching the params with set based deletes. See {@link #bulkPurgeCarts(CartPurgeParams)}.
+     *
+     * @param purgeParams configured parameters for the customer purge process
+     */
+    protected void bulkPurgeCustomers(final CustomerPurgeParams purgeParams) {
+        Map<String, List<DeleteStatementGeneratorImpl.PathElement>> dependencies = new HashMap<>();
+        dependencies.put("BLC_CUSTOMER", Collections.singletonList(new DeleteStatementGeneratorImpl.PathElement("BLC_CUSTOMER_ROLE", "CUSTOMER_ROLE_ID", "CUSTOMER_ID")));
+        extensionManager.getProxy().addPurgeDependencies(dependencies);
+        Map<String, String> deleteStatements = deleteStatementGenerator.generateDeleteStatementsForType(CustomerImpl.class,
+                BULK_PURGE_ID_MARKER, dependencies, buildPurgeExclusions());
+        String checkpointName = purgeParams.getCheckpointName() == null ? CUSTOMER_CHECKPOINT : purgeParams.getCheckpointName();
+        int purged = bulkPurge(checkpointName, CustomerImpl.class, deleteStatements, new BulkPurgeTarget() {
+            @Override
+            public List<Long> findIds(Long lastId, int length, List<Long> excludedIds) {
+                return getCustomerIdsToPurge(purgeParams, lastId, length, excludedIds);
+            }
+        }, purgeParams.getBatchSize(), purgeParams.getFailedRetryTime());
+        LOG.info(String.format("Bulk customer purge processed.  Purged %d customers", purged));
+    }
+
+    /**
+     * Select candidate ids in ascending chunks and delete each chunk with the given set based statements. Up to
+     * {@link #bulkPurgeThreads} chunks are deleted in parallel, each in its own transaction. A chunk that fails is
+     * retried one id at a time, and the ids that still fail are recorded in the checkpoint and skipped until their
+     * retry time has passed.
+     *
+     * @param checkpointName the name of the checkpoint that records progress for this purge
+     * @param rootType the entity type being purged
+     * @param deleteStatements the statements from the {@link DeleteStatementGenerator}, using {@link #BULK_PURGE_ID_MARKER} as the id value
+     * @param target selects the candidate ids
+     * @param maxCount the max number of ids to process in this run, or null for no limit
+     * @param failedRetryTime failures recorded before this time (in milliseconds) are retried
+     * @return the number of entities purged
+     */
+    protected int bulkPurge(String checkpointName, Class<?> rootType, Map<String, String> deleteStatements,
+            BulkPurgeTarget target, Long maxCount, long failedRetryTime) {
+        if (!runningCheckpoints.add(checkpointName)) {
+            LOG.warn(String.format("A bulk purge for checkpoint %s is already running. Skipping this run.", checkpointName));
+            return 0;
+        }
+        try {
+            PurgeCheckpoint checkpoint = resourcePurgeDao.readPurgeCheckpoint(checkpointName);
+            List<Long> excludedIds = checkpoint.getFailuresSince(failedRetryTime);
+            Long lastId = checkpoint.getLastProcessedId();
+            if (lastId == null) {
+                checkpoint.setPassStarted(SystemTime.asDate());
+                checkpoint.setProcessedCount(0L);
+            } else {
+                LOG.info(String.format("Resuming bulk purge for checkpoint %s after id %d", checkpointName, lastId));
+            }
+            int chunkSize = Math.max(1, bulkPurgeChunkSize);
+            int purged = 0;
+            long remaining = maxCount == null ? Long.MAX_VALUE : maxCount;
+            boolean exhausted = false;
+            while (!exhausted && remaining > 0 && !Thread.currentThread().isInterrupted()) {
+                List<List<Long>> wave = new ArrayList<>();
+                while (wave.size() < Math.max(1, bulkPurgeThreads) && remaining > 0) {
+                    int length = (int) Math.min(chunkSize, remaining);
+                    List<Long> ids = target.findIds(lastId, length, excludedIds);
+                    if (!ids.isEmpty()) {
+                        wave.add(ids);
+                        lastId = ids.get(ids.size() - 1);
+                        remaining -= ids.size();
+                    }
+                    if (ids.size() < length) {
+                        exhausted = true;
+                        break;
+                    }
+                }
+                if (wave.isEmpty()) {
+                    break;
+                }
+                long start = System.currentTimeMillis();
+                List<Long> failedIds = deleteWave(rootType, deleteStatements, target, wave);
+                long elapsed = System.currentTimeMillis() - start;
+                int wavePurged = -failedIds.size();
+                for (List<Long> chunk : wave) {
+                    wavePurged += chunk.size();
+                }
+                purged += wavePurged;
+                for (Long failedId : failedIds) {
+                    checkpoint.addFailure(failedId, start);
+                }
+                checkpoint.setLastProcessedId(lastId);
+                checkpoint.setProcessedCount(checkpoint.getProcessedCount() + wavePurged);
+                checkpoint = saveCheckpoint(checkpoint);
+                if (!exhausted) {
+                    throttleBulkPurge(elapsed);
+                }
+            }
+            if (exhausted) {
+                LOG.info(String.format("Bulk purge pass for checkpoint %s complete.  Purged %d since %s, %d failures recorded",
+                        checkpointName, checkpoint.getProcessedCount(), checkpoint.getPassStarted(), checkpoint.getFailures().size()));
+                checkpoint.setLastProcessedId(null);
+                saveCheckpoint(checkpoint);
+            }
+            return purged;
+        } finally {
+            runningCheckpoints.remove(checkpointName);
+        }
+    }
+
+    /**
+     * Delete the chunks of a wave, in parallel when more than one worker thread is configured
+     *
+     * @return the ids that could not be purged
+     */
+    protected List<Long> deleteWave(final Class<?> rootType, final Map<String, String> deleteStatements,
+            final BulkPurgeTarget target, List<List<Long>> wave) {
+        List<Long> failedIds = new ArrayList<>();
+        if (wave.size() == 1) {
+            failedIds.addAll(deleteChunk(rootType, deleteStatements, target, wave.get(0)));
+            return failedIds;
+        }
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (final List<Long> chunk : wave) {
+            futures.add(getBulkPurgeExecutor().submit(new Callable<List<Long>>() {
+                @Override
+                public List<Long> call() throws Exception {
+                    return deleteChunk(rootType, deleteStatements, target, chunk);
+                }
+            }));
+        }
+        for (int j = 0; j < futures.size(); j++) {
+            try {
+                failedIds.addAll(futures.get(j).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedIds.addAll(wave.get(j));
+            } catch (ExecutionException e) {
+                LOG.error("Not able to purge chunk of " + rootType.getSimpleName(), e.getCause());
+                failedIds.addAll(wave.get(j));
+            }
+        }
+        return failedIds;
+    }
+
+    /**
+     * Delete a chunk of ids in one transaction. If that fails, each id is retried in its own transaction so that a
+     * single bad entity does not prevent the rest of the chunk from being purged.
+     *
+     * @return the ids that could not be purged
+     */
+    protected List<Long> deleteChunk(Class<?> rootType, Map<String, String> deleteStatements, BulkPurgeTarget target, List<Long> ids) {
+        try {
+            executeBulkDelete(rootType, deleteStatements, target, ids);
+            return Collections.emptyList();
+        } catch (Exception e) {
+            if (ids.size() == 1) {
+                LOG.error(String.format("Not able to purge %s ID: %d", rootType.getSimpleName(), ids.get(0)), e);
+                return ids;
+            }
+            LOG.warn(String.format("Not able to purge a chunk of %d %s. Retrying individually.", ids.size(), rootType.getSimpleName()), e);
+        }
+        List<Long> failedIds = new ArrayList<>();
+        for (Long id : ids) {
+            try {
+                executeBulkDelete(rootType, deleteStatements, target, Collections.singletonList(id));
+            } catch (Exception e) {
+                LOG.error(String.format("Not able to purge %s ID: %d", rootType.getSimpleName(), id), e);
+                failedIds.add(id);
+            }
+        }
+        return failedIds;
+    }
+
+    protected void executeBulkDelete(Class<?> rootType, final Map<String, String> deleteStatements, final BulkPurgeTarget target,
+            final List<Long> ids) {
+        TransactionStatus status = TransactionUtils.createTransaction("Bulk Purge",
+                TransactionDefinition.PROPAGATION_REQUIRED, transactionManager, false);
+        try {
+            em.unwrap(Session.class).doWork(new Work() {
+                @Override
+                public void execute(Connection connection) throws SQLException {
+                    Statement statement = connection.createStatement();
+                    try {
+                        for (String value : deleteStatements.values()) {
+                            String sql = buildBulkDeleteSql(value, ids);
+                            LOG.debug(sql);
+                            statement.addBatch(sql);
+                        }
+                        for (Long id : ids) {
+                            target.addStatements(statement, id);
+                        }
+                        statement.executeBatch();
+                    } finally {
+                        statement.close();
+                    }
+                }
+            });
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+        } catch (RuntimeException e) {
+            if (!status.isCompleted()) {
+                TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            }
+            throw e;
+        }
+        //the rows were removed behind hibernate's back, so make sure no stale copy is served from the second level cache
+        Cache cache = em.getEntityManagerFactory().getCache();
+        for (Long id : ids) {
+            cache.evict(rootType, id);
+        }
+    }
+
+    /**
+     * Replace the {@link #BULK_PURGE_ID_MARKER} comparison of a generated delete statement with an IN clause for the ids
+     *
+     * @param deleteStatement a statement from the {@link DeleteStatementGenerator}
+     * @param ids the ids of the chunk being deleted
+     * @return the statement to execute
+     */
+    protected String buildBulkDeleteSql(String deleteStatement, List<Long> ids) {
+        return deleteStatement.replace("=" + BULK_PURGE_ID_MARKER, " IN (" + StringUtils.join(ids, ",") + ")");
+    }
+
+    protected PurgeCheckpoint saveCheckpoint(PurgeCheckpoint checkpoint) {
+        checkpoint.setDateUpdated(SystemTime.asDate());
+        TransactionStatus status = TransactionUtils.createTransaction("Purge Checkpoint",
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW, transactionManager, false);
+        try {
+            PurgeCheckpoint response = resourcePurgeDao.savePurgeCheckpoint(checkpoint);
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return response;
+        } catch (RuntimeException e) {
+            if (!status.isCompleted()) {
+                TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Pause in proportion to the time the last wave of deletes took, leaving the database room for other work
+     */
+    protected void throttleBulkPurge(long elapsed) {
+        long pause = (long) (elapsed * bulkPurgeThrottleRatio);
+        if (pause > 0) {
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    protected ExecutorService getBulkPurgeExecutor() {
+        if (bulkPurgeExecutor == null) {
+            synchronized (this) {
+                if (bulkPurgeExecutor == null) {
+                    bulkPurgeExecutor = Executors.newFixedThreadPool(Math.max(1, bulkPurgeThreads), new ThreadFactory() {
+
+                        protected final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "resource-purge-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return bulkPurgeExecutor;
+    }
+
     @Override
     public void purgeCustomers(final Map<String, String> config) {
         if (LOG.isDebugEnabled()) {
@@ -265,6 +622,10 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
                     "In the absence of config params, all customers would be candidates for deletion.");
         }
         CustomerPurgeParams purgeParams = new CustomerPurgeParams(config).invoke();
+        if (bulkPurgeEnabled) {
+            bulkPurgeCustomers(purgeParams);
+            return;
+        }
         int processedCount = 0, batchCount = 0;
         synchronized(customerPurgeErrors) {
             Set<Long> failedCustomerIds = getCustomersInErrorToIgnore(purgeParams);
@@ -316,6 +677,21 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         return resourcePurgeDao.findCarts(nameArray, statusArray, dateCreatedMinThreshold, isPreview, startPos, length, cartsInError);
     }
 
+    /**
+     * Get the next chunk of cart ids to delete from the database, in ascending order. Subclasses may override for
+     * custom cart retrieval logic.
+     *
+     * @param purgeParams configured parameters for the Cart purge process
+     * @param lastId only ids greater than this are returned. Can be null.
+     * @param length the max number of ids to return
+     * @param cartsInError list of cart ids to be ignored/excluded from the query
+     * @return list of cart ids to delete
+     */
+    protected List<Long> getCartIdsToPurge(CartPurgeParams purgeParams, Long lastId, int length, List<Long> cartsInError) {
+        return resourcePurgeDao.findCartIds(purgeParams.getNameArray(), purgeParams.getStatusArray(),
+                purgeParams.getDateCreatedMinThreshold(), purgeParams.getIsPreview(), lastId, length, cartsInError);
+    }
+
     /**
      * Get the count of carts to delete from the database. Subclasses may override for custom cart retrieval logic.
      *
@@ -409,6 +785,21 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         return resourcePurgeDao.findCustomers(dateCreatedMinThreshold, isRegistered, isDeactivated, isPreview, startPos, length, customersInError);
     }
 
+    /**
+     * Get the next chunk of customer ids to delete from the database, in ascending order. Subclasses may override for
+     * custom customer retrieval logic.
+     *
+     * @param purgeParams configured parameters for the Customer purge process
+     * @param lastId only ids greater than this are returned. Can be null.
+     * @param length the max number of ids to return
+     * @param customersInError list of customer ids to be ignored/excluded from the query
+     * @return list of customer ids to delete
+     */
+    protected List<Long> getCustomerIdsToPurge(CustomerPurgeParams purgeParams, Long lastId, int length, List<Long> customersInError) {
+        return resourcePurgeDao.findCustomerIds(purgeParams.getDateCreatedMinThreshold(), purgeParams.getIsRegistered(),
+                purgeParams.getIsDeactivated(), purgeParams.getIsPreview(), lastId, length, customersInError);
+    }
+
     /**
      * Get the count of customers to delete from the database. Subclasses may override for custom customer retrieval logic.
      *
@@ -446,6 +837,7 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         private Boolean isPreview;
         private Long batchSize;
         private Long failedRetryTime;
+        private String checkpointName;
 
         public CartPurgeParams(Map<String, String> config) {
             this.config = config;
@@ -475,6 +867,10 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
             return failedRetryTime;
         }
 
+        public String getCheckpointName() {
+            return checkpointName;
+        }
+
         public CartPurgeParams invoke() {
             nameArray = null;
             statusArray = null;
@@ -510,6 +906,9 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
                 if (PurgeCartVariableNames.RETRY_FAILED_SECONDS.toString().equals(entry.getKey())) {
                     failedRetryTime = System.currentTimeMillis() - (Long.parseLong(entry.getValue()) * 1000);
                 }
+                if (PurgeCartVariableNames.CHECKPOINT.toString().equals(entry.getKey())) {
+                    checkpointName = entry.getValue();
+                }
             }
             return this;
         }
@@ -524,6 +923,7 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
         private Boolean isDeactivated;
         private Long batchSize;
         private Long failedRetryTime;
+        private String checkpointName;
 
         public CustomerPurgeParams(Map<String, String> config) {
             this.config = config;
@@ -553,6 +953,10 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
             return failedRetryTime;
         }
 
+        public String getCheckpointName() {
+            return checkpointName;
+        }
+
         public CustomerPurgeParams invoke() {
             isRegistered = null;
             isDeactivated = null;
@@ -581,11 +985,26 @@ public class ResourcePurgeServiceImpl implements ResourcePurgeService {
                 if (PurgeCustomerVariableNames.RETRY_FAILED_SECONDS.toString().equals(entry.getKey())) {
                     failedRetryTime = System.currentTimeMillis() - (Long.parseLong(entry.getValue()) * 1000);
                 }
+                if (PurgeCustomerVariableNames.CHECKPOINT.toString().equals(entry.getKey())) {
+                    checkpointName = entry.getValue();
+                }
             }
             return this;
         }
     }
 
+    /**
+     * Supplies the candidate ids for a bulk purge, and any additional statements to run for each purged id
+     */
+    protected abstract static class BulkPurgeTarget {
+
+        public abstract List<Long> findIds(Long lastId, int length, List<Long> excludedIds);
+
+        public void addStatements(Statement statement, Long id) throws SQLException {
+            //do nothing by default
+        }
+    }
+
     protected class PurgeErrorCache {
 
         private Map<Long, Long> cache = new HashMap<Long, Long>();
@@ -28,4 +28,5 @@ public enum PurgeCartVariableNames {
     ,SITE //looking for orders that belong to a particular site (generally only meaningful in an multi-tenant context)
     ,BATCH_SIZE //the max size of the purge batch (null results in the batch size matching the number of qualified orders to purge)
     ,RETRY_FAILED_SECONDS //the number of seconds that a failed purge should be ignored before being retrying
+    ,CHECKPOINT //the name of the persistent checkpoint used by a bulk purge to resume and to remember failures (defaults to the purge type)
 }
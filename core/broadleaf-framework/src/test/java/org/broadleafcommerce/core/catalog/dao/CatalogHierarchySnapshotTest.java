@@ -0,0 +1,89 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.catalog.dao;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+
+import junit.framework.TestCase;
+
+public class CatalogHierarchySnapshotTest extends TestCase {
+
+    protected static final long NOW = 1000000L;
+    protected static final Date STARTED = new Date(NOW - 1000);
+    protected static final Date ENDED = new Date(NOW - 10);
+
+    protected CatalogHierarchySnapshot snapshot;
+
+    @Override
+    protected void setUp() throws Exception {
+        // 1 (root) -> 2 -> 4, 1 -> 3 -> 4 (default), 3 -> 5 (archived), 6 (ended) -> 7
+        snapshot = new CatalogHierarchySnapshot.Builder()
+                .addCategory(4L, null, STARTED, null, 'N')
+                .addCategory(1L, null, STARTED, null, 'N')
+                .addCategory(2L, null, STARTED, null, 'N')
+                .addCategory(3L, null, STARTED, null, null)
+                .addCategory(5L, null, STARTED, null, 'Y')
+                .addCategory(6L, null, STARTED, ENDED, 'N')
+                .addCategory(7L, 1L, STARTED, null, 'N')
+                .addParent(2L, 1L, true)
+                .addParent(3L, 1L, true)
+                .addParent(4L, 2L, false)
+                .addParent(4L, 3L, true)
+                .addParent(5L, 3L, true)
+                .addParent(7L, 6L, true)
+                .addParent(7L, 99L, true)
+                .build(1L);
+    }
+
+    public void testParentLookupsMirrorCategoryImpl() throws Exception {
+        assertEquals(Long.valueOf(3L), snapshot.getParentId(4L, NOW));
+        assertEquals(Arrays.asList(1L, 3L, 4L), snapshot.getDefaultParentPath(4L, NOW));
+        // the explicit default parent wins, and the only xref parent is inactive
+        assertEquals(Long.valueOf(1L), snapshot.getDefaultParentId(7L, NOW));
+        assertNull(snapshot.getParentId(7L, NOW));
+        assertEquals(Arrays.asList(6L), snapshot.getParentIds(7L));
+        assertTrue(snapshot.getParentIds(99L).isEmpty());
+    }
+
+    public void testAncestorsAndDescendants() throws Exception {
+        assertEquals(new LinkedHashSet<>(Arrays.asList(2L, 3L, 1L)), snapshot.getAncestorIds(4L));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(2L, 3L, 4L, 5L)), snapshot.getDescendantIds(1L));
+        assertEquals(Arrays.asList(4L, 5L), snapshot.getChildIds(3L));
+    }
+
+    public void testActivityAlongDefaultReferences() throws Exception {
+        assertTrue(snapshot.isActiveUpTo(4L, 1L, NOW));
+        assertFalse(snapshot.isActiveUpTo(5L, 1L, NOW));
+        assertFalse(snapshot.isActiveUpTo(7L, null, NOW));
+        assertFalse(snapshot.isActive(3L, STARTED.getTime()));
+    }
+
+    public void testCyclesTerminate() throws Exception {
+        CatalogHierarchySnapshot cyclic = new CatalogHierarchySnapshot.Builder()
+                .addCategory(1L, null, STARTED, null, 'N')
+                .addCategory(2L, null, STARTED, null, 'N')
+                .addParent(1L, 2L, true)
+                .addParent(2L, 1L, true)
+                .build(2L);
+        assertEquals(Arrays.asList(1L, 2L), cyclic.getDefaultParentPath(2L, NOW));
+        assertEquals(new LinkedHashSet<>(Arrays.asList(1L)), cyclic.getAncestorIds(2L));
+        assertTrue(cyclic.isActiveUpTo(1L, null, NOW));
+    }
+}
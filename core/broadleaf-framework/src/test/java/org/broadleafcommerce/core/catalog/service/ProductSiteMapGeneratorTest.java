@@ -29,12 +29,14 @@ import org.broadleafcommerce.core.catalog.domain.Product;
 import org.broadleafcommerce.core.catalog.domain.ProductImpl;
 import org.broadleafcommerce.core.catalog.domain.Sku;
 import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductSiteMapDTO;
 import org.easymock.EasyMock;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -96,4 +98,49 @@ public class ProductSiteMapGeneratorTest extends SiteMapGeneratorTest {
 
     }
 
+    @Test
+    public void testProductSiteMapGeneratorWithKeysetPaging() throws SiteMapException, IOException {
+
+        // product 2 relies on a generated url, so it is read as an entity
+        Product p2 = new ProductImpl();
+        p2.setId(2L);
+        p2.setUrl("hot-sauces/sweet_death_sauce");
+        Sku s2 = new SkuImpl();
+        p2.setDefaultSku(s2);
+
+        List<ProductSiteMapDTO> entries = new ArrayList<ProductSiteMapDTO>();
+        entries.add(new ProductSiteMapDTO(1L, "/hot-sauces/sudden_death_sauce", 11L));
+        entries.add(new ProductSiteMapDTO(2L, null, 12L));
+        entries.add(new ProductSiteMapDTO(3L, "/hot-sauces/hoppin_hot_sauce", 13L));
+        entries.add(new ProductSiteMapDTO(4L, "/hot-sauces/day_of_the_dead_chipotle_hot_sauce", 14L));
+
+        ProductDao productDao = EasyMock.createMock(ProductDao.class);
+        EasyMock.expect(productDao.readAllActiveProductSiteMapEntries(EasyMock.<Long>isNull(), EasyMock.eq(5))).andReturn(entries);
+        EasyMock.expect(productDao.readProductsByIds(Arrays.asList(2L))).andReturn(Arrays.asList(p2));
+        EasyMock.replay(productDao);
+
+        ProductSiteMapGenerator psmg = new ProductSiteMapGenerator();
+        psmg.setProductDao(productDao);
+        psmg.setPageSize(5);
+        psmg.setKeysetPagingEnabled(true);
+
+        SiteMapGeneratorConfiguration smgc = new SiteMapGeneratorConfigurationImpl();
+        smgc.setDisabled(false);
+        smgc.setSiteMapGeneratorType(SiteMapGeneratorType.PRODUCT);
+        smgc.setSiteMapChangeFreq(SiteMapChangeFreqType.HOURLY);
+        smgc.setSiteMapPriority(SiteMapPriorityType.POINT5);
+
+        testGenerator(smgc, psmg);
+        EasyMock.verify(productDao);
+
+        File file1 = fileService.getResource("/sitemap_index.xml");
+        File file2 = fileService.getResource("/sitemap1.xml");
+        File file3 = fileService.getResource("/sitemap2.xml");
+
+        compareFiles(file1, "src/test/resources/org/broadleafcommerce/sitemap/product/sitemap_index.xml");
+        compareFiles(file2, "src/test/resources/org/broadleafcommerce/sitemap/product/sitemap1.xml");
+        compareFiles(file3, "src/test/resources/org/broadleafcommerce/sitemap/product/sitemap2.xml");
+
+    }
+
 }
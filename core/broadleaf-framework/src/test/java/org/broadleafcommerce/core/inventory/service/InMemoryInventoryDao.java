@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import org.broadleafcommerce.core.inventory.dao.InventoryDao;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Emulates the row level semantics of the conditional update statements issued by
+ * {@link org.broadleafcommerce.core.inventory.dao.InventoryDaoImpl}
+ */
+public class InMemoryInventoryDao implements InventoryDao {
+
+    protected final ConcurrentMap<Long, AtomicInteger> quantities = new ConcurrentHashMap<>();
+    protected final AtomicInteger reads = new AtomicInteger();
+
+    public void setQuantity(Long skuId, int quantity) {
+        quantities.put(skuId, new AtomicInteger(quantity));
+    }
+
+    public int getQuantity(Long skuId) {
+        return quantities.get(skuId).get();
+    }
+
+    @Override
+    public boolean decrementQuantityAvailable(Long skuId, int quantity) {
+        AtomicInteger row = quantities.get(skuId);
+        if (row == null) {
+            return false;
+        }
+        while (true) {
+            int current = row.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (row.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean incrementQuantityAvailable(Long skuId, int quantity) {
+        AtomicInteger row = quantities.get(skuId);
+        if (row == null) {
+            return false;
+        }
+        row.addAndGet(quantity);
+        return true;
+    }
+
+    @Override
+    public Map<Long, Integer> readQuantitiesAvailable(Collection<Long> skuIds) {
+        reads.incrementAndGet();
+        Map<Long, Integer> response = new HashMap<>();
+        for (Long skuId : skuIds) {
+            AtomicInteger row = quantities.get(skuId);
+            if (row != null) {
+                response.put(skuId, row.get());
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,93 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.inventory.service.type.InventoryType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class InventoryReservationServiceImplTest extends TestCase {
+
+    protected InMemoryInventoryDao dao;
+    protected InventoryReservationServiceImpl reservationService;
+
+    @Override
+    protected void setUp() throws Exception {
+        dao = new InMemoryInventoryDao();
+        dao.setQuantity(1L, 10);
+        dao.setQuantity(2L, 3);
+        reservationService = new InventoryReservationServiceImpl();
+        reservationService.setInventoryDao(dao);
+    }
+
+    public void testReservationReducesUnreservedQuantityForOthersOnly() throws Exception {
+        reservationService.reserveInventory("100", Collections.singletonMap(buildSku(1L), 4), 0);
+        assertEquals(Integer.valueOf(6), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null).get(1L));
+        assertEquals(Integer.valueOf(10), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), "100").get(1L));
+        assertTrue(reservationService.releaseReservation("100"));
+        assertFalse(reservationService.releaseReservation("100"));
+        assertEquals(Integer.valueOf(10), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null).get(1L));
+    }
+
+    public void testReservationIsAllOrNothing() throws Exception {
+        Map<Sku, Integer> quantities = new HashMap<>();
+        quantities.put(buildSku(1L), 5);
+        quantities.put(buildSku(2L), 4);
+        try {
+            reservationService.reserveInventory("100", quantities, 0);
+            fail("Expected the reservation to be rejected");
+        } catch (InventoryUnavailableException e) {
+            assertEquals(Long.valueOf(2L), e.getSkuId());
+        }
+        assertEquals(Integer.valueOf(10), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null).get(1L));
+    }
+
+    public void testExpiredReservationsAreReleasedInBulk() throws Exception {
+        reservationService.reserveInventory("100", Collections.singletonMap(buildSku(1L), 2), 1);
+        reservationService.reserveInventory("101", Collections.singletonMap(buildSku(1L), 3), 1);
+        reservationService.reserveInventory("102", Collections.singletonMap(buildSku(1L), 1), 60000);
+        Thread.sleep(5);
+        assertEquals(2, reservationService.releaseExpiredReservations());
+        assertEquals(Integer.valueOf(9), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null).get(1L));
+    }
+
+    public void testCountersAreRefreshedIncrementally() throws Exception {
+        reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null);
+        int reads = dao.reads.get();
+        dao.decrementQuantityAvailable(1L, 4);
+        reservationService.refreshQuantities(Collections.singletonMap(1L, dao.getQuantity(1L)));
+        assertEquals(Integer.valueOf(6), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null).get(1L));
+        assertEquals(reads, dao.reads.get());
+    }
+
+    protected static Sku buildSku(Long id) {
+        Sku sku = new SkuImpl();
+        sku.setId(id);
+        sku.setInventoryType(InventoryType.CHECK_QUANTITY);
+        sku.setActiveStartDate(new Date(System.currentTimeMillis() - 100000L));
+        return sku;
+    }
+}
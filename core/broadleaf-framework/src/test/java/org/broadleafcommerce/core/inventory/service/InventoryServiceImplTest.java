@@ -0,0 +1,79 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.service;
+
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class InventoryServiceImplTest extends TestCase {
+
+    protected InMemoryInventoryDao dao;
+    protected InventoryReservationServiceImpl reservationService;
+    protected InventoryServiceImpl inventoryService;
+
+    @Override
+    protected void setUp() throws Exception {
+        dao = new InMemoryInventoryDao();
+        dao.setQuantity(1L, 5);
+        reservationService = new InventoryReservationServiceImpl();
+        reservationService.setInventoryDao(dao);
+        inventoryService = new InventoryServiceImpl();
+        inventoryService.inventoryDao = dao;
+        inventoryService.reservationService = reservationService;
+        inventoryService.extensionManager = new InventoryServiceExtensionManager();
+        inventoryService.atomicInventoryEnabled = true;
+    }
+
+    public void testAvailabilityCheckReservesTheCartQuantity() throws Exception {
+        inventoryService.cartReservationEnabled = true;
+        Sku sku = InventoryReservationServiceImplTest.buildSku(1L);
+
+        inventoryService.checkSkuAvailability(buildOrder(100L), sku, 3);
+        assertEquals(Integer.valueOf(2), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null).get(1L));
+
+        //checking the same cart again replaces its hold rather than adding to it
+        inventoryService.checkSkuAvailability(buildOrder(100L), sku, 4);
+        assertEquals(Integer.valueOf(1), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null).get(1L));
+
+        try {
+            inventoryService.checkSkuAvailability(buildOrder(101L), sku, 2);
+            fail("Expected the units held by the other cart to be unavailable");
+        } catch (InventoryUnavailableException e) {
+            assertEquals(Long.valueOf(1L), e.getSkuId());
+        }
+    }
+
+    public void testAvailabilityCheckDoesNotReserveWhenDisabled() throws Exception {
+        Sku sku = InventoryReservationServiceImplTest.buildSku(1L);
+
+        inventoryService.checkSkuAvailability(buildOrder(100L), sku, 3);
+        inventoryService.checkSkuAvailability(buildOrder(101L), sku, 3);
+        assertEquals(Integer.valueOf(5), reservationService.retrieveUnreservedQuantities(Arrays.asList(1L), null).get(1L));
+    }
+
+    protected Order buildOrder(Long id) {
+        Order order = new OrderImpl();
+        order.setId(id);
+        return order;
+    }
+}
@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.offer.service;
+
+import org.broadleafcommerce.core.offer.domain.Offer;
+import org.broadleafcommerce.core.offer.domain.OfferImpl;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteria;
+import org.broadleafcommerce.core.offer.domain.OfferItemCriteriaImpl;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXref;
+import org.broadleafcommerce.core.offer.domain.OfferTargetCriteriaXrefImpl;
+import org.broadleafcommerce.core.offer.service.type.OfferType;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class OfferCandidateIndexTest extends TestCase {
+
+    protected OfferCandidateIndex index = new OfferCandidateIndex();
+
+    public void testRuleBuilderCategoryRule() {
+        assertEquals(Collections.singleton("category.name:MERCHANDISE"), index.extractRuleKeys(
+                "MvelHelper.toUpperCase(orderItem.?category.?name)==MvelHelper.toUpperCase(\"merchandise\")"));
+    }
+
+    public void testConjunctionUsesKeyedClause() {
+        assertEquals(Collections.singleton("sku.id:5"), index.extractRuleKeys("orderItem.?sku.?id==5L && orderItem.?quantity>2"));
+    }
+
+    public void testContainsAndDisjunction() {
+        assertEquals(new HashSet<String>(Arrays.asList("product.id:1", "product.id:2")),
+                index.extractRuleKeys("[1, 2] contains orderItem.?product.?id"));
+        assertEquals(new HashSet<String>(Arrays.asList("sku.id:5", "category.id:7")),
+                index.extractRuleKeys("(orderItem.?sku.?id==5) || (orderItem.?category.?id==7)"));
+    }
+
+    public void testUnrestrictedRules() {
+        assertNull(index.extractRuleKeys("orderItem.?sku.?id==5 || orderItem.?price.getAmount()>5.00"));
+        assertNull(index.extractRuleKeys("!(orderItem.?sku.?id==5)"));
+        assertNull(index.extractRuleKeys("orderItem.?product.?name==\"shirt\""));
+    }
+
+    public void testKeyedOfferIsCandidateOnFirstSight() {
+        OfferCandidateIndex index = buildIndex("sku.id:5", "category.name:MERCHANDISE");
+        Offer offer = buildItemOffer(1L, "orderItem.?sku.?id==5L");
+        List<Offer> offers = Collections.singletonList(offer);
+
+        assertEquals(0, index.getIndexedOfferCount());
+        assertEquals(offers, index.filterCandidateOffers(offers, new OrderImpl()));
+        assertEquals(1, index.getIndexedOfferCount());
+        assertEquals(offers, index.filterCandidateOffers(offers, new OrderImpl()));
+
+        index.clear();
+        assertEquals(offers, index.filterCandidateOffers(offers, new OrderImpl()));
+    }
+
+    public void testKeyedOfferExcludedWithoutMatchingKey() {
+        OfferCandidateIndex index = buildIndex("sku.id:6");
+        Offer keyed = buildItemOffer(1L, "orderItem.?sku.?id==5L");
+        Offer unrestricted = buildItemOffer(2L, "orderItem.?price.getAmount()>5.00");
+        List<Offer> offers = Arrays.asList(keyed, unrestricted);
+
+        assertEquals(Collections.singletonList(unrestricted), index.filterCandidateOffers(offers, new OrderImpl()));
+        assertEquals(1L, index.getOffersSkipped());
+    }
+
+    public void testEditedOfferIsReindexed() {
+        OfferCandidateIndex index = buildIndex("sku.id:6");
+        Offer offer = buildItemOffer(1L, "orderItem.?sku.?id==5L");
+        List<Offer> offers = Collections.singletonList(offer);
+        assertTrue(index.filterCandidateOffers(offers, new OrderImpl()).isEmpty());
+
+        // edited in place, as the admin does, without going through OfferService#save
+        offer.getTargetItemCriteriaXref().iterator().next().getOfferItemCriteria().setMatchRule("orderItem.?sku.?id==6L");
+        assertEquals(offers, index.filterCandidateOffers(offers, new OrderImpl()));
+    }
+
+    protected OfferCandidateIndex buildIndex(final String... orderKeys) {
+        OfferCandidateIndex index = new OfferCandidateIndex() {
+            @Override
+            protected Set<String> buildOrderKeys(Order order) {
+                return new HashSet<String>(Arrays.asList(orderKeys));
+            }
+        };
+        index.setEnabled(true);
+        return index;
+    }
+
+    protected Offer buildItemOffer(Long id, String matchRule) {
+        Offer offer = new OfferImpl();
+        offer.setId(id);
+        offer.setType(OfferType.ORDER_ITEM);
+        OfferItemCriteria criteria = new OfferItemCriteriaImpl();
+        criteria.setQuantity(1);
+        criteria.setMatchRule(matchRule);
+        OfferTargetCriteriaXref xref = new OfferTargetCriteriaXrefImpl();
+        xref.setOffer(offer);
+        xref.setOfferItemCriteria(criteria);
+        Set<OfferTargetCriteriaXref> targetCriteria = new HashSet<OfferTargetCriteriaXref>();
+        targetCriteria.add(xref);
+        offer.setTargetItemCriteriaXref(targetCriteria);
+        return offer;
+    }
+}
@@ -0,0 +1,169 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.order.service;
+
+import junit.framework.TestCase;
+
+import org.broadleafcommerce.core.order.dao.OrderDao;
+import org.broadleafcommerce.core.order.domain.Order;
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.pricing.service.PricingService;
+import org.easymock.EasyMock;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.exception.LockAcquisitionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.sql.SQLException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+
+public class OrderServiceImplTest extends TestCase {
+
+    protected OrderServiceImpl orderService;
+    protected OrderDao orderDaoMock;
+    protected PricingService pricingServiceMock;
+    protected EntityManager emMock;
+    protected Session sessionMock;
+    protected CountingTransactionManager transactionManager;
+
+    @Override
+    protected void setUp() throws Exception {
+        orderDaoMock = EasyMock.createMock(OrderDao.class);
+        pricingServiceMock = EasyMock.createMock(PricingService.class);
+        emMock = EasyMock.createMock(EntityManager.class);
+        transactionManager = new CountingTransactionManager();
+
+        orderService = new OrderServiceImpl();
+        orderService.orderDao = orderDaoMock;
+        orderService.pricingService = pricingServiceMock;
+        orderService.em = emMock;
+        orderService.transactionManager = transactionManager;
+        orderService.singleFlushPricing = true;
+    }
+
+    public void testSingleFlushSavesAndPricesInOneTransaction() throws Exception {
+        Order order = buildOrder();
+        sessionMock = EasyMock.createMock(Session.class);
+        expectSessionState();
+        sessionMock.setHibernateFlushMode(FlushMode.MANUAL);
+        sessionMock.setJdbcBatchSize(50);
+        sessionMock.flush();
+        sessionMock.setHibernateFlushMode(FlushMode.AUTO);
+        sessionMock.setJdbcBatchSize(20);
+        EasyMock.expect(orderDaoMock.save(EasyMock.same(order))).andReturn(order).times(2);
+        EasyMock.expect(pricingServiceMock.executePricing(EasyMock.same(order))).andReturn(order);
+        replayAll();
+
+        assertSame(order, orderService.save(order, true));
+
+        verifyAll();
+        assertEquals(1, transactionManager.begun);
+        assertEquals(1, transactionManager.committed);
+        assertEquals(0, transactionManager.rolledBack);
+    }
+
+    public void testSingleFlushHonoursAutoFlushOnQuery() throws Exception {
+        orderService.autoFlushSaveCart = true;
+        Order order = buildOrder();
+        // no flush mode changes are expected, so any call to setHibernateFlushMode fails the test
+        sessionMock = EasyMock.createMock(Session.class);
+        expectSessionState();
+        sessionMock.setJdbcBatchSize(50);
+        sessionMock.flush();
+        sessionMock.setJdbcBatchSize(20);
+        EasyMock.expect(orderDaoMock.save(EasyMock.same(order))).andReturn(order).times(2);
+        EasyMock.expect(pricingServiceMock.executePricing(EasyMock.same(order))).andReturn(order);
+        replayAll();
+
+        assertSame(order, orderService.save(order, true));
+
+        verifyAll();
+        assertEquals(1, transactionManager.committed);
+    }
+
+    public void testLockFailureReloadsTheOrderBeforeFallingBack() throws Exception {
+        Order order = buildOrder();
+        Order persisted = buildOrder();
+        sessionMock = EasyMock.createNiceMock(Session.class);
+        expectSessionState();
+        EasyMock.expect(orderDaoMock.save(EasyMock.same(order))).andReturn(order);
+        EasyMock.expect(pricingServiceMock.executePricing(EasyMock.same(order)))
+                .andThrow(new LockAcquisitionException("Could not acquire lock", new SQLException()));
+        EasyMock.expect(orderDaoMock.readOrderById(order.getId())).andReturn(persisted);
+        EasyMock.expect(orderDaoMock.save(EasyMock.same(persisted))).andReturn(persisted).times(2);
+        EasyMock.expect(pricingServiceMock.executePricing(EasyMock.same(persisted))).andReturn(persisted);
+        replayAll();
+
+        assertSame(persisted, orderService.save(order, true));
+
+        verifyAll();
+        // the rolled back single flush unit, then the separate save and final save
+        assertEquals(3, transactionManager.begun);
+        assertEquals(1, transactionManager.rolledBack);
+        assertEquals(2, transactionManager.committed);
+    }
+
+    protected Order buildOrder() {
+        Order order = new OrderImpl();
+        order.setId(1L);
+        return order;
+    }
+
+    protected void expectSessionState() {
+        EasyMock.expect(emMock.unwrap(Session.class)).andStubReturn(sessionMock);
+        EasyMock.expect(sessionMock.getHibernateFlushMode()).andStubReturn(FlushMode.AUTO);
+        EasyMock.expect(sessionMock.getFlushMode()).andStubReturn(FlushModeType.AUTO);
+        EasyMock.expect(sessionMock.getJdbcBatchSize()).andStubReturn(20);
+    }
+
+    protected void replayAll() {
+        EasyMock.replay(orderDaoMock, pricingServiceMock, emMock, sessionMock);
+    }
+
+    protected void verifyAll() {
+        EasyMock.verify(orderDaoMock, pricingServiceMock, emMock, sessionMock);
+    }
+
+    protected static class CountingTransactionManager implements PlatformTransactionManager {
+
+        protected int begun;
+        protected int committed;
+        protected int rolledBack;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            begun++;
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            committed++;
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rolledBack++;
+        }
+    }
+}
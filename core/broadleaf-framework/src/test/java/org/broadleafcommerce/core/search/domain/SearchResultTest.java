@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.domain;
+
+import org.broadleafcommerce.core.catalog.domain.Product;
+import org.broadleafcommerce.core.catalog.domain.ProductImpl;
+import org.broadleafcommerce.core.catalog.domain.dto.ProductListingView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class SearchResultTest extends TestCase {
+
+    public void testPagingDoesNotLoadProducts() {
+        final AtomicInteger loads = new AtomicInteger();
+        SearchResult result = buildResult(loads);
+        assertEquals(Integer.valueOf(11), result.getStartResult());
+        assertEquals(Integer.valueOf(3), result.getTotalPages());
+        assertEquals(0, loads.get());
+    }
+
+    public void testProductsAreLoadedOnceOnDemand() {
+        final AtomicInteger loads = new AtomicInteger();
+        SearchResult result = buildResult(loads);
+        assertEquals(2, result.getProducts().size());
+        assertEquals(2, result.getProducts().size());
+        assertEquals(1, loads.get());
+    }
+
+    protected SearchResult buildResult(final AtomicInteger loads) {
+        SearchResult result = new SearchResult();
+        result.setPage(2);
+        result.setPageSize(10);
+        result.setTotalResults(25);
+        result.setListingViews(new ArrayList<>(Arrays.asList(new ProductListingView(1L, 10L), new ProductListingView(2L, 20L))));
+        result.setProductLoader(new SearchResult.ProductLoader() {
+
+            @Override
+            public List<Product> loadProducts() {
+                loads.incrementAndGet();
+                return new ArrayList<Product>(Arrays.asList(new ProductImpl(), new ProductImpl()));
+            }
+        });
+        return result;
+    }
+}
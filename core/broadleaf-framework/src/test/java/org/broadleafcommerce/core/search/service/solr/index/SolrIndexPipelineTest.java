@@ -0,0 +1,387 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.search.service.solr.index;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.broadleafcommerce.common.exception.ServiceException;
+import org.broadleafcommerce.common.sandbox.SandBoxHelper;
+import org.broadleafcommerce.core.catalog.domain.Indexable;
+import org.broadleafcommerce.core.search.domain.FieldEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class SolrIndexPipelineTest extends TestCase {
+
+    public void testDocumentsAreSentInIdOrderWithASingleBuilder() throws Exception {
+        TestIndexService indexService = new TestIndexService(20);
+        RecordingOperation operation = new RecordingOperation();
+        RecordingPipeline pipeline = new RecordingPipeline(indexService, operation, 1, 2, 2, 4);
+
+        pipeline.execute(3);
+
+        List<Long> sent = pipeline.getSentIds();
+        assertEquals(20, sent.size());
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals(Long.valueOf(i + 1), sent.get(i));
+        }
+        for (List<SolrInputDocument> batch : pipeline.batches.subList(0, pipeline.batches.size() - 1)) {
+            assertTrue(batch.size() >= 4);
+        }
+    }
+
+    public void testEveryPageIsSentOnceWithSeveralBuilders() throws Exception {
+        TestIndexService indexService = new TestIndexService(100);
+        RecordingPipeline pipeline = new RecordingPipeline(indexService, new RecordingOperation(), 4, 2, 2, 10);
+
+        pipeline.execute(7);
+
+        List<Long> sent = pipeline.getSentIds();
+        Collections.sort(sent);
+        assertEquals(100, sent.size());
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals(Long.valueOf(i + 1), sent.get(i));
+        }
+    }
+
+    public void testOperationHooksAreCalledPerPage() throws Exception {
+        TestIndexService indexService = new TestIndexService(10);
+        RecordingOperation operation = new RecordingOperation();
+        RecordingPipeline pipeline = new RecordingPipeline(indexService, operation, 2, 2, 2, 10);
+
+        pipeline.execute(3);
+
+        assertEquals(1, operation.beforeCount.get());
+        assertEquals(1, operation.afterCount.get());
+        // four pages of ids, plus the empty read that ends the reader
+        assertEquals(5, operation.beforeRead.get());
+        assertEquals(5, operation.afterRead.get());
+        assertEquals(4, operation.beforeBuild.get());
+        assertEquals(4, operation.afterBuild.get());
+    }
+
+    public void testASlowSenderStallsTheReader() throws Exception {
+        TestIndexService indexService = new TestIndexService(100);
+        final CountDownLatch release = new CountDownLatch(1);
+        final RecordingPipeline pipeline = new RecordingPipeline(indexService, new RecordingOperation(), 1, 1, 1, 1) {
+            @Override
+            protected void send(List<SolrInputDocument> batch) throws Exception {
+                release.await();
+                super.send(batch);
+            }
+        };
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    pipeline.execute(1);
+                } catch (Throwable t) {
+                    errors.add(t);
+                }
+            }
+        };
+        thread.start();
+
+        Thread.sleep(500);
+        // one page held by the sender, one in each queue and one waiting in each of the builder and the reader
+        assertTrue("Read " + indexService.pagesRead.get() + " pages while the sender was blocked",
+                indexService.pagesRead.get() <= 6);
+
+        release.countDown();
+        thread.join(TimeUnit.SECONDS.toMillis(30));
+        assertFalse(thread.isAlive());
+        assertTrue(errors.isEmpty());
+        assertEquals(100, pipeline.getSentIds().size());
+    }
+
+    public void testBuilderFailureIsThrownFromExecute() throws Exception {
+        TestIndexService indexService = new TestIndexService(100);
+        indexService.failOnId = 42L;
+        RecordingOperation operation = new RecordingOperation();
+        RecordingPipeline pipeline = new RecordingPipeline(indexService, operation, 3, 2, 2, 10);
+
+        try {
+            pipeline.execute(5);
+            fail("Expected the builder failure to be rethrown");
+        } catch (ServiceException e) {
+            assertSame(indexService.failure, e.getCause());
+        }
+        assertEquals(operation.beforeBuild.get(), operation.afterBuild.get());
+    }
+
+    public void testSenderFailureIsThrownFromExecute() throws Exception {
+        TestIndexService indexService = new TestIndexService(100);
+        final RuntimeException sendFailure = new RuntimeException("Solr is down");
+        RecordingPipeline pipeline = new RecordingPipeline(indexService, new RecordingOperation(), 3, 1, 1, 10) {
+            @Override
+            protected void send(List<SolrInputDocument> batch) throws Exception {
+                if (!batches.isEmpty()) {
+                    throw sendFailure;
+                }
+                super.send(batch);
+            }
+        };
+
+        try {
+            pipeline.execute(5);
+            fail("Expected the sender failure to be rethrown");
+        } catch (ServiceException e) {
+            assertSame(sendFailure, e.getCause());
+        }
+    }
+
+    public void testCountFailureIsThrownBeforeAnyPageIsRead() throws Exception {
+        TestIndexService indexService = new TestIndexService(10);
+        final ServiceException failure = new ServiceException("Could not count");
+        RecordingOperation operation = new RecordingOperation() {
+            @Override
+            public Long countIndexables() throws ServiceException {
+                throw failure;
+            }
+        };
+        RecordingPipeline pipeline = new RecordingPipeline(indexService, operation, 1, 1, 1, 10);
+
+        try {
+            pipeline.execute(5);
+            fail("Expected the count failure to be rethrown");
+        } catch (ServiceException e) {
+            assertSame(failure, e);
+        }
+        assertEquals(1, operation.afterCount.get());
+        assertEquals(0, indexService.pagesRead.get());
+    }
+
+    protected static class RecordingPipeline extends SolrIndexPipeline {
+
+        protected final List<List<SolrInputDocument>> batches = Collections.synchronizedList(new ArrayList<List<SolrInputDocument>>());
+
+        public RecordingPipeline(SolrIndexServiceImpl indexService, SolrIndexOperation operation, int builderThreads,
+                int maxPendingPages, int maxPendingBatches, int sendBatchSize) {
+            super(indexService, operation, "reindex", null, builderThreads, maxPendingPages, maxPendingBatches, sendBatchSize);
+        }
+
+        @Override
+        protected void send(List<SolrInputDocument> batch) throws Exception {
+            batches.add(new ArrayList<SolrInputDocument>(batch));
+        }
+
+        public List<Long> getSentIds() {
+            List<Long> ids = new ArrayList<Long>();
+            synchronized (batches) {
+                for (List<SolrInputDocument> batch : batches) {
+                    for (SolrInputDocument document : batch) {
+                        ids.add((Long) document.getFieldValue("id"));
+                    }
+                }
+            }
+            return ids;
+        }
+    }
+
+    protected static class TestIndexService extends SolrIndexServiceImpl {
+
+        protected final long maxId;
+        protected final AtomicInteger pagesRead = new AtomicInteger();
+        protected final RuntimeException failure = new RuntimeException("Could not build documents");
+        protected Long failOnId;
+
+        public TestIndexService(long maxId) {
+            this.maxId = maxId;
+            this.transactionManager = new TestTransactionManager();
+            this.sandBoxHelper = (SandBoxHelper) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { SandBoxHelper.class }, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            return null;
+                        }
+                    });
+            this.extensionManager = new SolrIndexServiceExtensionManager();
+        }
+
+        @Override
+        public Object[] saveState() {
+            return new Object[0];
+        }
+
+        @Override
+        public void restoreState(Object[] pack) {
+        }
+
+        @Override
+        protected List<Long> readAllActiveIndexableIds(Long lastId, int pageSize) {
+            List<Long> ids = new ArrayList<Long>();
+            for (long id = lastId == null ? 1 : lastId + 1; id <= maxId && ids.size() < pageSize; id++) {
+                ids.add(id);
+            }
+            if (!ids.isEmpty()) {
+                pagesRead.incrementAndGet();
+            }
+            return ids;
+        }
+
+        @Override
+        protected List<? extends Indexable> readIndexablesByIds(List<Long> ids) {
+            List<TestIndexable> indexables = new ArrayList<TestIndexable>();
+            for (Long id : ids) {
+                indexables.add(new TestIndexable(id));
+            }
+            return indexables;
+        }
+
+        @Override
+        protected Collection<SolrInputDocument> buildDocuments(List<? extends Indexable> indexables) {
+            List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+            for (Indexable indexable : indexables) {
+                if (indexable.getId().equals(failOnId)) {
+                    throw failure;
+                }
+                SolrInputDocument document = new SolrInputDocument();
+                document.addField("id", indexable.getId());
+                documents.add(document);
+            }
+            return documents;
+        }
+    }
+
+    protected static class TestIndexable implements Indexable {
+
+        protected final Long id;
+
+        public TestIndexable(Long id) {
+            this.id = id;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public FieldEntity getFieldEntityType() {
+            return FieldEntity.PRODUCT;
+        }
+    }
+
+    protected static class TestTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            ((SimpleTransactionStatus) status).setCompleted();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            ((SimpleTransactionStatus) status).setCompleted();
+        }
+    }
+
+    protected static class RecordingOperation implements SolrIndexOperation {
+
+        protected final AtomicInteger beforeCount = new AtomicInteger();
+        protected final AtomicInteger afterCount = new AtomicInteger();
+        protected final AtomicInteger beforeRead = new AtomicInteger();
+        protected final AtomicInteger afterRead = new AtomicInteger();
+        protected final AtomicInteger beforeBuild = new AtomicInteger();
+        protected final AtomicInteger afterBuild = new AtomicInteger();
+
+        @Override
+        public boolean obtainLock() {
+            return true;
+        }
+
+        @Override
+        public SolrClient getSolrServerForIndexing() {
+            return null;
+        }
+
+        @Override
+        public String getSolrCollectionForIndexing() {
+            return "reindex";
+        }
+
+        @Override
+        public void beforeCountIndexables() {
+            beforeCount.incrementAndGet();
+        }
+
+        @Override
+        public Long countIndexables() throws ServiceException {
+            return 0L;
+        }
+
+        @Override
+        public void afterCountIndexables() {
+            afterCount.incrementAndGet();
+        }
+
+        @Override
+        public void beforeReadIndexables() {
+            beforeRead.incrementAndGet();
+        }
+
+        @Override
+        public List<? extends Indexable> readIndexables(int pageSize, Long lastId) throws ServiceException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void afterReadIndexables() {
+            afterRead.incrementAndGet();
+        }
+
+        @Override
+        public void beforeBuildPage() {
+            beforeBuild.incrementAndGet();
+        }
+
+        @Override
+        public void buildPage(List<? extends Indexable> indexables) throws ServiceException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void afterBuildPage() {
+            afterBuild.incrementAndGet();
+        }
+
+        @Override
+        public void releaseLock() {
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.util.queue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Exercises the batched and prefetching operations of {@link ZookeeperDistributedQueue} against an embedded Zookeeper
+ * server. The elapsed times of the single element and batched round trips are logged so the run doubles as a rough
+ * throughput benchmark.
+ */
+public class ZookeeperDistributedQueueTest extends TestCase {
+
+    private static final Log LOG = LogFactory.getLog(ZookeeperDistributedQueueTest.class);
+
+    protected static final int ELEMENTS = 200;
+
+    protected File dataDirectory;
+    protected ServerCnxnFactory factory;
+    protected ZooKeeper zk;
+
+    @Override
+    protected void setUp() throws Exception {
+        dataDirectory = Files.createTempDirectory("zk-queue-test").toFile();
+        ZooKeeperServer server = new ZooKeeperServer(dataDirectory, dataDirectory, 2000);
+        factory = ServerCnxnFactory.createFactory(0, 100);
+        factory.startup(server);
+        final CountDownLatch connected = new CountDownLatch(1);
+        zk = new ZooKeeper("127.0.0.1:" + factory.getLocalPort(), 10000, new Watcher() {
+            @Override
+            public void process(WatchedEvent event) {
+                if (event.getState() == Event.KeeperState.SyncConnected) {
+                    connected.countDown();
+                }
+            }
+        });
+        assertTrue(connected.await(10, TimeUnit.SECONDS));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        zk.close();
+        factory.shutdown();
+        delete(dataDirectory);
+    }
+
+    public void testBatchedOperationsPreserveOrder() throws Exception {
+        ZookeeperDistributedQueue<Integer> queue = new ZookeeperDistributedQueue<>("/test/batched", zk);
+        queue.setBatchSize(64);
+        assertEquals(ELEMENTS, queue.offerAll(buildElements()));
+        assertEquals(ELEMENTS, queue.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(150, queue.drainTo(drained, 150));
+        assertEquals(ELEMENTS - 150, queue.drainTo(drained, ELEMENTS, 1, TimeUnit.SECONDS));
+        assertEquals(buildElements(), drained);
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testPrefetchServesPollsLocally() throws Exception {
+        ZookeeperDistributedQueue<Integer> queue = new ZookeeperDistributedQueue<>("/test/prefetch", zk);
+        queue.setPrefetchSize(10);
+        queue.offerAll(buildElements().subList(0, 25));
+
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertEquals(25, queue.size());
+        assertEquals(Integer.valueOf(1), queue.peek());
+        for (int j = 1; j < 25; j++) {
+            assertEquals(Integer.valueOf(j), queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Elements already claimed into the prefetch buffer are still in the queue as far as contains and remove are concerned
+     */
+    public void testPrefetchedElementsCanBeFoundAndRemoved() throws Exception {
+        ZookeeperDistributedQueue<Integer> queue = new ZookeeperDistributedQueue<>("/test/prefetch-remove", zk);
+        queue.setPrefetchSize(10);
+        queue.offerAll(buildElements().subList(0, 25));
+        assertEquals(Integer.valueOf(0), queue.poll());
+
+        assertTrue(queue.contains(5));
+        assertTrue(queue.contains(20));
+        assertTrue(queue.containsAll(Arrays.asList(5, 20)));
+        assertFalse(queue.contains(0));
+
+        assertTrue(queue.remove(5));
+        assertFalse(queue.contains(5));
+        assertFalse(queue.remove(5));
+        assertTrue(queue.remove(20));
+        assertFalse(queue.contains(20));
+        assertEquals(22, queue.size());
+
+        List<Integer> remaining = new ArrayList<>();
+        Integer element;
+        while ((element = queue.poll()) != null) {
+            remaining.add(element);
+        }
+        List<Integer> expected = new ArrayList<>(buildElements().subList(1, 25));
+        expected.remove(Integer.valueOf(5));
+        expected.remove(Integer.valueOf(20));
+        assertEquals(expected, remaining);
+    }
+
+    public void testBatchedThroughput() throws Exception {
+        ZookeeperDistributedQueue<Integer> single = new ZookeeperDistributedQueue<>("/test/single", zk);
+        long begin = System.nanoTime();
+        for (Integer element : buildElements()) {
+            assertTrue(single.offer(element));
+        }
+        for (int j = 0; j < ELEMENTS; j++) {
+            assertNotNull(single.poll());
+        }
+        long singleElapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        ZookeeperDistributedQueue<Integer> batched = new ZookeeperDistributedQueue<>("/test/batched-throughput", zk);
+        begin = System.nanoTime();
+        assertEquals(ELEMENTS, batched.offerAll(buildElements()));
+        List<Integer> drained = new ArrayList<>();
+        while (drained.size() < ELEMENTS) {
+            batched.drainTo(drained, 50);
+        }
+        long batchedElapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        LOG.info(String.format("%s elements offered and polled one at a time in %sms, offered and drained in batches in %sms",
+                ELEMENTS, singleElapsed, batchedElapsed));
+        assertEquals(buildElements(), drained);
+        assertTrue(single.isEmpty());
+        assertTrue(batched.isEmpty());
+    }
+
+    protected void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    protected List<Integer> buildElements() {
+        List<Integer> elements = new ArrayList<>();
+        for (int j = 0; j < ELEMENTS; j++) {
+            elements.add(j);
+        }
+        return elements;
+    }
+}
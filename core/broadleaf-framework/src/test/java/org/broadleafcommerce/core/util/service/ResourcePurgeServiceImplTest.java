@@ -0,0 +1,176 @@
+/*-
+ * #%L
+ * BroadleafCommerce Framework
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.util.service;
+
+import org.broadleafcommerce.core.order.domain.OrderImpl;
+import org.broadleafcommerce.core.util.dao.ResourcePurgeDaoImpl;
+import org.broadleafcommerce.core.util.domain.PurgeCheckpoint;
+import org.broadleafcommerce.core.util.domain.PurgeCheckpointImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Exercises the chunking, failure isolation and checkpointing of the bulk purge, with the delete statements and the
+ * persistence of the checkpoint stubbed out
+ */
+public class ResourcePurgeServiceImplTest extends TestCase {
+
+    protected TestResourcePurgeService purgeService;
+    protected PurgeCheckpoint checkpoint;
+    protected BulkPurgeTestTarget target;
+
+    @Override
+    protected void setUp() throws Exception {
+        checkpoint = new PurgeCheckpointImpl();
+        checkpoint.setName("CART");
+        purgeService = new TestResourcePurgeService();
+        purgeService.resourcePurgeDao = new ResourcePurgeDaoImpl() {
+            @Override
+            public PurgeCheckpoint readPurgeCheckpoint(String name) {
+                return checkpoint;
+            }
+        };
+        purgeService.bulkPurgeChunkSize = 5;
+        purgeService.bulkPurgeThreads = 2;
+        purgeService.bulkPurgeThrottleRatio = 0;
+        target = new BulkPurgeTestTarget(23);
+    }
+
+    public void testFailuresAreIsolatedAndRecorded() throws Exception {
+        purgeService.failingIds.add(7L);
+        int purged = purgeService.bulkPurge("CART", OrderImpl.class, Collections.<String, String>emptyMap(), target, null, 0L);
+
+        assertEquals(22, purged);
+        assertEquals(22, purgeService.deletedIds.size());
+        assertFalse(purgeService.deletedIds.contains(7L));
+        assertTrue(checkpoint.getFailures().containsKey(7L));
+        //the pass completed, so the next run starts from the beginning again
+        assertNull(checkpoint.getLastProcessedId());
+
+        target.remaining.clear();
+        target.remaining.add(7L);
+        purged = purgeService.bulkPurge("CART", OrderImpl.class, Collections.<String, String>emptyMap(), target, null, 0L);
+        assertEquals(0, purged);
+        assertEquals(Collections.singletonList(7L), target.lastExcludedIds);
+    }
+
+    public void testCappedRunResumesFromCheckpoint() throws Exception {
+        int purged = purgeService.bulkPurge("CART", OrderImpl.class, Collections.<String, String>emptyMap(), target, 8L, 0L);
+        assertEquals(8, purged);
+        assertEquals(Long.valueOf(8L), checkpoint.getLastProcessedId());
+        assertEquals(Long.valueOf(8L), checkpoint.getProcessedCount());
+
+        target.firstReturnedId = null;
+        purged = purgeService.bulkPurge("CART", OrderImpl.class, Collections.<String, String>emptyMap(), target, null, 0L);
+        assertEquals(15, purged);
+        assertEquals(23, purgeService.deletedIds.size());
+        assertEquals(Long.valueOf(9L), target.firstReturnedId);
+        assertNull(checkpoint.getLastProcessedId());
+    }
+
+    public void testDeleteStatementsAreRewrittenForTheChunk() throws Exception {
+        DeleteStatementGeneratorImpl generator = new DeleteStatementGeneratorImpl();
+        String marker = ResourcePurgeServiceImpl.BULK_PURGE_ID_MARKER;
+        List<Long> ids = Arrays.asList(3L, 5L, 8L);
+
+        Stack<DeleteStatementGeneratorImpl.PathElement> stack = new Stack<DeleteStatementGeneratorImpl.PathElement>();
+        stack.push(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER", "ORDER_ID", "ORDER_ID"));
+        stack.push(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER_ITEM", "ORDER_ITEM_ID", "ORDER_ID"));
+        String sql = purgeService.buildBulkDeleteSql(generator.getSqls(marker, new DeleteStatementGeneratorImpl.OperationStackHolder(stack)), ids);
+        assertEquals("delete FROM BLC_ORDER_ITEM WHERE ORDER_ID IN (3,5,8)", sql);
+
+        stack = new Stack<DeleteStatementGeneratorImpl.PathElement>();
+        stack.push(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER", "ORDER_ID", "ORDER_ID"));
+        stack.push(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER_ITEM", "ORDER_ITEM_ID", "ORDER_ID"));
+        stack.push(new DeleteStatementGeneratorImpl.PathElement("BLC_GIFTWRAP_ORDER_ITEM", "ORDER_ITEM_ID", "ORDER_ITEM_ID"));
+        sql = purgeService.buildBulkDeleteSql(generator.getSqls(marker, new DeleteStatementGeneratorImpl.OperationStackHolder(stack)), ids);
+        assertEquals("delete FROM BLC_GIFTWRAP_ORDER_ITEM WHERE ORDER_ITEM_ID IN (SELECT b.ORDER_ITEM_ID FROM BLC_ORDER_ITEM b"
+                + " inner join BLC_ORDER a0 on b.ORDER_ID=a0.ORDER_ID WHERE a0.ORDER_ID IN (3,5,8))", sql);
+
+        stack = new Stack<DeleteStatementGeneratorImpl.PathElement>();
+        stack.push(new DeleteStatementGeneratorImpl.PathElement("BLC_ORDER", "ORDER_ID", "ORDER_ID"));
+        stack.push(new DeleteStatementGeneratorImpl.PathElement("BLC_FULFILLMENT_GROUP", "FULFILLMENT_GROUP_ID", "ADDRESS_ID", true));
+        sql = purgeService.buildBulkDeleteSql(generator.getSqls(marker, new DeleteStatementGeneratorImpl.OperationStackHolder(stack)), ids);
+        assertEquals("delete FROM BLC_FULFILLMENT_GROUP WHERE FULFILLMENT_GROUP_ID IN (SELECT t.ADDRESS_ID FROM BLC_ORDER t"
+                + " WHERE t.ORDER_ID IN (3,5,8))", sql);
+        assertFalse(sql.contains(marker));
+
+        sql = purgeService.buildBulkDeleteSql("delete FROM BLC_ORDER WHERE ORDER_ID=" + marker, Collections.singletonList(3L));
+        assertEquals("delete FROM BLC_ORDER WHERE ORDER_ID IN (3)", sql);
+    }
+
+    protected static class TestResourcePurgeService extends ResourcePurgeServiceImpl {
+
+        protected final ConcurrentSkipListSet<Long> deletedIds = new ConcurrentSkipListSet<Long>();
+        protected final List<Long> failingIds = Collections.synchronizedList(new ArrayList<Long>());
+
+        @Override
+        protected void executeBulkDelete(Class<?> rootType, Map<String, String> deleteStatements, BulkPurgeTarget target, List<Long> ids) {
+            for (Long id : ids) {
+                if (failingIds.contains(id)) {
+                    throw new IllegalStateException("Constraint violation for id " + id);
+                }
+            }
+            deletedIds.addAll(ids);
+        }
+
+        @Override
+        protected PurgeCheckpoint saveCheckpoint(PurgeCheckpoint checkpoint) {
+            return checkpoint;
+        }
+    }
+
+    protected static class BulkPurgeTestTarget extends ResourcePurgeServiceImpl.BulkPurgeTarget {
+
+        protected final ConcurrentSkipListSet<Long> remaining = new ConcurrentSkipListSet<Long>();
+        protected List<Long> lastExcludedIds;
+        protected Long firstReturnedId;
+
+        public BulkPurgeTestTarget(int count) {
+            for (long j = 1; j <= count; j++) {
+                remaining.add(j);
+            }
+        }
+
+        @Override
+        public List<Long> findIds(Long lastId, int length, List<Long> excludedIds) {
+            lastExcludedIds = new ArrayList<Long>(excludedIds);
+            List<Long> response = new ArrayList<Long>();
+            for (Long id : lastId == null ? remaining : remaining.tailSet(lastId, false)) {
+                if (response.size() == length) {
+                    break;
+                }
+                if (!excludedIds.contains(id)) {
+                    response.add(id);
+                }
+            }
+            if (firstReturnedId == null && !response.isEmpty()) {
+                firstReturnedId = response.get(0);
+            }
+            return response;
+        }
+    }
+}
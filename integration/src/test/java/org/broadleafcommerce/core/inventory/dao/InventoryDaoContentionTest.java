@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * BroadleafCommerce Integration
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.dao;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.common.util.TransactionUtils;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.test.TestNGSiteIntegrationSetup;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+
+/**
+ * Drives concurrent checkouts, each in its own transaction, against a single Sku row through the conditional update
+ * statement of {@link InventoryDaoImpl} and verifies that the row is never oversold. The elapsed time is logged so the
+ * run doubles as a rough row contention benchmark for the test database.
+ */
+public class InventoryDaoContentionTest extends TestNGSiteIntegrationSetup {
+
+    private static final Log LOG = LogFactory.getLog(InventoryDaoContentionTest.class);
+
+    protected static final int THREADS = 40;
+    protected static final int STOCK = 15;
+
+    @Resource
+    private InventoryDao inventoryDao;
+
+    @Resource
+    private CatalogService catalogService;
+
+    @Resource(name = "blTransactionManager")
+    private PlatformTransactionManager transactionManager;
+
+    @Test(groups = "inventoryDaoContention")
+    public void concurrentDecrementsNeverOversell() throws Exception {
+        final Long skuId = createSku(STOCK);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        for (int j = 0; j < THREADS; j++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        TransactionStatus status = TransactionUtils.createTransaction("Inventory Contention",
+                                TransactionDefinition.PROPAGATION_REQUIRES_NEW, transactionManager, false);
+                        boolean decremented = false;
+                        try {
+                            decremented = inventoryDao.decrementQuantityAvailable(skuId, 1);
+                        } finally {
+                            TransactionUtils.finalizeTransaction(status, transactionManager, !decremented);
+                        }
+                        if (decremented) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        LOG.error("Unexpected failure decrementing inventory", e);
+                        failed.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        assert done.await(60, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        LOG.info(String.format("%s concurrent decrements against one sku row completed in %sms", THREADS, elapsed));
+
+        assert failed.get() == 0;
+        assert succeeded.get() == STOCK;
+        assert rejected.get() == THREADS - STOCK;
+        assert inventoryDao.readQuantitiesAvailable(Collections.singletonList(skuId)).get(skuId) == 0;
+    }
+
+    protected Long createSku(int quantity) {
+        TransactionStatus status = TransactionUtils.createTransaction("Inventory Contention Setup",
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW, transactionManager, false);
+        try {
+            Calendar activeStartCal = Calendar.getInstance();
+            activeStartCal.add(Calendar.DAY_OF_YEAR, -2);
+            Sku sku = new SkuImpl();
+            sku.setSalePrice(new Money(BigDecimal.valueOf(10.0)));
+            sku.setRetailPrice(new Money(BigDecimal.valueOf(15.0)));
+            sku.setName("inventory contention test sku");
+            sku.setActiveStartDate(activeStartCal.getTime());
+            sku.setQuantityAvailable(quantity);
+            sku = catalogService.saveSku(sku);
+            TransactionUtils.finalizeTransaction(status, transactionManager, false);
+            return sku.getId();
+        } catch (RuntimeException e) {
+            if (!status.isCompleted()) {
+                TransactionUtils.finalizeTransaction(status, transactionManager, true);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*-
+ * #%L
+ * BroadleafCommerce Integration
+ * %%
+ * Copyright (C) 2009 - 2023 Broadleaf Commerce
+ * %%
+ * Licensed under the Broadleaf Fair Use License Agreement, Version 1.0
+ * (the "Fair Use License" located  at http://license.broadleafcommerce.org/fair_use_license-1.0.txt)
+ * unless the restrictions on use therein are violated and require payment to Broadleaf in which case
+ * the Broadleaf End User License Agreement (EULA), Version 1.1
+ * (the "Commercial License" located at http://license.broadleafcommerce.org/commercial_license-1.1.txt)
+ * shall apply.
+ * 
+ * Alternatively, the Commercial License may be replaced with a mutually agreed upon license (the "Custom License")
+ * between you and Broadleaf Commerce. You may not use this file except in compliance with the applicable license.
+ * #L%
+ */
+package org.broadleafcommerce.core.inventory.dao;
+
+import org.broadleafcommerce.common.money.Money;
+import org.broadleafcommerce.core.catalog.domain.Sku;
+import org.broadleafcommerce.core.catalog.domain.SkuImpl;
+import org.broadleafcommerce.core.catalog.service.CatalogService;
+import org.broadleafcommerce.test.TestNGSiteIntegrationSetup;
+import org.springframework.transaction.annotation.Transactional;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Collections;
+
+import javax.annotation.Resource;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+public class InventoryDaoTest extends TestNGSiteIntegrationSetup {
+
+    @Resource
+    private InventoryDao inventoryDao;
+
+    @Resource
+    private CatalogService catalogService;
+
+    @PersistenceContext(unitName = "blPU")
+    protected EntityManager em;
+
+    @Test(groups = "inventoryDaoDecrement")
+    @Transactional
+    public void decrementIsConditional() {
+        Long skuId = createSku(5).getId();
+
+        assert inventoryDao.decrementQuantityAvailable(skuId, 2);
+        assert inventoryDao.decrementQuantityAvailable(skuId, 3);
+        assert !inventoryDao.decrementQuantityAvailable(skuId, 1);
+        assert readQuantity(skuId) == 0;
+
+        assert inventoryDao.incrementQuantityAvailable(skuId, 4);
+        assert readQuantity(skuId) == 4;
+    }
+
+    @Test(groups = "inventoryDaoNullQuantity")
+    @Transactional
+    public void nullQuantityIsNotAdjusted() {
+        Long skuId = createSku(null).getId();
+
+        assert !inventoryDao.decrementQuantityAvailable(skuId, 1);
+        assert !inventoryDao.incrementQuantityAvailable(skuId, 1);
+        assert inventoryDao.readQuantitiesAvailable(Collections.singletonList(skuId)).get(skuId) == null;
+    }
+
+    @Test(groups = "inventoryDaoManagedSku")
+    @Transactional
+    public void managedSkuDoesNotWriteBackStaleQuantity() {
+        Sku sku = createSku(5);
+
+        assert inventoryDao.decrementQuantityAvailable(sku.getId(), 2);
+        assert sku.getQuantityAvailable() == 3;
+
+        // an unrelated edit of the same Sku must keep the decrement
+        sku.setName("renamed inventory test sku");
+        sku = catalogService.saveSku(sku);
+        em.flush();
+        em.clear();
+
+        assert readQuantity(sku.getId()) == 3;
+        assert catalogService.findSkuById(sku.getId()).getQuantityAvailable() == 3;
+    }
+
+    protected Sku createSku(Integer quantity) {
+        Calendar activeStartCal = Calendar.getInstance();
+        activeStartCal.add(Calendar.DAY_OF_YEAR, -2);
+        Sku sku = new SkuImpl();
+        sku.setSalePrice(new Money(BigDecimal.valueOf(10.0)));
+        sku.setRetailPrice(new Money(BigDecimal.valueOf(15.0)));
+        sku.setName("inventory test sku");
+        sku.setActiveStartDate(activeStartCal.getTime());
+        sku.setQuantityAvailable(quantity);
+        sku = catalogService.saveSku(sku);
+        em.flush();
+        return sku;
+    }
+
+    protected int readQuantity(Long skuId) {
+        return inventoryDao.readQuantitiesAvailable(Collections.singletonList(skuId)).get(skuId);
+    }
+}